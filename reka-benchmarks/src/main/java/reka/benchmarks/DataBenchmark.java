@@ -0,0 +1,97 @@
+package reka.benchmarks;
+
+import static reka.util.Path.dots;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+import reka.util.Path;
+
+// MutableMemoryData with the sort of shape a request ends up as: a few nested maps of strings
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBenchmark {
+
+	@Param({ "10", "100" })
+	public int size;
+
+	private Path[] paths;
+	private Path lookup;
+	private Path missing;
+
+	private MutableData data;
+	private Data other;
+
+	@Setup
+	public void setup() {
+		paths = new Path[size];
+		for (int i = 0; i < size; i++) {
+			paths[i] = dots("request.section" + (i % 4) + ".field" + i);
+		}
+		lookup = paths[size / 2];
+		missing = dots("request.section1.nope");
+		data = fill(MutableMemoryData.create(), "value");
+		MutableData half = MutableMemoryData.create();
+		for (int i = 0; i < size; i += 2) {
+			half.putString(paths[i], "other");
+		}
+		other = half;
+	}
+
+	private MutableData fill(MutableData into, String value) {
+		for (Path path : paths) {
+			into.putString(path, value);
+		}
+		return into;
+	}
+
+	@Benchmark
+	public MutableData put() {
+		return fill(MutableMemoryData.create(), "value");
+	}
+
+	@Benchmark
+	public Optional<String> get() {
+		return data.getString(lookup);
+	}
+
+	@Benchmark
+	public boolean getMissing() {
+		return data.existsAt(missing);
+	}
+
+	@Benchmark
+	public MutableData copy() {
+		return data.mutableCopy();
+	}
+
+	@Benchmark
+	public MutableData merge() {
+		return data.mutableCopy().merge(other);
+	}
+
+	@Benchmark
+	public String toJson() {
+		return data.toJson();
+	}
+
+}
@@ -0,0 +1,155 @@
+package reka.benchmarks;
+
+import static reka.flow.builder.FlowSegments.createParallelSegment;
+import static reka.flow.builder.FlowSegments.seq;
+import static reka.flow.builder.OperationFlowNode.operation;
+import static reka.util.Path.path;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.flow.Flow;
+import reka.flow.FlowRun;
+import reka.flow.FlowSegment;
+import reka.flow.builder.FlowBuilderGroup;
+import reka.flow.ops.Subscriber;
+import reka.util.DaemonThreadFactory;
+import reka.util.Path;
+
+/*
+ * A whole flow run from prepare() to the subscriber being called, each operation just puts a value.
+ *
+ *   linear - width operations one after the other
+ *   fanout - width operations in parallel
+ *   join   - width operations in parallel then one that reads all their results
+ *
+ *   default  - what a flow uses if it's not told otherwise (cached pool + single coordinator)
+ *   single   - everything on one thread
+ *   forkjoin - a work stealing pool for the operations + single coordinator
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FlowBenchmark {
+
+	@Param({ "linear", "fanout", "join" })
+	public String shape;
+
+	@Param({ "default", "single", "forkjoin" })
+	public String executors;
+
+	@Param({ "4" })
+	public int width;
+
+	private Flow flow;
+
+	private ExecutorService operationExecutor;
+	private ExecutorService coordinationExecutor;
+
+	@Setup
+	public void setup() {
+		Path[] keys = new Path[width];
+		List<FlowSegment> ops = new ArrayList<>();
+		for (int i = 0; i < width; i++) {
+			Path key = path("op" + i);
+			keys[i] = key;
+			ops.add(operation("put" + i, (data, ctx) -> data.putString(key, "value")));
+		}
+
+		FlowSegment segment;
+		switch (shape) {
+		case "linear":
+			segment = seq(ops);
+			break;
+		case "fanout":
+			segment = createParallelSegment(ops);
+			break;
+		case "join":
+			segment = seq(createParallelSegment(ops), operation("join", (data, ctx) -> {
+				int found = 0;
+				for (Path key : keys) {
+					if (data.existsAt(key)) found++;
+				}
+				data.putInt(path("found"), found);
+			}));
+			break;
+		default:
+			throw new IllegalArgumentException(shape);
+		}
+
+		flow = FlowBuilderGroup.createFlow(path("bench"), segment);
+
+		switch (executors) {
+		case "default":
+			break;
+		case "single":
+			operationExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("bench-single"));
+			coordinationExecutor = operationExecutor;
+			break;
+		case "forkjoin":
+			operationExecutor = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+			coordinationExecutor = Executors.newSingleThreadExecutor(new DaemonThreadFactory("bench-coord"));
+			break;
+		default:
+			throw new IllegalArgumentException(executors);
+		}
+	}
+
+	@TearDown
+	public void teardown() {
+		if (operationExecutor != null) operationExecutor.shutdown();
+		if (coordinationExecutor != null) coordinationExecutor.shutdown();
+	}
+
+	@Benchmark
+	public MutableData run() {
+		CompletableFuture<MutableData> done = new CompletableFuture<>();
+		FlowRun run = flow.prepare();
+		if (operationExecutor != null) {
+			run.operationExecutor(operationExecutor).coordinationExecutor(coordinationExecutor);
+		}
+		run.run(new Subscriber() {
+
+			@Override
+			public void ok(MutableData data) {
+				done.complete(data);
+			}
+
+			@Override
+			public void halted() {
+				done.completeExceptionally(new IllegalStateException("halted"));
+			}
+
+			@Override
+			public void error(Data data, Throwable t) {
+				done.completeExceptionally(t);
+			}
+
+		});
+		return done.join();
+	}
+
+}
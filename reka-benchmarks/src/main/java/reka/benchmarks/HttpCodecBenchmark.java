@@ -0,0 +1,123 @@
+package reka.benchmarks;
+
+import static reka.util.Path.dots;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.stream.ChunkedWriteHandler;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reka.data.MutableData;
+import reka.net.http.server.DataToHttpEncoder;
+import reka.net.http.server.HttpRequestToDataDecoder;
+import reka.util.Path;
+import reka.util.Path.Response;
+
+/*
+ * Request bytes in, through the same handlers a connection has once its host is known, and the
+ * response bytes back out. The flow in the middle is just putting the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpCodecBenchmark {
+
+	private static final Path REQUEST_CONTENT = dots("request.content");
+
+	private static final String GET =
+		"GET /users/123?fields=name&fields=email&pretty HTTP/1.1\r\n" +
+		"Host: localhost:5000\r\n" +
+		"User-Agent: Mozilla/5.0 (X11; Linux x86_64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/120.0 Safari/537.36\r\n" +
+		"Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+		"Accept-Language: en-GB,en;q=0.5\r\n" +
+		"Cookie: session=4f0c2e1a9b; theme=dark\r\n" +
+		"Connection: keep-alive\r\n" +
+		"\r\n";
+
+	private static final String JSON = "{\"name\":\"peter\",\"email\":\"peter@example.com\",\"tags\":[\"a\",\"b\",\"c\"],\"address\":{\"city\":\"london\",\"postcode\":\"E1 6AN\"}}";
+
+	private static final String POST =
+		"POST /users HTTP/1.1\r\n" +
+		"Host: localhost:5000\r\n" +
+		"Content-Type: application/json; charset=utf-8\r\n" +
+		"Content-Length: " + JSON.getBytes(StandardCharsets.UTF_8).length + "\r\n" +
+		"Connection: keep-alive\r\n" +
+		"\r\n" +
+		JSON;
+
+	@Param({ "get-text", "post-json" })
+	public String exchange;
+
+	private EmbeddedChannel channel;
+	private byte[] request;
+	private boolean echo;
+
+	@Setup
+	public void setup() {
+		channel = new EmbeddedChannel(
+			new HttpServerCodec(),
+			new HttpObjectAggregator(1024 * 1024),
+			new ChunkedWriteHandler(),
+			new HttpRequestToDataDecoder(),
+			DataToHttpEncoder.NORMAL);
+		switch (exchange) {
+		case "get-text":
+			request = GET.getBytes(StandardCharsets.UTF_8);
+			break;
+		case "post-json":
+			request = POST.getBytes(StandardCharsets.UTF_8);
+			echo = true;
+			break;
+		default:
+			throw new IllegalArgumentException(exchange);
+		}
+	}
+
+	@TearDown
+	public void teardown() {
+		channel.finishAndReleaseAll();
+	}
+
+	@Benchmark
+	public int roundTrip() {
+		channel.writeInbound(Unpooled.wrappedBuffer(request));
+		MutableData data = channel.readInbound();
+		if (echo) {
+			data.put(Response.CONTENT, data.at(REQUEST_CONTENT));
+		} else {
+			data.putString(Response.CONTENT, "hello peter");
+		}
+		channel.writeOutbound(data);
+		int bytes = 0;
+		Object out;
+		while ((out = channel.readOutbound()) != null) {
+			if (out instanceof ByteBuf) {
+				ByteBuf buf = (ByteBuf) out;
+				bytes += buf.readableBytes();
+				buf.release();
+			}
+		}
+		return bytes;
+	}
+
+}
@@ -0,0 +1,92 @@
+package reka.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+import reka.flow.ops.RouteCollector;
+import reka.flow.ops.RouteKey;
+import reka.net.http.configurers.HttpRouterConfigurer.RouteBuilder;
+import reka.net.http.operations.HttpRouter;
+import reka.runtime.DefaultRouteCollector;
+import reka.util.Path.Request;
+
+// a router like a small api would have, matched against static, parameterised, greedy and missing paths
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpRouterBenchmark {
+
+	private static final String[][] ROUTES = {
+		{ "GET", "/" },
+		{ "GET", "/about" },
+		{ "GET", "/login" },
+		{ "POST", "/login" },
+		{ "GET", "/users" },
+		{ "POST", "/users" },
+		{ "GET", "/users/:id" },
+		{ "PUT", "/users/:id" },
+		{ "DELETE", "/users/:id" },
+		{ "GET", "/users/:id/posts" },
+		{ "GET", "/users/:id/posts/:post" },
+		{ "GET", "/posts/:post/comments/:comment" },
+		{ "GET", "/tags/:tag" },
+		{ "GET", "/search/:query?" },
+		{ "GET", "/static/:file*" },
+		{ "GET", "/api/v1/status" },
+	};
+
+	@Param({ "GET /about", "GET /users/123", "GET /users/123/posts/456", "GET /static/css/site.css", "GET /nowhere/at/all" })
+	public String request;
+
+	private HttpRouter router;
+	private Collection<RouteKey> keys;
+
+	private String method;
+	private String path;
+
+	@Setup
+	public void setup() {
+		List<HttpRouter.Route> routes = new ArrayList<>();
+		keys = new ArrayList<>();
+		for (String[] route : ROUTES) {
+			RouteKey key = RouteKey.named(route[0] + " " + route[1]);
+			keys.add(key);
+			routes.add(new RouteBuilder().method(route[0]).path(route[1]).key(key).build());
+		}
+		keys.add(HttpRouter.OTHERWISE);
+		router = new HttpRouter(routes, true);
+		String[] parts = request.split(" ", 2);
+		method = parts[0];
+		path = parts[1];
+	}
+
+	@Benchmark
+	public RouteCollector route() {
+		MutableData data = MutableMemoryData.create();
+		data.putString(Request.METHOD, method);
+		data.putString(Request.PATH, path);
+		RouteCollector collector = DefaultRouteCollector.create(keys);
+		router.call(data, collector);
+		return collector;
+	}
+
+}
@@ -0,0 +1,111 @@
+package reka.benchmarks;
+
+import static reka.util.Path.path;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+import reka.flow.ops.OperationContext;
+import reka.identity.ConcurrentIdentityStore;
+import reka.jdbc.DBCP2ConnectionProvider;
+import reka.jdbc.JdbcConfiguration;
+import reka.jdbc.JdbcQuery;
+import reka.util.StringWithVars;
+
+/*
+ * The jdbc query operation against an in memory h2 database, so it's our side of it (pool, statement
+ * setup, turning rows into data) plus h2 doing very little.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JdbcQueryBenchmark {
+
+	private static final int ROWS = 1000;
+
+	@Param({ "by-id", "page-of-50", "count" })
+	public String query;
+
+	private DBCP2ConnectionProvider pool;
+	private JdbcQuery operation;
+	private OperationContext ctx;
+
+	private int counter;
+
+	@Setup
+	public void setup() throws SQLException {
+		pool = new DBCP2ConnectionProvider("jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1", "sa", "", true);
+		try (Connection connection = pool.getConnection()) {
+			try (Statement statement = connection.createStatement()) {
+				statement.execute("drop table if exists users");
+				statement.execute("create table users (id int primary key, name varchar(255), email varchar(255), created timestamp)");
+			}
+			try (PreparedStatement insert = connection.prepareStatement("insert into users values (?, ?, ?, now())")) {
+				for (int i = 0; i < ROWS; i++) {
+					insert.setInt(1, i);
+					insert.setString(2, "user " + i);
+					insert.setString(3, "user" + i + "@example.com");
+					insert.addBatch();
+				}
+				insert.executeBatch();
+			}
+			if (!connection.getAutoCommit()) connection.commit();
+		}
+
+		String sql;
+		boolean firstOnly = false;
+		switch (query) {
+		case "by-id":
+			sql = "select * from users where id = :id";
+			firstOnly = true;
+			break;
+		case "page-of-50":
+			sql = "select * from users where id >= :id order by id limit 50";
+			break;
+		case "count":
+			sql = "select count(*) as n from users";
+			firstOnly = true;
+			break;
+		default:
+			throw new IllegalArgumentException(query);
+		}
+
+		operation = new JdbcQuery(new JdbcConfiguration(false), pool, StringWithVars.compile(sql), firstOnly, path("result"));
+		ctx = new OperationContext(ConcurrentIdentityStore.create());
+	}
+
+	@TearDown
+	public void teardown() throws Exception {
+		pool.close();
+	}
+
+	@Benchmark
+	public MutableData query() {
+		MutableData data = MutableMemoryData.create();
+		data.putInt(path("id"), (counter++ * 31) % (ROWS - 50));
+		operation.call(data, ctx);
+		return data;
+	}
+
+}
@@ -0,0 +1,95 @@
+package reka.benchmarks;
+
+import static reka.util.Path.dots;
+import static reka.util.Path.path;
+import static reka.util.Path.slashes;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import reka.util.Path;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PathBenchmark {
+
+	@Param({ "name", "request.params.id", "response.headers.Content-Type", "items[3].tags[].name", "escaped\\.dot.path" })
+	public String dotted;
+
+	private String slashed;
+	private String unique;
+	private int counter;
+
+	private Path a, b, c;
+
+	@Setup
+	public void setup() {
+		slashed = "/" + dots(dotted).slashes();
+		a = dots(dotted);
+		b = path(a.toArray());
+		c = a.add("other");
+	}
+
+	@Benchmark
+	public Path dots_() {
+		return dots(dotted);
+	}
+
+	// defeats the intern cache, so this is the cost of actually parsing
+	@Benchmark
+	public Path dotsUncached() {
+		unique = dotted + ".x" + (counter++ & 0xffff) + ".padding-to-make-it-too-long-to-intern-padding-to-make-it-too-long-to-intern-padding-to-make-it-too-long";
+		return dots(unique);
+	}
+
+	@Benchmark
+	public Path slashes_() {
+		return slashes(slashed);
+	}
+
+	@Benchmark
+	public Path add() {
+		return a.add("id");
+	}
+
+	@Benchmark
+	public Path addIndex() {
+		return a.add(3);
+	}
+
+	@Benchmark
+	public int hashCode_() {
+		return c.hashCode();
+	}
+
+	@Benchmark
+	public int hashCodeFresh() {
+		return path(a.toArray()).hashCode();
+	}
+
+	@Benchmark
+	public boolean equalsSame() {
+		return a.equals(b);
+	}
+
+	@Benchmark
+	public boolean equalsDifferent() {
+		return a.equals(c);
+	}
+
+}
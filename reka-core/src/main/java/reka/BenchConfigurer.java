@@ -0,0 +1,79 @@
+package reka;
+
+import static reka.config.configurer.Configurer.configure;
+import static reka.config.configurer.Configurer.Preconditions.checkConfig;
+import static reka.core.config.ConfigUtils.configToData;
+import static reka.util.Units.parseDuration;
+
+import java.util.function.Supplier;
+
+import reka.config.Config;
+import reka.config.configurer.annotations.Conf;
+import reka.core.config.ConfigurerProvider;
+import reka.core.config.SequenceConfigurer;
+import reka.data.Data;
+import reka.flow.FlowBench;
+import reka.flow.FlowSegment;
+
+public class BenchConfigurer {
+
+	private final ConfigurerProvider provider;
+
+	private Supplier<FlowSegment> run;
+
+	private Data initial = Data.NONE;
+	private Integer concurrency;
+	private int rate = 0;
+	private long duration = 10_000;
+	private long warmup = 2_000;
+
+	public BenchConfigurer(ConfigurerProvider provider) {
+		this.provider = provider;
+	}
+
+	@Conf.At("data")
+	@Conf.At("input")
+	public void initial(Config config) {
+		initial = configToData(config.body());
+	}
+
+	@Conf.At("run")
+	public void run(Config config) {
+		if (config.hasBody()) {
+			run = configure(new SequenceConfigurer(provider), config.body()).bind();
+		} else if (config.hasValue()) {
+			run = provider.provide("run", provider, config);
+		}
+	}
+
+	@Conf.At("concurrency")
+	public void concurrency(String val) {
+		concurrency = Integer.valueOf(val);
+		checkConfig(concurrency > 0, "concurrency must be at least 1");
+	}
+
+	// runs per second
+	@Conf.At("rate")
+	public void rate(String val) {
+		rate = Integer.valueOf(val);
+		checkConfig(rate > 0, "rate must be at least 1");
+	}
+
+	@Conf.At("duration")
+	public void duration(String val) {
+		duration = parseDuration(val);
+		checkConfig(duration > 0, "duration must be more than 0");
+	}
+
+	@Conf.At("warmup")
+	public void warmup(String val) {
+		warmup = parseDuration(val);
+	}
+
+	public FlowBench build() {
+		checkConfig(run != null, "a bench block needs something to run");
+		int inFlight = concurrency != null ? concurrency : rate > 0 ? 1000 : 1;
+		return new FlowBench(run, initial, inFlight, rate, duration, warmup);
+	}
+
+}
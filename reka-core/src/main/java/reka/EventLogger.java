@@ -1,24 +1,82 @@
 package reka;
 
+import static java.lang.String.format;
+import static reka.util.Util.runtime;
 import static reka.util.Util.unchecked;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
-import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+
+/*
+ * Append only log of events, one per line:
+ *
+ *   <date> <eid> <type> <json>
+ *
+ * It's split into segments named after the first eid in them, a new one is started when the
+ * current one gets too big or too old, and old ones are deleted once we have too much or they
+ * are past the retention age.
+ *
+ * Writes go into a buffer which is flushed every flushInterval (or when it fills up) so a burst of
+ * events turns into one write to the file.
+ *
+ * Each segment has a sparse index (.idx) of eid -> offset pairs, one every indexInterval bytes,
+ * which since() uses to find where to start reading, and we use at startup to find the last eid.
+ */
+public class EventLogger implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(EventLogger.class);
+
+	public static final long DEFAULT_SEGMENT_BYTES = 64 * 1024 * 1024;
+	public static final long DEFAULT_SEGMENT_AGE = TimeUnit.DAYS.toMillis(1);
+	public static final long DEFAULT_RETAIN_BYTES = 512 * 1024 * 1024;
+	public static final long DEFAULT_RETAIN_AGE = TimeUnit.DAYS.toMillis(7);
+	public static final int DEFAULT_INDEX_INTERVAL = 4096;
+	public static final long DEFAULT_FLUSH_INTERVAL = 100;
 
-public class EventLogger {
+	private static final int BUFFER_SIZE = 64 * 1024;
 
 	private static final byte NEWLINE = '\n';
 	private static final byte SPACE = ' ';
 
+	private static final Pattern SEGMENT_NAME = Pattern.compile("^events-(\\d+)\\.log$");
+
+	private static final ObjectMapper jsonMapper = new ObjectMapper();
+
 	private static final SimpleDateFormat sdf = new SimpleDateFormat("yyyy/MM/dd-HH:mm:ss.SSSZ");
 	private static final Runnable setdate = () -> date = sdf.format(new Date()).toString().getBytes(StandardCharsets.UTF_8);
 	private static volatile byte[] date;
@@ -27,95 +85,353 @@ public class EventLogger {
 		setdate.run();
 		Reka.SharedExecutors.scheduled.scheduleWithFixedDelay(setdate, 1, 1, TimeUnit.SECONDS);
 	}
-	
+
+	public static class Event {
+
+		private final long eid;
+		private final String date;
+		private final String type;
+		private final Data data;
+
+		private Event(long eid, String date, String type, Data data) {
+			this.eid = eid;
+			this.date = date;
+			this.type = type;
+			this.data = data;
+		}
+
+		public long eid() {
+			return eid;
+		}
+
+		public String date() {
+			return date;
+		}
+
+		public String type() {
+			return type;
+		}
+
+		public Data data() {
+			return data;
+		}
+
+	}
+
 	private final Object lock = new Object();
-	
-	private final File file;
-	private final FileOutputStream out;
-	private final FileChannel fc;
-	
-	private volatile long eventid;
-	
-	public EventLogger(String path) {
+
+	private final File dir;
+	private final long segmentBytes;
+	private final long segmentAge;
+	private final long retainBytes;
+	private final long retainAge;
+	private final int indexInterval;
+
+	private final TreeMap<Long,Segment> segments = new TreeMap<>();
+	private final ScheduledFuture<?> flusher;
+
+	private Segment active;
+	private OutputStream out;
+	private DataOutputStream idx;
+	private boolean dirty;
+	private boolean closed;
+
+	private volatile long eventid = -1;
+
+	public EventLogger(Path dir) {
+		this(dir, DEFAULT_SEGMENT_BYTES, DEFAULT_SEGMENT_AGE, DEFAULT_RETAIN_BYTES, DEFAULT_RETAIN_AGE, DEFAULT_INDEX_INTERVAL, DEFAULT_FLUSH_INTERVAL);
+	}
+
+	public EventLogger(Path dir, long segmentBytes, long segmentAge, long retainBytes, long retainAge, int indexInterval, long flushInterval) {
+		this.dir = dir.toFile();
+		this.segmentBytes = segmentBytes;
+		this.segmentAge = segmentAge;
+		this.retainBytes = retainBytes;
+		this.retainAge = retainAge;
+		this.indexInterval = indexInterval;
 		try {
 			synchronized (lock) {
-				file = new File(path);
-				out = new FileOutputStream(file, true);
-				fc = out.getChannel();
-				fc.lock(); // TODO: doesn't seem to do what I'm expecting!
-				eventid = findPreviousEventId();
-			}
-		} catch (IOException e) {
-			throw unchecked(e);
-		}
-	}
-	
-	private long findPreviousEventId() {
-		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
-			long size = file.length();
-			int len = (int) Math.min(size, 1024);
-			
-			int pos = (int) size;
-			boolean done = false;
-			byte[] buf = new byte[len];
-			
-			int eventidOffset = 28 + 1;
-			
-			int lastlineEnd = -1;
-			int lastlineStart = -1;
-			
-			while (!done) {
-				pos = (int) pos - len;
-				raf.seek(pos);
-				int read = raf.read(buf);
-				if (read <= 0) break;
-				for (int i = read - 1; i >= 0; i--) {
-					if (buf[i] == NEWLINE) {
-						if (lastlineEnd == -1) {
-							lastlineEnd = pos + i;
-						} else {
-							lastlineStart = pos + i + 1 + eventidOffset;
-							int lastlineLen = lastlineEnd - lastlineStart;
-							byte[] lastline = new byte[lastlineLen];
-							raf.seek(lastlineStart);
-							raf.read(lastline);
-							long eid = -1;
-							for (int j = 0; j < lastline.length; j++) {
-								if (lastline[j] == SPACE) {
-									byte[] n = new byte[j];
-									System.arraycopy(lastline, 0, n, 0, n.length);
-									eid = Long.valueOf(new String(n, StandardCharsets.UTF_8));
-									break;
-								}
-							}
-							return eid;
+				Files.createDirectories(dir);
+				File[] files = this.dir.listFiles();
+				if (files != null) {
+					for (File file : files) {
+						Matcher m = SEGMENT_NAME.matcher(file.getName());
+						if (m.matches()) {
+							long base = Long.valueOf(m.group(1));
+							segments.put(base, new Segment(base));
 						}
 					}
 				}
+				if (segments.isEmpty()) {
+					open(new Segment(0));
+				} else {
+					Segment last = segments.lastEntry().getValue();
+					recover(last);
+					open(last);
+				}
 			}
-			return -1;
 		} catch (IOException e) {
 			throw unchecked(e);
 		}
+		flusher = Reka.SharedExecutors.scheduled.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
 	}
-	
+
+	public long lastEventId() {
+		return eventid;
+	}
+
 	public long write(String type, Data data) {
-		try {
-			byte[] json = data.toJson().getBytes(StandardCharsets.UTF_8);
-			synchronized (lock) {
-				out.write(date);
+		byte[] json = data.toJson().getBytes(StandardCharsets.UTF_8);
+		byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+		synchronized (lock) {
+			if (closed) {
+				log.warn("event log is closed, dropping {} event", type);
+				return -1;
+			}
+			try {
+				if (active.size >= segmentBytes || (active.size > 0 && System.currentTimeMillis() - active.started >= segmentAge)) {
+					roll();
+				}
+				long eid = eventid + 1;
+				byte[] eidBytes = Long.toString(eid).getBytes(StandardCharsets.UTF_8);
+				if (active.index.isEmpty() || active.size - active.index.lastEntry().getValue() >= indexInterval) {
+					active.index.put(eid, active.size);
+					idx.writeLong(eid);
+					idx.writeLong(active.size);
+				}
+				byte[] now = date;
+				out.write(now);
 				out.write(SPACE);
-				out.write(Long.toString(++eventid).getBytes(StandardCharsets.UTF_8));
+				out.write(eidBytes);
 				out.write(SPACE);
-				out.write(type.getBytes(StandardCharsets.UTF_8));
+				out.write(typeBytes);
 				out.write(SPACE);
 				out.write(json);
 				out.write(NEWLINE);
-				return eventid;
+				active.size += now.length + eidBytes.length + typeBytes.length + json.length + 4;
+				dirty = true;
+				return eventid = eid;
+			} catch (IOException e) {
+				throw unchecked(e);
+			}
+		}
+	}
+
+	// everything after eid, oldest first, at most limit of them
+	public List<Event> since(long eid, int limit) {
+		List<Event> events = new ArrayList<>();
+		List<Segment> from = new ArrayList<>();
+		Segment current;
+		long end, offset;
+		synchronized (lock) {
+			flush();
+			Long start = segments.floorKey(eid + 1);
+			from.addAll((start != null ? segments.tailMap(start, true) : segments).values());
+			Entry<Long,Long> entry = from.get(0).index.floorEntry(eid + 1);
+			offset = entry != null ? entry.getValue() : 0;
+			current = active;
+			end = active.size; // so we don't read anything written after this point
+		}
+		for (Segment segment : from) {
+			long limitBytes = segment == current ? end : Long.MAX_VALUE;
+			try {
+				segment.read(offset, limitBytes, line -> {
+					if (events.size() >= limit) return false;
+					long lineEid = parseEid(line);
+					if (lineEid > eid) events.add(parse(line));
+					return true;
+				});
+			} catch (FileNotFoundException e) {
+				// deleted by retention while we were reading
+			} catch (IOException e) {
+				throw unchecked(e);
+			}
+			if (events.size() >= limit) break;
+			offset = 0;
+		}
+		return events;
+	}
+
+	private void flush() {
+		synchronized (lock) {
+			if (!dirty || closed) return;
+			try {
+				out.flush();
+				idx.flush();
+				dirty = false;
+			} catch (IOException e) {
+				log.error("failed to flush event log", e);
 			}
+		}
+	}
+
+	@Override
+	public void close() {
+		flusher.cancel(false);
+		synchronized (lock) {
+			if (closed) return;
+			flush();
+			closed = true;
+			try {
+				out.close();
+				idx.close();
+			} catch (IOException e) {
+				throw unchecked(e);
+			}
+		}
+	}
+
+	private void roll() throws IOException {
+		out.close();
+		idx.close();
+		dirty = false;
+		open(new Segment(eventid + 1));
+		applyRetention();
+	}
+
+	private void open(Segment segment) throws IOException {
+		segments.put(segment.base, segment);
+		active = segment;
+		out = new BufferedOutputStream(new FileOutputStream(segment.logFile, true), BUFFER_SIZE);
+		idx = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment.idxFile, true)));
+	}
+
+	private void applyRetention() {
+		long total = 0;
+		for (Segment segment : segments.values()) {
+			total += segment.logFile.length();
+		}
+		long now = System.currentTimeMillis();
+		while (segments.size() > 1) {
+			Segment oldest = segments.firstEntry().getValue();
+			long length = oldest.logFile.length();
+			if (total <= retainBytes && now - oldest.logFile.lastModified() < retainAge) break;
+			log.debug("removing event log segment {}", oldest.logFile.getName());
+			oldest.logFile.delete();
+			oldest.idxFile.delete();
+			segments.remove(oldest.base);
+			total -= length;
+		}
+	}
+
+	// finds the last eid, and chops off anything after the last complete line (left by a crash)
+	private void recover(Segment segment) throws IOException {
+		long length = segment.logFile.length();
+		segment.index.entrySet().removeIf(e -> e.getValue() >= length);
+		Entry<Long,Long> last = segment.index.lastEntry();
+		// an index entry is the eid of the line at that offset, so the one before is complete
+		long[] found = { last != null ? last.getKey() - 1 : segment.base - 1, last != null ? last.getValue() : 0 };
+		segment.read(found[1], Long.MAX_VALUE, line -> {
+			found[0] = parseEid(line);
+			found[1] += line.length + 1;
+			return true;
+		});
+		if (found[1] < length) {
+			log.warn("truncating event log {} from {} to {} bytes", segment.logFile.getName(), length, found[1]);
+			try (RandomAccessFile raf = new RandomAccessFile(segment.logFile, "rw")) {
+				raf.setLength(found[1]);
+			}
+		}
+		// drop anything pointing at what we chopped off, the entry gets written again with the line
+		long size = found[1];
+		if (segment.index.entrySet().removeIf(e -> e.getValue() >= size) || segment.idxFile.length() != segment.index.size() * 16L) {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(segment.idxFile)))) {
+				for (Entry<Long,Long> e : segment.index.entrySet()) {
+					out.writeLong(e.getKey());
+					out.writeLong(e.getValue());
+				}
+			}
+		}
+		segment.size = size;
+		eventid = found[0];
+	}
+
+	private static long parseEid(byte[] line) {
+		int start = indexOf(line, SPACE, 0) + 1;
+		int end = indexOf(line, SPACE, start);
+		return Long.valueOf(new String(line, start, end - start, StandardCharsets.UTF_8));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Event parse(byte[] line) {
+		int a = indexOf(line, SPACE, 0);
+		int b = indexOf(line, SPACE, a + 1);
+		int c = indexOf(line, SPACE, b + 1);
+		long eid = Long.valueOf(new String(line, a + 1, b - a - 1, StandardCharsets.UTF_8));
+		try {
+			MutableData data = MutableMemoryData.createFromMap(jsonMapper.readValue(line, c + 1, line.length - c - 1, Map.class));
+			data.putLong("eid", eid);
+			return new Event(eid,
+							 new String(line, 0, a, StandardCharsets.UTF_8),
+							 new String(line, b + 1, c - b - 1, StandardCharsets.UTF_8),
+							 data);
 		} catch (IOException e) {
 			throw unchecked(e);
 		}
 	}
-	
+
+	private static int indexOf(byte[] line, byte b, int from) {
+		for (int i = from; i < line.length; i++) {
+			if (line[i] == b) return i;
+		}
+		throw runtime("invalid event log line: %s", new String(line, StandardCharsets.UTF_8));
+	}
+
+	private static interface LineHandler {
+		boolean line(byte[] line); // false to stop
+	}
+
+	private class Segment {
+
+		private final long base;
+		private final File logFile;
+		private final File idxFile;
+		private final TreeMap<Long,Long> index = new TreeMap<>();
+
+		private long size;
+		private long started;
+
+		Segment(long base) throws IOException {
+			this.base = base;
+			this.logFile = new File(dir, format("events-%020d.log", base));
+			this.idxFile = new File(dir, format("events-%020d.idx", base));
+			if (logFile.exists()) {
+				size = logFile.length();
+				started = Files.readAttributes(logFile.toPath(), BasicFileAttributes.class).creationTime().toMillis();
+			} else {
+				started = System.currentTimeMillis();
+			}
+			if (idxFile.exists()) {
+				try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(idxFile)))) {
+					while (true) {
+						index.put(in.readLong(), in.readLong());
+					}
+				} catch (EOFException e) {
+					// done, a half written entry at the end is ignored
+				}
+			}
+		}
+
+		// reads complete lines starting at offset, stopping at limit bytes
+		void read(long offset, long limit, LineHandler handler) throws IOException {
+			try (FileInputStream fis = new FileInputStream(logFile)) {
+				fis.getChannel().position(offset);
+				InputStream in = new BufferedInputStream(fis, BUFFER_SIZE);
+				ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+				long pos = offset;
+				int b;
+				while (pos < limit && (b = in.read()) != -1) {
+					pos++;
+					if (b == NEWLINE) {
+						if (!handler.line(line.toByteArray())) return;
+						line.reset();
+					} else {
+						line.write(b);
+					}
+				}
+			}
+		}
+
+	}
+
 }
@@ -10,22 +10,28 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import reka.app.Application;
 import reka.app.manager.ApplicationManager;
 import reka.app.manager.ApplicationManager.DeploySubscriber;
 import reka.config.ConfigBody;
 import reka.config.FileSource;
+import reka.identity.Identity;
 import reka.module.ModuleManager;
 import reka.module.ModuleMeta;
 import reka.modules.admin.AdminModule;
 import reka.util.AsyncShutdown;
 import reka.util.DaemonThreadFactory;
+import reka.util.HashedWheelTimer;
 import reka.util.Path;
 import reka.util.dirs.AppDirs;
 import reka.util.dirs.BaseDirs;
@@ -34,7 +40,16 @@ public class Reka {
 	
 	public static interface SharedExecutors {
 		public static final ExecutorService general = Executors.newCachedThreadPool(new DaemonThreadFactory("reka-general"));
-		public static final ScheduledExecutorService scheduled = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("reka-scheduled"));
+		public static final ScheduledExecutorService scheduled = createScheduledExecutor("reka-scheduled", Math.max(2, Runtime.getRuntime().availableProcessors() / 2));
+		
+		// for large numbers of short timeouts, tasks run on the timer thread so must be quick
+		public static final HashedWheelTimer timer = new HashedWheelTimer("reka-timer", 10, TimeUnit.MILLISECONDS, 512);
+	}
+	
+	private static ScheduledExecutorService createScheduledExecutor(String name, int threads) {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(threads, new DaemonThreadFactory(name));
+		executor.setRemoveOnCancelPolicy(true);
+		return executor;
 	}
 	
 	private static final Logger log = LoggerFactory.getLogger(Reka.class);
@@ -42,11 +57,17 @@ public class Reka {
 	private final BaseDirs dirs;
 	private final List<ModuleMeta> modules = new ArrayList<>();
 	private final Map<Path,ConfigBody> configs = new HashMap<>();
+	private final int deployParallelism;
 	
 	public Reka(BaseDirs dirs, List<ModuleMeta> modules, Map<Path,ConfigBody> configs) {
+		this(dirs, modules, configs, ApplicationManager.DEFAULT_PARALLELISM);
+	}
+	
+	public Reka(BaseDirs dirs, List<ModuleMeta> modules, Map<Path,ConfigBody> configs, int deployParallelism) {
 		this.dirs = dirs;
 		this.modules.addAll(modules);
 		this.configs.putAll(configs);
+		this.deployParallelism = deployParallelism;
 	}
 	
 	public void run() {
@@ -55,7 +76,7 @@ public class Reka {
 		dirs.tmp().toFile().deleteOnExit();
 		
 		ModuleManager moduleManager = new ModuleManager(modules);
-		ApplicationManager manager  = new ApplicationManager(dirs, moduleManager);
+		ApplicationManager manager  = new ApplicationManager(dirs, moduleManager, deployParallelism);
 		
 		Runtime.getRuntime().addShutdownHook(new Thread(){
 			
@@ -86,16 +107,53 @@ public class Reka {
 		});
 		
 		log.info("starting with apps dirs {}", dirs.app().toString());
+		
+		// the manager deploys these in parallel, we just want to know when they're all done
+		List<Consumer<DeploySubscriber>> deploys = new ArrayList<>();
 
 		for (Entry<Path, ConfigBody> e : configs.entrySet()) {
-			manager.deployConfig(e.getKey(), -1, e.getValue(), null, DeploySubscriber.LOG);
+			deploys.add(subscriber -> manager.deployConfig(e.getKey(), -1, e.getValue(), null, subscriber));
 		}
 		
 		AppDirs.listApps(dirs).forEach((pathAndVersion, path) -> {
 			File mainreka = path.resolve("main.reka").toFile();
 			if (!mainreka.exists()) return;
-			manager.deploySource(pathAndVersion.path(), pathAndVersion.version(), FileSource.from(mainreka), DeploySubscriber.LOG);
+			deploys.add(subscriber -> manager.deploySource(pathAndVersion.path(), pathAndVersion.version(), FileSource.from(mainreka), subscriber));
 		});
+		
+		DeploySubscriber startup = new StartupSubscriber(deploys.size());
+		deploys.forEach(deploy -> deploy.accept(startup));
+	}
+	
+	private static class StartupSubscriber implements DeploySubscriber {
+		
+		private final long started = System.nanoTime();
+		private final AtomicInteger remaining;
+		private final AtomicInteger failed = new AtomicInteger();
+		
+		StartupSubscriber(int count) {
+			remaining = new AtomicInteger(count);
+		}
+
+		@Override
+		public void ok(Identity identity, int version, Application application) {
+			DeploySubscriber.LOG.ok(identity, version, application);
+			countdown();
+		}
+
+		@Override
+		public void error(Identity identity, Throwable t) {
+			DeploySubscriber.LOG.error(identity, t);
+			failed.incrementAndGet();
+			countdown();
+		}
+		
+		private void countdown() {
+			if (remaining.decrementAndGet() == 0) {
+				log.info("startup deploys finished in {}ms ({} failed)", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), failed.get());
+			}
+		}
+		
 	}
 	
 }
@@ -23,6 +23,7 @@ import java.util.zip.ZipFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import reka.app.manager.ApplicationManager;
 import reka.config.Config;
 import reka.config.ConfigBody;
 import reka.config.configurer.annotations.Conf;
@@ -45,6 +46,8 @@ public class RekaConfigurer {
 	private String appdir = "reka-data/apps";
 	private String datadir = "reka-data/data";
 	private String tmpdir = "reka-data/tmp";
+	
+	private int deployParallelism = ApplicationManager.DEFAULT_PARALLELISM;
 
 	private final List<ModuleMeta> defaultModules = new ArrayList<>();
 	
@@ -89,6 +92,13 @@ public class RekaConfigurer {
 		tmpdir = val;
 	}
 	
+	// how many apps can be deploying at once
+	@Conf.At("deploy-parallelism")
+	public void deployParallelism(int val) {
+		checkArgument(val > 0, "deploy-parallelism must be at least 1");
+		deployParallelism = val;
+	}
+	
 	@Conf.Each("module")
 	public void module(String val) {
 		unpackModule(val);
@@ -185,7 +195,7 @@ public class RekaConfigurer {
 		
 		checkState(!classLoadingError, "failed to load all modules");
 		
-		return new Reka(new BaseDirs(appdir, datadir, tmpdir), modules, apps);
+		return new Reka(new BaseDirs(appdir, datadir, tmpdir), modules, apps, deployParallelism);
 	}
 
 }
@@ -3,12 +3,17 @@ package reka.app;
 import static java.lang.String.format;
 import static java.util.Comparator.naturalOrder;
 import static java.util.stream.Collectors.toList;
+import static reka.util.Path.path;
+import static reka.util.Util.runtime;
 import static reka.util.Util.unchecked;
 
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -17,11 +22,16 @@ import java.util.concurrent.atomic.AtomicLong;
 import reka.data.Data;
 import reka.data.MutableData;
 import reka.flow.Flow;
+import reka.flow.FlowBench;
+import reka.flow.Flow.FlowStats;
 import reka.flow.builder.FlowVisualizer;
 import reka.flow.builder.Flows;
 import reka.identity.Identity;
 import reka.identity.IdentityKey;
 import reka.identity.IdentityStoreReader;
+import reka.metrics.MetricsRegistry;
+import reka.metrics.MetricsScope;
+import reka.module.setup.InitStep;
 import reka.module.setup.NetworkInfo;
 import reka.module.setup.StatusProvider;
 import reka.util.AsyncShutdown;
@@ -47,6 +57,13 @@ public class Application implements AsyncShutdown {
 	private final List<ApplicationComponent> components = new ArrayList<>();
 	private final List<StatusProvider> statusProviders = new ArrayList<>();
 	
+	private final Map<Path,List<ApplicationComponent>> moduleComponents; // by module path
+	private final Map<Path,String> moduleHashes; // for modules the next version could reuse
+	private final Set<Path> reused; // modules we took over from the previous version
+	private final List<InitStep> initSteps;
+	private final Map<String,FlowBench> benches; // by name, the flow is at bench/<name>
+	private final Set<Path> handedOver = ConcurrentHashMap.newKeySet();
+	
 	public Application(
 			Identity identity,
 			Path name, 
@@ -57,6 +74,11 @@ public class Application implements AsyncShutdown {
 			List<NetworkInfo> network, 
 			FlowVisualizer initializerVisualizer,
 			List<ApplicationComponent> components,
+			Map<Path,List<ApplicationComponent>> moduleComponents,
+			Map<Path,String> moduleHashes,
+			Set<Path> reused,
+			List<InitStep> initSteps,
+			Map<String,FlowBench> benches,
 			List<StatusProvider> statusProviders) {
 		this.identity = identity;
 		this.name = name;
@@ -68,9 +90,42 @@ public class Application implements AsyncShutdown {
 		this.initializerVisualizer = initializerVisualizer;
 		this.network.addAll(network);
 		this.components.addAll(components);
+		this.moduleComponents = moduleComponents;
+		this.moduleHashes = moduleHashes;
+		this.reused = reused;
+		this.initSteps = initSteps;
+		this.benches = benches;
 		this.statusProviders.addAll(statusProviders);
 		this.statusProviders.add(new ApplicationStatusProvider());
 		this.network.sort(naturalOrder());
+		registerFlowMetrics();
+	}
+	
+	private void registerFlowMetrics() {
+		MetricsScope metrics = MetricsRegistry.DEFAULT.scope("app", identity.name());
+		for (Flow flow : flows.all()) {
+			FlowStats stats = flow.stats();
+			if (stats == null) continue;
+			String name = flow.name().slashes();
+			metrics.counter("reka_flow_requests_total", "flow runs started", stats.requests::sum, "flow", name);
+			metrics.counter("reka_flow_completed_total", "flow runs that completed", stats.completed::sum, "flow", name);
+			metrics.counter("reka_flow_errors_total", "flow runs that ended in an error", stats.errors::sum, "flow", name);
+			metrics.counter("reka_flow_halts_total", "flow runs that halted", stats.halts::sum, "flow", name);
+			metrics.histogram("reka_flow_duration_seconds", "time from a flow run starting to it ending", stats.durations, "flow", name);
+		}
+		components.add(new ApplicationComponent() {
+			
+			@Override
+			public void undeploy() {
+				metrics.close();
+			}
+			
+			@Override
+			public Runnable pause() {
+				return () -> {};
+			}
+			
+		});
 	}
 	
 	private class ApplicationStatusProvider implements StatusProvider {
@@ -95,6 +150,15 @@ public class Application implements AsyncShutdown {
 			return true; // this should probably be looking at whether ALL the other things are up
 		}
 
+		@Override
+		public long revision() {
+			long revision = 0;
+			for (Flow flow : flows.all()) {
+				revision += flow.stats().requests.sum() + flow.stats().completed.sum() + flow.stats().errors.sum() + flow.stats().halts.sum();
+			}
+			return revision;
+		}
+
 		@Override
 		public void statusData(MutableData data) {
 			AtomicLong totalreqs = new AtomicLong();
@@ -147,6 +211,35 @@ public class Application implements AsyncShutdown {
 		return stores;
 	}
 	
+	public Map<Path,String> moduleHashes() {
+		return moduleHashes;
+	}
+	
+	public Set<Path> reused() {
+		return reused;
+	}
+	
+	public List<InitStep> initSteps() {
+		return initSteps;
+	}
+	
+	public Collection<String> benchNames() {
+		List<String> names = new ArrayList<>(benches.keySet());
+		names.sort(naturalOrder());
+		return names;
+	}
+	
+	public CompletableFuture<Data> bench(String benchName) {
+		FlowBench bench = benches.get(benchName);
+		if (bench == null) throw runtime("no bench called [%s] in %s", benchName, fullName);
+		return BenchRunner.run(benchName, flows.flow(path("bench").add(benchName)), bench);
+	}
+	
+	// the next version is using these modules as they are, so we mustn't undeploy them
+	public void handover(Set<Path> modules) {
+		handedOver.addAll(modules);
+	}
+	
 	public List<NetworkInfo> network() {
 		return network;
 	}
@@ -169,7 +262,7 @@ public class Application implements AsyncShutdown {
 	}
 	
 	public Runnable pause() {
-		List<Runnable> unpauses = components.stream().map(ApplicationComponent::pause).collect(toList());
+		List<Runnable> unpauses = allComponents().stream().map(ApplicationComponent::pause).collect(toList());
 		return () -> {
 			unpauses.forEach(Runnable::run);
 		};
@@ -185,9 +278,19 @@ public class Application implements AsyncShutdown {
 		}
 	}
 
+	private List<ApplicationComponent> allComponents() {
+		List<ApplicationComponent> all = new ArrayList<>(components);
+		moduleComponents.forEach((path, moduleComponents) -> {
+			if (!handedOver.contains(path)) {
+				all.addAll(moduleComponents);
+			}
+		});
+		return all;
+	}
+
 	@Override
 	public void shutdown(Result res) {
-		components.forEach(component -> { 
+		allComponents().forEach(component -> { 
 			try {
 				component.undeploy();
 			} catch (Throwable t) {
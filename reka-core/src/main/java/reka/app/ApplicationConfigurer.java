@@ -22,7 +22,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -31,6 +30,7 @@ import java.util.function.Supplier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import reka.BenchConfigurer;
 import reka.Reka;
 import reka.TestConfigurer;
 import reka.config.Config;
@@ -44,6 +44,7 @@ import reka.data.DiffContentConsumer.DiffContentType;
 import reka.data.MutableData;
 import reka.data.memory.MutableMemoryData;
 import reka.flow.Flow;
+import reka.flow.FlowBench;
 import reka.flow.FlowSegment;
 import reka.flow.FlowTest;
 import reka.flow.FlowTest.FlowTestCase;
@@ -56,6 +57,7 @@ import reka.identity.Identity;
 import reka.identity.IdentityKey;
 import reka.identity.IdentityStore;
 import reka.identity.IdentityStoreReader;
+import reka.metrics.MetricsScope;
 import reka.module.ModuleManager;
 import reka.module.RootModule;
 import reka.module.setup.AppSetup.ApplicationCheck;
@@ -63,6 +65,7 @@ import reka.module.setup.ApplicationSetup;
 import reka.module.setup.ModuleConfigurer;
 import reka.module.setup.Trigger;
 import reka.module.setup.TriggerFlows;
+import reka.util.HashedWheelTimer.Timeout;
 import reka.util.Path;
 import reka.util.dirs.AppDirs;
 
@@ -79,6 +82,7 @@ public class ApplicationConfigurer implements ErrorReporter {
 
     private final List<Config> defs = new ArrayList<>();
     private final List<Config> testConfigs = new ArrayList<>();
+    private final List<Config> benchConfigs = new ArrayList<>();
     
     private final ModuleConfigurer rootModule;
     
@@ -118,6 +122,12 @@ public class ApplicationConfigurer implements ErrorReporter {
     	checkConfig(config.hasValue(), "you must provide a value/name");
     	testConfigs.add(config);
     }
+    
+    @Conf.Each("bench")
+    public void bench(Config config) {
+    	checkConfig(config.hasValue(), "you must provide a value/name");
+    	benchConfigs.add(config);
+    }
 
 	@Override
 	public void errors(ErrorCollector errors) {
@@ -131,30 +141,41 @@ public class ApplicationConfigurer implements ErrorReporter {
     public Collection<FlowVisualizer> visualize(IdentityAndVersion idv) {
         FlowBuilderGroup flowsBuilder = new FlowBuilderGroup();
     	ApplicationSetup initializer = ModuleConfigurer.setup(idv, rootModule, new HashMap<>()); // TODO: does this need stores for the modules?
-    	
-    	DefaultConfigurerProvider provider = new DefaultConfigurerProvider(initializer.providers);
-    	Map<Path,Supplier<FlowSegment>> configuredFlows = new HashMap<>();
-    	defs.forEach((config) -> 
-			configuredFlows.put(path(config.valueAsString()), 
-					configure(new SequenceConfigurer(provider), config).bind()));
-    	configuredFlows.forEach((name, segment) -> flowsBuilder.add(name, segment.get()));
-    	
-    	return flowsBuilder.buildVisualizers();
+    	try {
+	    	DefaultConfigurerProvider provider = new DefaultConfigurerProvider(initializer.providers);
+	    	Map<Path,Supplier<FlowSegment>> configuredFlows = new HashMap<>();
+	    	defs.forEach((config) -> 
+				configuredFlows.put(path(config.valueAsString()), 
+						configure(new SequenceConfigurer(provider), config).bind()));
+	    	configuredFlows.forEach((name, segment) -> flowsBuilder.add(name, segment.get()));
+	    	
+	    	return flowsBuilder.buildVisualizers();
+    	} finally {
+    		initializer.metrics.forEach(MetricsScope::close);
+    	}
     }
     
     private void checkValid(IdentityAndVersion idv, Map<Path,IdentityStore> stores) {
     	ApplicationSetup setup = ModuleConfigurer.setup(idv, rootModule, stores);
-    	DefaultConfigurerProvider configurerProvider = new DefaultConfigurerProvider(setup.providers);
-    	setup.triggers.forEach(triggers -> triggers.get().forEach(trigger -> {
-    		trigger.supplier().apply(configurerProvider).bind(trigger.base(), triggers.ctx()).get();
-    	}));
-    	defs.forEach(config -> {
-    		configure(new SequenceConfigurer(configurerProvider), config).bind().get();
-    	});
-    	testConfigs.forEach(config -> {
-    		configure(new TestConfigurer(configurerProvider), config).build();
-    	});
-    	runChecks(idv.identity(), setup);
+    	try {
+	    	DefaultConfigurerProvider configurerProvider = new DefaultConfigurerProvider(setup.providers);
+	    	setup.triggers.forEach(triggers -> triggers.get().forEach(trigger -> {
+	    		trigger.supplier().apply(configurerProvider).bind(trigger.base(), triggers.ctx()).get();
+	    	}));
+	    	defs.forEach(config -> {
+	    		configure(new SequenceConfigurer(configurerProvider), config).bind().get();
+	    	});
+	    	testConfigs.forEach(config -> {
+	    		configure(new TestConfigurer(configurerProvider), config).build();
+	    	});
+	    	benchConfigs.forEach(config -> {
+	    		configure(new BenchConfigurer(configurerProvider), config).build();
+	    	});
+	    	runChecks(idv.identity(), setup);
+    	} finally {
+    		// only a check, this setup never becomes an app
+    		setup.metrics.forEach(MetricsScope::close);
+    	}
     }
     
     private void runChecks(Identity identity, ApplicationSetup setup) {
@@ -192,6 +213,14 @@ public class ApplicationConfigurer implements ErrorReporter {
     }
     
     public CompletableFuture<Application> build(Identity identity, int version, Map<Path,IdentityStoreReader> previousStores) {
+    	return build(identity, version, previousStores, new HashMap<>());
+    }
+    
+    /*
+     * previousHashes are from the version we're replacing, any module that opted in to being reused
+     * and has the same hash keeps what's in its store and doesn't get initialized again.
+     */
+    public CompletableFuture<Application> build(Identity identity, int version, Map<Path,IdentityStoreReader> previousStores, Map<Path,String> previousHashes) {
     	return safelyCompletable(future -> {
 
 			Set<Path> modulePaths = rootModule.modulePaths();
@@ -222,7 +251,14 @@ public class ApplicationConfigurer implements ErrorReporter {
     		FlowBuilderGroup initflowBuilders = new FlowBuilderGroup();
     		FlowBuilderGroup flowBuilders = new FlowBuilderGroup();
     		
-	    	ApplicationSetup setup = ModuleConfigurer.setup(IdentityAndVersion.create(identity, version), rootModule, stores);
+	    	ApplicationSetup setup = ModuleConfigurer.setup(IdentityAndVersion.create(identity, version), rootModule, stores, previousHashes);
+	    	
+	    	// metrics that replace the live version's only go in once this version has built
+	    	future.whenComplete((app, ex) -> setup.metrics.forEach(ex == null ? MetricsScope::open : MetricsScope::close));
+	    	
+	    	if (!setup.reused.isEmpty()) {
+	    		log.info("reusing unchanged {}", setup.reused.stream().map(Path::slashes).sorted().collect(joining(", ")));
+	    	}
 	    	
 	    	runChecks(identity, setup);
 	    	runPortCheckers(identity, setup);
@@ -264,13 +300,20 @@ public class ApplicationConfigurer implements ErrorReporter {
 	    		tests.put(testName, test);
 	    	});
 	    	
+	    	// benches are only built here, they get run on demand
+	    	benchConfigs.forEach(config -> {
+	    		FlowBench bench = configure(new BenchConfigurer(configurerProvider), config).build();
+	    		flowBuilders.add(path("bench").add(config.valueAsString()), bench.run().get());
+	    		setup.benches.put(config.valueAsString(), bench);
+	    	});
+	    	
 	    	// ok, initialize this thing!
 	    	
 	    	ApplicationInitializer appi = new ApplicationInitializer(future, identity, flowBuilders, setup, tests);
 	    	
-	    	log.debug("initializing app");
+	    	log.debug("initializing {} modules", setup.initialization.size());
 	    	
-	    	setup.initializationFlow.prepare().operationExecutor(executor).mutableData(MutableMemoryData.create()).run(appi);
+	    	setup.initialization.run(executor, appi);
     	
     	});
     }
@@ -315,6 +358,7 @@ public class ApplicationConfigurer implements ErrorReporter {
 		@Override
 		public void ok(MutableData data) {
 			log.debug("initialized app");
+			setup.initSteps.forEach(step -> log.debug("  {} {} took {}ms", step.module().slashes(), step.name(), step.millis()));
 			
 			log.debug("NOT building init flows");
 
@@ -383,13 +427,13 @@ public class ApplicationConfigurer implements ErrorReporter {
 		
 		List<String> testErrors = Collections.synchronizedList(new ArrayList<>());
 
-		ScheduledFuture<?> timeout = Reka.SharedExecutors.scheduled.schedule(() -> {
+		Timeout timeout = Reka.SharedExecutors.timer.schedule(() -> executor.execute(() -> {
 			future.completeExceptionally(runtime("failed to deploy [%s] because tests timed out", identity.name()));
-		}, 5, TimeUnit.SECONDS);
+		}), 5, TimeUnit.SECONDS);
 		
 		Runnable testsFinished = () -> {
 			if (future.isDone()) return; // too late
-			timeout.cancel(true);
+			timeout.cancel();
 			if (testErrors.isEmpty()) {
 				future.complete(null);
 			} else {
@@ -0,0 +1,264 @@
+package reka.app;
+
+import static reka.util.Path.path;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reka.Reka;
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+import reka.flow.Flow;
+import reka.flow.FlowBench;
+import reka.flow.ops.Subscriber;
+import reka.metrics.Histogram;
+
+/*
+ * Drives a bench flow either with a fixed number of runs going at once, or at a fixed rate with
+ * at most that many in flight (anything over it is counted as missed rather than queued).
+ *
+ * Only runs that start between the end of the warmup and the end of the duration are counted. For
+ * a fixed rate the latency is from when the run was due to start, so falling behind shows up in
+ * the numbers instead of being hidden by the runs that never got started.
+ *
+ * Allocation is for the whole JVM over the measured period, so it's only meaningful when nothing
+ * else is busy.
+ */
+class BenchRunner {
+
+	private static final Logger log = LoggerFactory.getLogger(BenchRunner.class);
+
+	private static final ExecutorService executor = Reka.SharedExecutors.general;
+
+	private static final long TICK_MS = 1;
+	private static final long DRAIN_MS = 30_000; // how long to wait for runs still going at the end
+
+	static CompletableFuture<Data> run(String name, Flow flow, FlowBench bench) {
+		return new BenchRunner(name, flow, bench).start();
+	}
+
+	private final String name;
+	private final Flow flow;
+	private final FlowBench bench;
+
+	private final CompletableFuture<Data> future = new CompletableFuture<>();
+	private final AtomicBoolean finished = new AtomicBoolean();
+
+	private final Histogram latencies = Histogram.exponential(1_000, 1.05, 60_000_000_000L, 1e-9);
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+	private final LongAdder ok = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder halts = new LongAdder();
+	private final LongAdder missed = new LongAdder();
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final long startAt;
+	private final long measureFrom;
+	private final long stopAt;
+
+	private volatile boolean stopping;
+	private volatile long allocatedFrom = -1;
+	private volatile long allocatedTo = -1;
+	private volatile long measuredNanos;
+
+	private volatile ScheduledFuture<?> ticks;
+	private long issued;
+
+	private BenchRunner(String name, Flow flow, FlowBench bench) {
+		this.name = name;
+		this.flow = flow;
+		this.bench = bench;
+		startAt = System.nanoTime();
+		measureFrom = startAt + TimeUnit.MILLISECONDS.toNanos(bench.warmupMs());
+		stopAt = measureFrom + TimeUnit.MILLISECONDS.toNanos(bench.durationMs());
+	}
+
+	private CompletableFuture<Data> start() {
+		log.info("running bench {} for {}ms after {}ms warmup", name, bench.durationMs(), bench.warmupMs());
+
+		Reka.SharedExecutors.scheduled.schedule(() -> {
+			allocatedFrom = allocated();
+		}, measureFrom - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+		Reka.SharedExecutors.scheduled.schedule(this::stop, stopAt - System.nanoTime(), TimeUnit.NANOSECONDS);
+
+		if (bench.rate() > 0) {
+			ticks = Reka.SharedExecutors.scheduled.scheduleAtFixedRate(this::tick, 0, TICK_MS, TimeUnit.MILLISECONDS);
+		} else {
+			for (int i = 0; i < bench.concurrency(); i++) {
+				new Worker().next();
+			}
+		}
+
+		return future;
+	}
+
+	private void stop() {
+		measuredNanos = System.nanoTime() - measureFrom;
+		allocatedTo = allocated();
+		stopping = true;
+		if (ticks != null) ticks.cancel(false);
+		if (inFlight.get() == 0) finish();
+		Reka.SharedExecutors.scheduled.schedule(this::finish, DRAIN_MS, TimeUnit.MILLISECONDS);
+	}
+
+	// runs on the scheduled executor so only one at a time
+	private void tick() {
+		if (stopping) return;
+		long now = System.nanoTime();
+		long due = (long) ((now - startAt) * (bench.rate() / 1e9));
+		if (due <= issued) return;
+		long first = issued;
+		long count = due - issued;
+		issued = due;
+		executor.execute(() -> {
+			for (long i = first; i < first + count; i++) {
+				long scheduled = startAt + (long) (i * (1e9 / bench.rate()));
+				if (inFlight.get() >= bench.concurrency()) {
+					if (counted(scheduled)) missed.increment();
+					continue;
+				}
+				launch(scheduled, () -> {});
+			}
+		});
+	}
+
+	private boolean counted(long started) {
+		return started >= measureFrom && started < stopAt;
+	}
+
+	private void launch(long started, Runnable then) {
+		inFlight.incrementAndGet();
+		try {
+			flow.prepare().data(bench.initial()).run(new Subscriber() {
+
+				@Override
+				public void ok(MutableData data) {
+					completed(started, ok, then);
+				}
+
+				@Override
+				public void halted() {
+					completed(started, halts, then);
+				}
+
+				@Override
+				public void error(Data data, Throwable t) {
+					completed(started, errors, then);
+				}
+
+			});
+		} catch (Throwable t) {
+			log.error("bench {} failed to start a run", name, t);
+			completed(started, errors, then);
+		}
+	}
+
+	private void completed(long started, LongAdder outcome, Runnable then) {
+		long took = System.nanoTime() - started;
+		if (counted(started)) {
+			outcome.increment();
+			latencies.record(took);
+			max.accumulate(took);
+		}
+		int remaining = inFlight.decrementAndGet();
+		if (stopping) {
+			if (remaining == 0) finish();
+		} else {
+			then.run();
+		}
+	}
+
+	/*
+	 * One run at a time, the next one starts when the last finishes. Flows that complete
+	 * synchronously would recurse so whoever gets pending from 0 to 1 loops until it's back to 0.
+	 */
+	private class Worker {
+
+		private final AtomicInteger pending = new AtomicInteger();
+
+		void next() {
+			if (pending.getAndIncrement() > 0) return;
+			do {
+				if (stopping) return;
+				launch(System.nanoTime(), this::next);
+			} while (pending.decrementAndGet() > 0);
+		}
+
+	}
+
+	private void finish() {
+		if (!finished.compareAndSet(false, true)) return;
+
+		long runs = ok.sum() + errors.sum() + halts.sum();
+		double seconds = measuredNanos / 1e9;
+
+		MutableData report = MutableMemoryData.create();
+		report.putString("name", name);
+		report.putString("mode", bench.rate() > 0 ? "rate" : "concurrency");
+		report.putInt("concurrency", bench.concurrency());
+		if (bench.rate() > 0) report.putInt("rate", bench.rate());
+		report.putLong("duration-ms", TimeUnit.NANOSECONDS.toMillis(measuredNanos));
+		report.putLong("runs", runs);
+		report.putLong("ok", ok.sum());
+		report.putLong("errors", errors.sum());
+		report.putLong("halts", halts.sum());
+		if (bench.rate() > 0) report.putLong("missed", missed.sum());
+		report.putInt("unfinished", inFlight.get());
+		report.putDouble(path("throughput"), seconds > 0 ? runs / seconds : 0);
+		report.putMap("latency-us", m -> {
+			m.putLong("mean", runs > 0 ? latencies.sum() / runs / 1000 : 0);
+			m.putLong("p50", micros(quantile(0.5)));
+			m.putLong("p90", micros(quantile(0.9)));
+			m.putLong("p99", micros(quantile(0.99)));
+			m.putLong("p999", micros(quantile(0.999)));
+			m.putLong("max", micros(max.get()));
+		});
+		if (allocatedFrom >= 0 && allocatedTo >= 0) {
+			long bytes = Math.max(0, allocatedTo - allocatedFrom);
+			report.putMap("allocated", m -> {
+				m.putLong("bytes-per-second", seconds > 0 ? (long) (bytes / seconds) : 0);
+				m.putLong("bytes-per-run", runs > 0 ? bytes / runs : 0);
+			});
+		}
+
+		log.info("bench {} finished: {} runs, {}/s, p99 {}us", name, runs, (long) (seconds > 0 ? runs / seconds : 0), micros(quantile(0.99)));
+
+		future.complete(report);
+	}
+
+	// the histogram gives the top of the bucket, which can be more than we actually saw
+	private long quantile(double q) {
+		return Math.min(latencies.quantile(q), max.get());
+	}
+
+	private static long micros(long nanos) {
+		return nanos / 1000;
+	}
+
+	// all the bytes allocated by live threads, or -1 if the jvm won't tell us
+	private static long allocated() {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+		com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+		if (!sun.isThreadAllocatedMemorySupported() || !sun.isThreadAllocatedMemoryEnabled()) return -1;
+		long total = 0;
+		for (long bytes : sun.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+			if (bytes > 0) total += bytes;
+		}
+		return total;
+	}
+
+}
@@ -3,9 +3,7 @@ package reka.app.manager;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.String.format;
 import static java.util.Arrays.asList;
-import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toList;
 import static reka.config.configurer.Configurer.configure;
 import static reka.util.Path.slashes;
 
@@ -20,15 +18,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
-import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingDeque;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
@@ -37,22 +32,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import reka.EventLogger;
+import reka.EventLogger.Event;
 import reka.Reka;
 import reka.app.Application;
 import reka.app.ApplicationConfigurer;
 import reka.app.IdentityAndVersion;
+import reka.app.manager.DeployLanes.AsyncApplicationTask;
+import reka.app.manager.DeployLanes.TaskResult;
 import reka.config.NavigableConfig;
 import reka.config.Source;
 import reka.config.parser.ConfigParser;
+import reka.data.Data;
 import reka.data.MutableData;
 import reka.data.memory.MutableMemoryData;
 import reka.flow.Flow;
 import reka.flow.builder.FlowVisualizer;
 import reka.identity.Identity;
 import reka.identity.IdentityStoreReader;
+import reka.metrics.MetricsRegistry;
+import reka.metrics.MetricsScope;
 import reka.module.ModuleManager;
 import reka.module.setup.ModuleStatusReport;
-import reka.module.setup.StatusProvider;
 import reka.modules.admin.AdminUtils;
 import reka.util.AsyncShutdown;
 import reka.util.DaemonThreadFactory;
@@ -100,10 +100,14 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 		void error(Identity identity, Throwable t);
 	}
 	
-	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new DaemonThreadFactory("reka-manager"));
+	public static final int DEFAULT_PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+	
+	// how often we look at the status providers, they each decide how often to actually rebuild
+	private static final long STATUS_TICK = 250;
 	
 	private final Logger log = LoggerFactory.getLogger(getClass());
-	private final EventLogger eventLogger = new EventLogger("/tmp/rekalog");
+	private final EventLogger eventLogger;
+	private final MetricsScope metrics;
 	
 	private final BaseDirs basedirs;
 	private final ModuleManager moduleManager;
@@ -112,25 +116,34 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 	private final ConcurrentMap<Identity,Application> applications = new ConcurrentHashMap<>();
 	private final ConcurrentMap<Identity,AtomicInteger> versions = new ConcurrentHashMap<>();
 	
-	private final ConcurrentMap<Identity,List<ModuleStatusReport>> status = new ConcurrentHashMap<>();
+	private final ConcurrentMap<Identity,StatusTracker> status = new ConcurrentHashMap<>();
 	
 	private final List<EventListener> listeners = Collections.synchronizedList(new ArrayList<>());
 	
-	private final BlockingDeque<AsyncApplicationTask> q = new LinkedBlockingDeque<>();
+	private final ExecutorService executor;
+	private final DeployLanes lanes;
 	
-	private final AsyncApplicationTask UPDATE_STATUS = new UpdateStatus().async();
 	private final ScheduledFuture<?> scheduledStatus;
 
 	public ApplicationManager(BaseDirs dirs, ModuleManager moduleManager) {
+		this(dirs, moduleManager, DEFAULT_PARALLELISM);
+	}
+	
+	public ApplicationManager(BaseDirs dirs, ModuleManager moduleManager, int parallelism) {
+		checkArgument(parallelism > 0, "parallelism must be at least 1");
 		this.basedirs = dirs;
 		this.moduleManager = moduleManager;
-		executor.submit(new WaitForNextTask());
-		scheduledStatus = Reka.SharedExecutors.scheduled.scheduleAtFixedRate(() -> q.push(UPDATE_STATUS), 1, 1, TimeUnit.SECONDS);
+		this.executor = Executors.newFixedThreadPool(parallelism, new DaemonThreadFactory("reka-manager"));
+		this.lanes = new DeployLanes(executor, parallelism);
+		this.eventLogger = new EventLogger(dirs.data().resolve("_events"));
+		this.metrics = MetricsRegistry.DEFAULT.scope();
+		metrics.executor("manager", executor);
+		scheduledStatus = Reka.SharedExecutors.scheduled.scheduleAtFixedRate(new UpdateStatus(), STATUS_TICK, STATUS_TICK, TimeUnit.MILLISECONDS);
 		emitSystemMessage("started");
 	}
 	
 	public void deployConfig(Path path, int version, NavigableConfig config, File constrainTo, DeploySubscriber subscriber) {
-		q.push(new DeployApplication(path, version, config, constrainTo, subscriber));
+		lanes.submit(path, new DeployApplication(path, version, config, constrainTo, subscriber));
 	}
 	
 	public void deploySource(Path path, int version, Source source, DeploySubscriber subscriber) {
@@ -140,13 +153,21 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 	}
 	
 	public void undeploy(Path path) {
-		q.push(new UndeployApplication(path));
+		lanes.submit(path, new UndeployApplication(path));
 	}
 	
 	public void addListener(Flow flow, EventType... eventTypes) {
 		listeners.add(new EventListener(flow, eventTypes));
 	}
 	
+	public List<Event> eventsSince(long eid, int limit) {
+		return eventLogger.since(eid, limit);
+	}
+	
+	public long lastEventId() {
+		return eventLogger.lastEventId();
+	}
+	
 	public void removeListener(Flow flow) {
 		Iterator<EventListener> it = listeners.iterator();
 		while (it.hasNext()) {
@@ -178,7 +199,7 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 	}
 	
 	public Optional<List<ModuleStatusReport>> statusFor(Identity identity) {
-		return Optional.ofNullable(status.get(identity));
+		return Optional.ofNullable(status.get(identity)).map(StatusTracker::current);
 	}
 	
 	public int version(Identity identity) {
@@ -204,20 +225,23 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 		return applications.entrySet().iterator();
 	}
 	
-	private class UpdateStatus implements ApplicationTask {
+	private class UpdateStatus implements Runnable {
 
 		@Override
 		public void run() {
-			Map<Identity, List<ModuleStatusReport>> changed = new HashMap<>();
-			applications.forEach((identity, app) -> {
-				List<ModuleStatusReport> appStatus = reportsFor(app);
-				List<ModuleStatusReport> previousAppStatus = status.put(identity, appStatus);
-				if (previousAppStatus != null && !appStatus.equals(previousAppStatus)) {
-					changed.put(identity, appStatus);
+			try {
+				Map<Identity, List<ModuleStatusReport>> changed = new HashMap<>();
+				status.forEach((identity, tracker) -> {
+					if (tracker.update()) {
+						changed.put(identity, tracker.current());
+					}
+				});
+				if (!changed.isEmpty()) {
+					notifyStatusListeners(changed);
 				}
-			});
-			if (!changed.isEmpty()) {
-				notifyStatusListeners(changed);
+			} catch (Throwable t) {
+				// an exception would stop it being scheduled again
+				log.error("failed to update status", t);
 			}
 		}
 		
@@ -273,6 +297,7 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 		private final NavigableConfig originalConfig;
 		private final File constrainTo;
 		private final DeploySubscriber subscriber;
+		private final long queued = System.nanoTime();
 		
 		public DeployApplication(Path appPath, int version, NavigableConfig originalConfig, File constrainTo, DeploySubscriber subscriber) {
 			this.appPath = appPath;
@@ -303,31 +328,45 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 				
 				checkArgument(constrainTo.isDirectory(), "constraint dir %s is not a dir", constrainTo.getAbsolutePath());
 				
+				long started = System.nanoTime();
+				
 				log.info("deploying {} v{}", identity, version);
 				
 				NavigableConfig config = moduleManager.processor().process(originalConfig);
 				
+				long processed = System.nanoTime();
+				
 				AppDirs dirs = basedirs.resolve(appPath, version);
 				
 				dirs.mkdirs();
 				
 				ApplicationConfigurer configurer = configure(new ApplicationConfigurer(dirs, moduleManager), config);
+				
+				long configured = System.nanoTime();
 
 				
 				Map<Path,IdentityStoreReader> previousStores = previous.isPresent() ? previous.get().stores() : new HashMap<>();
+				Map<Path,String> previousHashes = previous.isPresent() ? previous.get().moduleHashes() : new HashMap<>();
 				
 				previous.ifPresent(p -> {
 					unpause.set(p.pause());
 				});
 				
-				configurer.build(identity, version, previousStores).whenComplete((app, t) -> {
+				configurer.build(identity, version, previousStores, previousHashes).whenComplete((app, t) -> {
 					try {
 						if (app != null) {
 							applications.put(identity, app);
-							previous.ifPresent(Application::undeploy);
-							List<ModuleStatusReport> reports = reportsFor(app);
-							status.put(identity, reports);
-							log.info("deployed [{}] listening on {}", app.fullName(), app.network().stream().map(Object::toString).collect(joining(", ")));
+							previous.ifPresent(p -> {
+								p.handover(app.reused());
+								p.undeploy();
+							});
+							StatusTracker tracker = new StatusTracker(app.statusProviders());
+							status.put(identity, tracker);
+							List<ModuleStatusReport> reports = tracker.current();
+							long built = System.nanoTime();
+							log.info("deployed [{}] listening on {} (queued {}ms, process {}ms, configure {}ms, build {}ms)", 
+									app.fullName(), app.network().stream().map(Object::toString).collect(joining(", ")),
+									millis(started - queued), millis(processed - started), millis(configured - processed), millis(built - configured));
 							notifyDeployListeners(identity, app, reports);
 							subscriber.ok(identity, version, app);
 							versions.putIfAbsent(identity, new AtomicInteger(1));
@@ -351,10 +390,8 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 		
 	}
 	
-	private static List<ModuleStatusReport> reportsFor(Application app) {
-		List<ModuleStatusReport> appStatus = app.statusProviders().stream().map(StatusProvider::report).collect(toList());
-		appStatus.sort(comparing(ModuleStatusReport::name));
-		return appStatus;
+	private static long millis(long nanos) {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
 	}
 	
 	private static class EventListener {
@@ -364,11 +401,23 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 			this.flow = flow;
 			this.types = EnumSet.copyOf(asList(types));
 		}
+		void run(Data data) {
+			flow.prepare().mutableData(MutableMemoryData.from(data)).stats(false).run();
+		}
 	}
 
 	private void notifyDeployListeners(Identity identity, Application app, List<ModuleStatusReport> reports) {
 		emit(EventType.deploy, AdminUtils.putAppDetails(MutableMemoryData.create(), app, Optional.of(reports))
-				.putString("id", identity.name()));
+				.putString("id", identity.name())
+				.putList("init", list -> {
+					app.initSteps().forEach(step -> {
+						list.addMap(m -> {
+							m.putString("module", step.module().slashes());
+							m.putString("step", step.name());
+							m.putLong("ms", step.millis());
+						});
+					});
+				}));
 	}
 	
 	private void notifyUndeployListeners(Identity identity, Application app) {
@@ -391,14 +440,15 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 	}
 	
 	private void emit(EventType type, MutableData incomingData) {
-		long eid = eventLogger.write(type.val, incomingData);
-		incomingData.putLong("eid", eid);
-		listeners.forEach(listener -> {
-			if (listener.types.contains(type)) {
-				listener.flow.prepare().mutableData(MutableMemoryData.from(incomingData)).stats(false).run();
-			}
-		});
-		
+		synchronized (eventLogger) {
+			long eid = eventLogger.write(type.val, incomingData);
+			incomingData.putLong("eid", eid);
+			listeners.forEach(listener -> {
+				if (listener.types.contains(type)) {
+					listener.run(incomingData);
+				}
+			});
+		}
 	}
 	
 	private void emitSystemMessage(String message) {
@@ -414,85 +464,24 @@ public class ApplicationManager implements Iterable<Entry<Identity,Application>>
 			@Override
 			public void complete() {
 				scheduledStatus.cancel(true);
+				executor.shutdown();
 				emitSystemMessage("manager shutdown complete");
+				eventLogger.close();
+				metrics.close();
 				res.complete();
 			}
 			
 			@Override
 			public void completeExceptionally(Throwable t) {
 				scheduledStatus.cancel(true);
+				executor.shutdown();
 				emitSystemMessage("manager shutdown complete with error");
+				eventLogger.close();
+				metrics.close();
 				res.completeExceptionally(t);
 			}
 			
 		});
 	}
 	
-	private static interface TaskResult {
-		void complete();
-		void completeExceptionally(Throwable t);
-	}
-	
-	private static interface ApplicationTask {
-		void run() throws Exception;
-		default AsyncApplicationTask async() {
-			return new AsyncApplicationTask(){
-
-				@Override
-				public void run(TaskResult res) throws Exception {
-					ApplicationTask.this.run();
-					res.complete();
-				}
-				
-			};
-		}
-	}
-	
-	private static interface AsyncApplicationTask {
-		void run(TaskResult res) throws Exception;
-	}
-	
-	private class WaitForNextTask implements Runnable {
-
-		@Override
-		public void run() {
-			try {
-				submit(q.take());
-			} catch (InterruptedException e) {
-				e.printStackTrace();
-			}
-		}
-		
-	}
-	
-	private void submit(AsyncApplicationTask task) {
-		executor.submit(() -> {
-			AtomicBoolean done = new AtomicBoolean(false);
-			try {
-				task.run(new TaskResult() {
-
-					
-					@Override
-					public void complete() {
-						if (done.compareAndSet(false, true)) {
-							executor.submit(new WaitForNextTask());
-						}
-					}
-					
-					@Override
-					public void completeExceptionally(Throwable t) {
-						if (done.compareAndSet(false, true)) {
-							executor.submit(new WaitForNextTask());
-						}
-					}
-					
-				});
-			} catch (Throwable t) {
-				if (done.compareAndSet(false, true)) {
-					executor.submit(new WaitForNextTask());
-				}
-			}
-		});
-	}
-	
 }
@@ -0,0 +1,127 @@
+package reka.app.manager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reka.util.Path;
+
+/*
+ * Each app path gets its own lane so deploys/undeploys for one app happen in the order they
+ * were asked for, but different apps are deployed alongside each other, at most parallelism
+ * at a time (counting the async part of the deploy too, not just the time on our threads).
+ */
+class DeployLanes {
+	
+	private static final Logger log = LoggerFactory.getLogger(DeployLanes.class);
+	
+	static interface TaskResult {
+		void complete();
+		void completeExceptionally(Throwable t);
+	}
+	
+	static interface AsyncApplicationTask {
+		void run(TaskResult res) throws Exception;
+	}
+	
+	private static class Lane {
+		
+		private final Path path;
+		private final Deque<AsyncApplicationTask> tasks = new ArrayDeque<>();
+		private boolean active;
+		
+		Lane(Path path) {
+			this.path = path;
+		}
+		
+	}
+	
+	private final Executor executor;
+	private final int parallelism;
+	private final Map<Path,Lane> lanes = new HashMap<>(); // all guarded by lanes
+	private final Deque<Lane> ready = new ArrayDeque<>();
+	private int running;
+	
+	DeployLanes(Executor executor, int parallelism) {
+		this.executor = executor;
+		this.parallelism = parallelism;
+	}
+	
+	void submit(Path path, AsyncApplicationTask task) {
+		synchronized (lanes) {
+			Lane lane = lanes.computeIfAbsent(path, Lane::new);
+			lane.tasks.add(task);
+			if (!lane.active && lane.tasks.size() == 1) {
+				ready.add(lane);
+			}
+		}
+		next();
+	}
+	
+	private void next() {
+		List<Lane> starting = new ArrayList<>();
+		synchronized (lanes) {
+			while (running < parallelism && !ready.isEmpty()) {
+				Lane lane = ready.poll();
+				lane.active = true;
+				running++;
+				starting.add(lane);
+			}
+		}
+		starting.forEach(lane -> executor.execute(() -> run(lane)));
+	}
+	
+	private void finished(Lane lane) {
+		synchronized (lanes) {
+			running--;
+			lane.active = false;
+			if (lane.tasks.isEmpty()) {
+				lanes.remove(lane.path);
+			} else {
+				ready.add(lane);
+			}
+		}
+		next();
+	}
+	
+	private void run(Lane lane) {
+		AsyncApplicationTask task;
+		synchronized (lanes) {
+			task = lane.tasks.poll();
+		}
+		AtomicBoolean done = new AtomicBoolean(false);
+		try {
+			task.run(new TaskResult() {
+				
+				@Override
+				public void complete() {
+					if (done.compareAndSet(false, true)) {
+						finished(lane);
+					}
+				}
+				
+				@Override
+				public void completeExceptionally(Throwable t) {
+					if (done.compareAndSet(false, true)) {
+						finished(lane);
+					}
+				}
+				
+			});
+		} catch (Throwable t) {
+			log.error("application task failed", t);
+			if (done.compareAndSet(false, true)) {
+				finished(lane);
+			}
+		}
+	}
+	
+}
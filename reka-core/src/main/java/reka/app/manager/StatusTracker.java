@@ -0,0 +1,71 @@
+package reka.app.manager;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.unmodifiableList;
+import static java.util.Comparator.comparing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import reka.module.setup.ModuleStatusReport;
+import reka.module.setup.StatusDataProvider;
+import reka.module.setup.StatusProvider;
+
+/*
+ * Holds on to the last report from each of an app's status providers and only asks for a new one
+ * once its poll interval is up, and then only if its revision has moved (or it doesn't have one).
+ */
+class StatusTracker {
+	
+	private final StatusProvider[] providers;
+	private final ModuleStatusReport[] reports;
+	private final long[] revisions;
+	private final long[] built;
+	
+	private volatile List<ModuleStatusReport> current;
+	
+	StatusTracker(List<StatusProvider> providers) {
+		List<StatusProvider> sorted = new ArrayList<>(providers);
+		sorted.sort(comparing(StatusProvider::name));
+		this.providers = sorted.toArray(new StatusProvider[sorted.size()]);
+		this.reports = new ModuleStatusReport[this.providers.length];
+		this.revisions = new long[this.providers.length];
+		this.built = new long[this.providers.length];
+		long now = System.nanoTime();
+		for (int i = 0; i < this.providers.length; i++) {
+			revisions[i] = this.providers[i].revision();
+			reports[i] = this.providers[i].report();
+			built[i] = now;
+		}
+		current = unmodifiableList(asList(reports.clone()));
+	}
+	
+	List<ModuleStatusReport> current() {
+		return current;
+	}
+	
+	// returns true if any of the reports changed
+	synchronized boolean update() {
+		long now = System.nanoTime();
+		boolean changed = false;
+		for (int i = 0; i < providers.length; i++) {
+			StatusProvider provider = providers[i];
+			if (now - built[i] < TimeUnit.MILLISECONDS.toNanos(provider.pollInterval())) continue;
+			long revision = provider.revision();
+			if (revision != StatusDataProvider.NO_REVISION && revision == revisions[i]) continue;
+			ModuleStatusReport report = provider.report();
+			revisions[i] = revision;
+			built[i] = now;
+			if (!report.equals(reports[i])) {
+				reports[i] = report;
+				changed = true;
+			}
+		}
+		if (changed) {
+			current = unmodifiableList(asList(reports.clone()));
+		}
+		return changed;
+	}
+	
+}
@@ -0,0 +1,366 @@
+package reka.data.binary;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static reka.util.Util.runtime;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.content.Content;
+import reka.data.content.types.BinaryContent;
+import reka.data.content.types.BooleanContent;
+import reka.data.content.types.ByteBufferBinaryContent;
+import reka.data.content.types.DoubleContent;
+import reka.data.content.types.IntegerContent;
+import reka.data.content.types.LongContent;
+import reka.data.content.types.NullContent;
+import reka.data.content.types.UTF8Content;
+import reka.data.memory.MutableDataWrapper;
+import reka.data.memory.MutableMemoryData;
+
+/*
+ * A compact binary encoding for whole data trees.
+ *
+ * Each value is a one byte tag followed by its payload, lengths and integers are varints
+ * (zigzag for signed values). Map keys and binary content types are interned per encoded
+ * value: the first occurrence is written inline and later ones as a reference to it.
+ *
+ * Decoding a ByteBuffer doesn't copy binary content, it's returned as read-only slices of
+ * the buffer so the buffer mustn't be reused while the data is still around.
+ */
+public class BinaryData {
+
+	public static final byte VERSION = 1;
+
+	static final byte NONE = 0;
+	static final byte MAP = 1;
+	static final byte LIST = 2;
+	static final byte NULL = 3;
+	static final byte TRUE = 4;
+	static final byte FALSE = 5;
+	static final byte INTEGER = 6;
+	static final byte LONG = 7;
+	static final byte DOUBLE = 8;
+	static final byte UTF8 = 9;
+	static final byte BINARY = 10;
+
+	public static byte[] encode(Data data) {
+		Output out = new Output(256);
+		encode(data, out);
+		return out.toByteArray();
+	}
+
+	public static MutableData decode(byte[] bytes) {
+		return decode(ByteBuffer.wrap(bytes));
+	}
+
+	public static MutableData decode(ByteBuffer buffer) {
+		return new Decoder(buffer.duplicate()).decode();
+	}
+
+	static void encode(Data data, Output out) {
+		out.writeByte(VERSION);
+		new Encoder(out).write(data);
+	}
+
+	static class Output {
+
+		private byte[] buf;
+		private int count;
+
+		Output(int size) {
+			buf = new byte[size];
+		}
+
+		private void ensure(int extra) {
+			if (count + extra > buf.length) {
+				buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + extra));
+			}
+		}
+
+		void writeByte(int b) {
+			ensure(1);
+			buf[count++] = (byte) b;
+		}
+
+		void writeVarint(long v) {
+			ensure(10);
+			while ((v & ~0x7FL) != 0) {
+				buf[count++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			buf[count++] = (byte) v;
+		}
+
+		void writeLong(long v) {
+			ensure(8);
+			for (int shift = 56; shift >= 0; shift -= 8) {
+				buf[count++] = (byte) (v >>> shift);
+			}
+		}
+
+		void write(byte[] bytes) {
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buf, count, bytes.length);
+			count += bytes.length;
+		}
+
+		void write(ByteBuffer bb) {
+			ByteBuffer src = bb.duplicate();
+			ensure(src.remaining());
+			int len = src.remaining();
+			src.get(buf, count, len);
+			count += len;
+		}
+
+		void reset() {
+			count = 0;
+		}
+
+		int size() {
+			return count;
+		}
+
+		byte[] array() {
+			return buf;
+		}
+
+		byte[] toByteArray() {
+			return Arrays.copyOf(buf, count);
+		}
+
+	}
+
+	private static class Encoder {
+
+		private final Output out;
+		private final Map<String,Integer> strings = new HashMap<>();
+
+		Encoder(Output out) {
+			this.out = out;
+		}
+
+		void write(Data data) {
+			if (data.isMap()) {
+				out.writeByte(MAP);
+				out.writeVarint(data.size());
+				data.forEachData((e, child) -> {
+					writeInterned(e.name());
+					write(child);
+				});
+			} else if (data.isList()) {
+				out.writeByte(LIST);
+				out.writeVarint(data.size());
+				data.forEachData((e, child) -> write(child));
+			} else if (data.isContent()) {
+				write(data.content());
+			} else {
+				out.writeByte(NONE);
+			}
+		}
+
+		void write(Content content) {
+			switch (content.type()) {
+			case NULL:
+				out.writeByte(NULL);
+				break;
+			case BOOLEAN:
+				out.writeByte(((Boolean) content.value()) ? TRUE : FALSE);
+				break;
+			case INTEGER:
+				out.writeByte(INTEGER);
+				out.writeVarint(zigzag(((Number) content.value()).intValue()));
+				break;
+			case LONG:
+				out.writeByte(LONG);
+				out.writeVarint(zigzag(((Number) content.value()).longValue()));
+				break;
+			case DOUBLE:
+				out.writeByte(DOUBLE);
+				out.writeLong(Double.doubleToRawLongBits(((Number) content.value()).doubleValue()));
+				break;
+			case UTF8:
+				out.writeByte(UTF8);
+				writeString((String) content.value());
+				break;
+			case BINARY:
+				BinaryContent binary = (BinaryContent) content;
+				out.writeByte(BINARY);
+				writeInterned(binary.contentType());
+				out.writeByte(binary.encoding().ordinal());
+				if (binary.hasByteBuffer()) {
+					ByteBuffer bb = binary.asByteBuffer();
+					out.writeVarint(bb.remaining());
+					out.write(bb);
+				} else {
+					byte[] bytes = binary.asBytes();
+					out.writeVarint(bytes.length);
+					out.write(bytes);
+				}
+				break;
+			default:
+				throw runtime("can't encode %s content", content.type());
+			}
+		}
+
+		private void writeString(String val) {
+			byte[] bytes = val.getBytes(UTF_8);
+			out.writeVarint(bytes.length);
+			out.write(bytes);
+		}
+
+		// 0 then the string the first time, after that the index + 1
+		private void writeInterned(String val) {
+			Integer ref = strings.get(val);
+			if (ref != null) {
+				out.writeVarint(ref + 1);
+			} else {
+				strings.put(val, strings.size());
+				out.writeVarint(0);
+				writeString(val);
+			}
+		}
+
+	}
+
+	private static class Decoder {
+
+		private static final BinaryContent.Encoding[] ENCODINGS = BinaryContent.Encoding.values();
+
+		private final ByteBuffer buf;
+		private final List<String> strings = new ArrayList<>();
+
+		Decoder(ByteBuffer buf) {
+			this.buf = buf;
+		}
+
+		MutableData decode() {
+			Object root;
+			try {
+				byte version = buf.get();
+				if (version != VERSION) throw runtime("unknown binary data version %d", version);
+				root = read();
+			} catch (BufferUnderflowException e) {
+				throw runtime("truncated binary data");
+			}
+			return root != null ? new MutableDataWrapper<>(root, MutableMemoryData.INSTANCE) : MutableMemoryData.create();
+		}
+
+		private Object read() {
+			byte tag = buf.get();
+			switch (tag) {
+			case NONE:
+				return null;
+			case MAP: {
+				int size = readLength("map size");
+				Map<String,Object> map = new LinkedHashMap<>(Math.max(4, size * 4 / 3 + 1));
+				for (int i = 0; i < size; i++) {
+					String key = readInterned();
+					Object value = read();
+					if (value != null) map.put(key, value);
+				}
+				return map;
+			}
+			case LIST: {
+				int size = readLength("list size");
+				List<Object> list = new ArrayList<>(size);
+				for (int i = 0; i < size; i++) {
+					Object value = read();
+					list.add(value != null ? value : NullContent.INSTANCE);
+				}
+				return list;
+			}
+			case NULL:
+				return NullContent.INSTANCE;
+			case TRUE:
+				return BooleanContent.TRUE;
+			case FALSE:
+				return BooleanContent.FALSE;
+			case INTEGER:
+				return new IntegerContent((int) unzigzag(readVarint()));
+			case LONG:
+				return new LongContent(unzigzag(readVarint()));
+			case DOUBLE:
+				return new DoubleContent(Double.longBitsToDouble(buf.getLong()));
+			case UTF8:
+				return new UTF8Content(readString());
+			case BINARY: {
+				String contentType = readInterned();
+				byte encoding = buf.get();
+				if (encoding < 0 || encoding >= ENCODINGS.length) throw runtime("unknown binary encoding %d at %d", encoding, buf.position() - 1);
+				return new ByteBufferBinaryContent(contentType, ENCODINGS[encoding], slice(readLength("binary length")));
+			}
+			default:
+				throw runtime("unknown binary data tag %d at %d", tag, buf.position() - 1);
+			}
+		}
+
+		private ByteBuffer slice(int len) {
+			ByteBuffer slice = buf.duplicate();
+			slice.limit(buf.position() + len);
+			buf.position(buf.position() + len);
+			return slice.slice().asReadOnlyBuffer();
+		}
+
+		private String readString() {
+			int len = readLength("string length");
+			String val;
+			if (buf.hasArray()) {
+				val = new String(buf.array(), buf.arrayOffset() + buf.position(), len, UTF_8);
+				buf.position(buf.position() + len);
+			} else {
+				byte[] bytes = new byte[len];
+				buf.get(bytes);
+				val = new String(bytes, UTF_8);
+			}
+			return val;
+		}
+
+		private String readInterned() {
+			long ref = readVarint();
+			if (ref == 0) {
+				String val = readString();
+				strings.add(val);
+				return val;
+			}
+			if (ref < 0 || ref > strings.size()) throw runtime("unknown string reference %d at %d", ref, buf.position());
+			return strings.get((int) ref - 1);
+		}
+
+		// every entry takes at least a byte so nothing valid is longer than what's left
+		private int readLength(String what) {
+			int at = buf.position();
+			long len = readVarint();
+			if (len < 0 || len > buf.remaining()) throw runtime("invalid %s %d at %d, only %d bytes left", what, len, at, buf.remaining());
+			return (int) len;
+		}
+
+		private long readVarint() {
+			long result = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				byte b = buf.get();
+				result |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) return result;
+			}
+			throw runtime("malformed varint at %d", buf.position());
+		}
+
+	}
+
+	private static long zigzag(long v) {
+		return (v << 1) ^ (v >> 63);
+	}
+
+	private static long unzigzag(long v) {
+		return (v >>> 1) ^ -(v & 1);
+	}
+
+}
@@ -0,0 +1,53 @@
+package reka.data.binary;
+
+import static reka.util.Util.runtime;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Optional;
+
+import reka.data.MutableData;
+
+/*
+ * Reads back a stream written by BinaryDataWriter. Each value is read into its own array
+ * and decoded from there, so binary content in it is a slice of that array, not a copy.
+ */
+public class BinaryDataReader implements Closeable {
+
+	private final InputStream in;
+
+	public BinaryDataReader(InputStream in) {
+		this.in = in;
+	}
+
+	public Optional<MutableData> read() throws IOException {
+		long length = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				if (shift == 0) return Optional.empty();
+				throw new EOFException("stream ended in the middle of a length");
+			}
+			if (shift > 28) throw runtime("malformed length");
+			length |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) break;
+		}
+		byte[] bytes = new byte[(int) length];
+		int read = 0;
+		while (read < bytes.length) {
+			int n = in.read(bytes, read, bytes.length - read);
+			if (n < 0) throw new EOFException("stream ended in the middle of a value");
+			read += n;
+		}
+		return Optional.of(BinaryData.decode(ByteBuffer.wrap(bytes)));
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+
+}
@@ -0,0 +1,44 @@
+package reka.data.binary;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import reka.data.Data;
+import reka.data.binary.BinaryData.Output;
+
+/*
+ * Writes a stream of binary encoded data, each one prefixed with its length (as a varint)
+ * so a BinaryDataReader can read them back one at a time. The encoding buffer is reused
+ * between writes so it's not safe to use from more than one thread at a time.
+ */
+public class BinaryDataWriter implements Closeable {
+
+	private final OutputStream out;
+	private final Output value = new Output(1024);
+	private final Output header = new Output(10);
+
+	public BinaryDataWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	public int write(Data data) throws IOException {
+		value.reset();
+		header.reset();
+		BinaryData.encode(data, value);
+		header.writeVarint(value.size());
+		out.write(header.array(), 0, header.size());
+		out.write(value.array(), 0, value.size());
+		return header.size() + value.size();
+	}
+
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+}
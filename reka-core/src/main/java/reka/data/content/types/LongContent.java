@@ -29,7 +29,7 @@ public class LongContent implements Content {
 
 	@Override
 	public Type type() {
-		return Type.INTEGER;
+		return Type.LONG;
 	}
 	
 	@Override
@@ -44,4 +44,9 @@ public class NullContent implements Content {
 		return true;
 	}
 	
+	@Override
+	public String toString() {
+		return "null";
+	}
+	
 }
\ No newline at end of file
@@ -0,0 +1,479 @@
+package reka.data.storage;
+
+import static java.lang.String.format;
+import static reka.util.Util.unchecked;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reka.Reka;
+
+/*
+ * An append-only log of commits split into segment files, with an in-memory hash index
+ * pointing at the latest value for each key.
+ *
+ * Each commit is written as a single checksummed record so it's applied all or nothing, on
+ * startup the segments are replayed to rebuild the index and a partially written record at
+ * the end of the log is cut off. Concurrent commits share an fsync (group commit). Segments
+ * that are no longer being written to are memory mapped for reading, and a background task
+ * rewrites the live entries of mostly-dead segments into the active one and deletes them.
+ */
+public class LogStorage implements DataStorage {
+
+	private static final Logger log = LoggerFactory.getLogger(LogStorage.class);
+
+	private static final Pattern SEGMENT_NAME = Pattern.compile("^segment-([0-9]+)\\.log$");
+
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+
+	private static final int RECORD_HEADER = 8; // length + crc
+
+	public static final long DEFAULT_MAX_SEGMENT_BYTES = 64 * 1024 * 1024;
+	private static final double COMPACT_WHEN_LIVE_BELOW = 0.5;
+	private static final long COMPACTION_INTERVAL_SECONDS = 30;
+
+	private final Path dir;
+	private final long maxSegmentBytes;
+	private final boolean sync;
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+	private final Object compactionLock = new Object();
+	private final Map<ByteBuffer,Location> index = new HashMap<>();
+	private final Map<Long,Segment> segments = new LinkedHashMap<>();
+	private final ScheduledFuture<?> compaction;
+
+	private Segment active;
+	private volatile boolean closed;
+
+	public LogStorage(Path dir) {
+		this(dir, DEFAULT_MAX_SEGMENT_BYTES, true);
+	}
+
+	public LogStorage(Path dir, long maxSegmentBytes, boolean sync) {
+		this.dir = dir;
+		this.maxSegmentBytes = maxSegmentBytes;
+		this.sync = sync;
+		try {
+			Files.createDirectories(dir);
+			recover();
+		} catch (IOException e) {
+			throw unchecked(e);
+		}
+		compaction = Reka.SharedExecutors.scheduled.scheduleWithFixedDelay(() -> {
+			try {
+				compact();
+			} catch (Throwable t) {
+				log.error("error compacting {}", dir, t);
+			}
+		}, COMPACTION_INTERVAL_SECONDS, COMPACTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+	}
+
+	private static class Location {
+
+		private final Segment segment;
+		private final long offset; // of the value
+		private final int length;
+		private final int entryBytes;
+
+		Location(Segment segment, long offset, int length, int entryBytes) {
+			this.segment = segment;
+			this.offset = offset;
+			this.length = length;
+			this.entryBytes = entryBytes;
+		}
+
+	}
+
+	private static class Segment {
+
+		private final long id;
+		private final Path path;
+		private final FileChannel channel;
+		private final Object syncLock = new Object();
+
+		private volatile MappedByteBuffer mapped; // only once sealed
+		private long size;
+		private long live;
+		private long synced;
+
+		Segment(long id, Path path, FileChannel channel, long size) {
+			this.id = id;
+			this.path = path;
+			this.channel = channel;
+			this.size = size;
+			this.synced = size;
+		}
+
+		long append(ByteBuffer record) throws IOException {
+			long position = size;
+			while (record.hasRemaining()) {
+				size += channel.write(record, size);
+			}
+			return position;
+		}
+
+		byte[] read(long offset, int length) throws IOException {
+			byte[] bytes = new byte[length];
+			MappedByteBuffer m = mapped;
+			if (m != null) {
+				ByteBuffer bb = m.duplicate();
+				bb.position((int) offset);
+				bb.get(bytes);
+			} else {
+				ByteBuffer bb = ByteBuffer.wrap(bytes);
+				while (bb.hasRemaining()) {
+					if (channel.read(bb, offset + bb.position()) < 0) throw new IOException("unexpected end of segment");
+				}
+			}
+			return bytes;
+		}
+
+		// group commit: whoever gets here first syncs everything written so far
+		void sync(long upTo) throws IOException {
+			synchronized (syncLock) {
+				if (synced >= upTo) return;
+				long target = size;
+				channel.force(false);
+				synced = target;
+			}
+		}
+
+		void seal() throws IOException {
+			sync(size);
+			mapped = channel.map(MapMode.READ_ONLY, 0, size);
+		}
+
+	}
+
+	@Override
+	public byte[] get(byte[] id) {
+		lock.readLock().lock();
+		try {
+			Location location = index.get(ByteBuffer.wrap(id));
+			return location == null ? null : location.segment.read(location.offset, location.length);
+		} catch (IOException e) {
+			throw unchecked(e);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return index.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	@Override
+	public DataStorageCommit createCommit() {
+		return new LogStorageCommit();
+	}
+
+	private class LogStorageCommit implements DataStorageCommit {
+
+		// a null value means remove
+		private final Map<ByteBuffer,byte[]> changes = new LinkedHashMap<>();
+		private int added, removed;
+
+		@Override
+		public DataStorageCommit add(byte[] id, byte[] bytes) {
+			if (changes.put(ByteBuffer.wrap(id), bytes) == null) added++;
+			return this;
+		}
+
+		@Override
+		public DataStorageCommit remove(byte[] id) {
+			changes.put(ByteBuffer.wrap(id), null);
+			removed++;
+			return this;
+		}
+
+		@Override
+		public boolean commit() {
+			if (changes.isEmpty()) return true;
+			try {
+				ByteBuffer record = encode(changes);
+				Segment segment;
+				long end;
+				lock.writeLock().lock();
+				try {
+					if (closed) throw new IOException("storage is closed");
+					segment = active;
+					long position = segment.append(record);
+					end = segment.size;
+					apply(segment, position, record);
+					if (segment.size >= maxSegmentBytes) roll();
+				} finally {
+					lock.writeLock().unlock();
+				}
+				if (sync) segment.sync(end);
+				return true;
+			} catch (IOException e) {
+				log.error("failed to commit to {}", dir, e);
+				return false;
+			}
+		}
+
+		@Override
+		public int added() {
+			return added;
+		}
+
+		@Override
+		public int removed() {
+			return removed;
+		}
+
+	}
+
+	private static ByteBuffer encode(Map<ByteBuffer,byte[]> changes) {
+		int length = 4;
+		for (Entry<ByteBuffer, byte[]> e : changes.entrySet()) {
+			length += 1 + 4 + e.getKey().remaining();
+			if (e.getValue() != null) length += 4 + e.getValue().length;
+		}
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER + length);
+		record.putInt(length).putInt(0).putInt(changes.size());
+		for (Entry<ByteBuffer, byte[]> e : changes.entrySet()) {
+			ByteBuffer key = e.getKey().duplicate();
+			byte[] value = e.getValue();
+			record.put(value != null ? PUT : REMOVE).putInt(key.remaining()).put(key);
+			if (value != null) record.putInt(value.length).put(value);
+		}
+		CRC32 crc = new CRC32();
+		crc.update(record.array(), RECORD_HEADER, length);
+		record.putInt(4, (int) crc.getValue());
+		record.flip();
+		return record;
+	}
+
+	private static interface EntryVisitor {
+		void entry(byte op, ByteBuffer key, long valueOffset, int valueLength, int entryBytes);
+	}
+
+	/*
+	 * Reads a record at the position of the buffer passing each entry to the visitor. Returns
+	 * false if there isn't a valid record there (end of the log or a torn write).
+	 */
+	private static boolean readRecord(ByteBuffer buf, long base, EntryVisitor visitor) {
+		if (buf.remaining() < RECORD_HEADER) return false;
+		int start = buf.position();
+		int length = buf.getInt(start);
+		int expected = buf.getInt(start + 4);
+		if (length < 4 || length > buf.remaining() - RECORD_HEADER) return false;
+		CRC32 crc = new CRC32();
+		ByteBuffer payload = buf.duplicate();
+		payload.position(start + RECORD_HEADER).limit(start + RECORD_HEADER + length);
+		crc.update(payload.duplicate());
+		if ((int) crc.getValue() != expected) return false;
+		int count = payload.getInt();
+		for (int i = 0; i < count; i++) {
+			int entryStart = payload.position();
+			byte op = payload.get();
+			byte[] key = new byte[payload.getInt()];
+			payload.get(key);
+			long valueOffset = -1;
+			int valueLength = 0;
+			if (op == PUT) {
+				valueLength = payload.getInt();
+				valueOffset = base + payload.position();
+				payload.position(payload.position() + valueLength);
+			}
+			visitor.entry(op, ByteBuffer.wrap(key), valueOffset, valueLength, payload.position() - entryStart);
+		}
+		buf.position(start + RECORD_HEADER + length);
+		return true;
+	}
+
+	// must hold the write lock
+	private void apply(Segment segment, long position, ByteBuffer record) {
+		ByteBuffer buf = record.duplicate();
+		buf.position(0);
+		readRecord(buf, position, (op, key, valueOffset, valueLength, entryBytes) -> {
+			applyEntry(segment, op, key, valueOffset, valueLength, entryBytes);
+		});
+	}
+
+	private void applyEntry(Segment segment, byte op, ByteBuffer key, long valueOffset, int valueLength, int entryBytes) {
+		Location previous;
+		if (op == PUT) {
+			previous = index.put(key, new Location(segment, valueOffset, valueLength, entryBytes));
+			segment.live += entryBytes;
+		} else {
+			previous = index.remove(key);
+		}
+		if (previous != null) previous.segment.live -= previous.entryBytes;
+	}
+
+	private Path segmentPath(long id) {
+		return dir.resolve(format("segment-%012d.log", id));
+	}
+
+	private Segment openSegment(long id) throws IOException {
+		Path path = segmentPath(id);
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		Segment segment = new Segment(id, path, channel, channel.size());
+		segments.put(id, segment);
+		return segment;
+	}
+
+	// must hold the write lock
+	private void roll() throws IOException {
+		Segment previous = active;
+		active = openSegment(previous.id + 1);
+		previous.seal();
+	}
+
+	private void recover() throws IOException {
+		List<Long> ids = new ArrayList<>();
+		try (Stream<Path> files = Files.list(dir)) {
+			files.forEach(file -> {
+				Matcher m = SEGMENT_NAME.matcher(file.getFileName().toString());
+				if (m.matches()) ids.add(Long.valueOf(m.group(1)));
+			});
+		}
+		ids.sort(Long::compare);
+
+		long started = System.nanoTime();
+
+		for (int i = 0; i < ids.size(); i++) {
+			Segment segment = openSegment(ids.get(i));
+			boolean last = i == ids.size() - 1;
+			MappedByteBuffer buf = segment.channel.map(MapMode.READ_ONLY, 0, segment.size);
+			while (readRecord(buf, 0, (op, key, valueOffset, valueLength, entryBytes) -> {
+				applyEntry(segment, op, key, valueOffset, valueLength, entryBytes);
+			}));
+			if (buf.position() < segment.size) {
+				log.warn("{} has {} bytes of incomplete data at the end, discarding", segment.path, segment.size - buf.position());
+				if (last) {
+					segment.channel.truncate(buf.position());
+					segment.size = buf.position();
+					segment.synced = segment.size;
+					buf = segment.channel.map(MapMode.READ_ONLY, 0, segment.size);
+				}
+			}
+			if (last && segment.size < maxSegmentBytes) {
+				active = segment;
+			} else {
+				segment.mapped = buf;
+			}
+		}
+
+		if (active == null) {
+			active = openSegment(ids.isEmpty() ? 1 : ids.get(ids.size() - 1) + 1);
+		}
+
+		log.info("recovered {} keys from {} segments in {} in {}ms", index.size(), ids.size(), dir,
+				TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+	}
+
+	/*
+	 * Rewrites the live entries from sealed segments that are mostly garbage. Removes are
+	 * carried forward if there are older segments which might still hold the removed value.
+	 */
+	public void compact() throws IOException {
+		synchronized (compactionLock) {
+			List<Segment> candidates = new ArrayList<>();
+			lock.readLock().lock();
+			try {
+				for (Segment segment : segments.values()) {
+					if (segment != active && segment.live < segment.size * COMPACT_WHEN_LIVE_BELOW) {
+						candidates.add(segment);
+					}
+				}
+			} finally {
+				lock.readLock().unlock();
+			}
+			for (Segment segment : candidates) {
+				if (closed) return;
+				compact(segment);
+			}
+		}
+	}
+
+	private void compact(Segment segment) throws IOException {
+		long started = System.nanoTime();
+		ByteBuffer buf = segment.mapped.duplicate();
+		buf.position(0);
+		Segment written;
+		lock.writeLock().lock();
+		try {
+			boolean hasOlder = segments.keySet().stream().anyMatch(id -> id < segment.id);
+			Map<ByteBuffer,byte[]> carry = new LinkedHashMap<>();
+			while (readRecord(buf, 0, (op, key, valueOffset, valueLength, entryBytes) -> {
+				if (op == PUT) {
+					Location current = index.get(key);
+					if (current != null && current.segment == segment && current.offset == valueOffset) {
+						byte[] value = new byte[valueLength];
+						ByteBuffer v = segment.mapped.duplicate();
+						v.position((int) valueOffset);
+						v.get(value);
+						carry.put(key, value);
+					}
+				} else if (hasOlder && !index.containsKey(key)) {
+					carry.put(key, null);
+				}
+			}));
+			if (!carry.isEmpty()) {
+				ByteBuffer record = encode(carry);
+				long position = active.append(record);
+				apply(active, position, record);
+			}
+			written = active;
+			if (active.size >= maxSegmentBytes) roll();
+			segments.remove(segment.id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		written.sync(written.size);
+		segment.channel.close();
+		Files.deleteIfExists(segment.path);
+		log.debug("compacted {} in {}ms", segment.path, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+	}
+
+	@Override
+	public void close() throws IOException {
+		compaction.cancel(false);
+		synchronized (compactionLock) {
+			lock.writeLock().lock();
+			try {
+				if (closed) return;
+				closed = true;
+				active.sync(active.size);
+				for (Segment segment : segments.values()) {
+					segment.channel.close();
+				}
+			} finally {
+				lock.writeLock().unlock();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+package reka.data.storage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+ * Like SynchronizedMemoryStorage but split into a number of stripes each with its own lock,
+ * so readers and writers of unrelated keys don't contend. A commit takes the write locks of
+ * all the stripes it touches (always in the same order) so it's still applied atomically.
+ */
+public class StripedMemoryStorage implements DataStorage {
+
+	private static final int DEFAULT_STRIPES = 64;
+
+	private final Map<ByteBuffer,ByteBuffer>[] stores;
+	private final ReadWriteLock[] locks;
+	private final int mask;
+
+	public StripedMemoryStorage() {
+		this(DEFAULT_STRIPES);
+	}
+
+	@SuppressWarnings("unchecked")
+	public StripedMemoryStorage(int stripes) {
+		int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+		stores = new Map[size];
+		locks = new ReadWriteLock[size];
+		mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			stores[i] = new HashMap<>();
+			locks[i] = new ReentrantReadWriteLock();
+		}
+	}
+
+	private int stripeFor(ByteBuffer id) {
+		int h = id.hashCode();
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	@Override
+	public byte[] get(byte[] id) {
+		ByteBuffer key = ByteBuffer.wrap(id);
+		int stripe = stripeFor(key);
+		locks[stripe].readLock().lock();
+		try {
+			ByteBuffer bb = stores[stripe].get(key);
+			return bb == null ? null : bb.array();
+		} finally {
+			locks[stripe].readLock().unlock();
+		}
+	}
+
+	@Override
+	public void close() throws IOException { /* no-op */ }
+
+	@Override
+	public DataStorageCommit createCommit() {
+		return new StripedMemoryStorageCommit();
+	}
+
+	private class StripedMemoryStorageCommit implements DataStorageCommit {
+
+		// a null value means remove
+		private final Map<ByteBuffer,ByteBuffer> changes = new HashMap<>();
+		private int added, removed;
+
+		@Override
+		public DataStorageCommit add(byte[] id, byte[] bytes) {
+			if (changes.put(ByteBuffer.wrap(id), ByteBuffer.wrap(bytes)) == null) added++;
+			return this;
+		}
+
+		@Override
+		public DataStorageCommit remove(byte[] id) {
+			changes.put(ByteBuffer.wrap(id), null);
+			removed++;
+			return this;
+		}
+
+		@Override
+		public boolean commit() {
+			TreeSet<Integer> stripes = new TreeSet<>();
+			for (ByteBuffer id : changes.keySet()) {
+				stripes.add(stripeFor(id));
+			}
+			for (int stripe : stripes) {
+				locks[stripe].writeLock().lock();
+			}
+			try {
+				for (Entry<ByteBuffer, ByteBuffer> e : changes.entrySet()) {
+					Map<ByteBuffer,ByteBuffer> store = stores[stripeFor(e.getKey())];
+					if (e.getValue() == null) {
+						store.remove(e.getKey());
+					} else {
+						store.put(e.getKey(), e.getValue());
+					}
+				}
+			} finally {
+				for (int stripe : stripes.descendingSet()) {
+					locks[stripe].writeLock().unlock();
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int added() {
+			return added;
+		}
+
+		@Override
+		public int removed() {
+			return removed;
+		}
+	}
+
+}
@@ -6,6 +6,7 @@ import java.util.concurrent.atomic.LongAdder;
 import reka.data.MutableData;
 import reka.flow.ops.Subscriber;
 import reka.identity.IdentityStoreReader;
+import reka.metrics.Histogram;
 import reka.util.Path;
 
 public interface Flow extends Comparable<Flow> {
@@ -43,6 +44,7 @@ public interface Flow extends Comparable<Flow> {
 		public final LongAdder completed = new LongAdder();
 		public final LongAdder errors = new LongAdder();
 		public final LongAdder halts = new LongAdder();
+		public final Histogram durations = Histogram.durations();
 	}
     
 }
@@ -0,0 +1,51 @@
+package reka.flow;
+
+import java.util.function.Supplier;
+
+import reka.data.Data;
+
+public class FlowBench {
+
+	private final Supplier<FlowSegment> run;
+	private final Data initial;
+	private final int concurrency;
+	private final int rate;
+	private final long durationMs;
+	private final long warmupMs;
+
+	public FlowBench(Supplier<FlowSegment> run, Data initial, int concurrency, int rate, long durationMs, long warmupMs) {
+		this.run = run;
+		this.initial = initial;
+		this.concurrency = concurrency;
+		this.rate = rate;
+		this.durationMs = durationMs;
+		this.warmupMs = warmupMs;
+	}
+
+	public Supplier<FlowSegment> run() {
+		return run;
+	}
+
+	public Data initial() {
+		return initial;
+	}
+
+	// how many runs are going at once, with a rate this is the most we let be in flight
+	public int concurrency() {
+		return concurrency;
+	}
+
+	// runs started per second, 0 means as fast as concurrency allows
+	public int rate() {
+		return rate;
+	}
+
+	public long durationMs() {
+		return durationMs;
+	}
+
+	public long warmupMs() {
+		return warmupMs;
+	}
+
+}
@@ -0,0 +1,26 @@
+package reka.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class Counter implements Metric {
+	
+	private final LongAdder value = new LongAdder();
+	
+	public void increment() {
+		value.increment();
+	}
+	
+	public void add(long n) {
+		value.add(n);
+	}
+	
+	public long get() {
+		return value.sum();
+	}
+
+	@Override
+	public void write(StringBuilder out, String name, String labels) {
+		Metric.sample(out, name, labels, value.sum());
+	}
+
+}
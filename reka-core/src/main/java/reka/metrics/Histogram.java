@@ -0,0 +1,104 @@
+package reka.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Fixed buckets, recording is a binary search and two LongAdder increments so it doesn't lock
+ * or allocate. Values are recorded as longs and multiplied by scale when written out, so durations
+ * are recorded in nanos and come out in seconds.
+ */
+public class Histogram implements Metric {
+	
+	// nanos, 100us up to 10s
+	private static final long[] DURATION_BOUNDS = {
+		100_000L, 250_000L, 500_000L, 
+		1_000_000L, 2_500_000L, 5_000_000L, 
+		10_000_000L, 25_000_000L, 50_000_000L, 
+		100_000_000L, 250_000_000L, 500_000_000L, 
+		1_000_000_000L, 2_500_000_000L, 5_000_000_000L, 
+		10_000_000_000L 
+	};
+	
+	public static Histogram durations() {
+		return new Histogram(DURATION_BOUNDS, 1e-9);
+	}
+	
+	// bounds growing by factor from start up to max, the estimate is then never more than factor out
+	public static Histogram exponential(long start, double factor, long max, double scale) {
+		List<Long> bounds = new ArrayList<>();
+		for (double bound = start; bound < max; bound = Math.max(bound * factor, bound + 1)) {
+			bounds.add((long) bound);
+		}
+		bounds.add(max);
+		return new Histogram(bounds.stream().mapToLong(Long::longValue).toArray(), scale);
+	}
+	
+	private final long[] bounds;
+	private final double scale;
+	private final LongAdder[] counts;
+	private final LongAdder sum = new LongAdder();
+	
+	public Histogram(long[] bounds, double scale) {
+		this.bounds = bounds.clone();
+		this.scale = scale;
+		Arrays.sort(this.bounds);
+		this.counts = new LongAdder[this.bounds.length + 1]; // the last one is +Inf
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+	
+	public void record(long value) {
+		int i = Arrays.binarySearch(bounds, value);
+		if (i < 0) i = -i - 1;
+		counts[i].increment();
+		sum.add(value);
+	}
+	
+	public long count() {
+		long total = 0;
+		for (LongAdder count : counts) {
+			total += count.sum();
+		}
+		return total;
+	}
+	
+	public long sum() {
+		return sum.sum();
+	}
+	
+	// estimated from the bucket bounds, in recorded units
+	public long quantile(double q) {
+		long[] snapshot = new long[counts.length];
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			snapshot[i] = counts[i].sum();
+			total += snapshot[i];
+		}
+		if (total == 0) return 0;
+		long rank = (long) Math.ceil(q * total);
+		long seen = 0;
+		for (int i = 0; i < snapshot.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) return i < bounds.length ? bounds[i] : Long.MAX_VALUE;
+		}
+		return Long.MAX_VALUE;
+	}
+
+	@Override
+	public void write(StringBuilder out, String name, String labels) {
+		String prefix = labels.isEmpty() ? "" : labels + ",";
+		long cumulative = 0;
+		for (int i = 0; i < counts.length; i++) {
+			cumulative += counts[i].sum();
+			String le = i < bounds.length ? Metric.format(bounds[i] * scale) : "+Inf";
+			Metric.sample(out, name + "_bucket", prefix + "le=\"" + le + "\"", cumulative);
+		}
+		Metric.sample(out, name + "_sum", labels, sum.sum() * scale);
+		Metric.sample(out, name + "_count", labels, cumulative);
+	}
+
+}
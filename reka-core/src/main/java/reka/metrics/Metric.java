@@ -0,0 +1,21 @@
+package reka.metrics;
+
+public interface Metric {
+	
+	// writes the samples in prometheus text format, labels is already rendered (a="b",c="d") and may be empty
+	void write(StringBuilder out, String name, String labels);
+	
+	static void sample(StringBuilder out, String name, String labels, double value) {
+		out.append(name);
+		if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+		out.append(' ').append(format(value)).append('\n');
+	}
+	
+	static String format(double value) {
+		if (Double.isNaN(value)) return "NaN";
+		if (Double.isInfinite(value)) return value > 0 ? "+Inf" : "-Inf";
+		if (value == Math.rint(value) && Math.abs(value) < 1e15) return Long.toString((long) value);
+		return Double.toString(value);
+	}
+	
+}
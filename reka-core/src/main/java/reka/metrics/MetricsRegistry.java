@@ -0,0 +1,136 @@
+package reka.metrics;
+
+import static reka.util.Util.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import reka.Reka;
+
+/*
+ * Everything is registered through a MetricsScope, which adds its own labels and removes what it
+ * registered when it's closed. The same metric can be held by more than one scope (e.g. the old and
+ * new versions of an app during a redeploy) and only goes once they've all let go of it.
+ */
+public class MetricsRegistry {
+	
+	public static enum Type {
+		COUNTER, GAUGE, HISTOGRAM;
+		private final String val = name().toLowerCase();
+	}
+	
+	private static final Pattern NAME = Pattern.compile("^[a-zA-Z_:][a-zA-Z0-9_:]*$");
+	
+	public static final MetricsRegistry DEFAULT = new MetricsRegistry();
+	
+	static {
+		MetricsScope shared = DEFAULT.scope();
+		shared.executor("general", Reka.SharedExecutors.general);
+		shared.executor("scheduled", Reka.SharedExecutors.scheduled);
+	}
+	
+	private final ConcurrentMap<String,Family> families = new ConcurrentHashMap<>();
+	
+	public MetricsScope scope(String... labels) {
+		return new MetricsScope(this, labels, false);
+	}
+	
+	// see MetricsScope, nothing gets replaced until it's opened
+	public MetricsScope deferredScope(String... labels) {
+		return new MetricsScope(this, labels, true);
+	}
+	
+	public String toPrometheus() {
+		StringBuilder out = new StringBuilder(4096);
+		new TreeMap<>(families).values().forEach(family -> {
+			if (family.entries.isEmpty()) return;
+			out.append("# HELP ").append(family.name).append(' ').append(family.help.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+			out.append("# TYPE ").append(family.name).append(' ').append(family.type.val).append('\n');
+			new TreeMap<>(family.entries).forEach((labels, entry) -> entry.metric.write(out, family.name, labels));
+		});
+		return out.toString();
+	}
+	
+	@SuppressWarnings("unchecked")
+	<M extends Metric> M hold(String name, String help, Type type, String labels, Class<M> cls, Supplier<M> create, boolean replace) {
+		if (!NAME.matcher(name).matches()) throw runtime("invalid metric name [%s]", name);
+		Family family = families.computeIfAbsent(name, unused -> new Family(name, help, type));
+		if (family.type != type) throw runtime("metric %s is a %s, not a %s", name, family.type.val, type.val);
+		synchronized (family) {
+			Entry entry = family.entries.get(labels);
+			if (entry == null) {
+				entry = new Entry(create.get());
+				family.entries.put(labels, entry);
+			} else if (replace) {
+				entry.metric = create.get();
+			} else if (!cls.isInstance(entry.metric)) {
+				throw runtime("metric %s{%s} is already registered as a %s", name, labels, entry.metric.getClass().getSimpleName());
+			}
+			entry.holders++;
+			return (M) entry.metric;
+		}
+	}
+	
+	void release(String name, String labels) {
+		Family family = families.get(name);
+		if (family == null) return;
+		synchronized (family) {
+			Entry entry = family.entries.get(labels);
+			if (entry != null && --entry.holders <= 0) {
+				family.entries.remove(labels);
+			}
+		}
+	}
+	
+	static String labels(String[] scope, String[] extra) {
+		Map<String,String> all = new HashMap<>();
+		put(all, scope);
+		put(all, extra);
+		StringBuilder sb = new StringBuilder();
+		new TreeMap<>(all).forEach((k, v) -> {
+			if (sb.length() > 0) sb.append(',');
+			sb.append(k).append("=\"").append(v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n")).append('"');
+		});
+		return sb.toString();
+	}
+	
+	private static void put(Map<String,String> map, String[] pairs) {
+		if (pairs.length % 2 != 0) throw runtime("labels must be name/value pairs");
+		for (int i = 0; i < pairs.length; i += 2) {
+			if (!NAME.matcher(pairs[i]).matches()) throw runtime("invalid label name [%s]", pairs[i]);
+			map.put(pairs[i], pairs[i + 1]);
+		}
+	}
+	
+	private static class Family {
+		
+		private final String name;
+		private final String help;
+		private final Type type;
+		private final ConcurrentMap<String,Entry> entries = new ConcurrentHashMap<>();
+		
+		Family(String name, String help, Type type) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+		}
+		
+	}
+	
+	private static class Entry {
+		
+		private volatile Metric metric;
+		private int holders;
+		
+		Entry(Metric metric) {
+			this.metric = metric;
+		}
+		
+	}
+
+}
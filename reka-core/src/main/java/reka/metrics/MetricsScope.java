@@ -0,0 +1,104 @@
+package reka.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+import reka.metrics.MetricsRegistry.Type;
+
+/*
+ * Registers metrics with some common labels (e.g. app and module), and removes them all on close.
+ * 
+ * A deferred scope holds back the ones that replace what's there until it's opened, so something
+ * that might never go live (an app version that fails to build) can't replace the live one's.
+ */
+public class MetricsScope {
+	
+	private final MetricsRegistry registry;
+	private final String[] labels;
+	private final List<String[]> held = new ArrayList<>();
+	
+	private List<Runnable> deferred;
+	private boolean closed;
+	
+	MetricsScope(MetricsRegistry registry, String[] labels, boolean deferred) {
+		this.registry = registry;
+		this.labels = labels.clone();
+		this.deferred = deferred ? new ArrayList<>() : null;
+		MetricsRegistry.labels(labels, new String[0]); // check them now
+	}
+	
+	// these two share the metric if it's already there
+	
+	public Counter counter(String name, String help, String... labels) {
+		return hold(name, help, Type.COUNTER, labels, Counter.class, new Counter(), false);
+	}
+	
+	public Histogram histogram(String name, String help, String... labels) {
+		return hold(name, help, Type.HISTOGRAM, labels, Histogram.class, Histogram.durations(), false);
+	}
+	
+	// and these replace it
+	
+	public void histogram(String name, String help, Histogram histogram, String... labels) {
+		hold(name, help, Type.HISTOGRAM, labels, Histogram.class, histogram, true);
+	}
+	
+	public void counter(String name, String help, LongSupplier value, String... labels) {
+		hold(name, help, Type.COUNTER, labels, SuppliedValue.class, new SuppliedValue(() -> value.getAsLong()), true);
+	}
+	
+	public void gauge(String name, String help, DoubleSupplier value, String... labels) {
+		hold(name, help, Type.GAUGE, labels, SuppliedValue.class, new SuppliedValue(value), true);
+	}
+	
+	public void executor(String name, ExecutorService executor) {
+		if (executor instanceof ThreadPoolExecutor) {
+			ThreadPoolExecutor tpe = (ThreadPoolExecutor) executor;
+			gauge("reka_executor_queued", "tasks waiting for a thread", () -> tpe.getQueue().size(), "executor", name);
+			gauge("reka_executor_active", "threads running a task", tpe::getActiveCount, "executor", name);
+			gauge("reka_executor_threads", "threads in the pool", tpe::getPoolSize, "executor", name);
+			counter("reka_executor_completed_total", "tasks completed", tpe::getCompletedTaskCount, "executor", name);
+		} else if (executor instanceof ForkJoinPool) {
+			ForkJoinPool fjp = (ForkJoinPool) executor;
+			gauge("reka_executor_queued", "tasks waiting for a thread", () -> fjp.getQueuedSubmissionCount() + fjp.getQueuedTaskCount(), "executor", name);
+			gauge("reka_executor_active", "threads running a task", fjp::getActiveThreadCount, "executor", name);
+			gauge("reka_executor_threads", "threads in the pool", fjp::getPoolSize, "executor", name);
+		}
+	}
+	
+	public synchronized void open() {
+		if (deferred == null) return;
+		List<Runnable> waiting = deferred;
+		deferred = null;
+		if (!closed) waiting.forEach(Runnable::run);
+	}
+	
+	public synchronized void close() {
+		closed = true;
+		deferred = null;
+		held.forEach(h -> registry.release(h[0], h[1]));
+		held.clear();
+	}
+	
+	private synchronized <M extends Metric> M hold(String name, String help, Type type, String[] extra, Class<M> cls, M metric, boolean replace) {
+		String rendered = MetricsRegistry.labels(labels, extra);
+		if (closed) return metric; // not registered anywhere, but still usable
+		if (replace && deferred != null) {
+			deferred.add(() -> register(name, help, type, rendered, cls, metric, replace));
+			return metric;
+		}
+		return register(name, help, type, rendered, cls, metric, replace);
+	}
+	
+	private <M extends Metric> M register(String name, String help, Type type, String rendered, Class<M> cls, M metric, boolean replace) {
+		M result = registry.hold(name, help, type, rendered, cls, () -> metric, replace);
+		held.add(new String[] { name, rendered });
+		return result;
+	}
+
+}
@@ -0,0 +1,19 @@
+package reka.metrics;
+
+import java.util.function.DoubleSupplier;
+
+// a gauge, or a counter kept somewhere else, read when the metrics are written out
+public class SuppliedValue implements Metric {
+	
+	private final DoubleSupplier supplier;
+	
+	public SuppliedValue(DoubleSupplier supplier) {
+		this.supplier = supplier;
+	}
+
+	@Override
+	public void write(StringBuilder out, String name, String labels) {
+		Metric.sample(out, name, labels, supplier.getAsDouble());
+	}
+
+}
@@ -32,6 +32,8 @@ import reka.flow.ops.Operation;
 import reka.identity.Identity;
 import reka.identity.IdentityKey;
 import reka.identity.IdentityStore;
+import reka.metrics.MetricsRegistry;
+import reka.metrics.MetricsScope;
 import reka.module.ModuleInfo;
 import reka.module.PortRequirement;
 import reka.util.Path;
@@ -46,6 +48,9 @@ public class AppSetup {
 	private final List<Supplier<FlowSegment>> segments = new ArrayList<>();	
 	
 	private boolean includeDefaultStatus = true;
+	private boolean reuseWhenUnchanged = false;
+	private boolean configuring = true;
+	private MetricsScope metrics;
 	
 	public AppSetup(IdentityAndVersion idv, ModuleInfo info, Path path, ModuleSetupContext ctx, ModuleCollector collector) {
 		this.idv = idv;
@@ -59,6 +64,26 @@ public class AppSetup {
 		return includeDefaultStatus;
 	}
 	
+	/*
+	 * If the module's config (and the modules it uses) hasn't changed since the previous version,
+	 * don't run its onDeploy again, keep what it put in the store and hand over the onUndeploy
+	 * handlers registered here in setup.
+	 * 
+	 * Only for modules where everything the onDeploy creates is in the store and is cleaned up
+	 * by those handlers, not by ones added later on when flows are built.
+	 */
+	public void reuseWhenUnchanged() {
+		reuseWhenUnchanged = true;
+	}
+	
+	protected boolean isReusable() {
+		return reuseWhenUnchanged && hasFlowSegment();
+	}
+	
+	protected void doneConfiguring() {
+		configuring = false;
+	}
+	
 	public Identity identity() {
 		return idv.identity();
 	}
@@ -99,12 +124,40 @@ public class AppSetup {
 	
 	public void onDeploy(Consumer<ModuleOperationSetup> init) {
 		OperationSetup e = new SequentialCollector(path, ctx);
-		init.accept(new ModuleOperationSetup(idv, e));
+		init.accept(new ModuleOperationSetup(idv, path, e, collector.initSteps));
 		segments.add(e);
 	}
 	
+	/*
+	 * Metrics labelled with this app and module, they're removed when this version of the app is
+	 * undeployed (even if the next version reuses the module, it'll have registered its own by then).
+	 * Gauges only replace the current version's once this version has built.
+	 */
+	public MetricsScope metrics() {
+		if (metrics == null) {
+			metrics = MetricsRegistry.DEFAULT.deferredScope("app", identity().name(), "module", path.slashes());
+			collector.metrics.add(metrics);
+			MetricsScope scope = metrics;
+			collector.components.add(new ApplicationComponent() {
+				
+				@Override
+				public void undeploy() {
+					scope.close();
+				}
+				
+				@Override
+				public Runnable pause() {
+					return () -> {};
+				}
+				
+			});
+		}
+		return metrics;
+	}
+	
 	public void onUndeploy(String name, Runnable runnable) {
-		collector.components.add(new ApplicationComponent(){
+		List<ApplicationComponent> components = configuring ? collector.moduleComponents.computeIfAbsent(path, unused -> new ArrayList<>()) : collector.components;
+		components.add(new ApplicationComponent(){
 
 			@Override
 			public void undeploy() {
@@ -204,6 +257,10 @@ public class AppSetup {
 		buildFlows(suppliers, m -> c.accept(m.lookup(key).get()));
 	}
 	
+	protected boolean hasFlowSegment() {
+		return !segments.isEmpty();
+	}
+	
 	protected Optional<FlowSegment> buildFlowSegment() {
 		if (segments.isEmpty()) return Optional.empty();
 		List<FlowSegment> built = segments.stream().map(Supplier<FlowSegment>::get).collect(toList());
@@ -2,30 +2,34 @@ package reka.module.setup;
 
 import static java.util.stream.Collectors.toList;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import reka.app.Application;
 import reka.app.ApplicationComponent;
 import reka.data.Data;
-import reka.flow.Flow;
+import reka.flow.FlowBench;
 import reka.flow.builder.FlowVisualizer;
 import reka.flow.builder.Flows;
 import reka.identity.Identity;
 import reka.identity.IdentityStore;
 import reka.identity.IdentityStoreReader;
+import reka.metrics.MetricsScope;
 import reka.module.PortRequirement;
 import reka.module.setup.AppSetup.ApplicationCheck;
 import reka.util.Path;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 public class ApplicationSetup {
 
-	public final Flow initializationFlow;
+	public final InitializationGraph initialization;
 	public final FlowVisualizer initializationFlowVisualizer;
 	
 	public final Map<Path, FlowSegmentBiFunction> providers;
@@ -36,6 +40,12 @@ public class ApplicationSetup {
 	public final List<Supplier<StatusProvider>> statuses;
 	public final List<Consumer<ApplicationCheck>> checks;
 	public final List<PortRequirement> networkRequirements;
+	public final Map<Path, List<ApplicationComponent>> moduleComponents;
+	public final Map<Path, String> hashes;
+	public final Set<Path> reused;
+	public final Collection<InitStep> initSteps;
+	public final List<MetricsScope> metrics;
+	public final Map<String,FlowBench> benches = new HashMap<>();
 
 	private Identity identity;
 	private Path name;
@@ -45,8 +55,8 @@ public class ApplicationSetup {
 	
 	private final Map<Path,IdentityStoreReader> stores = new HashMap<>();
 
-	ApplicationSetup(Flow initializationFlow, FlowVisualizer initializationFlowVisualizer, ModuleCollector collector) {
-		this.initializationFlow = initializationFlow;
+	ApplicationSetup(InitializationGraph initialization, FlowVisualizer initializationFlowVisualizer, ModuleCollector collector) {
+		this.initialization = initialization;
 		this.initializationFlowVisualizer = initializationFlowVisualizer;
 		providers = collector.providers;
 		initflows = collector.initflows;
@@ -56,6 +66,11 @@ public class ApplicationSetup {
 		statuses = collector.statuses;
 		checks = collector.checks;
 		networkRequirements = collector.networkRequirements;
+		moduleComponents = collector.moduleComponents;
+		hashes = collector.hashes;
+		reused = collector.reused;
+		initSteps = collector.initSteps;
+		metrics = collector.metrics;
 	}
 	
 	public void identity(Identity identity) {
@@ -100,6 +115,11 @@ public class ApplicationSetup {
 							   network, 
 							   initializationFlowVisualizer,
 							   components,
+							   moduleComponents,
+							   hashes,
+							   reused,
+							   ImmutableList.copyOf(initSteps),
+							   ImmutableMap.copyOf(benches),
 							   statuses.stream().map(Supplier::get).collect(toList()));
 	}
 
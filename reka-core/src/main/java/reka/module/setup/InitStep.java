@@ -0,0 +1,32 @@
+package reka.module.setup;
+
+import java.util.concurrent.TimeUnit;
+
+import reka.util.Path;
+
+// one operation from a module's onDeploy and how long it took
+public class InitStep {
+	
+	private final Path module;
+	private final String name;
+	private final long nanos;
+	
+	public InitStep(Path module, String name, long nanos) {
+		this.module = module;
+		this.name = name;
+		this.nanos = nanos;
+	}
+	
+	public Path module() {
+		return module;
+	}
+	
+	public String name() {
+		return name;
+	}
+	
+	public long millis() {
+		return TimeUnit.NANOSECONDS.toMillis(nanos);
+	}
+	
+}
@@ -0,0 +1,162 @@
+package reka.module.setup;
+
+import static java.util.Collections.emptySet;
+import static java.util.stream.Collectors.joining;
+import static reka.util.Util.runtime;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+import reka.flow.Flow;
+import reka.flow.ops.Subscriber;
+import reka.util.Path;
+
+/*
+ * Runs each module's onDeploy flow once all the modules it uses have finished theirs, so modules
+ * that don't depend on each other initialize at the same time, and each one only runs once however
+ * many modules use it.
+ */
+public class InitializationGraph {
+	
+	private final Map<Path, Flow> flows;
+	private final Map<Path, Set<Path>> requires;
+	private final Map<Path, Set<Path>> requiredBy = new HashMap<>();
+	
+	public InitializationGraph(Map<Path, Flow> flows, Map<Path, Set<Path>> requires) {
+		this.flows = flows;
+		this.requires = requires;
+		requires.forEach((module, deps) -> {
+			deps.forEach(dep -> requiredBy.computeIfAbsent(dep, unused -> new HashSet<>()).add(module));
+		});
+		checkForCycles();
+	}
+	
+	// the modules in a cycle would wait for each other forever
+	private void checkForCycles() {
+		Map<Path, Integer> waiting = new HashMap<>();
+		Deque<Path> ready = new ArrayDeque<>();
+		flows.keySet().forEach(module -> {
+			int count = requires.getOrDefault(module, emptySet()).size();
+			if (count == 0) {
+				ready.add(module);
+			} else {
+				waiting.put(module, count);
+			}
+		});
+		while (!ready.isEmpty()) {
+			requiredBy.getOrDefault(ready.poll(), emptySet()).forEach(other -> {
+				if (waiting.merge(other, -1, Integer::sum) == 0) {
+					waiting.remove(other);
+					ready.add(other);
+				}
+			});
+		}
+		if (!waiting.isEmpty()) {
+			throw runtime("modules can't be initialized, they depend on each other: %s", 
+					waiting.keySet().stream().map(Path::slashes).sorted().collect(joining(", ")));
+		}
+	}
+	
+	public int size() {
+		return flows.size();
+	}
+	
+	public void run(ExecutorService executor, Subscriber subscriber) {
+		if (flows.isEmpty()) {
+			subscriber.ok(MutableMemoryData.create());
+		} else {
+			new Run(executor, subscriber).start();
+		}
+	}
+	
+	private class Run {
+		
+		private final ExecutorService executor;
+		private final Subscriber subscriber;
+		
+		private final Map<Path, Integer> waiting = new HashMap<>();
+		private int remaining = flows.size();
+		private boolean finished;
+		
+		Run(ExecutorService executor, Subscriber subscriber) {
+			this.executor = executor;
+			this.subscriber = subscriber;
+		}
+		
+		void start() {
+			List<Path> ready = new ArrayList<>();
+			synchronized (this) {
+				flows.keySet().forEach(module -> {
+					int count = requires.getOrDefault(module, emptySet()).size();
+					if (count == 0) {
+						ready.add(module);
+					} else {
+						waiting.put(module, count);
+					}
+				});
+			}
+			ready.forEach(this::run);
+		}
+		
+		private void run(Path module) {
+			flows.get(module).prepare().operationExecutor(executor).mutableData(MutableMemoryData.create()).run(new Subscriber() {
+				
+				@Override
+				public void ok(MutableData data) {
+					completed(module);
+				}
+				
+				@Override
+				public void halted() {
+					if (finish()) subscriber.halted();
+				}
+				
+				@Override
+				public void error(Data data, Throwable t) {
+					if (finish()) subscriber.error(data, t);
+				}
+				
+			});
+		}
+		
+		private void completed(Path module) {
+			List<Path> ready = new ArrayList<>();
+			boolean done;
+			synchronized (this) {
+				if (finished) return;
+				done = --remaining == 0;
+				finished = done;
+				requiredBy.getOrDefault(module, emptySet()).forEach(other -> {
+					if (waiting.merge(other, -1, Integer::sum) == 0) {
+						waiting.remove(other);
+						ready.add(other);
+					}
+				});
+			}
+			if (done) {
+				subscriber.ok(MutableMemoryData.create());
+			} else {
+				ready.forEach(this::run);
+			}
+		}
+		
+		// once one module fails we don't start any more, the ones already going are left to finish
+		private synchronized boolean finish() {
+			if (finished) return false;
+			finished = true;
+			return true;
+		}
+		
+	}
+
+}
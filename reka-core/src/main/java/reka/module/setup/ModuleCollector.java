@@ -1,13 +1,18 @@
 package reka.module.setup;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
 
 import reka.app.ApplicationComponent;
+import reka.metrics.MetricsScope;
 import reka.module.PortRequirement;
 import reka.module.setup.AppSetup.ApplicationCheck;
 import reka.util.Path;
@@ -23,6 +28,14 @@ public class ModuleCollector {
 	public final List<Consumer<ApplicationCheck>> checks;
 	public final List<PortRequirement> networkRequirements;
 	
+	// undeploy handlers registered while a module was being setup, these look after the things its
+	// onDeploy created, so go with them if the next version reuses the module
+	public final Map<Path, List<ApplicationComponent>> moduleComponents;
+	public final Map<Path, String> hashes; // for modules that can be reused
+	public final Set<Path> reused;
+	public final Collection<InitStep> initSteps; // filled in as the modules initialize, from any thread
+	public final List<MetricsScope> metrics; // opened once the app has built, closed if it doesn't
+	
 	public ModuleCollector() {
 		providers = new HashMap<>();
 		initflows = new ArrayList<>();
@@ -32,6 +45,11 @@ public class ModuleCollector {
 		statuses = new ArrayList<>();
 		checks = new ArrayList<>();
 		networkRequirements = new ArrayList<>();
+		moduleComponents = new HashMap<>();
+		hashes = new HashMap<>();
+		reused = new HashSet<>();
+		initSteps = new ConcurrentLinkedQueue<>();
+		metrics = new ArrayList<>();
 	}
 
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package reka.module.setup;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.lang.String.format;
+import static java.util.Comparator.comparing;
 import static java.util.stream.Collectors.joining;
 import static reka.config.configurer.Configurer.configure;
 import static reka.config.configurer.Configurer.Preconditions.checkConfig;
@@ -11,13 +12,13 @@ import static reka.flow.builder.FlowSegments.createParallelSegment;
 import static reka.flow.builder.FlowSegments.seq;
 import static reka.util.Path.slashes;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 
@@ -29,17 +30,34 @@ import reka.flow.FlowSegment;
 import reka.flow.builder.FlowVisualizer;
 import reka.flow.builder.SingleFlow;
 import reka.identity.IdentityStore;
+import reka.metrics.MetricsScope;
 import reka.module.ModuleInfo;
-import reka.runtime.NoFlow;
 import reka.runtime.NoFlowVisualizer;
+import reka.util.Hashable;
 import reka.util.Path;
 import reka.util.dirs.AppDirs;
 
-public abstract class ModuleConfigurer {
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+public abstract class ModuleConfigurer implements Hashable {
 
 	public static ApplicationSetup setup(IdentityAndVersion idv, ModuleConfigurer root, Map<Path,IdentityStore> stores) {
-		
+		return setup(idv, root, stores, new HashMap<>());
+	}
+	
+	public static ApplicationSetup setup(IdentityAndVersion idv, ModuleConfigurer root, Map<Path,IdentityStore> stores, Map<Path,String> previousHashes) {
 		ModuleCollector collector = new ModuleCollector();
+		try {
+			return setup(idv, root, stores, previousHashes, collector);
+		} catch (Throwable t) {
+			// nothing will ever open or close these otherwise
+			collector.metrics.forEach(MetricsScope::close);
+			throw t;
+		}
+	}
+	
+	private static ApplicationSetup setup(IdentityAndVersion idv, ModuleConfigurer root, Map<Path,IdentityStore> stores, Map<Path,String> previousHashes, ModuleCollector collector) {
 
 		Set<ModuleConfigurer> all = collect(root, new HashSet<>());
 		Set<ModuleConfigurer> toplevel = findTopLevel(all);
@@ -47,6 +65,8 @@ public abstract class ModuleConfigurer {
 
 		resolveNamedDependencies(all, rootsMap);
 		Map<ModuleConfigurer, FlowSegment> initializeSegments = new HashMap<>();
+		Map<ModuleConfigurer, AppSetup> setups = new HashMap<>();
+		Set<ModuleConfigurer> reusable = new HashSet<>();
 
 		for (ModuleConfigurer module : all) {
 			if (module.isRoot()) continue;
@@ -59,6 +79,8 @@ public abstract class ModuleConfigurer {
 			AppSetup setup = new AppSetup(idv, module.info(), module.fullAliasOrName(), ctx, collector);
 			
 			module.setup(setup);
+			setup.doneConfiguring();
+			setups.put(module, setup);
 			
 			if (setup.includeDefaultStatus() && module.info() != null) {
 				collector.statuses.add(() -> StatusProvider.create(module.info().name().slashes(), 
@@ -66,27 +88,48 @@ public abstract class ModuleConfigurer {
 						                                           module.info().version()));
 			}
 
-			setup.buildFlowSegment().ifPresent(segment -> {
-				initializeSegments.put(module, segment);
-			});
+			if (setup.isReusable()) {
+				String hash = module.sha1hex();
+				collector.hashes.put(module.fullAliasOrName(), hash);
+				if (hash.equals(previousHashes.get(module.fullAliasOrName()))) {
+					reusable.add(module);
+				}
+			}
 
 		}
-
-		Optional<FlowSegment> initializeSegment = buildSegment(toplevel, initializeSegments);
-
-		Flow flow;
-		FlowVisualizer visualizer;
-
-		if (initializeSegment.isPresent()) {
-			Entry<Flow, FlowVisualizer> entry = SingleFlow.create(Path.path("initialize"), initializeSegment.get());
-			flow = entry.getKey();
-			visualizer = entry.getValue();
-		} else {
-			flow = NoFlow.INSTANCE;
-			visualizer = NoFlowVisualizer.INSTANCE;
+		
+		// can't keep a module if something it uses is being initialized again
+		boolean changed = true;
+		while (changed) {
+			changed = reusable.removeIf(module -> module.uses.stream().anyMatch(dep -> 
+				!dep.isRoot() && !reusable.contains(dep) && setups.get(dep).hasFlowSegment()));
 		}
+		
+		setups.forEach((module, setup) -> {
+			if (reusable.contains(module)) {
+				collector.reused.add(module.fullAliasOrName());
+			} else {
+				setup.buildFlowSegment().ifPresent(segment -> {
+					initializeSegments.put(module, segment);
+				});
+			}
+		});
+
+		// each module gets its own flow, run when the ones it uses are done
+		Map<Path, Flow> initializeFlows = new HashMap<>();
+		Map<Path, Set<Path>> requires = new HashMap<>();
+		initializeSegments.forEach((module, segment) -> {
+			Path name = module.fullAliasOrName();
+			initializeFlows.put(name, SingleFlow.create(Path.path("initialize").add(name), segment).getKey());
+			requires.put(name, initializedDependencies(module, initializeSegments.keySet()));
+		});
+
+		// the combined version is only used to visualize it
+		Optional<FlowSegment> initializeSegment = buildSegment(toplevel, initializeSegments);
+		FlowVisualizer visualizer = initializeSegment.isPresent() ? 
+				SingleFlow.create(Path.path("initialize"), initializeSegment.get()).getValue() : NoFlowVisualizer.INSTANCE;
 
-		return new ApplicationSetup(flow, visualizer, collector);
+		return new ApplicationSetup(new InitializationGraph(initializeFlows, requires), visualizer, collector);
 	}
 
 	private List<ModuleInfo> modules = new ArrayList<>();
@@ -97,6 +140,8 @@ public abstract class ModuleConfigurer {
 	private String alias;
 
 	private boolean isRoot;
+	
+	private String configHash = "";
 
 	private Path parentPath = Path.root();
 	private Path modulePath = Path.root();
@@ -200,6 +245,7 @@ public abstract class ModuleConfigurer {
 		module.modules(modules);
 		module.parentPath(modulePath);
 		configure(module, config);
+		module.configHash = Hashing.sha1().hashString(config.format(), StandardCharsets.UTF_8).toString();
 		uses.add(module);
 		module.usedBy.add(this);
 	}
@@ -240,6 +286,18 @@ public abstract class ModuleConfigurer {
 		return result;
 	}
 
+	// covers the config for this module (including anything nested) and the modules it uses
+	@Override
+	public Hasher hash(Hasher hasher) {
+		hasher.putString(typeAndName(), StandardCharsets.UTF_8).putString(configHash, StandardCharsets.UTF_8);
+		if (info != null) hasher.putString(info.version(), StandardCharsets.UTF_8);
+		uses.stream()
+			.filter(module -> !module.isRoot())
+			.sorted(comparing(module -> module.fullAliasOrName().slashes()))
+			.forEach(module -> module.hash(hasher));
+		return hasher;
+	}
+
 	@Override
 	public String toString() {
 		return format("%s(\n    name %s\n    params %s)", name, aliasOrName(), modulesNames);
@@ -272,6 +330,20 @@ public abstract class ModuleConfigurer {
 		return sequence.isEmpty() ? Optional.empty() : Optional.of(seq(sequence));
 	}
 
+	// the nearest modules below this one that have something to initialize
+	private static Set<Path> initializedDependencies(ModuleConfigurer module, Set<ModuleConfigurer> initialized) {
+		Set<Path> deps = new HashSet<>();
+		for (ModuleConfigurer dep : module.uses) {
+			if (dep.isRoot()) continue;
+			if (initialized.contains(dep)) {
+				deps.add(dep.fullAliasOrName());
+			} else {
+				deps.addAll(initializedDependencies(dep, initialized));
+			}
+		}
+		return deps;
+	}
+
 	private static void resolveNamedDependencies(Set<ModuleConfigurer> all, Map<String, ModuleConfigurer> allMap) {
 		for (ModuleConfigurer use : all) {
 			for (String depname : use.modulesNames) {
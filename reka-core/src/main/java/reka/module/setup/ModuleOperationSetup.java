@@ -1,5 +1,6 @@
 package reka.module.setup;
 
+import java.util.Collection;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -9,16 +10,21 @@ import reka.flow.ops.AsyncOperation;
 import reka.flow.ops.Operation;
 import reka.flow.ops.OperationContext;
 import reka.module.setup.AppSetup.DoneCallback;
+import reka.util.Path;
 
 // wraps the full-on OperationSetup and only allows operations to be defined, which just see the store
 public class ModuleOperationSetup {
 	
 	private final IdentityAndVersion idv;
+	private final Path module;
 	private final OperationSetup ops;
+	private final Collection<InitStep> steps;
 	
-	public ModuleOperationSetup(IdentityAndVersion idv, OperationSetup ops) {
+	public ModuleOperationSetup(IdentityAndVersion idv, Path module, OperationSetup ops, Collection<InitStep> steps) {
 		this.idv = idv;
+		this.module = module;
 		this.ops = ops;
+		this.steps = steps;
 	}
 	
 	public ModuleOperationSetup run(String name, Runnable runnable) {
@@ -27,7 +33,9 @@ public class ModuleOperationSetup {
 				
 				@Override
 				public void call(MutableData data, OperationContext rctx) {
+					long started = System.nanoTime();
 					runnable.run();
+					steps.add(new InitStep(module, name, System.nanoTime() - started));
 				}
 				
 			};
@@ -41,7 +49,9 @@ public class ModuleOperationSetup {
 				
 				@Override
 				public void call(MutableData data, OperationContext rctx) {
+					long started = System.nanoTime();
 					c.accept(idv);
+					steps.add(new InitStep(module, name, System.nanoTime() - started));
 				}
 				
 			};
@@ -51,21 +61,27 @@ public class ModuleOperationSetup {
 	
 	public ModuleOperationSetup runAsync(String name, Consumer<DoneCallback> c) {
 		ops.add(name, () -> {
-			return AsyncOperation.create((data, rctx, res) -> c.accept(() -> res.done()));
+			return AsyncOperation.create((data, rctx, res) -> {
+				long started = System.nanoTime();
+				c.accept(() -> {
+					steps.add(new InitStep(module, name, System.nanoTime() - started));
+					res.done();
+				});
+			});
 		});
 		return this;
 	}
 	
 	public ModuleOperationSetup parallel(Consumer<ModuleOperationSetup> par) {
 		ops.parallel(p -> {
-			par.accept(new ModuleOperationSetup(idv, p));
+			par.accept(new ModuleOperationSetup(idv, module, p, steps));
 		});
 		return this;
 	}
 	
 	public <T> ModuleOperationSetup eachParallel(Iterable<T> it, BiConsumer<T, ModuleOperationSetup> seq) {
 		ops.eachParallel(it, (v, s) -> {
-			seq.accept(v, new ModuleOperationSetup(idv, s));
+			seq.accept(v, new ModuleOperationSetup(idv, module, s, steps));
 		});
 		return this;
 	}
@@ -3,6 +3,24 @@ package reka.module.setup;
 import reka.data.MutableData;
 
 public interface StatusDataProvider {
+	
+	public static final long DEFAULT_POLL_INTERVAL = 1000;
+	public static final long NO_REVISION = -1;
+	
 	boolean up();
 	void statusData(MutableData data);
-}
\ No newline at end of file
+	
+	/*
+	 * A cheap counter that moves whenever the status would change. If it's provided the report is
+	 * only rebuilt when it has moved, otherwise it's rebuilt every pollInterval.
+	 */
+	default long revision() {
+		return NO_REVISION;
+	}
+	
+	// milliseconds, the most often the report will be rebuilt
+	default long pollInterval() {
+		return DEFAULT_POLL_INTERVAL;
+	}
+	
+}
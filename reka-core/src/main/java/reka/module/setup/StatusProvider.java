@@ -55,6 +55,16 @@ public interface StatusProvider extends StatusDataProvider {
 			if (provider != null) provider.statusData(data);
 		}
 		
+		@Override
+		public long revision() {
+			return provider != null ? provider.revision() : 0;
+		}
+		
+		@Override
+		public long pollInterval() {
+			return provider != null ? provider.pollInterval() : DEFAULT_POLL_INTERVAL;
+		}
+		
 	}
 	
 	String name();
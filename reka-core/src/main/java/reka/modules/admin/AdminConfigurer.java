@@ -70,6 +70,8 @@ public class AdminConfigurer extends ModuleConfigurer {
 		module.defineOperation(path("deploy"), provider -> new RekaDeployConfigurer(manager, dirs()));
 		module.defineOperation(path("undeploy"), provider -> new RekaUndeployConfigurer(manager, dirs()));
 		module.defineOperation(path("visualize"), provider -> new RekaVisualizeConfigurer(manager));
+		module.defineOperation(path("events"), provider -> new RekaEventsConfigurer(manager));
+		module.defineOperation(path("bench"), provider -> new RekaBenchConfigurer(manager));
 		
 		for (ConfigBody body : deployHandlers) {			
 			module.buildFlow("on deploy", body, flow -> {
@@ -0,0 +1,50 @@
+package reka.modules.admin;
+
+import static reka.util.Path.dots;
+
+import java.util.function.Function;
+
+import reka.app.manager.ApplicationManager;
+import reka.config.configurer.annotations.Conf;
+import reka.data.Data;
+import reka.module.setup.OperationConfigurer;
+import reka.module.setup.OperationSetup;
+import reka.util.Path;
+import reka.util.StringWithVars;
+
+public class RekaBenchConfigurer implements OperationConfigurer {
+	
+	private final ApplicationManager manager;
+	
+	private Path out = dots("bench");
+	private Function<Data,Path> appPathFn;
+	private Function<Data,String> nameFn = data -> "";
+	
+	@Conf.Val
+	@Conf.At("out")
+	@Conf.At("into")
+	public void out(String val) {
+		out = dots(val);
+	}
+	
+	@Conf.At("id")
+	public void app(String val) {
+		appPathFn = StringWithVars.compile(val).andThen(Path::slashes);
+	}
+	
+	// leave it out to run all of them, one after the other
+	@Conf.At("name")
+	public void name(String val) {
+		nameFn = StringWithVars.compile(val);
+	}
+	
+	public RekaBenchConfigurer(ApplicationManager manager) {
+		this.manager = manager;
+	}
+	
+	@Override
+	public void setup(OperationSetup ops) {
+		ops.add("bench", () -> new RekaBenchOperation(manager, appPathFn, nameFn, out));
+	}
+
+}
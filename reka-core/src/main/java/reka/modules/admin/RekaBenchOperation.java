@@ -0,0 +1,66 @@
+package reka.modules.admin;
+
+import static java.util.Collections.singletonList;
+import static reka.util.Util.runtime;
+import static reka.util.Util.unwrap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import reka.app.Application;
+import reka.app.manager.ApplicationManager;
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.flow.ops.AsyncOperation;
+import reka.flow.ops.OperationContext;
+import reka.identity.Identity;
+import reka.util.Path;
+
+public class RekaBenchOperation implements AsyncOperation {
+	
+	private final ApplicationManager manager;
+	private final Function<Data,Path> appPathFn;
+	private final Function<Data,String> nameFn;
+	private final Path out;
+	
+	public RekaBenchOperation(ApplicationManager manager, Function<Data,Path> appPathFn, Function<Data,String> nameFn, Path out) {
+		this.manager = manager;
+		this.appPathFn = appPathFn;
+		this.nameFn = nameFn;
+		this.out = out;
+	}
+
+	@Override
+	public void call(MutableData data, OperationContext ctx, OperationResult res) {
+		Identity identity = manager.identityFor(appPathFn.apply(data));
+		Application app = manager.get(identity).orElseThrow(() -> runtime("no app at %s", identity.name()));
+		
+		String name = nameFn.apply(data);
+		Collection<String> names = name == null || name.isEmpty() ? app.benchNames() : singletonList(name);
+		if (names.isEmpty()) throw runtime("%s has no benches", identity.name());
+		
+		// one at a time, they'd only skew each other otherwise
+		List<Data> reports = new ArrayList<>();
+		CompletableFuture<Void> all = CompletableFuture.completedFuture(null);
+		for (String benchName : names) {
+			all = all.thenCompose(ignored -> app.bench(benchName).thenAccept(reports::add));
+		}
+		
+		all.whenComplete((ignored, t) -> {
+			if (t != null) {
+				res.error(unwrap(t));
+				return;
+			}
+			if (reports.size() == 1 && name != null && !name.isEmpty()) {
+				data.put(out, reports.get(0));
+			} else {
+				data.putList(out, list -> reports.forEach(list::add));
+			}
+			res.done();
+		});
+	}
+
+}
@@ -0,0 +1,52 @@
+package reka.modules.admin;
+
+import static reka.config.configurer.Configurer.Preconditions.checkConfig;
+import static reka.util.Path.dots;
+
+import java.util.function.Function;
+
+import reka.app.manager.ApplicationManager;
+import reka.config.configurer.annotations.Conf;
+import reka.data.Data;
+import reka.module.setup.OperationConfigurer;
+import reka.module.setup.OperationSetup;
+import reka.util.Path;
+import reka.util.StringWithVars;
+
+public class RekaEventsConfigurer implements OperationConfigurer {
+	
+	private final ApplicationManager manager;
+	
+	private Path out = dots("events");
+	private Function<Data,String> sinceFn = data -> "-1";
+	private int limit = 1000;
+	
+	@Conf.Val
+	@Conf.At("out")
+	@Conf.At("into")
+	public void out(String val) {
+		out = dots(val);
+	}
+	
+	// the last eid the caller saw, they get everything after it
+	@Conf.At("since")
+	public void since(String val) {
+		sinceFn = StringWithVars.compile(val);
+	}
+	
+	@Conf.At("limit")
+	public void limit(String val) {
+		limit = Integer.valueOf(val);
+		checkConfig(limit > 0, "limit must be at least 1");
+	}
+	
+	public RekaEventsConfigurer(ApplicationManager manager) {
+		this.manager = manager;
+	}
+	
+	@Override
+	public void setup(OperationSetup ops) {
+		ops.add("events", () -> new RekaEventsOperation(manager, sinceFn, limit, out));
+	}
+
+}
@@ -0,0 +1,42 @@
+package reka.modules.admin;
+
+import java.util.function.Function;
+
+import reka.app.manager.ApplicationManager;
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.flow.ops.Operation;
+import reka.flow.ops.OperationContext;
+import reka.util.Path;
+
+public class RekaEventsOperation implements Operation {
+	
+	private final ApplicationManager manager;
+	private final Function<Data,String> sinceFn;
+	private final int limit;
+	private final Path out;
+	
+	public RekaEventsOperation(ApplicationManager manager, Function<Data,String> sinceFn, int limit, Path out) {
+		this.manager = manager;
+		this.sinceFn = sinceFn;
+		this.limit = limit;
+		this.out = out;
+	}
+
+	@Override
+	public void call(MutableData data, OperationContext ctx) {
+		String val = sinceFn.apply(data);
+		long since = val == null || val.isEmpty() ? -1 : Long.valueOf(val);
+		data.putList(out, list -> {
+			manager.eventsSince(since, limit).forEach(event -> {
+				list.addMap(m -> {
+					m.putLong("eid", event.eid());
+					m.putString("date", event.date());
+					m.putString("type", event.type());
+					m.put("data", event.data());
+				});
+			});
+		});
+	}
+
+}
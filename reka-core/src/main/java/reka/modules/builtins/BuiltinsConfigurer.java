@@ -49,6 +49,7 @@ import reka.module.setup.AppSetup;
 import reka.module.setup.ModuleConfigurer;
 import reka.module.setup.OperationConfigurer;
 import reka.module.setup.OperationSetup;
+import reka.modules.builtins.ratelimit.RateLimitConfigurer;
 import reka.util.Path;
 import reka.util.Path.Response;
 import reka.util.StringWithVars;
@@ -81,6 +82,7 @@ public class BuiltinsConfigurer extends ModuleConfigurer {
     	
     	module.defineOperation(path("throw"), provider -> new ThrowConfigurer());
     	module.defineOperation(path("inspect"), provider -> new InspectConfigurer());
+    	module.defineOperation(path("metrics"), provider -> new MetricsConfigurer());
     	module.defineOperation(slashes("random/string"), provider -> new RandomStringConfigurer());
     	module.defineOperation(path("coerce"), provider -> new Coercion.CoerceConfigurer());
     	module.defineOperation(slashes("coerce/int64"), provider -> new Coercion.CoerceLongConfigurer());
@@ -89,6 +91,9 @@ public class BuiltinsConfigurer extends ModuleConfigurer {
     	module.defineOperation(path("split"), provider -> new SplitConfigurer());
     	
     	module.defineOperation(path("match"), provider -> new MatchConfigurer(provider));
+    	module.defineOperation(path("ratelimit"), provider -> new RateLimitConfigurer(provider));
+    	module.defineOperation(path("map"), provider -> new MapConfigurer(provider));
+    	module.defineOperation(path("foreach"), provider -> new MapConfigurer(provider));
     	
     	module.defineOperation(path("simple-uppercase"), simpleOperation(config -> {
     		Path path = dots(config.valueAsString());
@@ -491,7 +496,7 @@ public class BuiltinsConfigurer extends ModuleConfigurer {
 
 		@Override
 		public void call(MutableData data, OperationContext ctx, OperationResult res) {
-			Reka.SharedExecutors.scheduled.schedule(() -> res.done(), ms, TimeUnit.MILLISECONDS);
+			Reka.SharedExecutors.timer.schedule(() -> res.done(), ms, TimeUnit.MILLISECONDS);
 		}
 		
 	}
@@ -8,6 +8,7 @@ import reka.config.processor.IncludeConverter;
 import reka.module.Module;
 import reka.module.ModuleDefinition;
 import reka.modules.builtins.adder.AdderConfigurer;
+import reka.modules.builtins.cache.CacheConfigurer;
 import reka.modules.filesystem.FilesystemConfigurer;
 import reka.modules.json.JsonModule.JsonConfigurer;
 import reka.util.Path;
@@ -29,6 +30,7 @@ public class BuiltinsModule implements Module {
 		
 		module.submodule(path("timer"), () -> new TimerConfigurer());
 		module.submodule(path("adder"), () -> new AdderConfigurer());
+		module.submodule(path("cache"), () -> new CacheConfigurer());
 		
 		// the ordering of these is very important! be careful :)
 		
@@ -0,0 +1,249 @@
+package reka.modules.builtins;
+
+import static reka.config.configurer.Configurer.configure;
+import static reka.config.configurer.Configurer.Preconditions.invalidConfig;
+import static reka.data.content.Contents.nullValue;
+import static reka.util.Path.dots;
+import static reka.util.Path.path;
+import static reka.util.Util.runtime;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import reka.config.Config;
+import reka.config.configurer.Configurer.ErrorCollector;
+import reka.config.configurer.ErrorReporter;
+import reka.config.configurer.annotations.Conf;
+import reka.core.config.ConfigurerProvider;
+import reka.core.config.SequenceConfigurer;
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+import reka.flow.Flow;
+import reka.flow.FlowSegment;
+import reka.flow.builder.FlowBuilderGroup;
+import reka.flow.ops.AsyncOperation;
+import reka.flow.ops.OperationContext;
+import reka.flow.ops.Subscriber;
+import reka.module.setup.OperationConfigurer;
+import reka.module.setup.OperationSetup;
+import reka.util.Path;
+
+public class MapConfigurer implements OperationConfigurer, ErrorReporter {
+
+	public static enum ErrorPolicy { FAIL, SKIP, NULL };
+
+	private final ConfigurerProvider provider;
+
+	private Path in;
+	private Path out;
+	private Path as = path("item");
+	private Path result;
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+	private ErrorPolicy onError = ErrorPolicy.FAIL;
+	private OperationConfigurer body;
+
+	public MapConfigurer(ConfigurerProvider provider) {
+		this.provider = provider;
+	}
+
+	@Conf.Val
+	@Conf.At("in")
+	public void in(String val) {
+		in = dots(stripColon(val));
+	}
+
+	@Conf.At("out")
+	@Conf.At("into")
+	public void out(String val) {
+		out = dots(stripColon(val));
+	}
+
+	@Conf.At("as")
+	public void as(String val) {
+		as = dots(stripColon(val));
+	}
+
+	@Conf.At("result")
+	public void result(String val) {
+		result = dots(stripColon(val));
+	}
+
+	@Conf.At("parallelism")
+	public void parallelism(String val) {
+		parallelism = Integer.valueOf(val);
+		if (parallelism < 1) invalidConfig("parallelism must be at least 1");
+	}
+
+	@Conf.At("on-error")
+	public void onError(String val) {
+		switch (val) {
+		case "fail": onError = ErrorPolicy.FAIL; break;
+		case "skip": onError = ErrorPolicy.SKIP; break;
+		case "null": onError = ErrorPolicy.NULL; break;
+		default: invalidConfig("on-error must be one of fail, skip or null");
+		}
+	}
+
+	@Conf.At("run")
+	@Conf.At("each")
+	public void run(Config config) {
+		body = configure(new SequenceConfigurer(provider), config.body());
+	}
+
+	private static String stripColon(String val) {
+		return val.startsWith(":") ? val.substring(1) : val;
+	}
+
+	@Override
+	public void errors(ErrorCollector errors) {
+		errors.checkConfigPresent(in, "in is required");
+		errors.checkConfigPresent(body, "run is required");
+	}
+
+	@Override
+	public void setup(OperationSetup ops) {
+		FlowSegment segment = body.bind(path("map"), ops.ctx()).get();
+		Path outPath = out != null ? out : in;
+		Path resultPath = result != null ? result : as;
+		ops.add("map", () -> new MapOperation(FlowBuilderGroup.createFlow(path("map"), segment),
+				                              in, outPath, as, resultPath, parallelism, onError));
+	}
+
+	public static class MapOperation implements AsyncOperation {
+
+		private final Flow flow;
+		private final Path in, out, as, result;
+		private final int parallelism;
+		private final ErrorPolicy onError;
+
+		public MapOperation(Flow flow, Path in, Path out, Path as, Path result, int parallelism, ErrorPolicy onError) {
+			this.flow = flow;
+			this.in = in;
+			this.out = out;
+			this.as = as;
+			this.result = result;
+			this.parallelism = parallelism;
+			this.onError = onError;
+		}
+
+		@Override
+		public void call(MutableData data, OperationContext ctx, OperationResult res) {
+			Data items = data.at(in);
+			if (!items.isPresent()) {
+				res.done();
+				return;
+			}
+			new MapRun(data, items.isList() ? items.values().toArray(new Data[0]) : new Data[] { items }, ctx, res).start();
+		}
+
+		private class MapRun {
+
+			private final MutableData data;
+			private final Data[] items;
+			private final Data[] results;
+			private final Throwable[] errors;
+			private final OperationContext ctx;
+			private final OperationResult res;
+
+			private final AtomicInteger next = new AtomicInteger();
+			private final AtomicInteger remaining;
+			private final AtomicBoolean failed = new AtomicBoolean();
+
+			MapRun(MutableData data, Data[] items, OperationContext ctx, OperationResult res) {
+				this.data = data;
+				this.items = items;
+				this.results = new Data[items.length];
+				this.errors = new Throwable[items.length];
+				this.ctx = ctx;
+				this.res = res;
+				this.remaining = new AtomicInteger(items.length);
+			}
+
+			void start() {
+				if (items.length == 0) {
+					finish();
+					return;
+				}
+				for (int i = 0; i < Math.min(parallelism, items.length); i++) {
+					runNext();
+				}
+			}
+
+			private void runNext() {
+				if (failed.get()) return;
+				int i = next.getAndIncrement();
+				if (i >= items.length) return;
+
+				MutableData itemData = MutableMemoryData.create();
+				itemData.putInt("index", i);
+				items[i].forEachContent((p, c) -> itemData.put(as.add(p), c));
+
+				flow.prepare().mutableData(itemData).store(ctx).stats(false).complete(new Subscriber() {
+
+					@Override
+					public void ok(MutableData itemResult) {
+						results[i] = itemResult.at(result).copy();
+						completed();
+					}
+
+					@Override
+					public void halted() {
+						failed(i, runtime("map halted on item %d", i));
+					}
+
+					@Override
+					public void error(Data ignored, Throwable t) {
+						failed(i, t);
+					}
+
+				}).run();
+			}
+
+			private void failed(int i, Throwable t) {
+				if (onError == ErrorPolicy.FAIL) {
+					if (failed.compareAndSet(false, true)) {
+						res.error(t);
+					}
+					return;
+				}
+				errors[i] = t;
+				completed();
+			}
+
+			private void completed() {
+				if (remaining.decrementAndGet() == 0) {
+					finish();
+				} else {
+					runNext();
+				}
+			}
+
+			private void finish() {
+				if (failed.get()) return;
+				try {
+					data.remove(out);
+					int index = 0;
+					for (int i = 0; i < items.length; i++) {
+						Path dest = out.add(index);
+						if (errors[i] != null) {
+							if (onError == ErrorPolicy.SKIP) continue;
+							data.put(dest, nullValue());
+						} else if (results[i].isPresent()) {
+							results[i].forEachContent((p, c) -> data.put(dest.add(p), c));
+						} else {
+							data.put(dest, nullValue());
+						}
+						index++;
+					}
+					res.done();
+				} catch (Throwable t) {
+					res.error(t);
+				}
+			}
+
+		}
+
+	}
+
+}
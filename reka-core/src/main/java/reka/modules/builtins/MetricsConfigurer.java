@@ -0,0 +1,28 @@
+package reka.modules.builtins;
+
+import static reka.util.Path.dots;
+
+import reka.config.configurer.annotations.Conf;
+import reka.metrics.MetricsRegistry;
+import reka.module.setup.OperationConfigurer;
+import reka.module.setup.OperationSetup;
+import reka.util.Path;
+
+// renders all the metrics in prometheus text format, by default as the response
+public class MetricsConfigurer implements OperationConfigurer {
+
+	private Path out = Path.Response.CONTENT;
+	
+	@Conf.Val
+	@Conf.At("out")
+	@Conf.At("into")
+	public void out(String val) {
+		out = dots(val);
+	}
+	
+	@Override
+	public void setup(OperationSetup ops) {
+		ops.add("metrics", () -> new MetricsOperation(MetricsRegistry.DEFAULT, out));
+	}
+	
+}
@@ -0,0 +1,29 @@
+package reka.modules.builtins;
+
+import reka.data.MutableData;
+import reka.flow.ops.Operation;
+import reka.flow.ops.OperationContext;
+import reka.metrics.MetricsRegistry;
+import reka.util.Path;
+
+public class MetricsOperation implements Operation {
+	
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	
+	private final MetricsRegistry registry;
+	private final Path out;
+	private final boolean response;
+	
+	public MetricsOperation(MetricsRegistry registry, Path out) {
+		this.registry = registry;
+		this.out = out;
+		this.response = out.equals(Path.Response.CONTENT);
+	}
+
+	@Override
+	public void call(MutableData data, OperationContext ctx) {
+		data.putString(out, registry.toPrometheus());
+		if (response) data.putString(Path.Response.Headers.CONTENT_TYPE, CONTENT_TYPE);
+	}
+
+}
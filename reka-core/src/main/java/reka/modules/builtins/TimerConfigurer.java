@@ -8,19 +8,28 @@ import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import reka.Reka;
 import reka.config.Config;
 import reka.config.configurer.annotations.Conf;
+import reka.data.Data;
+import reka.data.MutableData;
 import reka.flow.Flow;
+import reka.flow.ops.Subscriber;
 import reka.module.setup.AppSetup;
 import reka.module.setup.ModuleConfigurer;
 
 public class TimerConfigurer extends ModuleConfigurer {
 	
+	private static final Logger log = LoggerFactory.getLogger(TimerConfigurer.class);
+	
 	private final List<Config> every = new ArrayList<>();
 	
 	@Conf.Each("every")
@@ -29,9 +38,11 @@ public class TimerConfigurer extends ModuleConfigurer {
 		every.add(config);
 	}
 	
-	public static class TimerRun implements Runnable {
+	// if the previous run is still going we skip this one rather than letting them pile up
+	public static class TimerRun implements Runnable, Subscriber {
 		
 		private final Flow flow;
+		private final AtomicBoolean running = new AtomicBoolean();
 		
 		public TimerRun(Flow flow) {
 			this.flow = flow;
@@ -39,7 +50,32 @@ public class TimerConfigurer extends ModuleConfigurer {
 
 		@Override
 		public void run() {
-			flow.run();
+			if (!running.compareAndSet(false, true)) {
+				log.debug("skipping {} as previous run is still in progress", flow.fullName());
+				return;
+			}
+			try {
+				flow.run(this);
+			} catch (Throwable t) {
+				running.set(false);
+				log.error("error running timer", t);
+			}
+		}
+
+		@Override
+		public void ok(MutableData data) {
+			running.set(false);
+		}
+
+		@Override
+		public void halted() {
+			running.set(false);
+		}
+
+		@Override
+		public void error(Data data, Throwable t) {
+			running.set(false);
+			log.error("error running timer", t);
 		}
 		
 	}
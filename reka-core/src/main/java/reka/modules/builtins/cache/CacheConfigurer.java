@@ -0,0 +1,82 @@
+package reka.modules.builtins.cache;
+
+import static reka.util.Path.root;
+import static reka.util.Units.parseDuration;
+import static reka.util.Units.parseSize;
+
+import reka.config.configurer.annotations.Conf;
+import reka.data.MutableData;
+import reka.identity.IdentityKey;
+import reka.module.setup.AppSetup;
+import reka.module.setup.ModuleConfigurer;
+import reka.module.setup.ModuleSetupContext;
+import reka.module.setup.StatusDataProvider;
+
+public class CacheConfigurer extends ModuleConfigurer {
+
+	public static final IdentityKey<MemoCache> CACHE = IdentityKey.named("cache");
+
+	private long ttl = 60 * 1000L;
+	private int maxEntries = 1000;
+	private long maxBytes = -1;
+
+	@Conf.At("ttl")
+	public void ttl(String val) {
+		ttl = parseDuration(val);
+	}
+
+	@Conf.At("max-entries")
+	public void maxEntries(String val) {
+		maxEntries = Integer.valueOf(val);
+	}
+
+	@Conf.At("max-bytes")
+	public void maxBytes(String val) {
+		maxBytes = parseSize(val);
+	}
+
+	@Override
+	public void setup(AppSetup app) {
+
+		ModuleSetupContext ctx = app.ctx();
+
+		app.onDeploy(init -> {
+			init.run("create cache", () -> {
+				ctx.put(CACHE, new MemoCache(ttl, maxEntries, maxBytes));
+			});
+		});
+
+		app.defineOperation(root(), provider -> new CacheOperationConfigurer(provider));
+
+		app.registerStatusProvider(() -> new CacheStatusProvider(ctx.get(CACHE)));
+
+		app.onUndeploy("clear cache", () -> ctx.lookup(CACHE).ifPresent(MemoCache::clear));
+
+	}
+
+	public static class CacheStatusProvider implements StatusDataProvider {
+
+		private final MemoCache cache;
+
+		public CacheStatusProvider(MemoCache cache) {
+			this.cache = cache;
+		}
+
+		@Override
+		public boolean up() {
+			return true;
+		}
+
+		@Override
+		public void statusData(MutableData data) {
+			cache.statusData(data);
+		}
+		
+		@Override
+		public long revision() {
+			return cache.revision();
+		}
+
+	}
+
+}
@@ -0,0 +1,118 @@
+package reka.modules.builtins.cache;
+
+import static reka.util.Util.runtime;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.flow.Flow;
+import reka.flow.ops.AsyncOperation;
+import reka.flow.ops.OperationContext;
+import reka.flow.ops.Subscriber;
+import reka.util.Path;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+public class CacheOperation implements AsyncOperation {
+
+	private static final HashFunction HASH = Hashing.murmur3_128();
+
+	private final MemoCache cache;
+	private final long id;
+	private final List<Path> keys;
+	private final Path out;
+	private final Flow flow;
+
+	public CacheOperation(MemoCache cache, long id, List<Path> keys, Path out, Flow flow) {
+		this.cache = cache;
+		this.id = id;
+		this.keys = ImmutableList.copyOf(keys);
+		this.out = out;
+		this.flow = flow;
+	}
+
+	@Override
+	public void call(MutableData data, OperationContext ctx, OperationResult res) {
+		HashCode key = keyFor(data);
+		cache.lookup(key, new MemoCache.Lookup() {
+
+			@Override
+			public void hit(Data value) {
+				write(data, value);
+				res.done();
+			}
+
+			@Override
+			public void miss() {
+				AtomicBoolean finished = new AtomicBoolean();
+				try {
+					run(finished);
+				} catch (Throwable t) {
+					if (!finished.compareAndSet(false, true)) throw t; // it's not the body that failed
+					// the body never got going, without this the key stays pending and later lookups wait forever
+					cache.fail(key, t);
+					res.error(t);
+				}
+			}
+
+			private void run(AtomicBoolean finished) {
+				flow.prepare().mutableData(data).store(ctx).stats(false).complete(new Subscriber() {
+
+					@Override
+					public void ok(MutableData result) {
+						if (!finished.compareAndSet(false, true)) return;
+						Data value = result.at(out).copy();
+						cache.complete(key, value);
+						if (result != data) write(data, value);
+						res.done();
+					}
+
+					@Override
+					public void halted() {
+						if (!finished.compareAndSet(false, true)) return;
+						Throwable t = runtime("cache body halted");
+						cache.fail(key, t);
+						res.error(t);
+					}
+
+					@Override
+					public void error(Data ignored, Throwable t) {
+						if (!finished.compareAndSet(false, true)) return;
+						cache.fail(key, t);
+						res.error(t);
+					}
+
+				}).run();
+			}
+
+			@Override
+			public void error(Throwable t) {
+				res.error(t);
+			}
+
+		});
+	}
+
+	private HashCode keyFor(Data data) {
+		Hasher hasher = HASH.newHasher();
+		hasher.putLong(id);
+		for (Path path : keys) {
+			Data value = data.at(path);
+			hasher.putBoolean(value.isPresent());
+			value.hash(hasher);
+		}
+		return hasher.hash();
+	}
+
+	private void write(MutableData data, Data value) {
+		// copied content by content so the cached value is never shared with a mutable tree
+		value.forEachContent((path, content) -> data.put(out.add(path), content));
+	}
+
+}
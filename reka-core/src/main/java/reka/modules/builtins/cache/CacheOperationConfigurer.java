@@ -0,0 +1,72 @@
+package reka.modules.builtins.cache;
+
+import static reka.config.configurer.Configurer.configure;
+import static reka.util.Path.dots;
+import static reka.util.Path.path;
+import static reka.util.Path.root;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import reka.config.Config;
+import reka.config.configurer.Configurer.ErrorCollector;
+import reka.config.configurer.ErrorReporter;
+import reka.config.configurer.annotations.Conf;
+import reka.core.config.ConfigurerProvider;
+import reka.core.config.SequenceConfigurer;
+import reka.flow.FlowSegment;
+import reka.flow.builder.FlowBuilderGroup;
+import reka.module.setup.OperationConfigurer;
+import reka.module.setup.OperationSetup;
+import reka.util.Path;
+
+public class CacheOperationConfigurer implements OperationConfigurer, ErrorReporter {
+
+	private static final AtomicLong ids = new AtomicLong();
+
+	private final ConfigurerProvider provider;
+
+	private final List<Path> keys = new ArrayList<>();
+	private Path out = root();
+	private OperationConfigurer body;
+
+	public CacheOperationConfigurer(ConfigurerProvider provider) {
+		this.provider = provider;
+	}
+
+	@Conf.Each("key")
+	public void key(String val) {
+		if (val.startsWith(":")) val = val.substring(1);
+		keys.add(dots(val));
+	}
+
+	@Conf.At("out")
+	@Conf.At("into")
+	public void out(String val) {
+		if (val.startsWith(":")) val = val.substring(1);
+		out = dots(val);
+	}
+
+	@Conf.At("run")
+	@Conf.At("then")
+	public void run(Config config) {
+		body = configure(new SequenceConfigurer(provider), config.body());
+	}
+
+	@Override
+	public void errors(ErrorCollector errors) {
+		errors.checkConfigPresent(body, "run is required");
+	}
+
+	@Override
+	public void setup(OperationSetup ops) {
+		// bound up front so config errors in the body are found at deploy time
+		FlowSegment segment = body.bind(path("cache"), ops.ctx()).get();
+		// all the cache ops in the module share one cache, this keeps their keys apart
+		long id = ids.incrementAndGet();
+		ops.add("cache", () -> new CacheOperation(ops.ctx().get(CacheConfigurer.CACHE),
+				                                  id, keys, out, FlowBuilderGroup.createFlow(path("cache"), segment)));
+	}
+
+}
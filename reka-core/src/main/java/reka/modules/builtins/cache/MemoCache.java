@@ -0,0 +1,198 @@
+package reka.modules.builtins.cache;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import reka.data.Data;
+import reka.data.MutableData;
+
+import com.google.common.hash.HashCode;
+
+/*
+ * A bounded map of computed Data values with a ttl, plus a set of keys that are currently
+ * being computed. When a key is being computed any further lookups for it queue up behind
+ * the first one rather than doing the work again.
+ */
+public class MemoCache {
+
+	public static interface Lookup {
+		void hit(Data value);
+		void miss();
+		void error(Throwable t);
+	}
+
+	private static class CachedValue {
+
+		private final Data value;
+		private final long bytes;
+		private final long expires;
+
+		CachedValue(Data value, long bytes, long expires) {
+			this.value = value;
+			this.bytes = bytes;
+			this.expires = expires;
+		}
+
+	}
+
+	private final Object lock = new Object();
+
+	private final long ttl;
+	private final int maxEntries;
+	private final long maxBytes;
+
+	private final LinkedHashMap<HashCode,CachedValue> values = new LinkedHashMap<>(16, 0.75f, true);
+	private final Map<HashCode,List<Lookup>> pending = new LinkedHashMap<>();
+
+	private long bytes;
+
+	private long hits;
+	private long misses;
+	private long coalesced;
+	private long evictions;
+	private long expirations;
+	private long errors;
+	
+	// goes up when the entries change (not for every hit or miss) so the status is only rebuilt then,
+	// the counters in it are as of the last change
+	private long revision;
+
+	public MemoCache(long ttl, int maxEntries, long maxBytes) {
+		this.ttl = ttl;
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	public void lookup(HashCode key, Lookup lookup) {
+		Data value = null;
+		boolean compute = false;
+		synchronized (lock) {
+			CachedValue cached = values.get(key);
+			if (cached != null && cached.expires < System.currentTimeMillis()) {
+				remove(key);
+				expirations++;
+				revision++;
+				cached = null;
+			}
+			if (cached != null) {
+				hits++;
+				value = cached.value;
+			} else {
+				List<Lookup> waiting = pending.get(key);
+				if (waiting != null) {
+					coalesced++;
+					waiting.add(lookup);
+					return;
+				}
+				misses++;
+				pending.put(key, new ArrayList<>());
+				compute = true;
+			}
+		}
+		if (compute) {
+			lookup.miss();
+		} else {
+			lookup.hit(value);
+		}
+	}
+
+	public void complete(HashCode key, Data value) {
+		long size = estimateBytes(value);
+		List<Lookup> waiting;
+		synchronized (lock) {
+			waiting = pending.remove(key);
+			if (maxBytes <= 0 || size <= maxBytes) {
+				revision++;
+				CachedValue previous = values.put(key, new CachedValue(value, size, System.currentTimeMillis() + ttl));
+				if (previous != null) bytes -= previous.bytes;
+				bytes += size;
+				evict();
+			}
+		}
+		if (waiting != null) {
+			waiting.forEach(lookup -> lookup.hit(value));
+		}
+	}
+
+	public void fail(HashCode key, Throwable t) {
+		List<Lookup> waiting;
+		synchronized (lock) {
+			errors++;
+			waiting = pending.remove(key);
+		}
+		if (waiting != null) {
+			waiting.forEach(lookup -> lookup.error(t));
+		}
+	}
+
+	public void clear() {
+		synchronized (lock) {
+			revision++;
+			values.clear();
+			bytes = 0;
+		}
+	}
+
+	public long revision() {
+		synchronized (lock) {
+			return revision;
+		}
+	}
+
+	public void statusData(MutableData data) {
+		synchronized (lock) {
+			data.putInt("entries", values.size());
+			data.putLong("bytes", bytes);
+			data.putInt("pending", pending.size());
+			data.putLong("hits", hits);
+			data.putLong("misses", misses);
+			data.putLong("coalesced", coalesced);
+			data.putLong("evictions", evictions);
+			data.putLong("expirations", expirations);
+			data.putLong("errors", errors);
+		}
+	}
+
+	// must be holding the lock
+	private void evict() {
+		Iterator<Entry<HashCode, CachedValue>> it = values.entrySet().iterator();
+		while (it.hasNext() && (values.size() > maxEntries || (maxBytes > 0 && bytes > maxBytes))) {
+			bytes -= it.next().getValue().bytes;
+			it.remove();
+			evictions++;
+		}
+	}
+
+	// must be holding the lock
+	private void remove(HashCode key) {
+		CachedValue removed = values.remove(key);
+		if (removed != null) bytes -= removed.bytes;
+	}
+
+	private static long estimateBytes(Data value) {
+		long[] total = { 0 };
+		value.forEachContent((path, content) -> {
+			total[0] += path.length() * 16;
+			switch (content.type()) {
+			case UTF8:
+				total[0] += content.asUTF8().length() * 2;
+				break;
+			case BINARY:
+				if (content.hasByteBuffer()) {
+					total[0] += content.asByteBuffer().remaining();
+				} else if (!content.hasFile()) {
+					total[0] += content.asBytes().length;
+				}
+				break;
+			default:
+				total[0] += 16;
+			}
+		});
+		return total[0];
+	}
+
+}
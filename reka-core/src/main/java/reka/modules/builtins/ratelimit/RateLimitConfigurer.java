@@ -0,0 +1,129 @@
+package reka.modules.builtins.ratelimit;
+
+import static reka.config.configurer.Configurer.configure;
+import static reka.config.configurer.Configurer.Preconditions.checkConfig;
+import static reka.config.configurer.Configurer.Preconditions.invalidConfig;
+import static reka.util.Path.dots;
+import static reka.util.Units.parseDuration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import reka.config.Config;
+import reka.config.configurer.Configurer.ErrorCollector;
+import reka.config.configurer.ErrorReporter;
+import reka.config.configurer.annotations.Conf;
+import reka.core.config.ConfigurerProvider;
+import reka.core.config.SequenceConfigurer;
+import reka.flow.builder.OperationFlowNode;
+import reka.module.setup.OperationConfigurer;
+import reka.module.setup.OperationSetup;
+import reka.modules.builtins.ratelimit.RateLimiter.Mode;
+import reka.util.Path;
+
+public class RateLimitConfigurer implements OperationConfigurer, ErrorReporter {
+	
+	// ratelimit request.headers.X-Api-Key {
+	//   rate 100/s
+	//   burst 20
+	//   ok { ... }
+	//   limited { ... }
+	// }
+
+	private static final Pattern RATE = Pattern.compile("^([0-9]+)\\s*/\\s*(.+)$");
+	private static final int DEFAULT_MAX_KEYS = 100000;
+
+	private final ConfigurerProvider provider;
+
+	private Path key;
+	private long requests = -1;
+	private long periodNanos;
+	private long burst = -1;
+	private Mode mode = Mode.TOKEN_BUCKET;
+	private int maxKeys = DEFAULT_MAX_KEYS;
+	private OperationConfigurer ok, limited;
+
+	public RateLimitConfigurer(ConfigurerProvider provider) {
+		this.provider = provider;
+	}
+
+	@Conf.Val
+	@Conf.At("key")
+	public void key(String val) {
+		if (val.startsWith(":")) val = val.substring(1);
+		key = dots(val);
+	}
+
+	// 100/s, 5000/m, 10/500ms
+	@Conf.At("rate")
+	public void rate(String val) {
+		Matcher m = RATE.matcher(val.trim());
+		if (!m.matches()) invalidConfig("invalid rate [%s], try something like 100/s or 5000/m", val);
+		requests = Long.valueOf(m.group(1));
+		String period = m.group(2).trim();
+		if (!Character.isDigit(period.charAt(0))) period = "1" + period;
+		periodNanos = TimeUnit.MILLISECONDS.toNanos(parseDuration(period));
+		checkConfig(requests > 0 && periodNanos > 0, "rate must be more than zero");
+	}
+
+	// how many can come in at once (token bucket), defaults to the rate
+	@Conf.At("burst")
+	public void burst(String val) {
+		burst = Long.valueOf(val);
+		checkConfig(burst > 0, "burst must be at least 1");
+	}
+
+	// token-bucket (default) or sliding-window
+	@Conf.At("algorithm")
+	public void algorithm(String val) {
+		switch (val) {
+		case "token-bucket":
+			mode = Mode.TOKEN_BUCKET;
+			break;
+		case "sliding-window":
+			mode = Mode.SLIDING_WINDOW;
+			break;
+		default:
+			invalidConfig("unknown algorithm [%s], try token-bucket or sliding-window", val);
+		}
+	}
+
+	@Conf.At("max-keys")
+	public void maxKeys(String val) {
+		maxKeys = Integer.valueOf(val);
+		checkConfig(maxKeys > 0, "max-keys must be at least 1");
+	}
+
+	@Conf.At("ok")
+	public void ok(Config config) {
+		ok = configure(new SequenceConfigurer(provider), config.body());
+	}
+
+	@Conf.At("limited")
+	public void limited(Config config) {
+		limited = configure(new SequenceConfigurer(provider), config.body());
+	}
+
+	@Override
+	public void errors(ErrorCollector errors) {
+		errors.checkConfigPresent(key, "key is required");
+		errors.checkConfig(requests > 0, "rate is required");
+		errors.checkConfig(mode != Mode.SLIDING_WINDOW || requests <= RateLimiter.MAX_WINDOW_COUNT,
+				"sliding-window rate can't be more than %d per period", RateLimiter.MAX_WINDOW_COUNT);
+	}
+
+	@Override
+	public void setup(OperationSetup ops) {
+		RateLimiter limiter = new RateLimiter(mode, requests, periodNanos, burst > 0 ? burst : requests, maxKeys);
+		ops.router("ratelimit", () -> new RateLimitOperation(limiter, key), router -> {
+			router.add(RateLimitOperation.OK, ok != null ? ok : noop());
+			router.add(RateLimitOperation.LIMITED, limited != null ? limited : noop());
+		});
+	}
+
+	private static OperationConfigurer noop() {
+		return ops -> ops.add(() -> OperationFlowNode.noop());
+	}
+
+}
@@ -0,0 +1,29 @@
+package reka.modules.builtins.ratelimit;
+
+import reka.data.MutableData;
+import reka.flow.ops.RouteCollector;
+import reka.flow.ops.RouteKey;
+import reka.flow.ops.RouterOperation;
+import reka.util.Path;
+
+public class RateLimitOperation implements RouterOperation {
+
+	public static final RouteKey OK = RouteKey.named("ok");
+	public static final RouteKey LIMITED = RouteKey.named("limited");
+
+	private final RateLimiter limiter;
+	private final Path key;
+
+	RateLimitOperation(RateLimiter limiter, Path key) {
+		this.limiter = limiter;
+		this.key = key;
+	}
+
+	@Override
+	public void call(MutableData data, RouteCollector router) {
+		// everything without a key shares one
+		Object k = data.getContent(key).map(Object::toString).orElse("");
+		router.routeTo(limiter.acquire(k) ? OK : LIMITED);
+	}
+
+}
@@ -0,0 +1,154 @@
+package reka.modules.builtins.ratelimit;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Per key rate limiting where each key's state is a single long that's updated with a CAS, so
+ * there are no locks and the map (which is striped anyway) is only written to when a key turns
+ * up for the first time.
+ *
+ * Token bucket is done as GCRA, the long is the time the bucket will next be full, each request
+ * pushes it on by one interval and is let through as long as that doesn't go more than burst
+ * intervals into the future.
+ *
+ * Sliding window keeps a count for this window and the last one, and estimates the count over
+ * the last period by weighting the previous window by how much of it is still in range. The
+ * long packs the window number (low 24 bits), previous count and current count (20 bits each).
+ *
+ * In both cases a key that has been idle long enough is indistinguishable from a new one, so
+ * when there are more than maxKeys we drop those. If they are all still active new keys are let
+ * through untracked until some go idle, we'd rather not limit anyone than run out of memory.
+ */
+class RateLimiter {
+
+	private static final Logger log = LoggerFactory.getLogger(RateLimiter.class);
+
+	static final int MAX_WINDOW_COUNT = (1 << 20) - 1;
+
+	private static final long SWEEP_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+	private static final long WINDOW_MASK = (1L << 24) - 1;
+	private static final long COUNT_MASK = MAX_WINDOW_COUNT;
+
+	enum Mode { TOKEN_BUCKET, SLIDING_WINDOW }
+
+	private final Mode mode;
+	private final long interval; // nanos per request (token bucket)
+	private final long tolerance; // how far ahead of now we'll let it get (token bucket)
+	private final long window; // nanos (sliding window)
+	private final long limit; // requests per window (sliding window)
+	private final int maxKeys;
+
+	private final long base = System.nanoTime();
+	private final Map<Object,AtomicLong> keys = new ConcurrentHashMap<>();
+	private final AtomicBoolean sweeping = new AtomicBoolean();
+	private final AtomicLong untracked = new AtomicLong();
+	private volatile long lastSwept = Long.MIN_VALUE / 2;
+
+	RateLimiter(Mode mode, long requests, long periodNanos, long burst, int maxKeys) {
+		this.mode = mode;
+		this.interval = Math.max(1, periodNanos / requests);
+		this.tolerance = interval * Math.max(1, burst);
+		this.window = periodNanos;
+		this.limit = requests;
+		this.maxKeys = maxKeys;
+	}
+
+	boolean acquire(Object key) {
+		long now = System.nanoTime() - base;
+		AtomicLong state = keys.get(key);
+		if (state == null) {
+			if (keys.size() >= maxKeys && !makeRoom(now)) {
+				untracked.incrementAndGet();
+				return true;
+			}
+			state = keys.computeIfAbsent(key, k -> new AtomicLong(initial()));
+		}
+		return mode == Mode.TOKEN_BUCKET ? tokenBucket(state, now) : slidingWindow(state, now);
+	}
+
+	int size() {
+		return keys.size();
+	}
+
+	private long initial() {
+		return mode == Mode.TOKEN_BUCKET ? 0 : WINDOW_MASK << 40; // a window that's never current
+	}
+
+	private boolean tokenBucket(AtomicLong state, long now) {
+		while (true) {
+			long full = state.get();
+			long next = Math.max(full, now) + interval;
+			if (next - now > tolerance) return false;
+			if (state.compareAndSet(full, next)) return true;
+		}
+	}
+
+	private boolean slidingWindow(AtomicLong state, long now) {
+		long index = now / window;
+		long current = index & WINDOW_MASK;
+		long previous = (index - 1) & WINDOW_MASK;
+		double remaining = 1.0 - (double) (now % window) / window;
+		while (true) {
+			long packed = state.get();
+			long at = packed >>> 40;
+			long prevCount, count;
+			if (at == current) {
+				prevCount = (packed >>> 20) & COUNT_MASK;
+				count = packed & COUNT_MASK;
+			} else if (at == previous) {
+				prevCount = packed & COUNT_MASK;
+				count = 0;
+			} else {
+				prevCount = 0;
+				count = 0;
+			}
+			if (prevCount * remaining + count + 1 > limit) return false;
+			long next = (current << 40) | (prevCount << 20) | (count + 1);
+			if (state.compareAndSet(packed, next)) return true;
+		}
+	}
+
+	private boolean idle(long value, long now) {
+		if (mode == Mode.TOKEN_BUCKET) {
+			return value <= now;
+		} else {
+			long index = now / window;
+			long at = value >>> 40;
+			return at != (index & WINDOW_MASK) && at != ((index - 1) & WINDOW_MASK);
+		}
+	}
+
+	/*
+	 * One thread sweeps at a time, and not too often (lots of new keys while we're full
+	 * shouldn't mean lots of sweeps), everyone else just carries on. A request racing with the
+	 * removal of its key can get one extra request through, which is fine.
+	 */
+	private boolean makeRoom(long now) {
+		if (now - lastSwept >= SWEEP_INTERVAL_NANOS && sweeping.compareAndSet(false, true)) {
+			try {
+				lastSwept = now;
+				Iterator<AtomicLong> it = keys.values().iterator();
+				while (it.hasNext()) {
+					if (idle(it.next().get(), now)) it.remove();
+				}
+				long missed = untracked.getAndSet(0);
+				if (keys.size() >= maxKeys || missed > 0) {
+					log.warn("rate limiter is full with {} active keys, {} requests from new keys weren't limited", keys.size(), missed);
+				}
+			} finally {
+				sweeping.set(false);
+			}
+		}
+		return keys.size() < maxKeys;
+	}
+
+}
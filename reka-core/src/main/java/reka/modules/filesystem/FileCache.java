@@ -0,0 +1,159 @@
+package reka.modules.filesystem;
+
+import static reka.util.Util.unchecked;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/*
+ * Small files held in direct buffers along with everything we work out about them (content
+ * type, etag, last modified), so serving a hot asset is a map lookup and a buffer duplicate.
+ *
+ * Entries are checked against the filesystem at most once a second and reloaded if the size
+ * or modification time has changed. Anything bigger than maxFileBytes isn't cached, and the
+ * least recently used entries go when the total goes over maxBytes.
+ */
+class FileCache {
+
+	static final int DEFAULT_MAX_FILE_BYTES = 256 * 1024;
+	static final long DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+	private static final long CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+	static class Entry {
+
+		final ByteBuffer buffer;
+		final String contentType;
+		final String etag;
+		final String lastModified;
+		final long size;
+		final long modified;
+
+		private volatile long checked = System.nanoTime();
+		private volatile long used = checked;
+
+		private Entry(ByteBuffer buffer, String contentType, String etag, String lastModified, long size, long modified) {
+			this.buffer = buffer;
+			this.contentType = contentType;
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.size = size;
+			this.modified = modified;
+		}
+
+		// everyone gets their own position/limit
+		ByteBuffer buffer() {
+			return buffer.duplicate();
+		}
+
+	}
+
+	private final Map<Path,Entry> entries = new ConcurrentHashMap<>();
+	private final AtomicLong bytes = new AtomicLong();
+	private final long maxBytes;
+	private final long maxFileBytes;
+	private final Function<Path,String> contentTypes;
+
+	FileCache(long maxBytes, long maxFileBytes, Function<Path,String> contentTypes) {
+		this.maxBytes = maxBytes;
+		this.maxFileBytes = Math.min(maxFileBytes, maxBytes);
+		this.contentTypes = contentTypes;
+	}
+
+	/*
+	 * Returns null if the file isn't (or can't be) cached, the caller deals with it normally.
+	 */
+	Entry get(Path path) {
+		long now = System.nanoTime();
+		Entry entry = entries.get(path);
+		if (entry != null && now - entry.checked <= CHECK_INTERVAL_NANOS) {
+			entry.used = now;
+			return entry;
+		}
+		BasicFileAttributes attrs = attributes(path);
+		if (attrs == null || !attrs.isRegularFile() || attrs.size() > maxFileBytes) {
+			if (entry != null) remove(path, entry);
+			return null;
+		}
+		long modified = attrs.lastModifiedTime().toMillis();
+		if (entry != null && entry.size == attrs.size() && entry.modified == modified) {
+			entry.checked = now;
+			entry.used = now;
+			return entry;
+		}
+		Entry loaded = load(path, modified);
+		if (loaded == null) return null;
+		if (entry != null) remove(path, entry);
+		Entry previous = entries.put(path, loaded);
+		if (previous != null && previous != entry) bytes.addAndGet(-previous.size);
+		if (bytes.addAndGet(loaded.size) > maxBytes) {
+			evictLeastRecentlyUsed();
+		}
+		return loaded;
+	}
+
+	private Entry load(Path path, long modified) {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > maxFileBytes) return null;
+			ByteBuffer buffer = ByteBuffer.allocateDirect((int) size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) break;
+			}
+			buffer.flip();
+			return new Entry(buffer.asReadOnlyBuffer(),
+							 contentTypes.apply(path),
+							 FilesystemRead.etag(buffer.remaining(), modified),
+							 FilesystemRead.httpDate(modified),
+							 buffer.remaining(),
+							 modified);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw unchecked(e);
+		}
+	}
+
+	private void remove(Path path, Entry entry) {
+		if (entries.remove(path, entry)) {
+			bytes.addAndGet(-entry.size);
+		}
+	}
+
+	private void evictLeastRecentlyUsed() {
+		while (bytes.get() > maxBytes) {
+			Path oldest = null;
+			Entry oldestEntry = null;
+			for (Map.Entry<Path,Entry> e : entries.entrySet()) {
+				if (oldestEntry == null || e.getValue().used < oldestEntry.used) {
+					oldest = e.getKey();
+					oldestEntry = e.getValue();
+				}
+			}
+			if (oldestEntry == null) return;
+			remove(oldest, oldestEntry);
+		}
+	}
+
+	private static BasicFileAttributes attributes(Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw unchecked(e);
+		}
+	}
+
+}
@@ -4,10 +4,13 @@ import static java.util.Arrays.asList;
 import static reka.config.configurer.Configurer.configure;
 import static reka.util.Path.dots;
 import static reka.util.Path.path;
+import static reka.util.Units.parseSize;
 
 import java.nio.file.Path;
 import java.util.function.Function;
 
+import javax.activation.MimetypesFileTypeMap;
+
 import reka.config.Config;
 import reka.config.ConfigBody;
 import reka.config.configurer.annotations.Conf;
@@ -38,6 +41,7 @@ public class FilesystemModule implements Module {
 		private final Path basedir;
 		
 		private boolean download = false;
+		private long cacheBytes = 0;
 		
 		private Function<Data,reka.util.Path> dataPathFn = (unused) -> Response.CONTENT;
 		private Function<Data,String> filenameFn;
@@ -62,9 +66,27 @@ public class FilesystemModule implements Module {
 			download = !asList("false", "no").contains(val);
 		}
 		
+		// keeps small files in memory, 'cache true' or a total size like 'cache 64mb'
+		@Conf.At("cache")
+		public void cache(String val) {
+			if (asList("false", "no").contains(val)) {
+				cacheBytes = 0;
+			} else if (asList("true", "yes").contains(val)) {
+				cacheBytes = FileCache.DEFAULT_MAX_BYTES;
+			} else {
+				cacheBytes = parseSize(val);
+			}
+		}
+		
 		@Override
 		public void setup(OperationSetup ops) {
-			ops.add("read", () -> new FilesystemRead(basedir, dataPathFn, filenameFn, download));
+			FileCache cache = cacheBytes > 0 ? new FileCache(cacheBytes, FileCache.DEFAULT_MAX_FILE_BYTES, contentTypes()) : null;
+			ops.add("read", () -> new FilesystemRead(basedir, dataPathFn, filenameFn, download, cache));
+		}
+		
+		private static Function<Path,String> contentTypes() {
+			MimetypesFileTypeMap mimeTypes = FilesystemRead.mimeTypes();
+			return path -> mimeTypes.getContentType(path.toString());
 		}
 		
 	}
@@ -3,39 +3,68 @@ package reka.modules.filesystem;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.lang.String.format;
 import static reka.data.content.Contents.binary;
+import static reka.data.content.Contents.integer;
 import static reka.data.content.Contents.longValue;
+import static reka.data.content.Contents.nullValue;
 import static reka.modules.filesystem.FilesystemUtils.resolveAndCheck;
 import static reka.util.Util.runtime;
+import static reka.util.Util.unchecked;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.function.Function;
 
 import javax.activation.MimetypesFileTypeMap;
 
 import reka.data.Data;
+import reka.data.content.Content;
 import reka.data.MutableData;
 import reka.flow.ops.Operation;
 import reka.flow.ops.OperationContext;
 import reka.util.Path;
+import reka.util.Path.Request;
 import reka.util.Path.Response;
 
 public class FilesystemRead implements Operation {
 	
+	private static final DateTimeFormatter HTTP_DATE = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+	private static final Content NOT_MODIFIED = integer(304);
+	
 	private final java.nio.file.Path basedir;
 	private final Function<Data,Path> dataPathFn;
 	private final Function<Data,String> filenameFn;
 	private final boolean download;
 	private final MimetypesFileTypeMap mimeTypesMap;
+	private final FileCache cache;
 	
 	public FilesystemRead(java.nio.file.Path basedir, Function<Data,Path> dataPathFn, Function<Data,String> filenameFn, boolean download) {
+		this(basedir, dataPathFn, filenameFn, download, null);
+	}
+	
+	FilesystemRead(java.nio.file.Path basedir, Function<Data,Path> dataPathFn, Function<Data,String> filenameFn, boolean download, FileCache cache) {
 		this.basedir = basedir;
 		this.dataPathFn = dataPathFn;
 		this.filenameFn = filenameFn;
 		this.download = download;
-		InputStream mimeTypes = getClass().getResourceAsStream("/META-INF/mimetypes.default");
+		this.mimeTypesMap = mimeTypes();
+		this.cache = cache;
+	}
+	
+	static MimetypesFileTypeMap mimeTypes() {
+		InputStream mimeTypes = FilesystemRead.class.getResourceAsStream("/META-INF/mimetypes.default");
 		checkNotNull(mimeTypes, "couldn't find mime.types on the resource path");
-		mimeTypesMap = new MimetypesFileTypeMap(mimeTypes);
+		return new MimetypesFileTypeMap(mimeTypes);
 	}
 	
 	@Override
@@ -45,24 +74,58 @@ public class FilesystemRead implements Operation {
 		
 		String filename = filenameFn.apply(data);
 		
-		File file = resolveAndCheck(basedir, filename).toFile();
+		java.nio.file.Path path = resolveAndCheck(basedir, filename);
+		
+		if (cache != null) {
+			FileCache.Entry entry = cache.get(path);
+			if (entry != null) {
+				if (dataOut.equals(Response.CONTENT)) {
+					data.putString(Response.Headers.ETAG, entry.etag)
+						.putString(Response.Headers.LAST_MODIFIED, entry.lastModified);
+					if (notModified(data, entry.etag, entry.modified)) {
+						notModified(data);
+						return;
+					}
+					// no content length, the http layer works it out and only compresses if it's not set
+					data.putString(Response.Headers.CONTENT_TYPE, entry.contentType)
+						.put(Response.CONTENT, binary(entry.contentType, entry.buffer()));
+					if (download) attachment(data, path.getFileName().toString());
+				} else {
+					data.put(dataOut, binary(entry.contentType, entry.buffer()));
+				}
+				return;
+			}
+		}
 		
-		if (file.exists() && file.isFile()) {
+		// one stat for everything we need to know
+		BasicFileAttributes attrs = attributes(path);
+		
+		if (attrs != null && attrs.isRegularFile()) {
+			
+			File file = path.toFile();
 			
 			String contentType = mimeTypesMap.getContentType(file.getPath());
 			
 			if (dataOut.equals(Response.CONTENT)) {
 				
+				long size = attrs.size();
+				long modified = attrs.lastModifiedTime().toMillis();
+				String etag = etag(size, modified);
+				
+				data.putString(Response.Headers.ETAG, etag)
+					.putString(Response.Headers.LAST_MODIFIED, httpDate(modified))
+					.putString(Response.Headers.ACCEPT_RANGES, "bytes");
+				
+				if (notModified(data, etag, modified)) {
+					notModified(data);
+					return;
+				}
+				
 		        data.putString(Response.Headers.CONTENT_TYPE, contentType)
-		        	.put(Response.Headers.CONTENT_LENGTH, longValue(file.length()))
+		        	.put(Response.Headers.CONTENT_LENGTH, longValue(size))
 		        	.put(Response.CONTENT, binary(contentType, file));
 	
-		        if (download) {
-		        	
-		        	data.putString(Response.Headers.CONTENT_DISPOSITION, 
-		        			       format("attachment; filename=\"%s\"", file.getName()));
-		        	
-		        }
+		        if (download) attachment(data, file.getName());
 	        
 			} else {
 				
@@ -71,8 +134,61 @@ public class FilesystemRead implements Operation {
 			}
 			
 		} else {
-			throw runtime("%s cannot be read", file.getAbsolutePath());
+			throw runtime("%s cannot be read", path.toAbsolutePath());
+		}
+	}
+	
+	private static void notModified(MutableData data) {
+		data.put(Response.STATUS, NOT_MODIFIED)
+			.put(Response.CONTENT, nullValue());
+	}
+	
+	private static void attachment(MutableData data, String name) {
+		data.putString(Response.Headers.CONTENT_DISPOSITION, format("attachment; filename=\"%s\"", name));
+	}
+	
+	private static BasicFileAttributes attributes(java.nio.file.Path path) {
+		try {
+			return Files.readAttributes(path, BasicFileAttributes.class);
+		} catch (NoSuchFileException e) {
+			return null;
+		} catch (IOException e) {
+			throw unchecked(e);
+		}
+	}
+	
+	static String etag(long size, long modified) {
+		return format("\"%x-%x\"", size, modified);
+	}
+	
+	static String httpDate(long millis) {
+		return HTTP_DATE.format(Instant.ofEpochMilli(millis));
+	}
+	
+	/*
+	 * If-None-Match wins if it's there, otherwise If-Modified-Since (which is only accurate to
+	 * the second).
+	 */
+	private static boolean notModified(Data data, String etag, long modified) {
+		Optional<String> ifNoneMatch = data.getString(Request.Headers.IF_NONE_MATCH);
+		if (ifNoneMatch.isPresent()) {
+			for (String candidate : ifNoneMatch.get().split(",")) {
+				candidate = candidate.trim();
+				if (candidate.startsWith("W/")) candidate = candidate.substring(2);
+				if (candidate.equals("*") || candidate.equals(etag)) return true;
+			}
+			return false;
+		}
+		Optional<String> ifModifiedSince = data.getString(Request.Headers.IF_MODIFIED_SINCE);
+		if (ifModifiedSince.isPresent()) {
+			try {
+				long since = ZonedDateTime.parse(ifModifiedSince.get(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+				return modified / 1000 <= since / 1000;
+			} catch (DateTimeParseException e) {
+				return false;
+			}
 		}
+		return false;
 	}
 
 }
@@ -1,11 +1,8 @@
 package reka.modules.filesystem;
 
 import static reka.util.Util.runtime;
-import static reka.util.Util.unchecked;
 
 import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 
 public class FilesystemUtils {
@@ -21,12 +18,9 @@ public class FilesystemUtils {
 	}
 	
 	private static Path check(Path basedir, Path path) {
-		try {
-			if (!path.startsWith(basedir) || Files.isSameFile(basedir, path)) throw runtime("invalid path [%s] - outside application route", path);
-			return path;
-		} catch (IOException e) {
-			throw unchecked(e);
-		}
+		// not Files.isSameFile, that fails if the basedir hasn't been created yet
+		if (!path.startsWith(basedir) || path.equals(basedir.normalize())) throw runtime("invalid path [%s] - outside application route", path);
+		return path;
 	}
 
 }
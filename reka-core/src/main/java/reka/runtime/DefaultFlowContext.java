@@ -1,10 +1,8 @@
 package reka.runtime;
 
-import static reka.util.Util.unchecked;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -131,7 +129,10 @@ public class DefaultFlowContext implements FlowContext {
 		operationExecutor.execute(() -> {
 			subscriber.ok(data);
 		});
-		if (statsEnabled) stats.completed.increment();
+		if (statsEnabled) {
+			stats.completed.increment();
+			stats.durations.record(System.nanoTime() - started);
+		}
 	}
 
 	@Override
@@ -141,7 +142,10 @@ public class DefaultFlowContext implements FlowContext {
 		operationExecutor.execute(() -> {
 			subscriber.error(data, t);
 		});
-		if (statsEnabled) stats.errors.increment();
+		if (statsEnabled) {
+			stats.errors.increment();
+			stats.durations.record(System.nanoTime() - started);
+		}
 	}
 
 	@Override
@@ -151,7 +155,10 @@ public class DefaultFlowContext implements FlowContext {
 		operationExecutor.execute(() -> {
 			subscriber.halted();
 		});
-		if (statsEnabled) stats.halts.increment();
+		if (statsEnabled) {
+			stats.halts.increment();
+			stats.durations.record(System.nanoTime() - started);
+		}
 	}
 
 	@Override
@@ -168,17 +175,11 @@ public class DefaultFlowContext implements FlowContext {
 		return Thread.currentThread().getId() == threadId;
 	}
 
+	// queued ahead of anything that checks it, waiting for it deadlocks if we're already on that thread
 	private boolean calculateThreadId() {
-		CountDownLatch latch = new CountDownLatch(1);
 		coordinationExecutor.execute(() -> {
 			threadId = Thread.currentThread().getId();
-			latch.countDown();
 		});
-		try {
-			if (Thread.currentThread().getId() != threadId)	latch.await();
-		} catch (InterruptedException e) {
-			throw unchecked(e);
-		}
 		return true;
 	}
 
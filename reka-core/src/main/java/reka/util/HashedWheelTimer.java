@@ -0,0 +1,158 @@
+package reka.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * A hashed timing wheel, for lots of short timeouts that mostly get cancelled (sleeps,
+ * command timeouts, test timeouts). Adding and cancelling are O(1) and don't take a lock,
+ * expiry is done by a single thread that ticks round the wheel. Timeouts fire at most one
+ * tick late, the tasks are run on the timer thread so they should be quick (or hand off).
+ */
+public class HashedWheelTimer {
+
+	private static final Logger log = LoggerFactory.getLogger(HashedWheelTimer.class);
+
+	private static final int MAX_TRANSFERS_PER_TICK = 100000;
+
+	public static interface Timeout {
+		boolean cancel();
+		boolean isCancelled();
+		boolean isExpired();
+	}
+
+	private static final int INIT = 0, CANCELLED = 1, EXPIRED = 2;
+
+	private static class WheelTimeout implements Timeout {
+
+		private final AtomicInteger state = new AtomicInteger(INIT);
+		private final Runnable task;
+		private final long deadline;
+		private long remainingRounds;
+
+		WheelTimeout(Runnable task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		@Override
+		public boolean cancel() {
+			return state.compareAndSet(INIT, CANCELLED);
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return state.get() == CANCELLED;
+		}
+
+		@Override
+		public boolean isExpired() {
+			return state.get() == EXPIRED;
+		}
+
+		void expire() {
+			if (!state.compareAndSet(INIT, EXPIRED)) return;
+			try {
+				task.run();
+			} catch (Throwable t) {
+				log.warn("timeout task threw exception", t);
+			}
+		}
+
+	}
+
+	private final long tickNanos;
+	private final int mask;
+	private final List<List<WheelTimeout>> wheel;
+	private final Queue<WheelTimeout> incoming = new ConcurrentLinkedQueue<>();
+	private final long startTime = System.nanoTime();
+	private final Thread worker;
+
+	private volatile boolean stopped;
+
+	public HashedWheelTimer(String name, long tickDuration, TimeUnit unit, int ticksPerWheel) {
+		checkArgument(tickDuration > 0, "tick duration must be > 0");
+		checkArgument(ticksPerWheel > 0 && Integer.bitCount(ticksPerWheel) == 1, "ticks per wheel must be a power of 2");
+		this.tickNanos = unit.toNanos(tickDuration);
+		this.mask = ticksPerWheel - 1;
+		this.wheel = new ArrayList<>(ticksPerWheel);
+		for (int i = 0; i < ticksPerWheel; i++) {
+			wheel.add(new ArrayList<>());
+		}
+		worker = new DaemonThreadFactory(name).newThread(this::work);
+		worker.start();
+	}
+
+	public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+		WheelTimeout timeout = new WheelTimeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+		incoming.add(timeout);
+		return timeout;
+	}
+
+	public void shutdown() {
+		stopped = true;
+		worker.interrupt();
+	}
+
+	private void work() {
+		long tick = 0;
+		while (!stopped) {
+			long deadline = tickNanos * (tick + 1);
+			if (!waitUntil(deadline)) return;
+			transferIncoming(tick);
+			expire(wheel.get((int) (tick & mask)), deadline);
+			tick++;
+		}
+	}
+
+	private boolean waitUntil(long deadline) {
+		while (true) {
+			long sleepNanos = deadline - (System.nanoTime() - startTime);
+			if (sleepNanos <= 0) return true;
+			try {
+				TimeUnit.NANOSECONDS.sleep(sleepNanos);
+			} catch (InterruptedException e) {
+				if (stopped) return false;
+			}
+		}
+	}
+
+	private void transferIncoming(long tick) {
+		for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+			WheelTimeout timeout = incoming.poll();
+			if (timeout == null) break;
+			if (timeout.isCancelled()) continue;
+			long calculated = timeout.deadline / tickNanos;
+			timeout.remainingRounds = (calculated - tick) / wheel.size();
+			long ticks = Math.max(calculated, tick); // don't schedule into the past
+			wheel.get((int) (ticks & mask)).add(timeout);
+		}
+	}
+
+	private static void expire(List<WheelTimeout> bucket, long deadline) {
+		int kept = 0;
+		for (int i = 0; i < bucket.size(); i++) {
+			WheelTimeout timeout = bucket.get(i);
+			if (timeout.isCancelled()) continue;
+			if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline) {
+				timeout.expire();
+			} else {
+				if (timeout.remainingRounds > 0) timeout.remainingRounds--;
+				bucket.set(kept++, timeout);
+			}
+		}
+		for (int i = bucket.size() - 1; i >= kept; i--) {
+			bucket.remove(i);
+		}
+	}
+
+}
@@ -18,13 +18,11 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
-import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
 import com.google.common.hash.Hasher;
 import com.google.common.io.BaseEncoding;
@@ -32,15 +30,11 @@ import com.google.common.io.BaseEncoding;
 public class Path implements Iterable<Path.PathElement>, Comparable<Path>, Hashable {
 
 	private static final BaseEncoding HEX = BaseEncoding.base16();
-	private static final Pattern INDEX_MATCHER = Pattern.compile("^([^\\[\\]]*)\\[([0-9]+|\\+)?\\]$");
-
-	private static final Pattern DOT_SCANNER = Pattern.compile("(?:[^\\\\])\\.+");
-
-	private static final Splitter slashSplitter = Splitter.on("/").omitEmptyStrings();
 	private static final Joiner slashJoiner = Joiner.on("/").skipNulls();
 	
 	private final PathElement[] elements;
 	private final int size;
+	private int hash; // lazily calculated, like String
 	
 	public static Path fromURL(String url) {
 		Path.Builder builder = newBuilder();
@@ -337,7 +331,12 @@ public class Path implements Iterable<Path.PathElement>, Comparable<Path>, Hasha
 	
 	@Override
 	public int hashCode() {
-		return Arrays.hashCode(toArray());
+		int h = hash;
+		if (h == 0 && size > 0) {
+			h = Arrays.hashCode(elements);
+			hash = h;
+		}
+		return h;
 	}
 
 	@Override
@@ -348,6 +347,7 @@ public class Path implements Iterable<Path.PathElement>, Comparable<Path>, Hasha
 		Path other = (Path) obj;
 		
 		if (other.size != size) return false;
+		if (hash != 0 && other.hash != 0 && hash != other.hash) return false;
 		
 		for (int i = 0; i < size; i++) {
 			if (!elements[i].equals(other.elements[i])) {
@@ -396,6 +396,10 @@ public class Path implements Iterable<Path.PathElement>, Comparable<Path>, Hasha
 			public static final Path IF_NONE_MATCH 	= HEADERS.add("If-None-Match");
 			public static final Path AUTHORIZATION 	= HEADERS.add("Authorization");
 			public static final Path ACCEPT 		= HEADERS.add("Accept");
+			public static final Path ACCEPT_ENCODING = HEADERS.add("Accept-Encoding");
+			public static final Path IF_MODIFIED_SINCE = HEADERS.add("If-Modified-Since");
+			public static final Path RANGE 			= HEADERS.add("Range");
+			public static final Path IF_RANGE 		= HEADERS.add("If-Range");
 		}
 		public static final class Params {
 			public static final Path PRETTY = PARAMS.add("pretty");
@@ -414,65 +418,129 @@ public class Path implements Iterable<Path.PathElement>, Comparable<Path>, Hasha
 			public static final Path CONTENT_TYPE 		 = HEADERS.add("Content-Type");
 			public static final Path CONTENT_DISPOSITION = HEADERS.add("Content-Disposition");
 			public static final Path CONTENT_LENGTH 	 = HEADERS.add("Content-Length");
+			public static final Path CONTENT_ENCODING 	 = HEADERS.add("Content-Encoding");
+			public static final Path VARY 				 = HEADERS.add("Vary");
+			public static final Path LAST_MODIFIED 		 = HEADERS.add("Last-Modified");
+			public static final Path ACCEPT_RANGES 		 = HEADERS.add("Accept-Ranges");
 			public static final Path ETAG 				 = HEADERS.add("ETag");
 			public static final Path LINK 				 = HEADERS.add("Link");
 			public static final Path EXPIRES 			 = HEADERS.add("Expires");
 			public static final Path CACHE_CONTROL 		 = HEADERS.add("Cache-Control");
 			public static final Path WWW_AUTHENTICATE 	 = HEADERS.add("WWW-Authenticate");
+			public static final Path RETRY_AFTER 		 = HEADERS.add("Retry-After");
 		}
 	}
 	
 	public static Path slashes(String value) {
-		return fromStringWithSplitter(value, slashSplitter);
+		if (value == null || value.isEmpty()) return EMPTY_PATH;
+		Path cached = SLASHES_CACHE.get(value);
+		if (cached != null) return cached;
+		List<PathElement> elements = new ArrayList<>();
+		int len = value.length();
+		int pos = 0;
+		while (pos < len) {
+			int next = value.indexOf('/', pos);
+			if (next == -1) next = len;
+			if (next > pos) {
+				addElementTo(value.substring(pos, next), elements);
+			}
+			pos = next + 1;
+		}
+		return intern(SLASHES_CACHE, value, elements.isEmpty() ? EMPTY_PATH : new Path(toArray(elements)));
 	}
 	
+	/*
+	 * Splits on runs of dots that aren't escaped with a backslash, e.g. "a.b\\.c..d" is
+	 * [a, b.c, d]. A dot only separates if there's a character before it that isn't a
+	 * backslash, so a leading dot stays part of the first element.
+	 */
 	public static Path dots(String value) {
+		Path cached = DOTS_CACHE.get(value);
+		if (cached != null) return cached;
 		
 		List<PathElement> elements = new ArrayList<>();
-		Matcher m = DOT_SCANNER.matcher(value);
+		int len = value.length();
 		int pos = 0;
-		while (m.find()) {
-			String segment = value.substring(pos, m.start() + 1);
-			addElementTo(segment.replaceAll("\\\\", ""), elements);
-			pos = m.end();
+		int i = pos;
+		while (i + 1 < len) {
+			if (value.charAt(i) != '\\' && value.charAt(i + 1) == '.') {
+				addElementTo(unescape(value, pos, i + 1), elements);
+				i += 2;
+				while (i < len && value.charAt(i) == '.') i++;
+				pos = i;
+			} else {
+				i++;
+			}
 		}
 		
-		if (pos < value.length()) {
-			addElementTo(value.substring(pos, value.length()).replaceAll("\\\\", ""), elements);
+		if (pos < len) {
+			addElementTo(unescape(value, pos, len), elements);
 		}
 		
-		return new Path(elements.toArray(new PathElement[elements.size()]));
+		return intern(DOTS_CACHE, value, new Path(toArray(elements)));
 	}
 	
+	private static String unescape(String value, int from, int to) {
+		int escape = value.indexOf('\\', from);
+		if (escape == -1 || escape >= to) return value.substring(from, to);
+		StringBuilder sb = new StringBuilder(to - from);
+		for (int i = from; i < to; i++) {
+			char c = value.charAt(i);
+			if (c != '\\') sb.append(c);
+		}
+		return sb.toString();
+	}
+	
+	// name, name[n], name[], name[+], [n], [] or [+]
 	private static void addElementTo(String element, Collection<PathElement> elements) {
-		Matcher matcher = INDEX_MATCHER.matcher(element);
-		if (matcher.matches()) {
-			String firstbit = matcher.group(1);
-			if (firstbit != null && !"".equals(firstbit)) {
-				elements.add(PathElements.name(firstbit));
-			}
-			String indexStr = matcher.group(2);
-			if ("+".equals(indexStr) || indexStr == null) {
-				elements.add(PathElements.nextIndex());
-			} else {
-				elements.add(PathElements.index(Integer.parseInt(indexStr)));
+		int len = element.length();
+		if (len > 1 && element.charAt(len - 1) == ']') {
+			int open = element.indexOf('[');
+			if (open != -1 && element.indexOf('[', open + 1) == -1 && element.indexOf(']') == len - 1) {
+				if (open + 1 == len - 1 || (open + 2 == len - 1 && element.charAt(open + 1) == '+')) {
+					if (open > 0) elements.add(PathElements.name(element.substring(0, open)));
+					elements.add(PathElements.nextIndex());
+					return;
+				} else if (isDigits(element, open + 1, len - 1)) {
+					if (open > 0) elements.add(PathElements.name(element.substring(0, open)));
+					elements.add(PathElements.index(Integer.parseInt(element.substring(open + 1, len - 1))));
+					return;
+				}
 			}
-		} else {
-			elements.add(PathElements.name(element));
 		}
+		elements.add(PathElements.name(element));
 	}
 	
-	private static Path fromStringWithSplitter(String value, Splitter splitter) {
-		if (value == null || value.isEmpty()) {
-			return EMPTY_PATH;
-		} else {
-			String[] items = Iterables.toArray(splitter.split(value), String.class);
-			if (items.length == 0) {
-				return EMPTY_PATH;
-			} else {
-				return new Path(parse(items));
-			}
+	private static boolean isDigits(String value, int from, int to) {
+		if (from >= to) return false;
+		for (int i = from; i < to; i++) {
+			char c = value.charAt(i);
+			if (c < '0' || c > '9') return false;
+		}
+		return true;
+	}
+	
+	private static PathElement[] toArray(List<PathElement> elements) {
+		return elements.toArray(new PathElement[elements.size()]);
+	}
+	
+	/*
+	 * The same few path strings get parsed over and over (config, request params, templated
+	 * paths) so we keep the parsed paths around. Paths are immutable so sharing is fine.
+	 * It's bounded by just starting again when it gets full, and long strings aren't kept.
+	 */
+	private static final int INTERN_MAX_ENTRIES = 4096;
+	private static final int INTERN_MAX_LENGTH = 128;
+	
+	private static final Map<String,Path> DOTS_CACHE = new ConcurrentHashMap<>();
+	private static final Map<String,Path> SLASHES_CACHE = new ConcurrentHashMap<>();
+	
+	private static Path intern(Map<String,Path> cache, String value, Path path) {
+		if (value.length() <= INTERN_MAX_LENGTH) {
+			if (cache.size() >= INTERN_MAX_ENTRIES) cache.clear();
+			cache.put(value, path);
 		}
+		return path;
 	}
 	
 	private static PathElement[] parse(String[] items) {
@@ -484,7 +552,7 @@ public class Path implements Iterable<Path.PathElement>, Comparable<Path>, Hasha
 			}
 		}
 		
-		return elements.toArray(new PathElement[elements.size()]);
+		return toArray(elements);
 	}
 	
 	public static Path empty() {
@@ -0,0 +1,58 @@
+package reka.util;
+
+import static reka.config.configurer.Configurer.Preconditions.checkConfig;
+import static reka.config.configurer.Configurer.Preconditions.invalidConfig;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// durations and sizes as people write them in config, e.g. 30s, 500ms, 512kb, 10mb
+public class Units {
+
+	private static final Pattern DURATION = Pattern.compile("^([0-9]+(?:\\.[0-9]+)?)\\s*(ms|s|m|h)?$");
+	private static final Pattern SIZE = Pattern.compile("^([0-9]+)\\s*(b|kb|mb|gb)?$", Pattern.CASE_INSENSITIVE);
+
+	// in milliseconds, a plain number is taken as milliseconds
+	public static long parseDuration(String val) {
+		Matcher m = DURATION.matcher(val.trim());
+		if (!m.matches()) invalidConfig("invalid duration [%s], try something like 30s or 500ms", val);
+		double n = Double.valueOf(m.group(1));
+		String unit = m.group(2) != null ? m.group(2) : "ms";
+		switch (unit) {
+		case "h":
+			return Math.round(n * 1000 * 60 * 60);
+		case "m":
+			return Math.round(n * 1000 * 60);
+		case "s":
+			return Math.round(n * 1000);
+		default:
+			return Math.round(n);
+		}
+	}
+
+	// in bytes, a plain number is taken as bytes
+	public static long parseSize(String val) {
+		Matcher m = SIZE.matcher(val.trim());
+		if (!m.matches()) invalidConfig("invalid size [%s], try something like 512kb or 10mb", val);
+		long n = Long.valueOf(m.group(1));
+		String unit = m.group(2) != null ? m.group(2).toLowerCase() : "b";
+		switch (unit) {
+		case "gb":
+			return n * 1024 * 1024 * 1024;
+		case "mb":
+			return n * 1024 * 1024;
+		case "kb":
+			return n * 1024;
+		default:
+			return n;
+		}
+	}
+
+	// for sizes that end up as an int, such as buffer sizes and frame lengths
+	public static int parseIntSize(String val) {
+		long size = parseSize(val);
+		checkConfig(size <= Integer.MAX_VALUE, "size [%s] is too big, it must be less than 2gb", val);
+		return (int) size;
+	}
+
+}
@@ -0,0 +1,98 @@
+package reka.app.manager;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static reka.util.Path.slashes;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import reka.app.manager.DeployLanes.AsyncApplicationTask;
+import reka.app.manager.DeployLanes.TaskResult;
+
+// in the same package as DeployLanes is package private
+public class DeployLanesTest {
+
+	// runs what the lanes hand it when we say so
+	private final Deque<Runnable> executor = new ArrayDeque<>();
+
+	private final List<String> started = new ArrayList<>();
+	private final Map<String,TaskResult> results = new HashMap<>();
+
+	@Test
+	public void tasksForOneAppRunInOrderOneAtATime() {
+		DeployLanes lanes = new DeployLanes(executor::add, 4);
+		lanes.submit(slashes("a"), task("a1"));
+		lanes.submit(slashes("a"), task("a2"));
+		lanes.submit(slashes("b"), task("b1"));
+		runAll();
+		assertEquals(asList("a1", "b1"), started);
+
+		results.get("a1").complete();
+		runAll();
+		assertEquals(asList("a1", "b1", "a2"), started);
+	}
+
+	@Test
+	public void atMostParallelismAtOnceIncludingTheAsyncPart() {
+		DeployLanes lanes = new DeployLanes(executor::add, 2);
+		lanes.submit(slashes("a"), task("a"));
+		lanes.submit(slashes("b"), task("b"));
+		lanes.submit(slashes("c"), task("c"));
+		runAll();
+		assertEquals(asList("a", "b"), started);
+
+		results.get("b").completeExceptionally(new RuntimeException("failed"));
+		runAll();
+		assertEquals(asList("a", "b", "c"), started);
+
+		// a lane that's emptied out can be used again
+		results.get("a").complete();
+		lanes.submit(slashes("a"), task("a again"));
+		runAll();
+		assertEquals(asList("a", "b", "c", "a again"), started);
+	}
+
+	@Test
+	public void failingOrDoubleCompletingTasksOnlyFreeTheirSlotOnce() {
+		DeployLanes lanes = new DeployLanes(executor::add, 1);
+		lanes.submit(slashes("x"), res -> {
+			started.add("x");
+			res.complete();
+			res.completeExceptionally(new RuntimeException("again"));
+		});
+		lanes.submit(slashes("y"), res -> {
+			started.add("y");
+			throw new RuntimeException("oops");
+		});
+		lanes.submit(slashes("z"), task("z"));
+		lanes.submit(slashes("w"), task("w"));
+		runAll();
+		assertEquals(asList("x", "y", "z"), started);
+
+		results.get("z").complete();
+		runAll();
+		assertEquals(asList("x", "y", "z", "w"), started);
+	}
+
+	private AsyncApplicationTask task(String name) {
+		return res -> {
+			started.add(name);
+			results.put(name, res);
+		};
+	}
+
+	private void runAll() {
+		Runnable r;
+		while ((r = executor.poll()) != null) {
+			r.run();
+		}
+	}
+
+}
@@ -0,0 +1,117 @@
+package reka.app.manager;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import reka.data.MutableData;
+import reka.module.setup.ModuleStatusReport;
+import reka.module.setup.StatusDataProvider;
+import reka.module.setup.StatusProvider;
+
+// in the same package as StatusTracker is package private
+public class StatusTrackerTest {
+
+	private static class Source implements StatusDataProvider {
+
+		private final long pollInterval;
+
+		private volatile long revision;
+		private volatile String value = "a";
+		private volatile int built;
+
+		Source(long revision, long pollInterval) {
+			this.revision = revision;
+			this.pollInterval = pollInterval;
+		}
+
+		@Override
+		public boolean up() {
+			return true;
+		}
+
+		@Override
+		public void statusData(MutableData data) {
+			built++;
+			data.putString("value", value);
+		}
+
+		@Override
+		public long revision() {
+			return revision;
+		}
+
+		@Override
+		public long pollInterval() {
+			return pollInterval;
+		}
+
+	}
+
+	@Test
+	public void reportsAreSortedByName() {
+		StatusTracker tracker = new StatusTracker(asList(
+			StatusProvider.create("b", "b", "1"),
+			StatusProvider.create("a", "a", "1")));
+		List<ModuleStatusReport> reports = tracker.current();
+		assertEquals("a", reports.get(0).name());
+		assertEquals("b", reports.get(1).name());
+	}
+
+	@Test
+	public void onlyRebuildsWhenTheRevisionMoves() {
+		Source source = new Source(0, 0);
+		StatusTracker tracker = new StatusTracker(asList(StatusProvider.create("cache", "cache", "1", source)));
+		assertEquals(1, source.built);
+
+		source.value = "b";
+		assertFalse(tracker.update());
+		assertEquals(1, source.built);
+		assertEquals("a", value(tracker));
+
+		source.revision++;
+		assertTrue(tracker.update());
+		assertEquals(2, source.built);
+		assertEquals("b", value(tracker));
+
+		// rebuilt, but it's the same so nothing changed
+		List<ModuleStatusReport> current = tracker.current();
+		source.revision++;
+		assertFalse(tracker.update());
+		assertEquals(3, source.built);
+		assertSame(current, tracker.current());
+	}
+
+	@Test
+	public void withoutARevisionRebuildsEveryPoll() {
+		Source source = new Source(StatusDataProvider.NO_REVISION, 0);
+		StatusTracker tracker = new StatusTracker(asList(StatusProvider.create("cache", "cache", "1", source)));
+		assertFalse(tracker.update());
+		assertFalse(tracker.update());
+		assertEquals(3, source.built);
+		source.value = "b";
+		assertTrue(tracker.update());
+		assertEquals("b", value(tracker));
+	}
+
+	@Test
+	public void waitsForThePollInterval() {
+		Source source = new Source(StatusDataProvider.NO_REVISION, 60_000);
+		StatusTracker tracker = new StatusTracker(asList(StatusProvider.create("cache", "cache", "1", source)));
+		source.value = "b";
+		assertFalse(tracker.update());
+		assertEquals(1, source.built);
+		assertEquals("a", value(tracker));
+	}
+
+	private static String value(StatusTracker tracker) {
+		return tracker.current().get(0).data().getString("value").get();
+	}
+
+}
@@ -0,0 +1,146 @@
+package reka.modules.filesystem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import reka.data.MutableData;
+import reka.data.content.Content;
+import reka.data.memory.MutableMemoryData;
+import reka.util.Path.Request;
+import reka.util.Path.Response;
+
+// in the same package as FileCache is package private
+public class FileCacheTest {
+
+	private Path dir;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("reka-file-cache");
+	}
+
+	@After
+	public void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			files.forEach(file -> file.toFile().delete());
+		}
+		Files.deleteIfExists(dir);
+	}
+
+	@Test
+	public void cachesSmallFilesOnly() throws IOException {
+		FileCache cache = new FileCache(1024, 100, path -> "text/plain");
+		Path small = write("small.txt", 50);
+		Path big = write("big.txt", 101);
+
+		FileCache.Entry entry = cache.get(small);
+		assertNotNull(entry);
+		assertEquals(50, entry.size);
+		assertEquals("text/plain", entry.contentType);
+		assertSame(entry, cache.get(small));
+
+		assertNull(cache.get(big));
+		assertNull(cache.get(dir.resolve("missing.txt")));
+	}
+
+	@Test
+	public void eachGetHasItsOwnBufferPosition() throws IOException {
+		FileCache cache = new FileCache(1024, 1024, path -> "text/plain");
+		Path file = write("file.txt", 10);
+		ByteBuffer first = cache.get(file).buffer();
+		first.get(new byte[10]);
+		assertEquals(10, cache.get(file).buffer().remaining());
+	}
+
+	@Test
+	public void reloadsChangedFilesOnceTheCheckIntervalIsUp() throws IOException, InterruptedException {
+		FileCache cache = new FileCache(1024, 1024, path -> "text/plain");
+		Path file = write("file.txt", 10);
+		FileCache.Entry entry = cache.get(file);
+
+		Files.write(file, new byte[20]);
+		Files.setLastModifiedTime(file, FileTime.fromMillis(entry.modified + 5000));
+
+		// not looked at again within a second
+		assertSame(entry, cache.get(file));
+
+		Thread.sleep(1100);
+		FileCache.Entry reloaded = cache.get(file);
+		assertNotSame(entry, reloaded);
+		assertEquals(20, reloaded.size);
+		assertFalse(entry.etag.equals(reloaded.etag));
+
+		// unchanged, so after the next check it's the same one
+		Thread.sleep(1100);
+		assertSame(reloaded, cache.get(file));
+
+		// and gone once the file is
+		Thread.sleep(1100);
+		Files.delete(file);
+		assertNull(cache.get(file));
+	}
+
+	@Test
+	public void evictsTheLeastRecentlyUsed() throws IOException, InterruptedException {
+		FileCache cache = new FileCache(100, 100, path -> "text/plain");
+		Path a = write("a.txt", 40);
+		Path b = write("b.txt", 40);
+		Path c = write("c.txt", 40);
+
+		FileCache.Entry entryA = cache.get(a);
+		Thread.sleep(5);
+		FileCache.Entry entryB = cache.get(b);
+		Thread.sleep(5);
+		assertSame(entryA, cache.get(a)); // a is now more recent than b
+		Thread.sleep(5);
+		FileCache.Entry entryC = cache.get(c); // 120 bytes, b has to go
+
+		assertSame(entryA, cache.get(a));
+		assertSame(entryC, cache.get(c));
+		assertNotSame(entryB, cache.get(b));
+	}
+
+	@Test
+	public void cachedReadsLeaveContentLengthToTheHttpLayer() throws IOException {
+		FileCache cache = new FileCache(1024, 1024, path -> "text/css");
+		write("style.css", 30);
+		FilesystemRead read = new FilesystemRead(dir, data -> Response.CONTENT, data -> "style.css", false, cache);
+
+		MutableData data = MutableMemoryData.create();
+		read.call(data, null);
+		// otherwise it doesn't get compressed
+		assertFalse(data.existsAt(Response.Headers.CONTENT_LENGTH));
+		assertEquals(30, data.getContent(Response.CONTENT).get().asByteBuffer().remaining());
+		String etag = data.getString(Response.Headers.ETAG).get();
+
+		MutableData again = MutableMemoryData.create();
+		again.putString(Request.Headers.IF_NONE_MATCH, etag);
+		read.call(again, null);
+		assertEquals(304, again.getContent(Response.STATUS).get().asInt());
+		assertEquals(Content.Type.NULL, again.getContent(Response.CONTENT).get().type());
+	}
+
+	private Path write(String name, int size) throws IOException {
+		byte[] content = new byte[size];
+		for (int i = 0; i < size; i++) {
+			content[i] = (byte) ('a' + i % 10);
+		}
+		return Files.write(dir.resolve(name), content);
+	}
+
+}
@@ -16,7 +16,9 @@ public class RekaCoreTest extends TestCase {
 	public static TestSuite suite() {
 		return RekaTest.createTestSuiteFrom(null,
 			new File("src/test/resources/reka-tests/builtins.reka"),
-			new File("src/test/resources/reka-tests/json.reka"));
+			new File("src/test/resources/reka-tests/json.reka"),
+			new File("src/test/resources/reka-tests/cache.reka"),
+			new File("src/test/resources/reka-tests/ratelimit.reka"));
 	}
 
 }
\ No newline at end of file
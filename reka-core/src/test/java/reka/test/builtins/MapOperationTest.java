@@ -0,0 +1,73 @@
+package reka.test.builtins;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static reka.flow.builder.OperationFlowNode.asyncOperation;
+import static reka.util.Path.path;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+import reka.flow.Flow;
+import reka.flow.builder.FlowBuilderGroup;
+import reka.flow.ops.AsyncOperation.OperationResult;
+import reka.modules.builtins.MapConfigurer.ErrorPolicy;
+import reka.modules.builtins.MapConfigurer.MapOperation;
+
+public class MapOperationTest {
+
+	@Test
+	public void neverRunsMoreThanTheParallelismAtOnce() throws InterruptedException {
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger most = new AtomicInteger();
+		BlockingQueue<OperationResult> held = new LinkedBlockingQueue<>();
+
+		Flow flow = FlowBuilderGroup.createFlow(path("map"), asyncOperation("hold", (data, ctx, res) -> {
+			most.accumulateAndGet(running.incrementAndGet(), Math::max);
+			held.add(res);
+		}));
+
+		MutableData data = MutableMemoryData.create();
+		data.putList(path("items"), list -> {
+			for (int i = 0; i < 10; i++) {
+				list.addString("item" + i);
+			}
+		});
+
+		CountDownLatch done = new CountDownLatch(1);
+		new MapOperation(flow, path("items"), path("items"), path("item"), path("item"), 3, ErrorPolicy.FAIL)
+			.call(data, null, new OperationResult() {
+
+				@Override
+				public void done() {
+					done.countDown();
+				}
+
+				@Override
+				public void error(Throwable t) {
+					t.printStackTrace();
+				}
+
+			});
+
+		// finish them one at a time, each one finishing lets the next one start
+		for (int i = 0; i < 10; i++) {
+			OperationResult res = held.poll(1, TimeUnit.SECONDS);
+			Thread.sleep(10); // give any extra ones a chance to start
+			running.decrementAndGet();
+			res.done();
+		}
+
+		assertTrue(done.await(1, TimeUnit.SECONDS));
+		assertEquals(3, most.get());
+		assertEquals(10, data.at(path("items")).size());
+	}
+
+}
@@ -0,0 +1,57 @@
+package reka.test.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import reka.data.Data;
+import reka.data.memory.MutableMemoryData;
+import reka.modules.builtins.cache.MemoCache;
+import reka.modules.builtins.cache.MemoCache.Lookup;
+
+import com.google.common.hash.HashCode;
+
+public class MemoCacheTest {
+
+	private static final Lookup IGNORE = new Lookup() {
+		public void hit(Data value) {}
+		public void miss() {}
+		public void error(Throwable t) {}
+	};
+
+	@Test
+	public void revisionOnlyMovesWhenTheEntriesChange() throws InterruptedException {
+		MemoCache cache = new MemoCache(50, 1, 0);
+		HashCode a = HashCode.fromLong(1);
+		HashCode b = HashCode.fromLong(2);
+		Data value = MutableMemoryData.create().putString("a", "b");
+
+		long revision = cache.revision();
+		cache.lookup(a, IGNORE); // a miss
+		cache.fail(a, new RuntimeException());
+		cache.lookup(a, IGNORE);
+		assertEquals(revision, cache.revision());
+
+		cache.complete(a, value); // inserted
+		assertTrue(cache.revision() > revision);
+		revision = cache.revision();
+
+		cache.lookup(a, IGNORE); // a hit
+		assertEquals(revision, cache.revision());
+
+		cache.lookup(b, IGNORE);
+		cache.complete(b, value); // inserted and a is evicted
+		assertTrue(cache.revision() > revision);
+		revision = cache.revision();
+
+		Thread.sleep(100);
+		cache.lookup(b, IGNORE); // expired
+		assertTrue(cache.revision() > revision);
+		revision = cache.revision();
+
+		cache.clear();
+		assertTrue(cache.revision() > revision);
+	}
+
+}
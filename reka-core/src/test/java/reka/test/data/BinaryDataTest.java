@@ -0,0 +1,121 @@
+package reka.test.data;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static reka.data.content.Contents.binary;
+import static reka.data.content.Contents.doubleValue;
+import static reka.util.Path.dots;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.binary.BinaryData;
+import reka.data.binary.BinaryDataReader;
+import reka.data.binary.BinaryDataWriter;
+import reka.data.memory.MutableMemoryData;
+
+public class BinaryDataTest {
+
+	private static MutableData example() {
+		MutableData data = MutableMemoryData.create();
+		data.putMap("person", m -> {
+			m.putString("name", "nick");
+			m.putInt("age", -30);
+			m.putLong("id", 1L << 40);
+			m.put("score", doubleValue(4.5));
+			m.putBool("admin", true);
+			m.putList("interests", l -> {
+				l.addString("swimming");
+				l.addString("cycling");
+			});
+		});
+		data.putList("people", l -> {
+			l.addMap(m -> m.putString("name", "a"));
+			l.addMap(m -> m.putString("name", "b"));
+		});
+		data.put(dots("file"), binary("image/png", new byte[] { 1, 2, 3 }));
+		return data;
+	}
+
+	@Test
+	public void roundTrips() {
+		MutableData data = example();
+		Data decoded = BinaryData.decode(BinaryData.encode(data));
+		assertEquals(data.toJson(), decoded.toJson());
+		assertEquals(-30, decoded.getContent(dots("person.age")).get().asInt());
+		assertEquals(1L << 40, decoded.getContent(dots("person.id")).get().asLong());
+		assertArrayEquals(new byte[] { 1, 2, 3 }, decoded.getContent(dots("file")).get().asBytes());
+	}
+
+	@Test
+	public void isSmallerThanJson() {
+		MutableData data = example();
+		assertTrue(BinaryData.encode(data).length < data.toJson().getBytes(UTF_8).length);
+	}
+
+	@Test
+	public void streams() throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (BinaryDataWriter writer = new BinaryDataWriter(baos)) {
+			for (int i = 0; i < 3; i++) {
+				writer.write(example().putInt("i", i));
+			}
+		}
+		try (BinaryDataReader reader = new BinaryDataReader(new ByteArrayInputStream(baos.toByteArray()))) {
+			for (int i = 0; i < 3; i++) {
+				assertEquals(i, reader.read().get().getContent("i").get().asInt());
+			}
+			assertFalse(reader.read().isPresent());
+		}
+	}
+
+	@Test
+	public void rejectsTruncatedData() {
+		byte[] bytes = BinaryData.encode(example());
+		for (int len = 0; len < bytes.length; len++) {
+			expectInvalid(Arrays.copyOf(bytes, len));
+		}
+	}
+
+	@Test
+	public void rejectsCorruptLengths() {
+		byte v = BinaryData.VERSION;
+		byte[] negative = { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x01 };
+
+		expectInvalid(new byte[] { v, 2, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 3 }); // a list of 2^31 - 1
+		expectInvalid(new byte[] { v, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10 }); // a map of 2^32, 0 as an int
+		expectInvalid(concat(new byte[] { v, 9 }, negative)); // a string of -1
+		expectInvalid(concat(new byte[] { v, 2 }, negative)); // a list of -1
+		expectInvalid(new byte[] { v, 9, 10, 'a', 'b' }); // a string longer than what's left
+		expectInvalid(new byte[] { v, 10, 0, 1, 'x', 0, 5, 1 }); // binary content longer than what's left
+		expectInvalid(new byte[] { v, 10, 0, 1, 'x', 99, 0 }); // an unknown binary encoding
+		expectInvalid(new byte[] { v, 1, 1, 5, 3 }); // a key referring to a string that isn't there
+	}
+
+	private static void expectInvalid(byte[] bytes) {
+		try {
+			BinaryData.decode(bytes);
+			fail("decoded " + Arrays.toString(bytes));
+		} catch (RuntimeException e) {
+			// our own errors, not underflows, index errors or huge allocations
+			assertEquals(Arrays.toString(bytes) + " " + e, RuntimeException.class, e.getClass());
+		}
+	}
+
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] result = Arrays.copyOf(a, a.length + b.length);
+		System.arraycopy(b, 0, result, a.length, b.length);
+		return result;
+	}
+
+}
@@ -0,0 +1,67 @@
+package reka.test.metrics;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import reka.metrics.Histogram;
+
+public class HistogramTest {
+
+	@Test
+	public void recordsIntoTheBucketAtOrAboveTheValue() {
+		Histogram histogram = new Histogram(new long[] { 100, 10 }, 1);
+		histogram.record(5);
+		histogram.record(10); // the bounds are inclusive
+		histogram.record(50);
+		histogram.record(1000);
+
+		assertEquals(4, histogram.count());
+		assertEquals(1065, histogram.sum());
+		assertEquals(10, histogram.quantile(0.5));
+		assertEquals(100, histogram.quantile(0.75));
+		assertEquals(Long.MAX_VALUE, histogram.quantile(1.0));
+	}
+
+	@Test
+	public void emptyQuantileIsZero() {
+		assertEquals(0, Histogram.durations().quantile(0.99));
+	}
+
+	@Test
+	public void exponentialBoundsEndAtTheMax() {
+		Histogram histogram = Histogram.exponential(1, 2, 10, 1);
+		histogram.record(3);
+		assertEquals(4, histogram.quantile(1.0));
+		histogram.record(9);
+		assertEquals(10, histogram.quantile(1.0));
+		histogram.record(11);
+		assertEquals(Long.MAX_VALUE, histogram.quantile(1.0));
+	}
+
+	@Test
+	public void writesCumulativeBucketsScaled() {
+		Histogram histogram = new Histogram(new long[] { 10, 100 }, 0.5);
+		histogram.record(5);
+		histogram.record(50);
+		histogram.record(1000);
+
+		StringBuilder out = new StringBuilder();
+		histogram.write(out, "reka_test", "app=\"x\"");
+		assertEquals(
+			"reka_test_bucket{app=\"x\",le=\"5\"} 1\n" +
+			"reka_test_bucket{app=\"x\",le=\"50\"} 2\n" +
+			"reka_test_bucket{app=\"x\",le=\"+Inf\"} 3\n" +
+			"reka_test_sum{app=\"x\"} 527.5\n" +
+			"reka_test_count{app=\"x\"} 3\n", out.toString());
+
+		out.setLength(0);
+		new Histogram(new long[] { 10 }, 1).write(out, "reka_empty", "");
+		assertEquals(
+			"reka_empty_bucket{le=\"10\"} 0\n" +
+			"reka_empty_bucket{le=\"+Inf\"} 0\n" +
+			"reka_empty_sum 0\n" +
+			"reka_empty_count 0\n", out.toString());
+	}
+
+}
@@ -0,0 +1,128 @@
+package reka.test.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import reka.metrics.Counter;
+import reka.metrics.MetricsRegistry;
+import reka.metrics.MetricsScope;
+
+public class MetricsRegistryTest {
+
+	@Test
+	public void rendersPrometheusText() {
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricsScope module = registry.scope("module", "a\"b\\c", "app", "x");
+		module.counter("reka_things_total", "things\nand more", "kind", "y").add(3);
+		module.counter("reka_things_total", "things\nand more", "kind", "w").increment();
+		registry.scope("app", "x").gauge("reka_level", "a level", () -> 1.5);
+		registry.scope().gauge("reka_flat", "no labels", () -> 2);
+
+		assertEquals(
+			"# HELP reka_flat no labels\n" +
+			"# TYPE reka_flat gauge\n" +
+			"reka_flat 2\n" +
+			"# HELP reka_level a level\n" +
+			"# TYPE reka_level gauge\n" +
+			"reka_level{app=\"x\"} 1.5\n" +
+			"# HELP reka_things_total things\\nand more\n" +
+			"# TYPE reka_things_total counter\n" +
+			"reka_things_total{app=\"x\",kind=\"w\",module=\"a\\\"b\\\\c\"} 1\n" +
+			"reka_things_total{app=\"x\",kind=\"y\",module=\"a\\\"b\\\\c\"} 3\n", registry.toPrometheus());
+	}
+
+	@Test
+	public void sharedMetricsStayUntilEveryScopeHasClosed() {
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricsScope previous = registry.scope("app", "x");
+		MetricsScope next = registry.scope("app", "x");
+
+		Counter counter = previous.counter("reka_requests_total", "requests");
+		assertSame(counter, next.counter("reka_requests_total", "requests"));
+		counter.add(2);
+
+		previous.close();
+		assertEquals(line("reka_requests_total{app=\"x\"} 2"), samples(registry));
+		next.close();
+		assertEquals("", registry.toPrometheus());
+
+		// a closed scope still hands out metrics, they just aren't registered
+		next.counter("reka_requests_total", "requests").increment();
+		assertEquals("", registry.toPrometheus());
+	}
+
+	@Test
+	public void gaugesReplaceWhatIsThere() {
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricsScope previous = registry.scope("app", "x");
+		previous.gauge("reka_level", "a level", () -> 1);
+		registry.scope("app", "x").gauge("reka_level", "a level", () -> 2);
+		assertEquals(line("reka_level{app=\"x\"} 2"), samples(registry));
+	}
+
+	@Test
+	public void deferredScopesOnlyReplaceOnceOpened() {
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricsScope live = registry.deferredScope("app", "x");
+		live.gauge("reka_level", "a level", () -> 1);
+		assertEquals("", registry.toPrometheus());
+		live.open();
+		assertEquals(line("reka_level{app=\"x\"} 1"), samples(registry));
+
+		// a version that fails to build
+		MetricsScope failed = registry.deferredScope("app", "x");
+		failed.gauge("reka_level", "a level", () -> 2);
+		Counter shared = failed.counter("reka_requests_total", "requests"); // shared ones go in straight away
+		shared.increment();
+		assertEquals(line("reka_level{app=\"x\"} 1") + line("reka_requests_total{app=\"x\"} 1"), samples(registry));
+		failed.close();
+		failed.open();
+		assertEquals(line("reka_level{app=\"x\"} 1"), samples(registry));
+
+		// and one that builds
+		MetricsScope next = registry.deferredScope("app", "x");
+		next.gauge("reka_level", "a level", () -> 3);
+		next.open();
+		assertEquals(line("reka_level{app=\"x\"} 3"), samples(registry));
+		live.close();
+		assertEquals(line("reka_level{app=\"x\"} 3"), samples(registry));
+		next.close();
+		assertEquals("", registry.toPrometheus());
+	}
+
+	@Test
+	public void rejectsBadNamesAndMismatches() {
+		MetricsRegistry registry = new MetricsRegistry();
+		MetricsScope scope = registry.scope();
+		expectError(() -> scope.counter("reka-dashes", "bad name"));
+		expectError(() -> registry.scope("bad-label", "x"));
+		expectError(() -> registry.scope("odd"));
+		scope.counter("reka_things_total", "things");
+		expectError(() -> scope.histogram("reka_things_total", "things"));
+	}
+
+	private static String samples(MetricsRegistry registry) {
+		StringBuilder sb = new StringBuilder();
+		for (String line : registry.toPrometheus().split("\n")) {
+			if (!line.isEmpty() && !line.startsWith("#")) sb.append(line).append('\n');
+		}
+		return sb.toString();
+	}
+
+	private static String line(String sample) {
+		return sample + "\n";
+	}
+
+	private static void expectError(Runnable r) {
+		try {
+			r.run();
+			fail("expected an error");
+		} catch (RuntimeException e) {
+			// good
+		}
+	}
+
+}
@@ -0,0 +1,134 @@
+package reka.test.module;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static reka.flow.builder.OperationFlowNode.operation;
+import static reka.util.Path.slashes;
+import static reka.util.Util.runtime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import reka.data.Data;
+import reka.data.MutableData;
+import reka.flow.Flow;
+import reka.flow.builder.FlowBuilderGroup;
+import reka.flow.ops.Subscriber;
+import reka.module.setup.InitializationGraph;
+import reka.util.Path;
+
+public class InitializationGraphTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+	private final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+	private final Map<Path, Flow> flows = new HashMap<>();
+	private final Map<Path, Set<Path>> requires = new HashMap<>();
+
+	@After
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void runsEachModuleOnceAfterTheOnesItUses() throws Exception {
+		module("a");
+		module("b", "a");
+		module("c", "a");
+		module("d", "b", "c");
+
+		run(new InitializationGraph(flows, requires)).get(1, TimeUnit.SECONDS);
+
+		assertEquals(4, ran.size());
+		assertEquals(new HashSet<>(asList("a", "b", "c", "d")), new HashSet<>(ran));
+		assertEquals("a", ran.get(0));
+		assertEquals("d", ran.get(3));
+	}
+
+	@Test
+	public void nothingToInitialize() throws Exception {
+		run(new InitializationGraph(flows, requires)).get(1, TimeUnit.SECONDS);
+		assertTrue(ran.isEmpty());
+	}
+
+	@Test
+	public void stopsStartingModulesOnceOneFails() throws Exception {
+		flows.put(slashes("a"), FlowBuilderGroup.createFlow(slashes("a"), operation("a", (data, ctx) -> {
+			throw runtime("a failed");
+		})));
+		module("b", "a");
+
+		try {
+			run(new InitializationGraph(flows, requires)).get(1, TimeUnit.SECONDS);
+			fail("expected a to fail");
+		} catch (ExecutionException e) {
+			// what we wanted
+		}
+		Thread.sleep(50);
+		assertTrue(ran.isEmpty());
+	}
+
+	@Test
+	public void rejectsModulesThatDependOnEachOther() {
+		module("a");
+		module("b", "a", "d");
+		module("c", "b");
+		module("d", "c");
+		try {
+			new InitializationGraph(flows, requires);
+			fail("expected the cycle to be rejected");
+		} catch (RuntimeException e) {
+			assertTrue(e.getMessage(), e.getMessage().endsWith("b, c, d"));
+		}
+	}
+
+	private void module(String name, String... deps) {
+		Set<Path> required = new HashSet<>();
+		for (String dep : deps) {
+			required.add(slashes(dep));
+		}
+		flows.put(slashes(name), FlowBuilderGroup.createFlow(slashes(name), operation(name, (data, ctx) -> {
+			ran.add(name);
+		})));
+		requires.put(slashes(name), required);
+	}
+
+	private CompletableFuture<Void> run(InitializationGraph graph) {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		graph.run(executor, new Subscriber() {
+
+			@Override
+			public void ok(MutableData data) {
+				future.complete(null);
+			}
+
+			@Override
+			public void halted() {
+				future.completeExceptionally(runtime("halted"));
+			}
+
+			@Override
+			public void error(Data data, Throwable t) {
+				future.completeExceptionally(t);
+			}
+
+		});
+		return future;
+	}
+
+}
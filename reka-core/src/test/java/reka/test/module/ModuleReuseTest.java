@@ -0,0 +1,113 @@
+package reka.test.module;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static reka.util.Path.slashes;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+import reka.app.IdentityAndVersion;
+import reka.config.Config;
+import reka.config.configurer.annotations.Conf;
+import reka.config.parser.ConfigParser;
+import reka.identity.ConcurrentIdentityStore;
+import reka.identity.Identity;
+import reka.identity.IdentityStore;
+import reka.module.ModuleInfo;
+import reka.module.RootModule;
+import reka.module.setup.AppSetup;
+import reka.module.setup.ApplicationSetup;
+import reka.module.setup.ModuleConfigurer;
+import reka.util.Path;
+
+public class ModuleReuseTest {
+
+	public static class TestModule extends ModuleConfigurer {
+
+		private final boolean reuse;
+		private final boolean initialize;
+
+		TestModule(boolean reuse, boolean initialize) {
+			this.reuse = reuse;
+			this.initialize = initialize;
+		}
+
+		@Conf.At("value")
+		public void value(String val) {
+			// only here to go in the config hash
+		}
+
+		@Override
+		public void setup(AppSetup app) {
+			if (reuse) app.reuseWhenUnchanged();
+			if (initialize) app.onDeploy(init -> init.run("initialize", () -> {}));
+		}
+
+	}
+
+	private static final List<ModuleInfo> MODULES = asList(
+		new ModuleInfo(slashes("reusable"), "1.0", () -> new TestModule(true, true)),
+		new ModuleInfo(slashes("plain"), "1.0", () -> new TestModule(false, true)),
+		new ModuleInfo(slashes("nothing-to-initialize"), "1.0", () -> new TestModule(true, false)));
+
+	private static final Identity IDENTITY = Identity.create("module-reuse-test");
+
+	@Test
+	public void unchangedModulesAreReused() {
+		String config = "reusable a {\n value 1\n}\nreusable b {\n use a\n value 2\n}";
+		ApplicationSetup first = setup(config, Collections.emptyMap());
+		assertEquals(set("a", "b"), first.hashes.keySet());
+		assertEquals(set(), first.reused);
+
+		ApplicationSetup second = setup(config, first.hashes);
+		assertEquals(first.hashes, second.hashes);
+		assertEquals(set("a", "b"), second.reused);
+	}
+
+	@Test
+	public void changesGoUpToTheModulesThatUseThem() {
+		ApplicationSetup first = setup("reusable a {\n value 1\n}\nreusable b {\n use a\n value 2\n}\nreusable c {\n value 3\n}", Collections.emptyMap());
+		ApplicationSetup second = setup("reusable a {\n value changed\n}\nreusable b {\n use a\n value 2\n}\nreusable c {\n value 3\n}", first.hashes);
+		assertNotEquals(first.hashes.get(slashes("a")), second.hashes.get(slashes("a")));
+		assertNotEquals(first.hashes.get(slashes("b")), second.hashes.get(slashes("b")));
+		assertEquals(set("c"), second.reused);
+	}
+
+	@Test
+	public void notReusedIfSomethingItUsesIsInitializedAgain() {
+		String config = "plain p {\n value 1\n}\nreusable b {\n use p\n value 2\n}\nnothing-to-initialize n {\n value 3\n}";
+		ApplicationSetup first = setup(config, Collections.emptyMap());
+		assertEquals(set("b"), first.hashes.keySet()); // p doesn't opt in, n has nothing to keep
+
+		ApplicationSetup second = setup(config, first.hashes);
+		assertEquals(first.hashes, second.hashes);
+		assertEquals(set(), second.reused);
+	}
+
+	private static ApplicationSetup setup(String config, Map<Path,String> previousHashes) {
+		RootModule root = new RootModule(null, MODULES);
+		for (Config module : ConfigParser.fromString(config)) {
+			root.useThisConfig(module);
+		}
+		Map<Path,IdentityStore> stores = new HashMap<>();
+		root.modulePaths().forEach(path -> stores.put(path, ConcurrentIdentityStore.create()));
+		return ModuleConfigurer.setup(IdentityAndVersion.create(IDENTITY, 1), root, stores, previousHashes);
+	}
+
+	private static Set<Path> set(String... paths) {
+		Set<Path> result = new HashSet<>();
+		for (String path : paths) {
+			result.add(slashes(path));
+		}
+		return result;
+	}
+
+}
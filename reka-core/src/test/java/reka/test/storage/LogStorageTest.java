@@ -0,0 +1,127 @@
+package reka.test.storage;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import reka.data.storage.DataStorage;
+import reka.data.storage.LogStorage;
+import reka.data.storage.StripedMemoryStorage;
+
+public class LogStorageTest {
+
+	private Path dir;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("reka-log-storage");
+	}
+
+	@After
+	public void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			files.forEach(file -> file.toFile().delete());
+		}
+		Files.deleteIfExists(dir);
+	}
+
+	private static byte[] b(String val) {
+		return val.getBytes(UTF_8);
+	}
+
+	@Test
+	public void canAddAndRemove() throws IOException {
+		try (LogStorage storage = new LogStorage(dir, 1024, false)) {
+			checkAddAndRemove(storage);
+		}
+	}
+
+	@Test
+	public void stripedCanAddAndRemove() throws IOException {
+		checkAddAndRemove(new StripedMemoryStorage(4));
+	}
+
+	private void checkAddAndRemove(DataStorage storage) {
+		assertTrue(storage.createCommit().add(b("a"), b("1")).add(b("b"), b("2")).commit());
+		assertArrayEquals(b("1"), storage.get(b("a")));
+		assertArrayEquals(b("2"), storage.get(b("b")));
+		assertTrue(storage.createCommit().remove(b("a")).add(b("b"), b("3")).commit());
+		assertNull(storage.get(b("a")));
+		assertArrayEquals(b("3"), storage.get(b("b")));
+	}
+
+	@Test
+	public void recoversAfterReopening() throws IOException {
+		try (LogStorage storage = new LogStorage(dir, 256, true)) {
+			for (int i = 0; i < 100; i++) {
+				storage.createCommit().add(b("key" + i), b("value" + i)).commit();
+			}
+			storage.createCommit().remove(b("key5")).commit();
+		}
+		try (LogStorage storage = new LogStorage(dir, 256, true)) {
+			assertEquals(99, storage.size());
+			assertArrayEquals(b("value42"), storage.get(b("key42")));
+			assertNull(storage.get(b("key5")));
+		}
+	}
+
+	@Test
+	public void discardsTornWriteAtTheEnd() throws IOException {
+		try (LogStorage storage = new LogStorage(dir, 1024 * 1024, true)) {
+			storage.createCommit().add(b("a"), b("1")).commit();
+			storage.createCommit().add(b("b"), b("2")).commit();
+		}
+		Path segment;
+		try (Stream<Path> files = Files.list(dir)) {
+			segment = files.findFirst().get();
+		}
+		try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 3);
+		}
+		try (LogStorage storage = new LogStorage(dir, 1024 * 1024, true)) {
+			assertArrayEquals(b("1"), storage.get(b("a")));
+			assertNull(storage.get(b("b")));
+			storage.createCommit().add(b("c"), b("3")).commit();
+		}
+		try (LogStorage storage = new LogStorage(dir, 1024 * 1024, true)) {
+			assertArrayEquals(b("3"), storage.get(b("c")));
+		}
+	}
+
+	@Test
+	public void compactionKeepsLiveEntries() throws IOException {
+		try (LogStorage storage = new LogStorage(dir, 512, false)) {
+			for (int round = 0; round < 20; round++) {
+				for (int i = 0; i < 10; i++) {
+					storage.createCommit().add(b("key" + i), b("value" + i + "-" + round)).commit();
+				}
+			}
+			storage.createCommit().remove(b("key3")).commit();
+			long before = Files.list(dir).count();
+			storage.compact();
+			long after = Files.list(dir).count();
+			assertTrue(after < before);
+			assertArrayEquals(b("value7-19"), storage.get(b("key7")));
+			assertNull(storage.get(b("key3")));
+		}
+		try (LogStorage storage = new LogStorage(dir, 512, false)) {
+			assertEquals(9, storage.size());
+			assertArrayEquals(b("value0-19"), storage.get(b("key0")));
+			assertNull(storage.get(b("key3")));
+		}
+	}
+
+}
@@ -0,0 +1,163 @@
+package reka.test.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import reka.EventLogger;
+import reka.EventLogger.Event;
+import reka.data.memory.MutableMemoryData;
+
+public class EventLoggerTest {
+
+	// each event is about 45 bytes so these give a handful per segment and a couple per index entry
+	private static final long SEGMENT_BYTES = 200;
+	private static final int INDEX_INTERVAL = 64;
+
+	private static final long FOREVER = TimeUnit.DAYS.toMillis(365);
+	private static final long FLUSH_INTERVAL = 50;
+
+	private Path dir;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("reka-event-logger");
+	}
+
+	@After
+	public void deleteDir() throws IOException {
+		try (Stream<Path> files = Files.list(dir)) {
+			files.forEach(file -> file.toFile().delete());
+		}
+		Files.deleteIfExists(dir);
+	}
+
+	@Test
+	public void rollsSegmentsAndDeletesThemPastTheRetainedSize() {
+		try (EventLogger events = new EventLogger(dir, SEGMENT_BYTES, FOREVER, 500, FOREVER, INDEX_INTERVAL, FLUSH_INTERVAL)) {
+			write(events, 60);
+			List<String> logs = files(".log");
+			assertTrue("segments " + logs, logs.size() >= 2 && logs.size() <= 4);
+			assertEquals(logs.size(), files(".idx").size());
+
+			// what's left is contiguous up to the end and starts where the oldest segment does
+			List<Long> eids = eids(events.since(-1, 1000));
+			assertEquals(format(eids.get(0)), logs.get(0));
+			assertEquals(range(eids.get(0), 59), eids);
+			assertTrue(eids.get(0) > 0);
+		}
+	}
+
+	@Test
+	public void deletesSegmentsPastTheRetainedAge() {
+		try (EventLogger events = new EventLogger(dir, SEGMENT_BYTES, FOREVER, Long.MAX_VALUE, 0, INDEX_INTERVAL, FLUSH_INTERVAL)) {
+			write(events, 20);
+			// everything but the one we're writing to is too old
+			List<String> logs = files(".log");
+			assertEquals(1, logs.size());
+			List<Long> eids = eids(events.since(-1, 1000));
+			assertEquals(format(eids.get(0)), logs.get(0));
+			assertEquals(range(eids.get(0), 19), eids);
+		}
+	}
+
+	@Test
+	public void truncatesAHalfWrittenLineAndCarriesOnFromTheLastEid() throws IOException {
+		try (EventLogger events = new EventLogger(dir, Long.MAX_VALUE, FOREVER, Long.MAX_VALUE, FOREVER, INDEX_INTERVAL, FLUSH_INTERVAL)) {
+			write(events, 10);
+		}
+
+		File log = dir.resolve(format(0)).toFile();
+		File idx = dir.resolve(format(0).replace(".log", ".idx")).toFile();
+		long length = log.length();
+
+		// as if we died part way through writing event 10, with its index entry already out
+		try (FileOutputStream out = new FileOutputStream(log, true)) {
+			out.write("2014/01/01-00:00:00.000+0000 10 test {\"n\":\"1".getBytes(UTF_8));
+		}
+		try (DataOutputStream out = new DataOutputStream(new FileOutputStream(idx, true))) {
+			out.writeLong(10);
+			out.writeLong(length);
+		}
+
+		try (EventLogger events = new EventLogger(dir, Long.MAX_VALUE, FOREVER, Long.MAX_VALUE, FOREVER, INDEX_INTERVAL, FLUSH_INTERVAL)) {
+			assertEquals(9, events.lastEventId());
+			assertEquals(length, log.length());
+			assertEquals(10, events.write("test", MutableMemoryData.create().putString("n", "10")));
+			List<Event> since = events.since(8, 10);
+			assertEquals(Arrays.asList(9L, 10L), eids(since));
+			assertEquals("10", since.get(1).data().getString("n").get());
+		}
+	}
+
+	@Test
+	public void readsSinceAnyEidAcrossSegments() {
+		try (EventLogger events = new EventLogger(dir, SEGMENT_BYTES, FOREVER, Long.MAX_VALUE, FOREVER, INDEX_INTERVAL, FLUSH_INTERVAL)) {
+			write(events, 40);
+			assertTrue(files(".log").size() >= 3);
+
+			// every starting point, so some start from an index entry, some between them and some at a segment boundary
+			for (long eid = -1; eid < 40; eid++) {
+				List<Event> since = events.since(eid, 1000);
+				assertEquals("since " + eid, range(eid + 1, 39), eids(since));
+				for (Event event : since) {
+					assertEquals(Long.toString(event.eid()), event.data().getString("n").get());
+					assertEquals("test", event.type());
+				}
+				List<Long> limited = eids(events.since(eid, 3));
+				assertEquals("since " + eid, range(eid + 1, Math.min(eid + 3, 39)), limited);
+			}
+		}
+	}
+
+	private static void write(EventLogger events, int count) {
+		for (int i = 0; i < count; i++) {
+			assertEquals(i, events.write("test", MutableMemoryData.create().putString("n", Integer.toString(i))));
+		}
+	}
+
+	private List<String> files(String suffix) {
+		try (Stream<Path> files = Files.list(dir)) {
+			return files.map(file -> file.getFileName().toString())
+						.filter(name -> name.endsWith(suffix))
+						.sorted()
+						.collect(Collectors.toList());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static String format(long base) {
+		return String.format("events-%020d.log", base);
+	}
+
+	private static List<Long> eids(List<Event> events) {
+		return events.stream().map(Event::eid).collect(Collectors.toList());
+	}
+
+	private static List<Long> range(long from, long to) {
+		List<Long> eids = new ArrayList<>();
+		for (long eid = from; eid <= to; eid++) {
+			eids.add(eid);
+		}
+		return eids;
+	}
+
+}
@@ -0,0 +1,161 @@
+package reka.test.util;
+
+import static java.lang.String.format;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static reka.flow.builder.OperationFlowNode.asyncOperation;
+import static reka.util.Path.path;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import reka.flow.Flow;
+import reka.flow.builder.FlowBuilderGroup;
+import reka.flow.ops.AsyncOperation.OperationResult;
+import reka.modules.builtins.TimerConfigurer.TimerRun;
+import reka.util.HashedWheelTimer;
+import reka.util.HashedWheelTimer.Timeout;
+
+public class HashedWheelTimerTest {
+
+	// a small wheel so it wraps round every 80ms rather than every 5s like the shared one
+	private static final long TICK_MS = 10;
+	private static final int TICKS = 8;
+
+	// how late we let something be, the wheel itself adds at most a tick but the build machine might be busy
+	private static final long LATE_MS = 200;
+
+	private HashedWheelTimer timer;
+
+	@Before
+	public void createTimer() {
+		timer = new HashedWheelTimer("reka-timer-test", TICK_MS, TimeUnit.MILLISECONDS, TICKS);
+	}
+
+	@After
+	public void shutdownTimer() {
+		timer.shutdown();
+	}
+
+	@Test
+	public void firesInDelayOrderAcrossWrapAround() throws InterruptedException {
+		List<Long> delays = Arrays.asList(250L, 30L, 170L, 5L, 95L, 410L, 330L);
+		List<Long> fired = Collections.synchronizedList(new ArrayList<>());
+		List<Long> elapsed = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch latch = new CountDownLatch(delays.size());
+		long start = System.nanoTime();
+		for (long delay : delays) {
+			timer.schedule(() -> {
+				elapsed.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) - delay);
+				fired.add(delay);
+				latch.countDown();
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		List<Long> sorted = new ArrayList<>(delays);
+		Collections.sort(sorted);
+		assertEquals(sorted, fired);
+		for (long late : elapsed) {
+			assertTrue(format("fired %dms early", -late), late >= 0);
+			assertTrue(format("fired %dms late", late), late < LATE_MS);
+		}
+	}
+
+	@Test
+	public void cancelledTimeoutsDoNotFire() throws InterruptedException {
+		AtomicInteger runs = new AtomicInteger();
+		Timeout cancelled = timer.schedule(runs::incrementAndGet, 50, TimeUnit.MILLISECONDS);
+		Timeout later = timer.schedule(runs::incrementAndGet, 250, TimeUnit.MILLISECONDS); // a few rounds later
+		CountDownLatch fired = new CountDownLatch(1);
+		Timeout kept = timer.schedule(fired::countDown, 100, TimeUnit.MILLISECONDS);
+
+		assertTrue(cancelled.cancel());
+		assertTrue(cancelled.isCancelled());
+		assertFalse(cancelled.cancel());
+
+		assertTrue(fired.await(1, TimeUnit.SECONDS));
+		assertTrue(later.cancel());
+		Thread.sleep(250);
+
+		assertEquals(0, runs.get());
+		assertTrue(kept.isExpired());
+		assertFalse(kept.cancel());
+		assertFalse(kept.isCancelled());
+	}
+
+	@Test
+	public void tasksCanScheduleMoreTasks() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(2);
+		AtomicLong scheduled = new AtomicLong();
+		AtomicLong now = new AtomicLong();
+		AtomicLong later = new AtomicLong();
+		timer.schedule(() -> {
+			// from the timer thread while it's expiring, one for straight away and one a couple of rounds on
+			scheduled.set(System.nanoTime());
+			timer.schedule(() -> {
+				now.set(System.nanoTime());
+				latch.countDown();
+			}, 0, TimeUnit.MILLISECONDS);
+			timer.schedule(() -> {
+				later.set(System.nanoTime());
+				latch.countDown();
+			}, 170, TimeUnit.MILLISECONDS);
+		}, 20, TimeUnit.MILLISECONDS);
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		long nowMs = TimeUnit.NANOSECONDS.toMillis(now.get() - scheduled.get());
+		long laterMs = TimeUnit.NANOSECONDS.toMillis(later.get() - scheduled.get());
+		assertTrue(format("fired after %dms", nowMs), nowMs < LATE_MS);
+		assertTrue(format("fired after %dms", laterMs), laterMs >= 170 && laterMs < 170 + LATE_MS);
+	}
+
+	@Test
+	public void timerRunSkipsWhileThePreviousRunIsInProgress() throws InterruptedException {
+		AtomicInteger started = new AtomicInteger();
+		AtomicReference<OperationResult> inProgress = new AtomicReference<>();
+		CountDownLatch firstStarted = new CountDownLatch(1);
+		CountDownLatch secondStarted = new CountDownLatch(1);
+
+		Flow flow = FlowBuilderGroup.createFlow(path("timer"), asyncOperation("hold", (data, ctx, res) -> {
+			started.incrementAndGet();
+			inProgress.set(res);
+			firstStarted.countDown();
+			if (started.get() == 2) secondStarted.countDown();
+		}));
+
+		TimerRun run = new TimerRun(flow);
+
+		run.run();
+		assertTrue(firstStarted.await(1, TimeUnit.SECONDS));
+
+		// still going so these are skipped
+		run.run();
+		run.run();
+		Thread.sleep(50);
+		assertEquals(1, started.get());
+
+		inProgress.get().done();
+
+		// the subscriber is called once the flow has finished, which is asynchronous
+		long until = System.currentTimeMillis() + 1000;
+		while (started.get() < 2 && System.currentTimeMillis() < until) {
+			run.run();
+			Thread.sleep(5);
+		}
+		assertTrue(secondStarted.await(1, TimeUnit.SECONDS));
+		assertEquals(2, started.get());
+		inProgress.get().done();
+	}
+
+}
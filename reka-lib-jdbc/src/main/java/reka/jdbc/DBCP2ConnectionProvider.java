@@ -9,21 +9,23 @@ import org.apache.commons.dbcp2.DriverManagerConnectionFactory;
 import org.apache.commons.dbcp2.PoolableConnection;
 import org.apache.commons.dbcp2.PoolableConnectionFactory;
 import org.apache.commons.dbcp2.PoolingDataSource;
-import org.apache.commons.pool2.ObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPool;
 import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import reka.data.MutableData;
+import reka.metrics.Histogram;
 
 public class DBCP2ConnectionProvider implements JdbcConnectionProvider {
 	
 	private final Logger log = LoggerFactory.getLogger(getClass());
 	
 	private final PoolableConnectionFactory factory;
-	private final ObjectPool<PoolableConnection> pool;
+	private final GenericObjectPool<PoolableConnection> pool;
 	private final PoolingDataSource<PoolableConnection> ds;
+	
+	private volatile Histogram waits;
 
 	public DBCP2ConnectionProvider(String url, String username, String password, boolean poolStatements) {
 		factory = new PoolableConnectionFactory(new DriverManagerConnectionFactory(url, username, password), null);
@@ -43,7 +45,12 @@ public class DBCP2ConnectionProvider implements JdbcConnectionProvider {
 
 	@Override
 	public Connection getConnection() throws SQLException {
-		return ds.getConnection();
+		Histogram waits = this.waits;
+		if (waits == null) return ds.getConnection();
+		long started = System.nanoTime();
+		Connection connection = ds.getConnection();
+		waits.record(System.nanoTime() - started);
+		return connection;
 	}
 	
 	@Override
@@ -61,6 +68,26 @@ public class DBCP2ConnectionProvider implements JdbcConnectionProvider {
 		if (idle >= 0) data.putInt("idle", idle);
 		
 	}
+	
+	@Override
+	public int active() {
+		return pool.getNumActive();
+	}
+	
+	@Override
+	public int idle() {
+		return pool.getNumIdle();
+	}
+	
+	@Override
+	public int waiting() {
+		return pool.getNumWaiters();
+	}
+	
+	@Override
+	public void recordWaitsIn(Histogram histogram) {
+		waits = histogram;
+	}
 
 	@Override
 	public void finished(Connection connection) throws SQLException {
@@ -35,6 +35,8 @@ import reka.config.configurer.annotations.Conf;
 import reka.data.Data;
 import reka.data.content.Content;
 import reka.identity.IdentityKey;
+import reka.metrics.Histogram;
+import reka.metrics.MetricsScope;
 import reka.module.setup.AppSetup;
 import reka.module.setup.ModuleConfigurer;
 import reka.module.setup.ModuleSetupContext;
@@ -121,10 +123,21 @@ public abstract class JdbcBaseModule extends ModuleConfigurer {
 		module.defineOperation(path("first"), provider -> new JdbcQueryConfigurer(config, true));
 		module.defineOperation(path("insert"), provider -> new JdbcInsertConfigurer());
 		
+		// keep the pool (and don't rerun migrations/seeds) if nothing has changed
+		module.reuseWhenUnchanged();
+		
+		MetricsScope metrics = module.metrics();
+		Histogram waits = metrics.histogram("reka_jdbc_wait_seconds", "time spent waiting for a pooled connection");
+		metrics.gauge("reka_jdbc_active", "pooled connections in use", () -> ctx.lookup(POOL).map(JdbcConnectionProvider::active).orElse(0));
+		metrics.gauge("reka_jdbc_idle", "pooled connections not in use", () -> ctx.lookup(POOL).map(JdbcConnectionProvider::idle).orElse(0));
+		metrics.gauge("reka_jdbc_waiting", "threads waiting for a pooled connection", () -> ctx.lookup(POOL).map(JdbcConnectionProvider::waiting).orElse(0));
+		
 		module.onDeploy(init -> {
 			
 			init.run("create connection pool", () -> {
-				ctx.put(POOL, connectionProvider(username, password));
+				JdbcConnectionProvider pool = connectionProvider(username, password);
+				pool.recordWaitsIn(waits);
+				ctx.put(POOL, pool);
 			});
 
 			if (!migrations.isEmpty()) {
@@ -6,10 +6,17 @@ import java.sql.SQLException;
 import javax.sql.DataSource;
 
 import reka.data.MutableData;
+import reka.metrics.Histogram;
 
 public interface JdbcConnectionProvider extends AutoCloseable {
 	Connection getConnection() throws SQLException;
 	void finished(Connection connection) throws SQLException;
 	DataSource dataSource();
 	void writeStats(MutableData data);
+	
+	// for metrics
+	int active();
+	int idle();
+	int waiting();
+	void recordWaitsIn(Histogram histogram);
 }
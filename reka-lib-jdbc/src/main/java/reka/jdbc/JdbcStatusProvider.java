@@ -8,6 +8,7 @@ import reka.module.setup.StatusDataProvider;
 public class JdbcStatusProvider implements StatusDataProvider {
 
 	private static final String CHECK_CONNECTION_SQL = "select 1";
+	private static final long POLL_INTERVAL = 5000; // checking it's up takes a connection and a query
 	
 	private final String url;
 	private final JdbcConnectionProvider pool;
@@ -27,6 +28,11 @@ public class JdbcStatusProvider implements StatusDataProvider {
 		}
 	}
 
+	@Override
+	public long pollInterval() {
+		return POLL_INTERVAL;
+	}
+
 	@Override
 	public void statusData(MutableData data) {
 		pool.writeStats(data);
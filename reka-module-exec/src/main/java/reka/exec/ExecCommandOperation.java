@@ -4,7 +4,6 @@ import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -14,6 +13,7 @@ import reka.Reka;
 import reka.data.MutableData;
 import reka.flow.ops.AsyncOperation;
 import reka.flow.ops.OperationContext;
+import reka.util.HashedWheelTimer.Timeout;
 import reka.util.Path;
 
 public class ExecCommandOperation implements AsyncOperation {
@@ -51,14 +51,14 @@ public class ExecCommandOperation implements AsyncOperation {
 			
 				Process process = builder.start();
 				
-				ScheduledFuture<?> timeout = Reka.SharedExecutors.scheduled.schedule(() -> {
+				Timeout timeout = Reka.SharedExecutors.timer.schedule(() -> Reka.SharedExecutors.general.execute(() -> {
 					try {
 						process.destroyForcibly();
 					} catch (Throwable t) {
 						log.error("error destroying process", t);
 					}
 					res.error("timed out after %ds", timeoutSeconds);
-				}, timeoutSeconds, TimeUnit.SECONDS);
+				}), timeoutSeconds, TimeUnit.SECONDS);
 				
 				InputStream err = process.getErrorStream();
 				InputStream out = process.getInputStream();
@@ -75,10 +75,8 @@ public class ExecCommandOperation implements AsyncOperation {
 					}
 				}
 				
-				if (!timeout.isDone()) {
+				if (timeout.cancel()) {
 
-					timeout.cancel(true);
-					
 					data.putInt(statusInto, process.exitValue());
 					data.putString(outInto, new String(outBytes.toByteArray(), StandardCharsets.UTF_8));
 					data.putString(errInto, new String(errBytes.toByteArray(), StandardCharsets.UTF_8));
@@ -20,7 +20,6 @@ import java.util.Map.Entry;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -43,6 +42,7 @@ import org.slf4j.LoggerFactory;
 
 import reka.Reka;
 import reka.exec.ExecConfigurer.ExecScripts;
+import reka.util.HashedWheelTimer.Timeout;
 
 public class RekaSshClient {
 	
@@ -142,14 +142,14 @@ public class RekaSshClient {
 
 		Reka.SharedExecutors.general.execute(() -> {
 		
-			ScheduledFuture<?> timeout = null;
+			Timeout timeout = null;
 			
 			try {
 			
 				final AtomicReference<Session> sessionRef = new AtomicReference<>();
 				final AtomicReference<Command> commandRef = new AtomicReference<>();
 				
-				timeout = Reka.SharedExecutors.scheduled.schedule(() -> {
+				timeout = Reka.SharedExecutors.timer.schedule(() -> Reka.SharedExecutors.general.execute(() -> {
 					try {
 						Command cmd = commandRef.get();
 						if (cmd != null) {
@@ -163,7 +163,7 @@ public class RekaSshClient {
 						log.error("error closing channel", t);
 					}
 					future.completeExceptionally(runtime("timed out after %ds", timeoutSeconds));
-				}, timeoutSeconds, TimeUnit.SECONDS);
+				}), timeoutSeconds, TimeUnit.SECONDS);
 				
 				final Session session;
 				
@@ -201,9 +201,7 @@ public class RekaSshClient {
 						}
 					}
 					
-					if (!timeout.isDone()) {
-		
-						timeout.cancel(true);
+					if (timeout.cancel()) {
 						
 						future.complete(new ExecResult(
 								cmd.getExitStatus(), 
@@ -217,7 +215,7 @@ public class RekaSshClient {
 		        }
 			} catch (Throwable t) {
 				if (timeout != null) {
-					timeout.cancel(true);
+					timeout.cancel();
 				}
 				future.completeExceptionally(t);
 			}
@@ -37,6 +37,7 @@ public class JRubyConfigurer extends ModuleConfigurer {
 	
 	@Override
 	public void setup(AppSetup app) {
+		app.reuseWhenUnchanged();
 		app.onDeploy(init -> {
 			init.run("initialize runtime", () -> {
 				RubyEnv env = RubyEnv.create(gemFile);
@@ -54,6 +54,8 @@ public class JsxConfigurer extends ModuleConfigurer {
 		
 		ModuleSetupContext ctx = app.ctx();
 		
+		app.reuseWhenUnchanged();
+		
 		app.onDeploy(init -> {
 			init.run("compile jsx", () -> {
 				String jsx = src.toString();
@@ -9,7 +9,6 @@ import static reka.util.Path.path;
 import static reka.util.Path.root;
 import static reka.util.Path.slashes;
 import static reka.util.Util.deleteRecursively;
-import static reka.util.Util.sha1hex;
 import static reka.util.Util.unchecked;
 
 import java.io.ByteArrayInputStream;
@@ -41,6 +40,7 @@ import reka.module.setup.OperationSetup;
 import reka.util.Path;
 import reka.util.Path.Request;
 import reka.util.Path.Response;
+import reka.util.Util;
 import reka.util.dirs.AppDirs;
 
 public class LessConfigurer extends ModuleConfigurer {
@@ -131,7 +131,7 @@ public class LessConfigurer extends ModuleConfigurer {
 		}
 
 		public void setup(OperationSetup ops) {
-			ops.add("css", () -> new LessOperation(outFn, content, sha1hex(content.asBytes())));
+			ops.add("css", () -> new LessOperation(outFn, content, Util.sha1hex(content.asBytes())));
 		}
 		
 	}
@@ -209,7 +209,7 @@ public class LessConfigurer extends ModuleConfigurer {
 		byte[] contentBytes = css.getBytes(StandardCharsets.UTF_8);
 		if (contentBytes.length > PUT_IN_FILE_THRESHOLD) {
 			try {
-				String hex = sha1hex(contentBytes);
+				String hex = Util.sha1hex(contentBytes);
 				java.nio.file.Path httpfile = tmpdir.resolve("less." + hex + ".css");
 				if (!Files.exists(httpfile)) Files.write(httpfile, contentBytes);
 				return binary(CONTENT_TYPE_CSS, httpfile.toFile());
@@ -117,6 +117,8 @@ public class NashornConfigurer extends ModuleConfigurer {
 		
 		app.defineOperation(root(), provider -> new NashornRunConfigurer(root()));
 		
+		app.reuseWhenUnchanged();
+		
 		app.onDeploy(init -> {
 		
 			init.run("initialize runtime", () -> {
@@ -1,18 +1,23 @@
 package reka.net;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.String.format;
 import static reka.util.Util.createEntry;
 import static reka.util.Util.runtime;
 import static reka.util.Util.unchecked;
 import static reka.util.Util.unsupported;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.ServerChannel;
+import io.netty.channel.ServerChannelRecvByteBufAllocator;
+import io.netty.channel.WriteBufferWaterMark;
 import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.epoll.EpollSocketChannel;
@@ -23,18 +28,23 @@ import io.netty.channel.group.ChannelMatchers;
 import io.netty.channel.group.DefaultChannelGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.SocketChannelConfig;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.util.AttributeKey;
 import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.GlobalEventExecutor;
+import io.netty.util.concurrent.MultithreadEventExecutorGroup;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -44,14 +54,19 @@ import reka.flow.Flow;
 import reka.identity.Identity;
 import reka.module.PortChecker;
 import reka.net.ChannelAttrs.AttributeMatcher;
+import reka.net.NetSettings.PortOptions;
 import reka.net.NetSettings.TlsSettings;
 import reka.net.NetSettings.Type;
+import reka.net.common.sockets.ChannelFlowQueue;
+import reka.net.http.AccessLog;
+import reka.net.http.Admission;
 import reka.net.http.HostAndPort;
 import reka.net.http.server.HttpChannelSetup;
 import reka.net.http.server.HttpInitializer;
 import reka.net.http.server.HttpOrWebsocket;
 import reka.net.http.server.WebsocketChannelSetup;
 import reka.net.socket.SocketFlowHandler;
+import reka.net.socket.SocketFraming;
 import reka.runtime.NoFlow;
 import reka.util.AsyncShutdown;
 
@@ -87,28 +102,38 @@ public class NetManager {
 	}
 	
 	public ApplicationComponent deployHttp(Identity identity, HostAndPort listen, HttpFlows flows) {
-		NetSettings settings = NetSettings.http(listen.port(), listen.host());
+		return deployHttp(identity, listen, PortOptions.DEFAULT, flows);
+	}
+	
+	public synchronized ApplicationComponent deployHttp(Identity identity, HostAndPort listen, PortOptions options, HttpFlows flows) {
+		NetSettings settings = NetSettings.http(listen.port(), listen.host()).withOptions(options);
 		PortHandler handler = ensurePortHandler(settings);
+		Runnable remove = handler.httpAdd(identity, settings.host().get(), flows); // before the version goes up, it can refuse
 		int version = saveSettingsAndIncrementVersion(identity, settings);
-		return new NetApplicationComponent(identity, settings, version, handler.httpAdd(identity, settings.host().get(), flows));
+		return new NetApplicationComponent(identity, settings, version, remove);
 	}
 	
 	public ApplicationComponent deployHttps(Identity identity, HostAndPort listen, TlsSettings ssl, HttpFlows flows) {
+		return deployHttps(identity, listen, ssl, PortOptions.DEFAULT, flows);
+	}
+	
+	public synchronized ApplicationComponent deployHttps(Identity identity, HostAndPort listen, TlsSettings ssl, PortOptions options, HttpFlows flows) {
 		checkNotNull(ssl, "must pass in ssl settings for https");
-		NetSettings settings = NetSettings.https(listen.port(), listen.host(), ssl);
+		NetSettings settings = NetSettings.https(listen.port(), listen.host(), ssl).withOptions(options);
 		PortHandler handler = ensurePortHandler(settings);
+		Runnable remove = handler.httpAdd(identity, settings.host().get(), flows); // before the version goes up, it can refuse
 		int version = saveSettingsAndIncrementVersion(identity, settings);
-		return new NetApplicationComponent(identity, settings, version, handler.httpAdd(identity, settings.host().get(), flows));
+		return new NetApplicationComponent(identity, settings, version, remove);
 	}
 	
-	public ApplicationComponent deployWebsocket(Identity identity, HostAndPort listen, SocketFlows flows) {
+	public synchronized ApplicationComponent deployWebsocket(Identity identity, HostAndPort listen, SocketFlows flows) {
 		NetSettings settings = NetSettings.ws(listen.port(), listen.host());
 		PortHandler handler = ensurePortHandler(settings);
 		int version = saveSettingsAndIncrementVersion(identity, settings);
 		return new NetApplicationComponent(identity, settings, version, handler.websocketAdd(identity, settings.host().get(), flows));
 	}
 	
-	public ApplicationComponent deployWebsocketSsl(Identity identity, HostAndPort listen, TlsSettings ssl, SocketFlows flows) {
+	public synchronized ApplicationComponent deployWebsocketSsl(Identity identity, HostAndPort listen, TlsSettings ssl, SocketFlows flows) {
 		NetSettings settings = NetSettings.wss(listen.port(), listen.host(), ssl);
 		PortHandler handler = ensurePortHandler(settings);
 		int version = saveSettingsAndIncrementVersion(identity, settings);
@@ -116,14 +141,22 @@ public class NetManager {
 	}
 	
 	public ApplicationComponent deploySocket(Identity identity, int port, SocketFlows flows) {
-		NetSettings settings = NetSettings.socket(port);
+		return deploySocket(identity, port, PortOptions.DEFAULT, flows);
+	}
+	
+	public synchronized ApplicationComponent deploySocket(Identity identity, int port, PortOptions options, SocketFlows flows) {
+		NetSettings settings = NetSettings.socket(port).withOptions(options);
 		PortHandler handler = ensurePortHandler(settings);
 		int version = saveSettingsAndIncrementVersion(identity, settings);
 		return new NetApplicationComponent(identity, settings, version, handler.socketSet(identity, flows));
 	}
 	
 	public ApplicationComponent deploySocketSsl(Identity identity, int port, TlsSettings ssl, SocketFlows flows) {
-		NetSettings settings = NetSettings.socketSsl(port, ssl);
+		return deploySocketSsl(identity, port, ssl, PortOptions.DEFAULT, flows);
+	}
+	
+	public synchronized ApplicationComponent deploySocketSsl(Identity identity, int port, TlsSettings ssl, PortOptions options, SocketFlows flows) {
+		NetSettings settings = NetSettings.socketSsl(port, ssl).withOptions(options);
 		PortHandler handler = ensurePortHandler(settings);
 		int version = saveSettingsAndIncrementVersion(identity, settings);
 		return new NetApplicationComponent(identity, settings, version, handler.socketSet(identity, flows));
@@ -145,42 +178,46 @@ public class NetManager {
 		
 		@Override
 		public void undeploy() {
-			PortHandler handler = handlers.get(settings.port());
-			if (handler == null) return;
-			Map<String, Entry<NetSettings,Integer>> m = deployed.get(identity);
-			if (m == null) return;
-			String k = settings.sha1hex();
-			if (!m.containsKey(k)) return;
-			Entry<NetSettings, Integer> e = m.get(k);
-			int currentVersion = e.getValue();
-			if (version != currentVersion) {
-				log.info("not undeploying as the version has incremented {} -> {}", version, currentVersion);
-				return;
-			}
-			remove.run();
-			if (handler.isEmpty()) {
-				handlers.remove(settings.port());
-				handler.shutdownAndWait();
-			}
-			m.remove(k);
-			if (m.isEmpty()) {
-				deployed.remove(identity);
+			synchronized (NetManager.this) {
+				PortHandler handler = handlers.get(settings.port());
+				if (handler == null) return;
+				Map<String, Entry<NetSettings,Integer>> m = deployed.get(identity);
+				if (m == null) return;
+				String k = settings.sha1hex();
+				if (!m.containsKey(k)) return;
+				Entry<NetSettings, Integer> e = m.get(k);
+				int currentVersion = e.getValue();
+				if (version != currentVersion) {
+					log.info("not undeploying as the version has incremented {} -> {}", version, currentVersion);
+					return;
+				}
+				remove.run();
+				if (handler.isEmpty()) {
+					handlers.remove(settings.port());
+					handler.shutdownAndWait();
+				}
+				m.remove(k);
+				if (m.isEmpty()) {
+					deployed.remove(identity);
+				}
 			}
 		}
 
 		@Override
 		public Runnable pause() {
-			PortHandler handler = handlers.get(settings.port());
-			if (handler == null) return () -> {};
-			switch (settings.type()) {
-			case HTTP:
-				return handler.httpPause(settings.host().get());
-			case WEBSOCKET:
-				return handler.websocketPause(settings.host().get());
-			case SOCKET:
-				return handler.socketPause();
-			default:
-				return () -> {};
+			synchronized (NetManager.this) {
+				PortHandler handler = handlers.get(settings.port());
+				if (handler == null) return () -> {};
+				switch (settings.type()) {
+				case HTTP:
+					return handler.httpPause(settings.host().get());
+				case WEBSOCKET:
+					return handler.websocketPause(settings.host().get());
+				case SOCKET:
+					return handler.socketPause();
+				default:
+					return () -> {};
+				}
 			}
 		}
 		
@@ -200,13 +237,16 @@ public class NetManager {
 	
 	private final class HttpPortHandler extends PortHandler {
 
-		private final ChannelInitializer<SocketChannel> initializer;
+		private final HttpInitializer initializer;
+		
+		// by host, they all have to agree as the http/2 settings are sent when the connection opens
+		private final Map<String,Integer> maxConcurrentStreams = new HashMap<>();
 		
 		private final HttpChannelSetup http;
 		private final WebsocketChannelSetup websocket;
 		
-		HttpPortHandler(int port, TlsSettings tlsSettings) {
-			super(port, tlsSettings);
+		HttpPortHandler(int port, TlsSettings tlsSettings, PortOptions options) {
+			super(port, tlsSettings, options);
 			http = new HttpChannelSetup(channels, port, tlsSettings != null);
 			websocket = new WebsocketChannelSetup(channels, port);
 			initializer = new HttpInitializer(new HttpOrWebsocket(http, websocket), tlsSettings);
@@ -224,9 +264,24 @@ public class NetManager {
 
 		@Override
 		public Runnable httpAdd(Identity identity, String host, HttpFlows flows) {
+			int streams = flows.maxConcurrentStreams();
+			for (Entry<String,Integer> e : maxConcurrentStreams.entrySet()) {
+				if (!e.getKey().equals(host) && e.getValue() != streams) {
+					throw runtime("must have the same max-streams for every host on port %d, %s has %d (it's sent before we know the host)",
+							port(), e.getKey(), e.getValue());
+				}
+			}
+			maxConcurrentStreams.put(host, streams);
+			initializer.maxConcurrentStreams(streams);
 			Runnable undeploy = http.add(host, identity, flows);
 			start();
-			return undeploy;
+			return () -> {
+				undeploy.run();
+				maxConcurrentStreams.remove(host);
+				if (maxConcurrentStreams.isEmpty()) {
+					initializer.maxConcurrentStreams(HttpInitializer.DEFAULT_MAX_CONCURRENT_STREAMS);
+				}
+			};
 		}
 
 		@Override
@@ -270,8 +325,8 @@ public class NetManager {
 		
 		private volatile boolean isSet = false;
 		
-		SocketPortHandler(int port, TlsSettings sslSettings) {
-			super(port, sslSettings);
+		SocketPortHandler(int port, TlsSettings sslSettings, PortOptions options) {
+			super(port, sslSettings, options);
 			socketHandler = new SocketFlowHandler();
 			if (sslSettings != null) {
 				initializer = new SslSocketInitializer(socketHandler, sslSettings.certChainFile(), sslSettings.keyFile());
@@ -341,12 +396,16 @@ public class NetManager {
 		
 		private final int port;
 		private final TlsSettings tlsSettings;
+		
+		private volatile PortOptions options;
 				
-		protected volatile Channel channel;
+		// more than one if we're using SO_REUSEPORT
+		protected volatile List<Channel> bound;
 		
-		protected PortHandler(int port, TlsSettings tlsSettings) {
+		protected PortHandler(int port, TlsSettings tlsSettings, PortOptions options) {
 			this.port = port;
 			this.tlsSettings = tlsSettings;
+			this.options = options;
 		}
 		
 		protected abstract ChannelInitializer<SocketChannel> initializer();
@@ -362,70 +421,127 @@ public class NetManager {
 		public abstract Runnable websocketPause(String host);
 		public abstract Runnable socketPause();
 		
+		public int port() {
+			return port;
+		}
+		
 		public TlsSettings tlsSettings() {
 			return tlsSettings;
 		}
 		
+		public void options(PortOptions incoming) {
+			if (bound != null && !incoming.sameServerOptions(options)) {
+				log.warn("port {} is already open, backlog/reuse-port/acceptors changes will apply when it is next opened", port);
+			}
+			options = incoming;
+		}
+		
 		public void shutdown(Result res) {
-			if (channel != null) {
+			List<Channel> current = bound;
+			bound = null;
+			if (current == null) {
+				res.complete();
+				return;
+			}
+			AtomicInteger remaining = new AtomicInteger(current.size());
+			for (Channel channel : current) {
 				channel.close().addListener(future -> {
-					log.info("closed port {}", port);
-					if (future.isSuccess()) {
-						res.complete();
-					} else {
+					if (!future.isSuccess()) {
 						res.completeExceptionally(future.cause());
+					} else if (remaining.decrementAndGet() == 0) {
+						log.info("closed port {}", port);
+						res.complete();
 					}
 				});
-				channel = null;
-			} else {
-				res.complete();
 			}
 		}
 		
 		protected void start() {
 			
-			if (channel != null) return;
+			if (bound != null) return;
+			
+			PortOptions opts = options;
+			ByteBufAllocator allocator = opts.allocator().allocator();
 			
 			ServerBootstrap bootstrap = new ServerBootstrap()
 				.localAddress(port)
 				.group(nettyEventGroup)
 				.channel(nettyServerChannelType)
 				
-				.option(ChannelOption.SO_BACKLOG, 1024)
+				.option(ChannelOption.SO_BACKLOG, opts.backlog())
 		    	.option(ChannelOption.SO_REUSEADDR, true)
-				.option(ChannelOption.TCP_NODELAY, true)
-				.option(ChannelOption.MAX_MESSAGES_PER_READ, Integer.MAX_VALUE)
-				.option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+				.option(ChannelOption.RCVBUF_ALLOCATOR, new ServerChannelRecvByteBufAllocator().maxMessagesPerRead(Integer.MAX_VALUE))
+				.option(ChannelOption.ALLOCATOR, allocator)
 				
-				.childOption(ChannelOption.TCP_NODELAY, true)
-				.childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
 				.childOption(ChannelOption.SO_REUSEADDR, true)
-				.childOption(ChannelOption.MAX_MESSAGES_PER_READ, Integer.MAX_VALUE)
+				.childOption(ChannelOption.RCVBUF_ALLOCATOR, new AdaptiveRecvByteBufAllocator().maxMessagesPerRead(Integer.MAX_VALUE))
 				
 				 // channel initializers need to turn this back on if they rely on it
 				.childOption(ChannelOption.AUTO_READ, false)
 				
-				.childHandler(initializer());
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+
+					// the connection options are read each time so redeploying can change them
+					@Override
+					protected void initChannel(SocketChannel ch) throws Exception {
+						PortOptions current = options;
+						SocketChannelConfig config = ch.config();
+						config.setTcpNoDelay(current.tcpNoDelay());
+						config.setAllocator(current.allocator().allocator());
+						if (current.writeBufferLow() >= 0 || current.writeBufferHigh() >= 0) {
+							WriteBufferWaterMark defaults = WriteBufferWaterMark.DEFAULT;
+							config.setWriteBufferWaterMark(new WriteBufferWaterMark(
+									current.writeBufferLow() >= 0 ? current.writeBufferLow() : defaults.low(),
+									current.writeBufferHigh() >= 0 ? current.writeBufferHigh() : defaults.high()));
+						}
+						ch.pipeline().addLast(initializer());
+					}
+					
+				});
 			
-			if (epoll) {
-				// TODO: this needs more thought, it causes me to keep running multiple servers at the mo!
-				//bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+			/*
+			 * With SO_REUSEPORT we bind the port several times (one per event loop by default) and the
+			 * kernel spreads incoming connections over them, so accepting isn't all on one thread.
+			 * It's opt in as it also lets another process bind the same port without complaint.
+			 */
+			int count = 1;
+			if (opts.reusePort()) {
+				if (epoll) {
+					bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+					count = opts.acceptors() > 0 ? opts.acceptors() : eventLoopCount();
+				} else {
+					log.warn("reuse-port is only supported with epoll (linux), binding port {} once", port);
+				}
 			}
 			
+			List<Channel> channels = new ArrayList<>(count);
 			try {
-				log.info("binding to port {}", port);
-				channel = bootstrap.bind().sync().channel();
-				channels.add(channel);
+				log.info("binding to port {}{}", port, count > 1 ? format(" (%d times with SO_REUSEPORT)", count) : "");
+				for (int i = 0; i < count; i++) {
+					Channel channel = bootstrap.bind().sync().channel();
+					channels.add(channel);
+					NetManager.this.channels.add(channel);
+				}
+				bound = channels;
 				log.info("opened port {}", port);
 				
 			} catch (Throwable t) {
+				channels.forEach(Channel::close);
 				throw unchecked(t, "could not bind port %d", port);
 			}
 		}
 		
 	}
 	
-	public Map<Identity,Map<String,Entry<NetSettings,Integer>>> deployed() {
+	private int eventLoopCount() {
+		if (nettyEventGroup instanceof MultithreadEventExecutorGroup) {
+			return ((MultithreadEventExecutorGroup) nettyEventGroup).executorCount();
+		} else {
+			return Runtime.getRuntime().availableProcessors();
+		}
+	}
+	
+	public synchronized Map<Identity,Map<String,Entry<NetSettings,Integer>>> deployed() {
 		return ImmutableMap.copyOf(deployed);
 	}
 	
@@ -437,7 +553,7 @@ public class NetManager {
 		return new ChannelGroupWithMatcher(channels, new AttributeMatcher<>(ChannelAttrs.identity, identity));
 	}
 	
-	public boolean isAvailable(Identity identity, HostAndPort listen) {
+	public synchronized boolean isAvailable(Identity identity, HostAndPort listen) {
 		return deployed.entrySet().stream().allMatch(e -> {
 			Identity deployedIdentity = e.getKey();
 			if (deployedIdentity.equals(identity)) return true;
@@ -463,7 +579,7 @@ public class NetManager {
 		});
 	}
 	
-	public boolean isAvailable(Identity identity, int port) {
+	public synchronized boolean isAvailable(Identity identity, int port) {
 		return deployed.entrySet().stream().allMatch(e -> {
 			Identity deployedIdentity = e.getKey();
 			if (deployedIdentity.equals(identity)) return true;
@@ -488,22 +604,24 @@ public class NetManager {
 
 		@Override
 		public void run() {
-			PortHandler handler = handlers.get(settings.port());
-			if (handler == null) return;
-			Map<String, Entry<NetSettings,Integer>> m = deployed.get(identity);
-			if (m == null) return;
-			String k = settings.sha1hex();
-			if (!m.containsKey(k)) return;
-			Entry<NetSettings, Integer> e = m.get(k);
-			int currentVersion = e.getValue();
-			if (version != currentVersion) {
-				log.info("not undeploying as the version has incremented {} -> {}", version, currentVersion);
-				return;
-			}
-			remove.run();
-			if (handler.isEmpty()) {
-				handlers.remove(settings.port());
-				handler.shutdownAndWait();
+			synchronized (NetManager.this) {
+				PortHandler handler = handlers.get(settings.port());
+				if (handler == null) return;
+				Map<String, Entry<NetSettings,Integer>> m = deployed.get(identity);
+				if (m == null) return;
+				String k = settings.sha1hex();
+				if (!m.containsKey(k)) return;
+				Entry<NetSettings, Integer> e = m.get(k);
+				int currentVersion = e.getValue();
+				if (version != currentVersion) {
+					log.info("not undeploying as the version has incremented {} -> {}", version, currentVersion);
+					return;
+				}
+				remove.run();
+				if (handler.isEmpty()) {
+					handlers.remove(settings.port());
+					handler.shutdownAndWait();
+				}
 			}
 		}
 		
@@ -524,11 +642,13 @@ public class NetManager {
 			if (!existing.equals(incoming)) {
 				throw runtime("must have identical ssl settings on same port (SNI is not supported yet)");
 			}
+			
+			portHandler.options(settings.options());
  		} else {
  			if (settings.type() == Type.SOCKET) {
-				portHandler = new SocketPortHandler(port, settings.tlsSettings());
+				portHandler = new SocketPortHandler(port, settings.tlsSettings(), settings.options());
 			} else {
-				portHandler = new HttpPortHandler(port, settings.tlsSettings());
+				portHandler = new HttpPortHandler(port, settings.tlsSettings(), settings.options());
 			}
  			handlers.put(port, portHandler);
  		}
@@ -577,20 +697,53 @@ public class NetManager {
 	
 	public static class HttpFlows {
 		
+		public static final int DEFAULT_MAX_IN_FLIGHT = 16;
+		
 		private final Flow onMessage;
+		private final int maxInFlight;
+		private final int maxConcurrentStreams;
+		private final AccessLog accessLog;
+		private final Admission admission;
 		
 		public HttpFlows(Flow onMessage) {
+			this(onMessage, DEFAULT_MAX_IN_FLIGHT, HttpInitializer.DEFAULT_MAX_CONCURRENT_STREAMS, AccessLog.DEFAULT, null);
+		}
+		
+		public HttpFlows(Flow onMessage, int maxInFlight, int maxConcurrentStreams, AccessLog accessLog, Admission admission) {
 			this.onMessage = onMessage;
+			this.maxInFlight = maxInFlight;
+			this.maxConcurrentStreams = maxConcurrentStreams;
+			this.accessLog = accessLog;
+			this.admission = admission;
 		}
 		
 		public HttpFlows(Optional<Flow> onMessage) {
-			this.onMessage = onMessage.orElse(NoFlow.INSTANCE);
+			this(onMessage.orElse(NoFlow.INSTANCE));
 		}
 		
 		public Flow onMessage() {
 			return onMessage;
 		}
 		
+		// pipelined requests per connection that can be running at once
+		public int maxInFlight() {
+			return maxInFlight;
+		}
+		
+		// http/2 streams per connection
+		public int maxConcurrentStreams() {
+			return maxConcurrentStreams;
+		}
+		
+		public AccessLog accessLog() {
+			return accessLog;
+		}
+		
+		// null if there's no limit on concurrent requests for the host
+		public Admission admission() {
+			return admission;
+		}
+		
 	}
 	
 	public static class SocketFlows {
@@ -598,17 +751,27 @@ public class NetManager {
 		public static final SocketFlows NO_FLOWS = new SocketFlows(NoFlow.INSTANCE, NoFlow.INSTANCE, NoFlow.INSTANCE);
 		
 		private final Flow onConnect, onMessage, onDisconnect;
+		private final SocketFraming framing;
+		private final int inFlight;
 		
 		public SocketFlows(Flow onConnect, Flow onMessage, Flow onDisconnect) {
+			this(onConnect, onMessage, onDisconnect, SocketFraming.LINES, ChannelFlowQueue.DEFAULT_IN_FLIGHT);
+		}
+		
+		public SocketFlows(Flow onConnect, Flow onMessage, Flow onDisconnect, SocketFraming framing, int inFlight) {
 			this.onConnect = onConnect;
 			this.onMessage = onMessage;
 			this.onDisconnect = onDisconnect;
+			this.framing = framing;
+			this.inFlight = inFlight;
 		}
 		
 		public SocketFlows(Optional<Flow> onConnect, Optional<Flow> onMessage, Optional<Flow> onDisconnect) {
-			this.onConnect = onConnect.orElse(NoFlow.INSTANCE);
-			this.onMessage = onMessage.orElse(NoFlow.INSTANCE);
-			this.onDisconnect = onDisconnect.orElse(NoFlow.INSTANCE);
+			this(onConnect, onMessage, onDisconnect, SocketFraming.LINES, ChannelFlowQueue.DEFAULT_IN_FLIGHT);
+		}
+		
+		public SocketFlows(Optional<Flow> onConnect, Optional<Flow> onMessage, Optional<Flow> onDisconnect, SocketFraming framing, int inFlight) {
+			this(onConnect.orElse(NoFlow.INSTANCE), onMessage.orElse(NoFlow.INSTANCE), onDisconnect.orElse(NoFlow.INSTANCE), framing, inFlight);
 		}
 		
 		public Flow onConnect() {
@@ -623,6 +786,16 @@ public class NetManager {
 			return onDisconnect;
 		}
 		
+		// only used by plain sockets, websockets have their own framing
+		public SocketFraming framing() {
+			return framing;
+		}
+		
+		// how many messages from one connection can be processed at once
+		public int inFlight() {
+			return inFlight;
+		}
+		
 	}
 	
 	public static class ChannelGroupWithMatcher implements Iterable<Channel> {
@@ -3,6 +3,9 @@ package reka.net;
 import static java.lang.String.format;
 import static reka.util.Util.runtime;
 import static reka.util.Util.unchecked;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
 
 import java.io.File;
 import java.io.IOException;
@@ -75,12 +78,22 @@ public class NetSettings implements Hashable {
 	private final int port;
 	private final Optional<String> host;
 	private final TlsSettings tlsSettings;
+	private final PortOptions options;
 	
 	private NetSettings(int port, Optional<String> host, Type type, TlsSettings sslSettings) {
+		this(port, host, type, sslSettings, PortOptions.DEFAULT);
+	}
+	
+	private NetSettings(int port, Optional<String> host, Type type, TlsSettings sslSettings, PortOptions options) {
 		this.port = port;
 		this.host = host;
 		this.type = type;
 		this.tlsSettings = sslSettings;
+		this.options = options;
+	}
+	
+	public NetSettings withOptions(PortOptions options) {
+		return new NetSettings(port, host, type, tlsSettings, options);
 	}
 
 	public int port() {
@@ -103,11 +116,16 @@ public class NetSettings implements Hashable {
 		return tlsSettings;
 	}
 	
+	public PortOptions options() {
+		return options;
+	}
+	
 	@Override
 	public String toString() {
 		return format("%s://%s:%s", isSsl() ? "https" : "http", host, port);
 	}
 
+	// options aren't part of the hash, changing them doesn't make it a different deployment
 	@Override
 	public Hasher hash(Hasher hasher) {
 		hasher.putInt(port);
@@ -154,4 +172,93 @@ public class NetSettings implements Hashable {
 		
 	}
 	
+	public static enum Allocator {
+		
+		POOLED(PooledByteBufAllocator.DEFAULT),
+		POOLED_HEAP(new PooledByteBufAllocator(false)),
+		UNPOOLED(UnpooledByteBufAllocator.DEFAULT),
+		UNPOOLED_HEAP(new UnpooledByteBufAllocator(false));
+		
+		private final ByteBufAllocator allocator;
+		
+		Allocator(ByteBufAllocator allocator) {
+			this.allocator = allocator;
+		}
+		
+		public ByteBufAllocator allocator() {
+			return allocator;
+		}
+		
+	}
+	
+	/*
+	 * Socket level settings for a port. The server ones (backlog, reuse-port, acceptors) only
+	 * take effect when the port is opened, the connection ones apply to new connections straight
+	 * away. There's only one set per port, whoever deployed last wins.
+	 */
+	public static class PortOptions {
+		
+		public static final PortOptions DEFAULT = new PortOptions(1024, true, -1, -1, Allocator.POOLED, false, 0);
+		
+		private final int backlog;
+		private final boolean tcpNoDelay;
+		private final int writeBufferLow;
+		private final int writeBufferHigh;
+		private final Allocator allocator;
+		private final boolean reusePort;
+		private final int acceptors;
+		
+		public PortOptions(int backlog, boolean tcpNoDelay, int writeBufferLow, int writeBufferHigh, Allocator allocator, boolean reusePort, int acceptors) {
+			this.backlog = backlog;
+			this.tcpNoDelay = tcpNoDelay;
+			this.writeBufferLow = writeBufferLow;
+			this.writeBufferHigh = writeBufferHigh;
+			this.allocator = allocator;
+			this.reusePort = reusePort;
+			this.acceptors = acceptors;
+		}
+		
+		public int backlog() {
+			return backlog;
+		}
+		
+		public boolean tcpNoDelay() {
+			return tcpNoDelay;
+		}
+		
+		// -1 to leave it as netty's default
+		public int writeBufferLow() {
+			return writeBufferLow;
+		}
+		
+		public int writeBufferHigh() {
+			return writeBufferHigh;
+		}
+		
+		public Allocator allocator() {
+			return allocator;
+		}
+		
+		// only on linux (epoll), ignored elsewhere
+		public boolean reusePort() {
+			return reusePort;
+		}
+		
+		// how many channels to bind with reuse-port, 0 for one per event loop
+		public int acceptors() {
+			return acceptors;
+		}
+		
+		public boolean sameServerOptions(PortOptions other) {
+			return backlog == other.backlog && reusePort == other.reusePort && acceptors == other.acceptors;
+		}
+		
+		@Override
+		public String toString() {
+			return format("<%s backlog=%d nodelay=%s write-buffer=%d-%d allocator=%s reuse-port=%s acceptors=%d>", 
+					getClass().getSimpleName(), backlog, tcpNoDelay, writeBufferLow, writeBufferHigh, allocator, reusePort, acceptors);
+		}
+		
+	}
+	
 }
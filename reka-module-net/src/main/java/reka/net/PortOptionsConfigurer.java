@@ -0,0 +1,86 @@
+package reka.net;
+
+import static reka.config.configurer.Configurer.Preconditions.checkConfig;
+import static reka.config.configurer.Configurer.Preconditions.invalidConfig;
+import static reka.util.Units.parseIntSize;
+import io.netty.channel.WriteBufferWaterMark;
+import reka.config.configurer.annotations.Conf;
+import reka.net.NetSettings.Allocator;
+import reka.net.NetSettings.PortOptions;
+
+public class PortOptionsConfigurer {
+
+	// tcp {
+	//   backlog 4096
+	//   nodelay false
+	//   write-buffer-low 32kb
+	//   write-buffer-high 64kb
+	//   allocator pooled-heap
+	//   reuse-port true
+	//   acceptors 4
+	// }
+
+	private final PortOptions defaults = PortOptions.DEFAULT;
+
+	private int backlog = defaults.backlog();
+	private boolean tcpNoDelay = defaults.tcpNoDelay();
+	private int writeBufferLow = defaults.writeBufferLow();
+	private int writeBufferHigh = defaults.writeBufferHigh();
+	private Allocator allocator = defaults.allocator();
+	private boolean reusePort = defaults.reusePort();
+	private int acceptors = defaults.acceptors();
+
+	@Conf.At("backlog")
+	public void backlog(String val) {
+		backlog = Integer.valueOf(val);
+		checkConfig(backlog > 0, "backlog must be at least 1");
+	}
+
+	@Conf.At("nodelay")
+	@Conf.At("tcp-nodelay")
+	public void tcpNoDelay(boolean val) {
+		tcpNoDelay = val;
+	}
+
+	@Conf.At("write-buffer-low")
+	public void writeBufferLow(String val) {
+		writeBufferLow = parseIntSize(val);
+	}
+
+	@Conf.At("write-buffer-high")
+	public void writeBufferHigh(String val) {
+		writeBufferHigh = parseIntSize(val);
+	}
+
+	// pooled, pooled-heap, unpooled, unpooled-heap
+	@Conf.At("allocator")
+	public void allocator(String val) {
+		try {
+			allocator = Allocator.valueOf(val.toUpperCase().replace('-', '_'));
+		} catch (IllegalArgumentException e) {
+			invalidConfig("unknown allocator [%s], try pooled, pooled-heap, unpooled or unpooled-heap", val);
+		}
+	}
+
+	// lets several sockets listen on the port so accepting is spread over the event loops (linux only)
+	@Conf.At("reuse-port")
+	public void reusePort(boolean val) {
+		reusePort = val;
+	}
+
+	@Conf.At("acceptors")
+	public void acceptors(String val) {
+		acceptors = Integer.valueOf(val);
+		checkConfig(acceptors > 0, "acceptors must be at least 1");
+	}
+
+	public PortOptions build() {
+		// netty's defaults fill in whichever one isn't set, so check against those
+		int low = writeBufferLow >= 0 ? writeBufferLow : WriteBufferWaterMark.DEFAULT.low();
+		int high = writeBufferHigh >= 0 ? writeBufferHigh : WriteBufferWaterMark.DEFAULT.high();
+		checkConfig(low <= high, "write-buffer-low (%d bytes) must not be more than write-buffer-high (%d bytes), " + 
+				"if you only set one the other is netty's default", low, high);
+		return new PortOptions(backlog, tcpNoDelay, writeBufferLow, writeBufferHigh, allocator, reusePort, acceptors);
+	}
+
+}
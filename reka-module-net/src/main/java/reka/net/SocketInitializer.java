@@ -1,26 +1,22 @@
 package reka.net;
 
-import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.Delimiters;
+import reka.net.socket.SocketFlowHandler;
 
 public class SocketInitializer extends ChannelInitializer<SocketChannel> {
 
-	private final ChannelHandler handler;
+	private final SocketFlowHandler handler;
 	
-	public SocketInitializer(ChannelHandler handler) {
+	public SocketInitializer(SocketFlowHandler handler) {
 		this.handler = handler;
 	}
 	
 	@Override
 	protected void initChannel(SocketChannel ch) throws Exception {
-		ch.pipeline()
-			.addLast(new DelimiterBasedFrameDecoder(8192, Delimiters.lineDelimiter()))
-			.addLast(new StringDecoderIgnoringNewlines())
-			.addLast(new StringEncoderWithNewline())
-			.addLast(handler);
+		ch.config().setAutoRead(true);
+		handler.framing().configure(ch.pipeline());
+		ch.pipeline().addLast(handler);
 	}
 	
 }
@@ -1,29 +1,27 @@
 package reka.net;
 
 import static reka.util.Util.unchecked;
-import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.DelimiterBasedFrameDecoder;
-import io.netty.handler.codec.Delimiters;
-import io.netty.handler.codec.string.StringDecoder;
-import io.netty.handler.codec.string.StringEncoder;
 import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslProvider;
 
 import java.io.File;
 
 import javax.net.ssl.SSLException;
 
+import reka.net.socket.SocketFlowHandler;
+
 public class SslSocketInitializer extends ChannelInitializer<SocketChannel> {
 
-	private final ChannelHandler handler;
+	private final SocketFlowHandler handler;
 	private final SslContext ssl;
 	
-	public SslSocketInitializer(ChannelHandler handler, File certChainFile, File keyFile) {
+	public SslSocketInitializer(SocketFlowHandler handler, File certChainFile, File keyFile) {
 		this.handler = handler;
 		try {
-			this.ssl = SslContext.newServerContext(SslProvider.OPENSSL, certChainFile, keyFile);
+			this.ssl = SslContextBuilder.forServer(certChainFile, keyFile).sslProvider(SslProvider.OPENSSL).build();
 		} catch (SSLException e) {
 			throw unchecked(e);
 		}
@@ -31,12 +29,10 @@ public class SslSocketInitializer extends ChannelInitializer<SocketChannel> {
 
 	@Override
 	protected void initChannel(SocketChannel ch) throws Exception {
-		ch.pipeline()
-			.addLast(ssl.newHandler(ch.alloc()))
-			.addLast(new DelimiterBasedFrameDecoder(8192, Delimiters.lineDelimiter()))
-			.addLast(new StringDecoder())
-			.addLast(new StringEncoder())
-			.addLast(handler);
+		ch.config().setAutoRead(true);
+		ch.pipeline().addLast(ssl.newHandler(ch.alloc()));
+		handler.framing().configure(ch.pipeline());
+		ch.pipeline().addLast(handler);
 	}
 	
 }
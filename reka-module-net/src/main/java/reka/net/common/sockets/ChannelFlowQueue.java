@@ -0,0 +1,145 @@
+package reka.net.common.sockets;
+
+import io.netty.channel.Channel;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Runs the flows for one connection in the order its messages arrived, with at most inFlight of
+ * them going at once, and writes their replies in that same order.
+ *
+ * When messages are waiting for a slot, or the channel isn't writable (the client isn't reading
+ * its replies), we stop reading from the socket so tcp pushes back on the client rather than the
+ * work piling up in our heap.
+ *
+ * Everything apart from Slot.done happens on the channel's event loop.
+ */
+public class ChannelFlowQueue {
+
+	private static final Logger log = LoggerFactory.getLogger(ChannelFlowQueue.class);
+
+	public static final int DEFAULT_IN_FLIGHT = 1;
+
+	private final Channel channel;
+	private final int inFlight;
+
+	private final Deque<Slot> running = new ArrayDeque<>();
+	private final Deque<Slot> waiting = new ArrayDeque<>();
+
+	private boolean draining;
+
+	public ChannelFlowQueue(Channel channel, int inFlight) {
+		this.channel = channel;
+		this.inFlight = inFlight;
+	}
+
+	public void submit(Consumer<Slot> start) {
+		submit(start, null);
+	}
+
+	// release is run once the reply has been written, or if it's dropped before it starts
+	public void submit(Consumer<Slot> start, Runnable release) {
+		waiting.add(new Slot(start, release));
+		drain();
+	}
+
+	// drops anything that hasn't started yet, running flows still finish
+	public void close() {
+		Slot slot;
+		while ((slot = waiting.poll()) != null) {
+			slot.release();
+		}
+	}
+
+	// call when the channel writability changes
+	public void update() {
+		boolean read = waiting.isEmpty() && channel.isWritable();
+		if (channel.config().isAutoRead() != read) {
+			channel.config().setAutoRead(read);
+		}
+	}
+
+	private void drain() {
+		if (draining) return; // a flow finished synchronously while we were starting it
+		draining = true;
+		boolean written = false;
+		try {
+			while (true) {
+				while (!running.isEmpty() && running.peek().finished) {
+					written |= running.poll().write();
+				}
+				if (running.size() >= inFlight || waiting.isEmpty()) break;
+				Slot slot = waiting.poll();
+				running.add(slot);
+				slot.start();
+			}
+		} finally {
+			draining = false;
+		}
+		if (written) channel.flush();
+		update();
+	}
+
+	public class Slot {
+
+		private final Consumer<Slot> start;
+		private final Runnable release;
+
+		private Object reply;
+		private boolean finished;
+
+		private Slot(Consumer<Slot> start, Runnable release) {
+			this.start = start;
+			this.release = release;
+		}
+
+		// reply can be null, can be called from any thread
+		public void done(Object reply) {
+			if (channel.eventLoop().inEventLoop()) {
+				finish(reply);
+			} else {
+				channel.eventLoop().execute(() -> finish(reply));
+			}
+		}
+
+		private void finish(Object reply) {
+			this.reply = reply;
+			this.finished = true;
+			drain();
+		}
+
+		private void start() {
+			try {
+				start.accept(this);
+			} catch (Throwable t) {
+				log.error("failed to start flow", t);
+				reply = null;
+				finished = true;
+			}
+		}
+
+		private boolean write() {
+			if (reply == null) {
+				release();
+				return false;
+			}
+			if (release != null) {
+				channel.write(reply).addListener(future -> release.run());
+			} else {
+				channel.write(reply, channel.voidPromise());
+			}
+			return true;
+		}
+
+		private void release() {
+			if (release != null) release.run();
+		}
+
+	}
+
+}
@@ -3,6 +3,7 @@ package reka.net.common.sockets;
 import static java.lang.String.format;
 import reka.data.MutableData;
 import reka.identity.Identity;
+import reka.module.setup.AppSetup;
 import reka.module.setup.StatusDataProvider;
 import reka.net.ChannelAttrs;
 import reka.net.NetManager;
@@ -20,6 +21,16 @@ public class NetStatusProvider implements StatusDataProvider {
 		this.type = type;
 	}
 	
+	public static void register(AppSetup app, NetManager server, Type type) {
+		NetStatusProvider provider = new NetStatusProvider(server, app.identity(), type);
+		app.registerStatusProvider(() -> provider);
+		app.metrics().gauge("reka_net_connections", "open connections", provider::connections, "type", type.name().toLowerCase());
+	}
+	
+	public long connections() {
+		return server.channels(identity).withAttr(ChannelAttrs.type, type).count();
+	}
+	
 	@Override
 	public boolean up() {
 		return true;
@@ -27,7 +38,7 @@ public class NetStatusProvider implements StatusDataProvider {
 
 	@Override
 	public void statusData(MutableData data) {
-		long conns = server.channels(identity).withAttr(ChannelAttrs.type, type).count();
+		long conns = connections();
 		data.putLong("connections", conns);
 		data.putString("summary", format("conns:%d", conns));
 	}
@@ -0,0 +1,214 @@
+package reka.net.http;
+
+import static reka.util.Util.unchecked;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reka.data.Data;
+import reka.util.Path.Request;
+import reka.util.Path.Response;
+
+/*
+ * Access logging that costs the event loop as little as possible.
+ *
+ * The event loop claims a slot in a fixed size ring and copies what we log into it (no locks
+ * or formatting), a single background thread drains the ring in batches and writes them to a
+ * file or the logger. Nothing holds on to the request data so it can go as soon as the
+ * response is written. If the ring is full the entry is dropped and counted rather than making
+ * the event loop wait.
+ *
+ * Sampling keeps a fraction of the successful requests, errors (5xx) are always logged.
+ */
+public class AccessLog implements AutoCloseable {
+
+	private static final Logger log = LoggerFactory.getLogger(AccessLog.class);
+
+	public static final AccessLog DEFAULT = new AccessLog(null, 1.0, 8192);
+
+	private static final int BATCH_SIZE = 256;
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+	private static class Entry {
+
+		volatile long sequence;
+
+		String host;
+		String method;
+		String path;
+		int status;
+		long bytes;
+		long micros;
+
+		Entry(long sequence) {
+			this.sequence = sequence;
+		}
+
+	}
+
+	private final Path file;
+	private final double sample;
+
+	private final Entry[] ring;
+	private final int mask;
+	private final AtomicLong tail = new AtomicLong(); // next slot to claim
+	private long head; // next slot to drain, only the writer thread touches it
+
+	private final AtomicLong dropped = new AtomicLong();
+
+	private final Thread writer;
+	private final AtomicBoolean started = new AtomicBoolean();
+	private volatile boolean closed;
+
+	public AccessLog(Path file, double sample, int capacity) {
+		this.file = file;
+		this.sample = Math.max(0, Math.min(1, sample));
+		int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+		this.ring = new Entry[size];
+		this.mask = size - 1;
+		for (int i = 0; i < size; i++) {
+			ring[i] = new Entry(i);
+		}
+		writer = new Thread(this::drain, "reka-access-log");
+		writer.setDaemon(true);
+	}
+
+	public long dropped() {
+		return dropped.get();
+	}
+
+	/*
+	 * Called on the event loop. Status is whatever we actually sent, -1 if we don't know it (then
+	 * we take it from the data if it's there).
+	 */
+	public void record(Data data, int status, long bytes, long micros) {
+		if (closed) return;
+		if (!started.get() && started.compareAndSet(false, true)) writer.start();
+		if (sample < 1.0 && status < 500 && ThreadLocalRandom.current().nextDouble() >= sample) return;
+		while (true) {
+			long t = tail.get();
+			Entry entry = ring[(int) t & mask];
+			long seq = entry.sequence;
+			if (seq == t) {
+				if (tail.compareAndSet(t, t + 1)) {
+					entry.host = data.getString(Request.HOST).orElse("");
+					entry.method = data.getString(Request.METHOD).orElse("");
+					entry.path = data.getString(Request.PATH).orElse("");
+					entry.status = status > 0 ? status : statusFrom(data);
+					entry.bytes = bytes;
+					entry.micros = micros;
+					entry.sequence = t + 1; // publish
+					return;
+				}
+			} else if (seq < t) {
+				dropped.incrementAndGet();
+				return;
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		if (started.get()) LockSupport.unpark(writer);
+	}
+
+	private void drain() {
+		StringBuilder sb = new StringBuilder(BATCH_SIZE * 96);
+		long park = IDLE_PARK_NANOS;
+		long reportedDropped = 0;
+		try (Writer out = open()) {
+			while (true) {
+				int count = 0;
+				sb.setLength(0);
+				Entry entry;
+				while (count < BATCH_SIZE && (entry = ring[(int) head & mask]).sequence == head + 1) {
+					if (out != null) {
+						format(sb, entry).append('\n');
+					} else {
+						log.info(format(sb, entry).toString());
+						sb.setLength(0);
+					}
+					entry.host = entry.method = entry.path = null;
+					entry.sequence = head + ring.length; // free for the lap after this one
+					head++;
+					count++;
+				}
+				if (count > 0) {
+					if (out != null) {
+						out.write(sb.toString());
+						out.flush();
+					}
+					park = IDLE_PARK_NANOS;
+				} else {
+					long d = dropped.get();
+					if (d != reportedDropped) {
+						log.warn("dropped {} access log entries as the log couldn't keep up", d - reportedDropped);
+						reportedDropped = d;
+					}
+					if (closed) return;
+					LockSupport.parkNanos(park);
+					park = Math.min(park * 2, MAX_IDLE_PARK_NANOS);
+				}
+			}
+		} catch (IOException e) {
+			log.error("access log writer failed", e);
+		}
+	}
+
+	private Writer open() {
+		if (file == null) return null;
+		try {
+			if (file.getParent() != null) Files.createDirectories(file.getParent());
+			return Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+		} catch (IOException e) {
+			throw unchecked(e);
+		}
+	}
+
+	private static int statusFrom(Data data) {
+		Optional<String> val = data.getString(Response.STATUS);
+		if (!val.isPresent()) return -1;
+		try {
+			return Integer.parseInt(val.get());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static StringBuilder format(StringBuilder sb, Entry entry) {
+		sb.append(entry.host)
+		  .append(" - \"")
+		  .append(entry.method)
+		  .append(' ')
+		  .append(entry.path)
+		  .append("\" ");
+		if (entry.status > 0) {
+			sb.append(entry.status);
+		} else {
+			sb.append('-');
+		}
+		sb.append(' ');
+		if (entry.bytes >= 0) {
+			sb.append(entry.bytes);
+		} else {
+			sb.append('-');
+		}
+		return sb.append(' ').append(entry.micros).append("us");
+	}
+
+}
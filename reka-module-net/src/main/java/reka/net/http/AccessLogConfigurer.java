@@ -0,0 +1,56 @@
+package reka.net.http;
+
+import static java.util.Arrays.asList;
+import static reka.config.configurer.Configurer.Preconditions.checkConfig;
+
+import java.nio.file.Path;
+
+import reka.config.configurer.annotations.Conf;
+
+public class AccessLogConfigurer {
+	
+	// access-log off
+	// access-log logs/access.log
+	// access-log { file logs/access.log, sample 0.1 }
+	
+	private static final int CAPACITY = 8192;
+	
+	private final Path basedir;
+	
+	private boolean enabled = true;
+	private Path file;
+	private double sample = 1.0;
+	
+	public AccessLogConfigurer(Path basedir) {
+		this.basedir = basedir;
+	}
+	
+	@Conf.Val
+	public void value(String val) {
+		if (asList("off", "false", "no").contains(val)) {
+			enabled = false;
+		} else {
+			file(val);
+		}
+	}
+	
+	@Conf.At("file")
+	public void file(String val) {
+		file = basedir.resolve(val);
+	}
+	
+	// fraction of requests to log (5xx are always logged), 0.1 or 10%
+	@Conf.At("sample")
+	public void sample(String val) {
+		val = val.trim();
+		sample = val.endsWith("%") ? Double.valueOf(val.substring(0, val.length() - 1)) / 100 : Double.valueOf(val);
+		checkConfig(sample >= 0 && sample <= 1, "sample must be between 0 and 1");
+	}
+	
+	public AccessLog build() {
+		if (!enabled) return null;
+		if (file == null && sample == 1.0) return AccessLog.DEFAULT;
+		return new AccessLog(file, sample, CAPACITY);
+	}
+
+}
@@ -0,0 +1,233 @@
+package reka.net.http;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import reka.identity.IdentityKey;
+
+/*
+ * Limits how many requests run at once for a host or a route.
+ *
+ * Up to limit requests run straight away, the next queue requests wait for one of them to
+ * finish, anything after that is turned away immediately (the caller sends a 503 with a
+ * Retry-After) rather than piling up and making everyone slow.
+ *
+ * With adaptive on the limit moves between 1 and the configured limit depending on latency,
+ * when requests start taking longer than the best we've seen recently it comes down, when
+ * they don't it creeps back up.
+ *
+ * A request holds its permits until its flow has finished, the http subscriber releases them
+ * via the Permits in the flow's store.
+ */
+public class Admission {
+
+	public static final IdentityKey<Permits> PERMITS = IdentityKey.named("http admission permits");
+
+	public static final int DEFAULT_RETRY_AFTER = 1;
+
+	private static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+	private static final int WINDOW_MIN_SAMPLES = 10;
+	private static final int WINDOWS_BEFORE_FORGETTING_MIN = 600; // about a minute
+
+	private final int maxLimit;
+	private final int maxQueue;
+	private final boolean adaptive;
+	private final int retryAfter;
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final Queue<Runnable> waiting = new ConcurrentLinkedQueue<>();
+	private final AtomicLong rejected = new AtomicLong();
+
+	private volatile int limit;
+
+	// adaptive bits
+	private final AtomicLong windowStarted = new AtomicLong(System.nanoTime());
+	private final AtomicLong windowNanos = new AtomicLong();
+	private final AtomicInteger windowSamples = new AtomicInteger();
+	private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+	private double smoothedLimit;
+	private long minLatency = Long.MAX_VALUE;
+	private int windows;
+
+	public Admission(int limit, int queue, boolean adaptive, int retryAfter) {
+		this.maxLimit = Math.max(1, limit);
+		this.maxQueue = Math.max(0, queue);
+		this.adaptive = adaptive;
+		this.retryAfter = retryAfter;
+		this.limit = maxLimit;
+		this.smoothedLimit = maxLimit;
+	}
+
+	public int limit() {
+		return limit;
+	}
+
+	public int inFlight() {
+		return inFlight.get();
+	}
+
+	public int queued() {
+		return queued.get();
+	}
+
+	public long rejected() {
+		return rejected.get();
+	}
+
+	public int retryAfter() {
+		return retryAfter;
+	}
+
+	/*
+	 * Runs start now, or later on whichever thread releases a permit. Returns false if there was
+	 * no room, start won't be run.
+	 */
+	public boolean submit(Runnable start) {
+		if (waiting.isEmpty() && tryAcquire()) {
+			start.run();
+			return true;
+		}
+		if (queued.incrementAndGet() > maxQueue) {
+			queued.decrementAndGet();
+			rejected.incrementAndGet();
+			return false;
+		}
+		waiting.add(start);
+		drain(); // in case everything finished while we were queueing
+		return true;
+	}
+
+	public void release(long startedNanos) {
+		if (adaptive) sample(System.nanoTime() - startedNanos);
+		inFlight.decrementAndGet();
+		drain();
+	}
+
+	public Rejected rejection() {
+		return new Rejected(retryAfter);
+	}
+
+	private boolean tryAcquire() {
+		while (true) {
+			int current = inFlight.get();
+			if (current >= limit) return false;
+			if (inFlight.compareAndSet(current, current + 1)) {
+				if (adaptive) windowMaxInFlight.accumulateAndGet(current + 1, Math::max);
+				return true;
+			}
+		}
+	}
+
+	private void drain() {
+		while (!waiting.isEmpty() && tryAcquire()) {
+			Runnable next = waiting.poll();
+			if (next == null) {
+				inFlight.decrementAndGet();
+				continue;
+			}
+			queued.decrementAndGet();
+			next.run();
+		}
+	}
+
+	private void sample(long latency) {
+		windowNanos.addAndGet(latency);
+		windowSamples.incrementAndGet();
+		long now = System.nanoTime();
+		long started = windowStarted.get();
+		if (now - started >= WINDOW_NANOS && windowSamples.get() >= WINDOW_MIN_SAMPLES && windowStarted.compareAndSet(started, now)) {
+			int samples = windowSamples.getAndSet(0);
+			long total = windowNanos.getAndSet(0);
+			int busiest = windowMaxInFlight.getAndSet(0);
+			if (samples > 0) {
+				adjust(total / samples, busiest);
+				drain(); // might have gone up
+			}
+		}
+	}
+
+	/*
+	 * Only one thread gets here at a time (whoever closed the window). The gradient is how much
+	 * slower things are than the best we've seen, we allow a little queueing (sqrt of the limit)
+	 * on top so we keep probing upwards. The minimum is forgotten now and again in case things
+	 * just got slower for good (e.g. more data).
+	 */
+	private synchronized void adjust(long latency, int busiest) {
+		if (++windows >= WINDOWS_BEFORE_FORGETTING_MIN) {
+			windows = 0;
+			minLatency = latency;
+		} else if (latency < minLatency) {
+			minLatency = latency;
+		}
+		if (busiest < limit / 2 && latency <= minLatency * 2) {
+			return; // not using what we've got, no point growing it
+		}
+		double gradient = Math.max(0.5, Math.min(1.0, (double) minLatency / latency));
+		double target = smoothedLimit * gradient + Math.sqrt(smoothedLimit);
+		smoothedLimit = Math.max(1, Math.min(maxLimit, smoothedLimit * 0.8 + target * 0.2));
+		limit = (int) smoothedLimit;
+	}
+
+	/*
+	 * Permits a request is holding, released together when its flow finishes.
+	 */
+	public static final class Permits {
+
+		private Held held;
+
+		public synchronized void add(Admission admission) {
+			held = new Held(admission, System.nanoTime(), held);
+		}
+
+		public void releaseAll() {
+			Held h;
+			synchronized (this) {
+				h = held;
+				held = null;
+			}
+			for (; h != null; h = h.next) {
+				h.admission.release(h.started);
+			}
+		}
+
+		private static final class Held {
+
+			final Admission admission;
+			final long started;
+			final Held next;
+
+			Held(Admission admission, long started, Held next) {
+				this.admission = admission;
+				this.started = started;
+				this.next = next;
+			}
+
+		}
+
+	}
+
+	/*
+	 * Used to fail a flow when a route is full, the http subscriber turns it into a 503.
+	 */
+	public static final class Rejected extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int retryAfter;
+
+		Rejected(int retryAfter) {
+			super("too busy, try again later", null, false, false);
+			this.retryAfter = retryAfter;
+		}
+
+		public int retryAfter() {
+			return retryAfter;
+		}
+
+	}
+
+}
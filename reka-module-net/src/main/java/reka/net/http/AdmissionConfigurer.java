@@ -0,0 +1,49 @@
+package reka.net.http;
+
+import static reka.config.configurer.Configurer.Preconditions.checkConfig;
+
+import reka.config.configurer.annotations.Conf;
+
+public class AdmissionConfigurer {
+
+	// limit 100
+	// limit { concurrency 100, queue 500, adaptive true, retry-after 2 }
+
+	private int concurrency = -1;
+	private int queue = 0;
+	private boolean adaptive = false;
+	private int retryAfter = Admission.DEFAULT_RETRY_AFTER;
+
+	@Conf.Val
+	@Conf.At("concurrency")
+	public void concurrency(String val) {
+		concurrency = Integer.valueOf(val);
+		checkConfig(concurrency > 0, "concurrency must be at least 1");
+	}
+
+	// how many can wait for a slot, the rest get a 503
+	@Conf.At("queue")
+	public void queue(String val) {
+		queue = Integer.valueOf(val);
+		checkConfig(queue >= 0, "queue can't be negative");
+	}
+
+	// treat concurrency as the most we'll allow, and move below it when latency goes up
+	@Conf.At("adaptive")
+	public void adaptive(boolean val) {
+		adaptive = val;
+	}
+
+	// seconds
+	@Conf.At("retry-after")
+	public void retryAfter(String val) {
+		retryAfter = Integer.valueOf(val);
+		checkConfig(retryAfter >= 0, "retry-after can't be negative");
+	}
+
+	public Admission build() {
+		checkConfig(concurrency > 0, "please specify concurrency");
+		return new Admission(concurrency, queue, adaptive, retryAfter);
+	}
+
+}
@@ -0,0 +1,208 @@
+package reka.net.http;
+
+import static reka.util.Util.unchecked;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.util.AsciiString;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import reka.data.Data;
+
+/*
+ * Negotiated gzip/deflate for http responses.
+ *
+ * Dynamic responses are compressed into a buffer from the channel allocator using a
+ * Deflater per thread (they're all event loop threads, so that's not many) rather than
+ * creating and ending one each time. Static content gets compressed once up front.
+ */
+public class HttpCompression {
+
+	public static enum Encoding {
+
+		GZIP("gzip"), DEFLATE("deflate");
+
+		private final String value;
+
+		private Encoding(String value) {
+			this.value = value;
+		}
+
+		public String value() {
+			return value;
+		}
+
+	}
+
+	public static final String ACCEPT_ENCODING = "Accept-Encoding";
+	public static final String CONTENT_ENCODING = "Content-Encoding";
+
+	// smaller than this it's not worth it, it might even end up bigger
+	public static final int MIN_SIZE = 1024;
+
+	private static final String[] COMPRESSIBLE_TYPES = {
+		"text/",
+		"application/json",
+		"application/javascript",
+		"application/x-javascript",
+		"application/xml",
+		"application/xhtml+xml",
+		"application/rss+xml",
+		"application/atom+xml",
+		"image/svg+xml"
+	};
+
+	private static final int LEVEL = 6;
+	private static final int CHUNK_SIZE = 8192;
+	private static final int MAX_RETAINED_INPUT = 1024 * 1024;
+
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private static class Compressors {
+		final Deflater gzip = new Deflater(LEVEL, true);
+		final Deflater deflate = new Deflater(LEVEL, false);
+		final CRC32 crc = new CRC32();
+		final byte[] chunk = new byte[CHUNK_SIZE];
+		byte[] input = new byte[CHUNK_SIZE];
+	}
+
+	private static final ThreadLocal<Compressors> compressors = ThreadLocal.withInitial(Compressors::new);
+
+	public static boolean compressible(String contentType) {
+		if (contentType == null) return false;
+		for (String type : COMPRESSIBLE_TYPES) {
+			if (contentType.regionMatches(true, 0, type, 0, type.length())) return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Picks gzip over deflate, ignores anything with q=0.
+	 */
+	public static Encoding negotiate(String acceptEncoding) {
+		if (acceptEncoding == null || acceptEncoding.isEmpty()) return null;
+		boolean deflate = false;
+		for (String part : acceptEncoding.split(",")) {
+			String token = part.trim();
+			int semi = token.indexOf(';');
+			if (semi != -1) {
+				if (isZeroQ(token.substring(semi + 1))) continue;
+				token = token.substring(0, semi).trim();
+			}
+			if ("gzip".equalsIgnoreCase(token) || "x-gzip".equalsIgnoreCase(token) || "*".equals(token)) {
+				return Encoding.GZIP;
+			} else if ("deflate".equalsIgnoreCase(token)) {
+				deflate = true;
+			}
+		}
+		return deflate ? Encoding.DEFLATE : null;
+	}
+
+	private static boolean isZeroQ(String params) {
+		String p = params.trim();
+		if (!p.startsWith("q=")) return false;
+		try {
+			return Double.parseDouble(p.substring(2).trim()) == 0;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	public static Encoding negotiate(Data headers) {
+		return negotiate(header(headers, ACCEPT_ENCODING));
+	}
+
+	// header names are stored as the client sent them
+	public static String header(Data headers, CharSequence name) {
+		String[] result = { null };
+		headers.forEachData((e, d) -> {
+			if (result[0] == null && e.isKey() && AsciiString.contentEqualsIgnoreCase(name, e.name()) && d.isContent()) {
+				result[0] = d.content().asUTF8();
+			}
+		});
+		return result[0];
+	}
+
+	public static ByteBuf compress(ByteBufAllocator alloc, ByteBuf in, Encoding encoding) {
+		Compressors c = compressors.get();
+		Deflater deflater = encoding == Encoding.GZIP ? c.gzip : c.deflate;
+		int len = in.readableBytes();
+
+		byte[] input;
+		int offset;
+		if (in.hasArray()) {
+			input = in.array();
+			offset = in.arrayOffset() + in.readerIndex();
+		} else {
+			if (len > MAX_RETAINED_INPUT) {
+				input = new byte[len];
+			} else {
+				if (c.input.length < len) c.input = new byte[Math.min(MAX_RETAINED_INPUT, Math.max(len, c.input.length * 2))];
+				input = c.input;
+			}
+			in.getBytes(in.readerIndex(), input, 0, len);
+			offset = 0;
+		}
+
+		ByteBuf out = alloc.buffer(Math.max(64, len / 3));
+		try {
+			if (encoding == Encoding.GZIP) {
+				out.writeBytes(GZIP_HEADER);
+				c.crc.reset();
+				c.crc.update(input, offset, len);
+			}
+			deflater.reset();
+			deflater.setInput(input, offset, len);
+			deflater.finish();
+			while (!deflater.finished()) {
+				int n = deflater.deflate(c.chunk);
+				out.writeBytes(c.chunk, 0, n);
+			}
+			if (encoding == Encoding.GZIP) {
+				out.writeInt(Integer.reverseBytes((int) c.crc.getValue()));
+				out.writeInt(Integer.reverseBytes(len));
+			}
+			return out;
+		} catch (Throwable t) {
+			out.release();
+			throw t;
+		} finally {
+			deflater.setInput(c.chunk, 0, 0); // don't hold onto the input
+		}
+	}
+
+	public static byte[] gzip(byte[] bytes) {
+		try {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(64, bytes.length / 3));
+			try (GZIPOutputStream gz = new GZIPOutputStream(baos, CHUNK_SIZE)) {
+				gz.write(bytes);
+			}
+			return baos.toByteArray();
+		} catch (IOException e) {
+			throw unchecked(e);
+		}
+	}
+
+	public static void gzip(Path from, Path to) throws IOException {
+		Path tmp = to.resolveSibling(to.getFileName() + ".tmp");
+		try (InputStream in = Files.newInputStream(from);
+			 OutputStream out = new GZIPOutputStream(Files.newOutputStream(tmp), CHUNK_SIZE)) {
+			byte[] buf = new byte[CHUNK_SIZE];
+			int n;
+			while ((n = in.read(buf)) != -1) {
+				out.write(buf, 0, n);
+			}
+		}
+		Files.move(tmp, to, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+}
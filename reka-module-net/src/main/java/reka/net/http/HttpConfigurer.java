@@ -21,7 +21,9 @@ import reka.module.setup.ModuleConfigurer;
 import reka.module.setup.OperationConfigurer;
 import reka.net.NetManager;
 import reka.net.NetManager.HttpFlows;
+import reka.net.PortOptionsConfigurer;
 import reka.net.NetSettings;
+import reka.net.NetSettings.PortOptions;
 import reka.net.NetSettings.TlsSettings;
 import reka.net.NetSettings.Type;
 import reka.net.common.sockets.NetStatusProvider;
@@ -30,6 +32,7 @@ import reka.net.http.configurers.HttpRedirectConfigurer;
 import reka.net.http.configurers.HttpRequestConfigurer;
 import reka.net.http.configurers.HttpRouterConfigurer;
 import reka.net.http.operations.BasicAuthConfigurer;
+import reka.net.http.server.HttpInitializer;
 import reka.net.http.streaming.HttpEndConfigurer;
 import reka.net.http.streaming.HttpHeadConfigurer;
 import reka.net.http.streaming.HttpWriteConfigurer;
@@ -44,6 +47,11 @@ public class HttpConfigurer extends ModuleConfigurer {
 	private final Pattern listenHostAndPort = Pattern.compile("^(.+):([0-9]+)$");
 	
 	private TlsSettings tls;
+	private int maxInFlight = HttpFlows.DEFAULT_MAX_IN_FLIGHT;
+	private int maxConcurrentStreams = HttpInitializer.DEFAULT_MAX_CONCURRENT_STREAMS;
+	private Config accessLog;
+	private Admission admission;
+	private PortOptions portOptions = PortOptions.DEFAULT;
 	
 	private final NetManager net;
 	
@@ -78,6 +86,37 @@ public class HttpConfigurer extends ModuleConfigurer {
 		tls = configure(new TlsConfigurer(), config).build();
 	}
 
+	// how many pipelined requests on one connection can run at once, 1 runs them one by one
+	@Conf.At("pipelining")
+	public void pipelining(String val) {
+		maxInFlight = Integer.valueOf(val);
+		checkConfig(maxInFlight > 0, "pipelining must be at least 1");
+	}
+
+	// how many http/2 streams a client can have open on one connection
+	@Conf.At("max-streams")
+	public void maxStreams(String val) {
+		maxConcurrentStreams = Integer.valueOf(val);
+		checkConfig(maxConcurrentStreams > 0, "max-streams must be at least 1");
+	}
+
+	// socket level settings for the port: backlog, nodelay, write buffer, allocator, reuse-port
+	@Conf.At("tcp")
+	public void tcp(Config config) {
+		portOptions = configure(new PortOptionsConfigurer(), config).build();
+	}
+
+	@Conf.At("access-log")
+	public void accessLog(Config config) {
+		accessLog = config;
+	}
+
+	// how many requests for this host can run at once, with an optional queue, after that it's a 503
+	@Conf.At("limit")
+	public void limit(Config config) {
+		admission = configure(new AdmissionConfigurer(), config).build();
+	}
+
 	@Conf.Each("on")
 	public void on(Config config) {
 		checkConfig(config.hasValue(), "must have a value");
@@ -124,12 +163,18 @@ public class HttpConfigurer extends ModuleConfigurer {
 		});
 		*/
 		
-		app.registerStatusProvider(() -> new NetStatusProvider(net, app.identity(), NetSettings.Type.HTTP));
+		NetStatusProvider.register(app, net, NetSettings.Type.HTTP);
 		
 		listens.forEach(listen -> {
 			app.requireNetwork(listen.port(), listen.host());	
 		});
 		
+		AccessLog log = accessLog != null ? configure(new AccessLogConfigurer(dirs().data()), accessLog).build() : AccessLog.DEFAULT;
+		
+		if (log != null && log != AccessLog.DEFAULT) {
+			app.onUndeploy("close access log", log::close);
+		}
+		
 		for (Function<ConfigurerProvider, OperationConfigurer> h : requestHandlers) {
 			
 			app.buildFlow("on request", h, flow -> {
@@ -137,9 +182,9 @@ public class HttpConfigurer extends ModuleConfigurer {
 				for (HostAndPort listen : listens) {
 					
 					if (tls != null) {
-						app.registerComponent(net.deployHttps(app.identity(), listen, tls, new HttpFlows(flow)));
+						app.registerComponent(net.deployHttps(app.identity(), listen, tls, portOptions, new HttpFlows(flow, maxInFlight, maxConcurrentStreams, log, admission)));
 					} else {
-						app.registerComponent(net.deployHttp(app.identity(), listen, new HttpFlows(flow)));
+						app.registerComponent(net.deployHttp(app.identity(), listen, portOptions, new HttpFlows(flow, maxInFlight, maxConcurrentStreams, log, admission)));
 					}
 					
 					app.registerNetwork(listen.port(), Type.HTTP.protocolString(tls != null), details -> {
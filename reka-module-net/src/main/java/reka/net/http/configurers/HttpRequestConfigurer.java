@@ -5,9 +5,12 @@ import static reka.util.Path.path;
 import io.netty.channel.Channel;
 import io.netty.channel.EventLoopGroup;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 
+import reka.config.Config;
 import reka.config.configurer.annotations.Conf;
 import reka.data.Data;
 import reka.module.setup.OperationConfigurer;
@@ -23,6 +26,7 @@ public class HttpRequestConfigurer implements OperationConfigurer {
 	private String url;
 	private String method = "GET";
 	private Path into = path("response");
+	private final Map<String,String> headers = new LinkedHashMap<>();
 	
 	private Optional<Function<Data,Data>> bodyFnOption = Optional.empty();
 	
@@ -48,6 +52,13 @@ public class HttpRequestConfigurer implements OperationConfigurer {
 		into = dots(val);
 	}
 	
+	@Conf.At("headers")
+	public void headers(Config config) {
+		for (Config header : config.body()) {
+			headers.put(header.key(), header.valueAsString());
+		}
+	}
+	
 	@Conf.At("content-from")
 	public void content(String val) {
 		Path path = dots(val);
@@ -57,7 +68,7 @@ public class HttpRequestConfigurer implements OperationConfigurer {
 
 	@Override
 	public void setup(OperationSetup ops) {
-		ops.add("request", () -> new HttpRequestOperation(group, channelType, url, method, bodyFnOption, into));
+		ops.add("request", () -> new HttpRequestOperation(group, channelType, url, method, headers, bodyFnOption, into));
 	}
 
 }
@@ -11,6 +11,8 @@ import java.util.Map.Entry;
 import java.util.function.Supplier;
 
 import reka.config.Config;
+import reka.config.Config.ConfigBuilder;
+import reka.config.ConfigBody;
 import reka.config.configurer.annotations.Conf;
 import reka.core.config.ConfigurerProvider;
 import reka.core.config.SequenceConfigurer;
@@ -19,7 +21,10 @@ import reka.flow.builder.OperationFlowNode;
 import reka.flow.ops.RouteKey;
 import reka.module.setup.OperationConfigurer;
 import reka.module.setup.OperationSetup;
+import reka.net.http.Admission;
+import reka.net.http.AdmissionConfigurer;
 import reka.net.http.configurers.HttpRouterConfigurer.RouteBuilder;
+import reka.net.http.operations.HttpAdmitOperation;
 import reka.net.http.operations.HttpRouter;
 import reka.net.http.operations.HttpRouter.Route;
 import reka.util.dirs.AppDirs;
@@ -141,6 +146,15 @@ public class HttpRouteGroupConfigurer {
 	}
 	
 	private OperationConfigurer configToSegment(Config config) {
+		Config limit = limitConfig(config);
+		if (limit != null) {
+			Admission admission = configure(new AdmissionConfigurer(), limit).build();
+			OperationConfigurer rest = configToSegment(withoutLimit(config));
+			return ops -> {
+				ops.add("limit", () -> new HttpAdmitOperation(admission));
+				ops.add(rest);
+			};
+		}
 		if (config.hasDocument()) {
 			return configure(new HttpContentConfigurer(dirs), config);
 		} else if (config.hasBody()) {
@@ -150,6 +164,30 @@ public class HttpRouteGroupConfigurer {
 		}
 	}
 	
+	/*
+	 * GET /search {
+	 *   limit { concurrency 20, queue 50 }
+	 *   ...
+	 * }
+	 */
+	private static Config limitConfig(Config config) {
+		if (!config.hasBody()) return null;
+		for (Config child : config.body()) {
+			if (child.hasKey() && "limit".equals(child.key())) return child;
+		}
+		return null;
+	}
+	
+	private static Config withoutLimit(Config config) {
+		List<Config> rest = new ArrayList<>();
+		for (Config child : config.body()) {
+			if (!(child.hasKey() && "limit".equals(child.key()))) rest.add(child);
+		}
+		ConfigBuilder builder = config.toBuilder();
+		builder.body(rest.isEmpty() ? null : ConfigBody.of(config.source(), rest));
+		return builder.build();
+	}
+	
 	private void addPatternRoute(String method, String pattern, Config config) {
 		RouteKey key = RouteKey.named(format("%s %s", method, pattern));
 		addRoute(new RouteBuilder().method(method).path(pattern).key(key).build(), config);
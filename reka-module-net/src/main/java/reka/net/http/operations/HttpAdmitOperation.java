@@ -0,0 +1,36 @@
+package reka.net.http.operations;
+
+import reka.data.MutableData;
+import reka.flow.ops.AsyncOperation;
+import reka.flow.ops.OperationContext;
+import reka.net.http.Admission;
+import reka.net.http.Admission.Permits;
+
+/*
+ * Goes at the start of a route with a limit, carries on when there's a slot (maybe after
+ * waiting for one), or fails with Admission.Rejected which goes out as a 503.
+ */
+public class HttpAdmitOperation implements AsyncOperation {
+
+	private final Admission admission;
+
+	public HttpAdmitOperation(Admission admission) {
+		this.admission = admission;
+	}
+
+	@Override
+	public void call(MutableData data, OperationContext ctx, OperationResult res) {
+		Permits permits = ctx.get(Admission.PERMITS);
+		if (permits == null) {
+			res.done(); // not an http request, nobody would give the permit back
+			return;
+		}
+		if (!admission.submit(() -> {
+			permits.add(admission);
+			res.done();
+		})) {
+			res.error(admission.rejection());
+		}
+	}
+
+}
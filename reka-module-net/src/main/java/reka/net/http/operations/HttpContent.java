@@ -1,28 +1,48 @@
 package reka.net.http.operations;
 
+import static reka.data.content.Contents.utf8;
+
 import java.nio.file.Path;
 
 import reka.data.MutableData;
 import reka.data.content.Content;
 import reka.flow.ops.Operation;
 import reka.flow.ops.OperationContext;
+import reka.net.http.HttpCompression;
+import reka.net.http.HttpCompression.Encoding;
 import reka.net.http.operations.HttpContentUtils.ContentAndType;
+import reka.util.Path.Request;
 import reka.util.Path.Response;
 
 public class HttpContent implements Operation {
 	
-	private final Content content, contentType;
+	private static final Content GZIP = utf8(Encoding.GZIP.value());
+	private static final Content ACCEPT_ENCODING = utf8(HttpCompression.ACCEPT_ENCODING);
+	
+	private final Content content, contentType, gzipped;
 	
 	protected HttpContent(Path tmpdir, Content content, String contentType) {
 		ContentAndType vals = HttpContentUtils.convert(tmpdir, content, contentType);
 		this.content = vals.content();
 		this.contentType = vals.type();
+		this.gzipped = vals.gzipped();
 	}
 
 	@Override
 	public void call(MutableData data, OperationContext ctx) {
-		data.put(Response.CONTENT, content)
-		    .put(Response.Headers.CONTENT_TYPE, contentType);
+		if (gzipped == null) {
+			data.put(Response.CONTENT, content)
+			    .put(Response.Headers.CONTENT_TYPE, contentType);
+		} else if (HttpCompression.negotiate(data.at(Request.HEADERS)) == Encoding.GZIP) {
+			data.put(Response.CONTENT, gzipped)
+			    .put(Response.Headers.CONTENT_TYPE, contentType)
+			    .put(Response.Headers.CONTENT_ENCODING, GZIP)
+			    .put(Response.Headers.VARY, ACCEPT_ENCODING);
+		} else {
+			data.put(Response.CONTENT, content)
+			    .put(Response.Headers.CONTENT_TYPE, contentType)
+			    .put(Response.Headers.VARY, ACCEPT_ENCODING);
+		}
 	}
 
 }
@@ -1,12 +1,15 @@
 package reka.net.http.operations;
 
+import static java.lang.String.format;
 import static reka.data.content.Contents.binary;
 import static reka.data.content.Contents.utf8;
 import static reka.util.Util.sha1hex;
 import static reka.util.Util.unchecked;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 
@@ -14,6 +17,7 @@ import javax.activation.MimetypesFileTypeMap;
 
 import reka.data.content.Content;
 import reka.flow.ops.Operation;
+import reka.net.http.HttpCompression;
 
 public abstract class HttpContentUtils {
 	
@@ -31,11 +35,12 @@ public abstract class HttpContentUtils {
 	
 	public static class ContentAndType {
 		
-		private final Content content, type;
+		private final Content content, type, gzipped;
 		
-		private ContentAndType(Content content, Content type) {
+		private ContentAndType(Content content, Content type, Content gzipped) {
 			this.content = content;
 			this.type = type;
+			this.gzipped = gzipped;
 		}
 		
 		public Content content() {
@@ -46,6 +51,11 @@ public abstract class HttpContentUtils {
 			return type;
 		}
 		
+		// null if it's not worth compressing
+		public Content gzipped() {
+			return gzipped;
+		}
+		
 	}
 	
 	public static ContentAndType convert(java.nio.file.Path basedir, Content content, String contentType) {
@@ -66,15 +76,55 @@ public abstract class HttpContentUtils {
 					throw unchecked(e);
 				}
 			} else {
-				ByteBuffer buf = ByteBuffer.allocateDirect(contentBytes.length).put(contentBytes);
-				buf.flip();
-				content = binary(contentType, buf.asReadOnlyBuffer());
+				content = binary(contentType, directBuffer(contentBytes));
 			}
 		}
 		
-		return new ContentAndType(content, utf8(contentType));
+		Content gzipped = HttpCompression.compressible(contentType) ? gzipped(basedir, content, contentType) : null;
+		
+		return new ContentAndType(content, utf8(contentType), gzipped);
 		
 	}
+	
+	/*
+	 * Compressed once at deploy time, large content goes in a .gz file next to the original
+	 * so it can still be sent with a file region.
+	 */
+	private static Content gzipped(java.nio.file.Path basedir, Content content, String contentType) {
+		try {
+			if (content.hasFile()) {
+				File file = content.asFile();
+				long size = file.length();
+				if (size < HttpCompression.MIN_SIZE) return null;
+				String name = basedir.equals(file.toPath().getParent()) ? file.getName() 
+						: "http." + sha1hex(format("%s:%d:%d", file.getAbsolutePath(), size, file.lastModified()).getBytes(StandardCharsets.UTF_8));
+				Path gz = basedir.resolve(name + ".gz");
+				if (!Files.exists(gz)) HttpCompression.gzip(file.toPath(), gz);
+				return worthIt(Files.size(gz), size) ? binary(contentType, gz.toFile()) : null;
+			} else if (content.hasByteBuffer()) {
+				ByteBuffer buf = content.asByteBuffer().duplicate();
+				if (buf.remaining() < HttpCompression.MIN_SIZE) return null;
+				byte[] bytes = new byte[buf.remaining()];
+				buf.get(bytes);
+				byte[] gz = HttpCompression.gzip(bytes);
+				return worthIt(gz.length, bytes.length) ? binary(contentType, directBuffer(gz)) : null;
+			} else {
+				return null;
+			}
+		} catch (IOException e) {
+			throw unchecked(e);
+		}
+	}
+	
+	private static boolean worthIt(long compressed, long original) {
+		return compressed < original * 0.9;
+	}
+	
+	private static ByteBuffer directBuffer(byte[] bytes) {
+		ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length).put(bytes);
+		buf.flip();
+		return buf.asReadOnlyBuffer();
+	}
 
 	private static String mimeType(String val) {
 		return val.contains("/") ? val : mimeTypesMap.getContentType("fn." + val);
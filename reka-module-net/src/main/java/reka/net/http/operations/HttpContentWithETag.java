@@ -12,6 +12,8 @@ import reka.data.content.Content;
 import reka.data.content.Contents;
 import reka.flow.ops.Operation;
 import reka.flow.ops.OperationContext;
+import reka.net.http.HttpCompression;
+import reka.net.http.HttpCompression.Encoding;
 import reka.net.http.operations.HttpContentUtils.ContentAndType;
 import reka.util.Path.Request;
 import reka.util.Path.Response;
@@ -24,35 +26,51 @@ public class HttpContentWithETag implements Operation {
 	
 	private static final HashFunction sha1 =  Hashing.sha1();
 	
-	private final Content content, contentType;
+	private final Content content, contentType, gzipped;
 	
-	private final String etagValue;
-	private final Content etag;
+	private final String etagValue, gzippedEtagValue;
+	private final Content etag, gzippedEtag;
 	
 	private static final Content EMPTY = Contents.nullValue();	
 	private static final Content NOT_MODIFIED = integer(304);
+	private static final Content GZIP = utf8(Encoding.GZIP.value());
+	private static final Content ACCEPT_ENCODING = utf8(HttpCompression.ACCEPT_ENCODING);
 	
 	protected HttpContentWithETag(Path tmpdir, Content content, String contentType) {
 		ContentAndType vals = HttpContentUtils.convert(tmpdir, content, contentType);
 		this.content = vals.content();
 		this.contentType = vals.type();
+		this.gzipped = vals.gzipped();
 		Hasher hasher = sha1.newHasher();
 		content.hash(hasher);
 		hasher.putString(contentType, StandardCharsets.UTF_8);
 		etagValue = hex(hasher.hash().asBytes());
 		etag = utf8(etagValue);
+		// each representation needs its own etag
+		gzippedEtagValue = etagValue + "-gz";
+		gzippedEtag = utf8(gzippedEtagValue);
 	}
 
 	@Override
 	public void call(MutableData data, OperationContext ctx) {
-		if (data.existsAt(Request.Headers.IF_NONE_MATCH) && etagValue.equals(data.getString(Request.Headers.IF_NONE_MATCH).orElse(""))) {
+		boolean useGzip = gzipped != null && HttpCompression.negotiate(data.at(Request.HEADERS)) == Encoding.GZIP;
+		String ifNoneMatch = data.getString(Request.Headers.IF_NONE_MATCH).orElse(null);
+		if (ifNoneMatch != null && (useGzip ? gzippedEtagValue : etagValue).equals(ifNoneMatch)) {
 			data.put(Response.CONTENT, EMPTY)
 				.put(Response.STATUS, NOT_MODIFIED);
+		} else if (useGzip) {
+			data.put(Response.CONTENT, gzipped)
+				.put(Response.Headers.CONTENT_TYPE, contentType)
+				.put(Response.Headers.CONTENT_ENCODING, GZIP)
+				.put(Response.Headers.ETAG, gzippedEtag);
 		} else {
 			data.put(Response.CONTENT, content)
 				.put(Response.Headers.CONTENT_TYPE, contentType)
 				.put(Response.Headers.ETAG, etag);
 		}
+		if (gzipped != null) {
+			data.put(Response.Headers.VARY, ACCEPT_ENCODING);
+		}
 	}
 
 }
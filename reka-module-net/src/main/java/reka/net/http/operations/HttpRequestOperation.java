@@ -18,7 +18,8 @@ import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.DefaultHttpRequest;
 import io.netty.handler.codec.http.HttpClientCodec;
-import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpMethod;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpRequest;
@@ -26,6 +27,8 @@ import io.netty.handler.codec.http.HttpVersion;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 
@@ -48,10 +51,11 @@ public class HttpRequestOperation implements AsyncOperation {
 	private final int port;
 	private final String path;
 	private final HttpMethod method;
+	private final Map<String,String> headers;
 	private final Path into;
 	private final Function<Data,Data> bodyFn;
 
-	public HttpRequestOperation(EventLoopGroup group, Class<? extends Channel> channelType, String url, String method, Optional<Function<Data,Data>> bodyFnOption, Path into) {
+	public HttpRequestOperation(EventLoopGroup group, Class<? extends Channel> channelType, String url, String method, Map<String,String> headers, Optional<Function<Data,Data>> bodyFnOption, Path into) {
 		URI uri = makeURI(url);
 		
 		this.port = uri.getPort();
@@ -63,6 +67,7 @@ public class HttpRequestOperation implements AsyncOperation {
 			this.path = uri.getRawPath();
 		}
 		this.method = HttpMethod.valueOf(method.toUpperCase());
+		this.headers = new LinkedHashMap<>(headers);
 		this.bodyFn = bodyFnOption.orElse(null);
 		this.into = into;
 		
@@ -116,14 +121,15 @@ public class HttpRequestOperation implements AsyncOperation {
 					json.close();
 					out.close();
 					req = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, path, buf);
-					req.headers().set(HttpHeaders.Names.CONTENT_TYPE, "application/json");
-					req.headers().set(HttpHeaders.Names.CONTENT_LENGTH, buf.readableBytes());
+					req.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json");
+					req.headers().set(HttpHeaderNames.CONTENT_LENGTH, buf.readableBytes());
 				} else {
 					req = new DefaultHttpRequest(HttpVersion.HTTP_1_1, method, path);
 				}
 				
-				req.headers().set(HttpHeaders.Names.HOST, host);
-				req.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+				headers.forEach(req.headers()::set);
+				req.headers().set(HttpHeaderNames.HOST, host);
+				req.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
 
 				ch.writeAndFlush(req);
 			}
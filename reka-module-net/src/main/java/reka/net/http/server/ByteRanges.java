@@ -0,0 +1,54 @@
+package reka.net.http.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * Parses Range: bytes=... headers. Returns null if the header should be ignored (not bytes,
+ * malformed, or silly numbers of ranges) and an empty list if none of them can be satisfied.
+ * Each range is [first, last] inclusive, as they are in the header.
+ */
+class ByteRanges {
+
+	private static final String BYTES = "bytes=";
+	private static final int MAX_RANGES = 16;
+
+	static List<long[]> parse(String header, long size) {
+		if (header == null || !header.regionMatches(true, 0, BYTES, 0, BYTES.length())) return null;
+		String[] specs = header.substring(BYTES.length()).split(",");
+		if (specs.length > MAX_RANGES) return null;
+		List<long[]> ranges = new ArrayList<>(specs.length);
+		for (String spec : specs) {
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash == -1) return null;
+			String first = spec.substring(0, dash).trim();
+			String last = spec.substring(dash + 1).trim();
+			try {
+				long start, end;
+				if (first.isEmpty()) {
+					if (last.isEmpty()) return null;
+					long suffix = Long.parseLong(last);
+					if (suffix <= 0) continue;
+					start = Math.max(0, size - suffix);
+					end = size - 1;
+				} else {
+					start = Long.parseLong(first);
+					end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+					if (!last.isEmpty() && Long.parseLong(last) < start) return null;
+				}
+				if (start < 0) return null;
+				if (start >= size) continue;
+				ranges.add(new long[] { start, end });
+			} catch (NumberFormatException e) {
+				return null;
+			}
+		}
+		return ranges;
+	}
+
+	static long length(long[] range) {
+		return range[1] - range[0] + 1;
+	}
+
+}
@@ -9,19 +9,17 @@ import static reka.util.Util.unwrap;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.util.concurrent.Future;
-import io.netty.util.concurrent.GenericFutureListener;
 
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import reka.data.Data;
 import reka.data.MutableData;
 import reka.data.memory.MutableMemoryData;
 import reka.flow.ops.Subscriber;
+import reka.net.http.AccessLog;
+import reka.net.http.Admission;
+import reka.net.http.Admission.Permits;
 import reka.util.Path;
 import reka.util.Path.Request;
 import reka.util.Path.Response;
@@ -29,32 +27,70 @@ import reka.util.Path.Response;
 public class ChannelHandlerContextDataSubscriber implements Subscriber {
 
 	public static final Path CLOSE_CHANNEL = dots("options.close");
-	private static final Logger log = LoggerFactory.getLogger(ChannelHandlerContextDataSubscriber.class);
 
 	private final long started = System.nanoTime();
 	private final ChannelHandlerContext context;
+	private final HttpPipeline pipeline;
+	private final long sequence;
+	private final AccessLog accessLog;
+	private final Permits permits;
 	
-	ChannelHandlerContextDataSubscriber(ChannelHandlerContext context) {
+	ChannelHandlerContextDataSubscriber(ChannelHandlerContext context, HttpPipeline pipeline, long sequence, AccessLog accessLog, Permits permits) {
 		this.context = context;
+		this.pipeline = pipeline;
+		this.sequence = sequence;
+		this.accessLog = accessLog;
+		this.permits = permits;
 	}
 	
 	@Override
 	public void ok(MutableData data) {
-		ChannelFuture writeFuture = context.writeAndFlush(data);
-		writeFuture.addListener(new LogHttp(data));
-		if (data.existsAt(CLOSE_CHANNEL)) {
-			writeFuture.addListener(ChannelFutureListener.CLOSE);
-		}
+		permits.releaseAll();
+		pipeline.complete(sequence, () -> {
+			ChannelFuture writeFuture = write(data);
+			if (data.existsAt(CLOSE_CHANNEL)) {
+				writeFuture.addListener(ChannelFutureListener.CLOSE);
+			}
+		});
 	}
 
 	@Override
 	public void halted() {
+		permits.releaseAll();
 		Data data = MutableMemoryData.create().put(Response.STATUS, integer(404));
-		context.writeAndFlush(data).addListener(new LogHttp(data)).addListener(ChannelFutureListener.CLOSE);
+		pipeline.complete(sequence, () -> {
+			write(data).addListener(ChannelFutureListener.CLOSE);
+		});
+	}
+	
+	// too busy, quick and cheap, and keep the connection
+	void rejected(int retryAfter) {
+		Data data = MutableMemoryData.create()
+			.putInt(Response.STATUS, 503)
+			.putString(Response.Headers.RETRY_AFTER, Integer.toString(retryAfter))
+			.putString(Response.Headers.CONTENT_TYPE, "text/plain")
+			.putString(Response.CONTENT, "service unavailable");
+		pipeline.complete(sequence, () -> write(data));
+	}
+	
+	private ChannelFuture write(Data data) {
+		ChannelFuture writeFuture = context.writeAndFlush(data);
+		if (accessLog == null) return writeFuture;
+		DataToHttpEncoder.Sent sent = context.channel().attr(DataToHttpEncoder.SENT).get();
+		int status = sent != null ? sent.status : -1;
+		long bytes = sent != null ? sent.bytes : -1;
+		writeFuture.addListener(future -> accessLog.record(data, status, bytes, (System.nanoTime() - started) / 1000));
+		return writeFuture;
 	}
 
 	@Override
 	public void error(Data incomingData, Throwable error) {
+		permits.releaseAll();
+		Throwable root = unwrap(error);
+		if (root instanceof Admission.Rejected) {
+			rejected(((Admission.Rejected) root).retryAfter());
+			return;
+		}
 		MutableData data = MutableMemoryData.from(incomingData);
 		String acceptHeader = data.getString(Request.Headers.ACCEPT).orElse("");
 		if (acceptsHtml(acceptHeader)) {
@@ -64,7 +100,9 @@ public class ChannelHandlerContextDataSubscriber implements Subscriber {
 		} else {
 			textErrorMessage(data, error);
 		}
-		context.writeAndFlush(data).addListener(new LogHttp(data)).addListener(ChannelFutureListener.CLOSE);
+		pipeline.complete(sequence, () -> {
+			write(data).addListener(ChannelFutureListener.CLOSE);
+		});
 	}
 	
 	private static boolean acceptsHtml(String acceptHeader) {
@@ -117,28 +155,4 @@ public class ChannelHandlerContextDataSubscriber implements Subscriber {
 
 	}
 	
-	public class LogHttp implements GenericFutureListener<Future<Void>> {
-
-		private final Data data;
-		
-		public LogHttp(Data data) {
-			this.data = data;
-		}
-		
-		@Override
-		public void operationComplete(Future<Void> future) throws Exception {
-			long took = (System.nanoTime() - started) / 1000;
-			String status = data.getString(Response.STATUS).orElse("-");
-			log.info("{} - \"{} {}\" {} {}us", 
-					data.getString(Request.HOST).orElse(""), 
-					data.getString(Request.METHOD).orElse(""), 
-					data.getString(Request.PATH).orElse(""), 
-					status,
-					took);
-		}
-		
-		
-		
-	}
-	
-}
\ No newline at end of file
+}
@@ -1,30 +1,39 @@
 package reka.net.http.server;
 
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
+import static java.lang.String.format;
 import static reka.data.MoreDataUtils.writeToOutputStreamAsJson;
 import static reka.data.MoreDataUtils.writeToOutputStreamAsPrettyJson;
-import static reka.util.Util.unchecked;
+import static reka.net.http.HttpCompression.compress;
+import static reka.net.http.HttpCompression.compressible;
+import static reka.net.http.HttpCompression.header;
+import static reka.net.http.HttpCompression.negotiate;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.buffer.ByteBufOutputStream;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
-import io.netty.channel.DefaultFileRegion;
 import io.netty.handler.codec.MessageToMessageEncoder;
-import io.netty.handler.codec.http.Cookie;
-import io.netty.handler.codec.http.DefaultCookie;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.DefaultHttpContent;
 import io.netty.handler.codec.http.DefaultHttpResponse;
-import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.LastHttpContent;
-import io.netty.handler.codec.http.ServerCookieEncoder;
-import io.netty.handler.stream.ChunkedFile;
+import io.netty.handler.codec.http.cookie.Cookie;
+import io.netty.handler.codec.http.cookie.DefaultCookie;
+import io.netty.handler.codec.http.cookie.ServerCookieEncoder;
+import io.netty.handler.codec.http2.Http2StreamChannel;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.AsciiString;
+import io.netty.util.AttributeKey;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -32,6 +41,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -40,6 +50,8 @@ import org.slf4j.LoggerFactory;
 import reka.Reka;
 import reka.data.Data;
 import reka.data.content.Content;
+import reka.net.http.HttpCompression;
+import reka.net.http.HttpCompression.Encoding;
 import reka.util.Path.Request;
 import reka.util.Path.Response;
 
@@ -56,12 +68,23 @@ public class DataToHttpEncoder extends MessageToMessageEncoder<Data> {
 	private static final String TEXT_PLAIN = "text/plain";
 	private static final String APPLICATION_JSON = "application/json";
 
+	/*
+	 * What actually went out, for the access log. Encoding happens inside the write call so the
+	 * subscriber can read it straight after writing.
+	 */
+	static final class Sent {
+		int status;
+		long bytes;
+	}
+	
+	static final AttributeKey<Sent> SENT = AttributeKey.valueOf("sent");
+
 	private final Logger logger = LoggerFactory.getLogger("http-encoder");
 	private final boolean ssl;
 
 	private static volatile CharSequence date;
 	private static final SimpleDateFormat sdf = new SimpleDateFormat("E, dd MMM yyyy HH:mm:ss z");
-	private static final Runnable setdate = () -> date = HttpHeaders.newEntity(sdf.format(new Date()));
+	private static final Runnable setdate = () -> date = AsciiString.cached(sdf.format(new Date()));
 
 	static {
 		setdate.run();
@@ -71,10 +94,103 @@ public class DataToHttpEncoder extends MessageToMessageEncoder<Data> {
 	private DataToHttpEncoder(boolean ssl) {
 		this.ssl = ssl;
 	}
+	
+	/*
+	 * HTTP/2 streams only take http messages (no file regions or plain buffers) and TLS can't
+	 * use sendfile, otherwise we hand the file region straight to the socket.
+	 */
+	private Object body(OpenFiles.Handle handle, long position, long count, boolean http2) {
+		if (http2) {
+			return new HttpContentChunks(handle.chunks(position, count));
+		} else if (ssl) {
+			return handle.chunks(position, count);
+		} else {
+			return handle.region(position, count);
+		}
+	}
+	
+	private static Object part(ByteBuf buf, boolean http2) {
+		return http2 ? new DefaultHttpContent(buf) : buf;
+	}
+	
+	private static class HttpContentChunks implements ChunkedInput<HttpContent> {
+		
+		private final ChunkedInput<ByteBuf> input;
+		
+		HttpContentChunks(ChunkedInput<ByteBuf> input) {
+			this.input = input;
+		}
+
+		@Override
+		public boolean isEndOfInput() throws Exception {
+			return input.isEndOfInput();
+		}
+
+		@Override
+		public void close() throws Exception {
+			input.close();
+		}
+
+		@Deprecated
+		@Override
+		public HttpContent readChunk(ChannelHandlerContext ctx) throws Exception {
+			return readChunk(ctx.alloc());
+		}
+
+		@Override
+		public HttpContent readChunk(ByteBufAllocator allocator) throws Exception {
+			ByteBuf buf = input.readChunk(allocator);
+			return buf != null ? new DefaultHttpContent(buf) : null;
+		}
+
+		@Override
+		public long length() {
+			return input.length();
+		}
+
+		@Override
+		public long progress() {
+			return input.progress();
+		}
+		
+	}
+	
+	/*
+	 * If-Range means only give them the range if it's still the same thing they have, we
+	 * compare it against whatever validators the response has.
+	 */
+	private static List<long[]> requestedRanges(Data data, long size) {
+		Data requestHeaders = data.at(Request.HEADERS);
+		String range = header(requestHeaders, HttpHeaderNames.RANGE);
+		if (range == null) return null;
+		String ifRange = header(requestHeaders, HttpHeaderNames.IF_RANGE);
+		if (ifRange != null) {
+			Data responseHeaders = data.at(Response.HEADERS);
+			if (!ifRange.equals(header(responseHeaders, HttpHeaderNames.ETAG)) 
+					&& !ifRange.equals(header(responseHeaders, HttpHeaderNames.LAST_MODIFIED))) {
+				return null;
+			}
+		}
+		return ByteRanges.parse(range, size);
+	}
+	
+	private static String contentRange(long[] range, long size) {
+		return format("bytes %d-%d/%d", range[0], range[1], size);
+	}
 
 	@Override
 	protected void encode(ChannelHandlerContext context, Data data, List<Object> out) throws Exception {
 
+		OpenFiles.Handle handle = null;
+		
+		Sent sent = context.channel().attr(SENT).get();
+		if (sent == null) {
+			sent = new Sent();
+			context.channel().attr(SENT).set(sent);
+		}
+		sent.status = -1;
+		sent.bytes = -1;
+		
 		try {
 			
 			HttpResponseStatus responseStatus = null;
@@ -87,7 +203,7 @@ public class DataToHttpEncoder extends MessageToMessageEncoder<Data> {
 			boolean headRequest = data.existsAt(Response.HEAD);
 
 			if (headRequest) {
-				logger.info("sending HEAD response");
+				logger.debug("sending HEAD response");
 			}
 
 			Optional<String> status = data.getString(Response.STATUS);
@@ -143,6 +259,38 @@ public class DataToHttpEncoder extends MessageToMessageEncoder<Data> {
 			if (responseStatus == null) {
 				responseStatus = HttpResponseStatus.OK;
 			}
+			
+			String contentEncoding = null;
+			boolean vary = false;
+			
+			if (buffer != null && buffer.readableBytes() >= HttpCompression.MIN_SIZE) {
+				Data responseHeaders = data.at(Response.HEADERS);
+				String type = contentType != null ? contentType : header(responseHeaders, HttpHeaderNames.CONTENT_TYPE);
+				if (compressible(type != null ? type : TEXT_PLAIN) 
+						&& header(responseHeaders, HttpHeaderNames.CONTENT_ENCODING) == null
+						&& header(responseHeaders, HttpHeaderNames.CONTENT_LENGTH) == null) {
+					vary = true;
+					Encoding encoding = negotiate(data.at(Request.HEADERS));
+					if (encoding != null) {
+						ByteBuf compressed = compress(context.alloc(), buffer, encoding);
+						buffer.release();
+						buffer = compressed;
+						contentEncoding = encoding.value();
+					}
+				}
+			}
+
+			List<long[]> ranges = null;
+			
+			if (file != null) {
+				handle = OpenFiles.acquire(file);
+				if (responseStatus.code() == HttpResponseStatus.OK.code()) {
+					ranges = requestedRanges(data, handle.size());
+					if (ranges != null) {
+						responseStatus = ranges.isEmpty() ? HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE : HttpResponseStatus.PARTIAL_CONTENT;
+					}
+				}
+			}
 
 			HttpResponse response;
 			if (buffer != null) {
@@ -151,20 +299,20 @@ public class DataToHttpEncoder extends MessageToMessageEncoder<Data> {
 				response = new DefaultHttpResponse(HTTP_1_1, responseStatus);
 			}
 
-			response.headers().set(HttpHeaders.Names.SERVER, DEFAULT_SERVER_NAME);
-			response.headers().set(HttpHeaders.Names.DATE, date);
+			response.headers().set(HttpHeaderNames.SERVER, DEFAULT_SERVER_NAME);
+			response.headers().set(HttpHeaderNames.DATE, date);
 			if (data.existsAt(HttpHostHandler.CLOSE_CHANNEL)) {
-				response.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.CLOSE);
+				response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
 			} else {
-				response.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
+				response.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
 			}
 
 			data.at(Response.HEADERS).forEachContent((p, c) -> {
 				response.headers().set(p.last().toString(), c);
 			});
 
-			if (!response.headers().contains(HttpHeaders.Names.CONTENT_TYPE)) {
-				response.headers().set(HttpHeaders.Names.CONTENT_TYPE, TEXT_PLAIN);
+			if (!response.headers().contains(HttpHeaderNames.CONTENT_TYPE)) {
+				response.headers().set(HttpHeaderNames.CONTENT_TYPE, TEXT_PLAIN);
 			}
 
 			Collection<Cookie> cookies = new ArrayList<>();
@@ -174,44 +322,93 @@ public class DataToHttpEncoder extends MessageToMessageEncoder<Data> {
 				cookies.add(new DefaultCookie(p.toString(), val));
 			});
 
-			for (String c : ServerCookieEncoder.encode(cookies)) {
-				response.headers().add(HttpHeaders.Names.SET_COOKIE, c);
+			for (String c : ServerCookieEncoder.LAX.encode(cookies)) {
+				response.headers().add(HttpHeaderNames.SET_COOKIE, c);
 			}
 
 			if (contentType != null) {
-				response.headers().set(HttpHeaders.Names.CONTENT_TYPE, contentType);
+				response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+			}
+			
+			if (contentEncoding != null) {
+				response.headers().set(HttpHeaderNames.CONTENT_ENCODING, contentEncoding);
+			}
+			
+			if (vary && !response.headers().contains(HttpHeaderNames.VARY)) {
+				response.headers().add(HttpHeaderNames.VARY, HttpHeaderNames.ACCEPT_ENCODING);
+			}
+
+			List<ByteBuf> partHeaders = null;
+			
+			if (ranges != null) {
+				long size = handle.size();
+				if (ranges.isEmpty()) {
+					response.headers().set(HttpHeaderNames.CONTENT_RANGE, "bytes */" + size);
+					response.headers().set(HttpHeaderNames.CONTENT_LENGTH, 0);
+					handle.release();
+					handle = null;
+				} else if (ranges.size() == 1) {
+					long[] range = ranges.get(0);
+					response.headers().set(HttpHeaderNames.CONTENT_RANGE, contentRange(range, size));
+					response.headers().set(HttpHeaderNames.CONTENT_LENGTH, ByteRanges.length(range));
+				} else {
+					String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong()) + Long.toHexString(System.nanoTime());
+					String partType = response.headers().get(HttpHeaderNames.CONTENT_TYPE);
+					partHeaders = new ArrayList<>(ranges.size() + 1);
+					long length = 0;
+					for (long[] range : ranges) {
+						ByteBuf part = Unpooled.copiedBuffer(format("\r\n--%s\r\nContent-Type: %s\r\nContent-Range: %s\r\n\r\n", 
+								boundary, partType, contentRange(range, size)), StandardCharsets.US_ASCII);
+						partHeaders.add(part);
+						length += part.readableBytes() + ByteRanges.length(range);
+					}
+					ByteBuf end = Unpooled.copiedBuffer(format("\r\n--%s--\r\n", boundary), StandardCharsets.US_ASCII);
+					partHeaders.add(end);
+					length += end.readableBytes();
+					response.headers().set(HttpHeaderNames.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+					response.headers().set(HttpHeaderNames.CONTENT_LENGTH, length);
+				}
 			}
 
-			if (response.headers().get(HttpHeaders.Names.CONTENT_LENGTH) == null) {
-				if (file != null) {
-					response.headers().add(HttpHeaders.Names.CONTENT_LENGTH, file.length());
+			if (response.headers().get(HttpHeaderNames.CONTENT_LENGTH) == null) {
+				if (handle != null) {
+					response.headers().add(HttpHeaderNames.CONTENT_LENGTH, handle.size());
 				} else if (buffer != null) {
-					response.headers().add(HttpHeaders.Names.CONTENT_LENGTH, buffer.readableBytes());
+					response.headers().add(HttpHeaderNames.CONTENT_LENGTH, buffer.readableBytes());
 				} else {
-					response.headers().add(HttpHeaders.Names.CONTENT_LENGTH, 0);
+					response.headers().add(HttpHeaderNames.CONTENT_LENGTH, 0);
 				}
 			}
 
+			sent.status = response.status().code();
+			sent.bytes = headRequest ? 0 : HttpUtil.getContentLength(response, -1L);
+
 			out.add(response);
 
-			if (file != null) {
-				if (ssl) {
-					out.add(new ChunkedFile(file));
-					out.add(LastHttpContent.EMPTY_LAST_CONTENT);
+			if (handle != null) {
+				boolean http2 = context.channel() instanceof Http2StreamChannel;
+				if (ranges == null) {
+					out.add(body(handle, 0, handle.size(), http2));
+				} else if (partHeaders == null) {
+					long[] range = ranges.get(0);
+					out.add(body(handle, range[0], ByteRanges.length(range), http2));
 				} else {
-					try {
-						// TODO: handle the 'Range:' header here... :)
-						out.add(new DefaultFileRegion(new FileInputStream(file).getChannel(), 0, file.length()));
-						out.add(LastHttpContent.EMPTY_LAST_CONTENT);
-					} catch (FileNotFoundException e) {
-						throw unchecked(e); // not very good...
+					for (int i = 0; i < ranges.size(); i++) {
+						long[] range = ranges.get(i);
+						out.add(part(partHeaders.get(i), http2));
+						out.add(body(handle, range[0], ByteRanges.length(range), http2));
 					}
+					out.add(part(partHeaders.get(ranges.size()), http2));
 				}
+				out.add(LastHttpContent.EMPTY_LAST_CONTENT);
 			} else if (buffer == null) {
 				out.add(LastHttpContent.EMPTY_LAST_CONTENT);
 			}
 		} catch (Throwable t) {
 			logger.error("oops!", t);
+		} finally {
+			// the regions/chunks have their own references
+			if (handle != null) handle.release();
 		}
 	}
 
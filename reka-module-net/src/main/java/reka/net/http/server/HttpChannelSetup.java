@@ -8,7 +8,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -48,7 +48,7 @@ public class HttpChannelSetup extends ChannelInboundHandlerAdapter implements Ch
 		if (!(msg instanceof FullHttpRequest)) return;
 		FullHttpRequest req = (FullHttpRequest) msg;
 		
-		String host = hostSplitter.split(HttpHeaders.getHost(req, "localhost")).iterator().next();
+		String host = hostSplitter.split(req.headers().get(HttpHeaderNames.HOST, "localhost")).iterator().next();
 		
 		if (!flows.containsKey(host)) {
 			ctx.close();
@@ -3,26 +3,62 @@ package reka.net.http.server;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+
+import java.util.Optional;
+
 import reka.data.MutableData;
 import reka.flow.Flow;
+import reka.identity.IdentityKey;
 import reka.identity.IdentityStore;
 import reka.identity.IdentityStoreReader;
+import reka.net.http.AccessLog;
+import reka.net.http.Admission;
+import reka.net.http.Admission.Permits;
 import reka.net.NetManager.HttpFlows;
 import reka.net.NetModule;
 
 public class HttpFlowHandler extends SimpleChannelInboundHandler<MutableData> {
 	
 	private final Flow flow;
+	private final int maxInFlight;
+	private final AccessLog accessLog;
+	private final Admission admission;
 	private final IdentityStoreReader store;
 	
+	private HttpPipeline pipeline;
+	
 	public HttpFlowHandler(HttpFlows flows, Channel channel) {
 		this.flow = flows.onMessage();
+		this.maxInFlight = flows.maxInFlight();
+		this.accessLog = flows.accessLog();
+		this.admission = flows.admission();
 		this.store = IdentityStore.immutableBuilder().put(NetModule.Keys.channel, channel).build();
 	}
+	
+	@Override
+	public void handlerAdded(ChannelHandlerContext context) throws Exception {
+		pipeline = new HttpPipeline(context, maxInFlight, (sequence, data) -> {
+			Permits permits = new Permits();
+			ChannelHandlerContextDataSubscriber subscriber = new ChannelHandlerContextDataSubscriber(context, pipeline, sequence, accessLog, permits);
+			Runnable run = () -> flow.run(context.executor(), context.executor(), data, subscriber, new RequestStore(store, permits), true);
+			if (admission == null) {
+				run.run();
+			} else if (!admission.submit(() -> {
+				permits.add(admission);
+				if (context.executor().inEventLoop()) {
+					run.run();
+				} else {
+					context.executor().execute(run);
+				}
+			})) {
+				subscriber.rejected(admission.retryAfter());
+			}
+		});
+	}
 
 	@Override
 	protected void channelRead0(ChannelHandlerContext context, MutableData data) {
-		flow.run(context.executor(), context.executor(), data, new ChannelHandlerContextDataSubscriber(context), store, true);
+		pipeline.request(data);
 	}
 	
 	@Override
@@ -30,4 +66,36 @@ public class HttpFlowHandler extends SimpleChannelInboundHandler<MutableData> {
 		ctx.close();
 	}
 	
+	/*
+	 * The connection's store plus the permits for this request, so operations (route limits) can
+	 * hold on to a permit until the request is finished.
+	 */
+	private static class RequestStore implements IdentityStoreReader {
+		
+		private final IdentityStoreReader store;
+		private final Permits permits;
+		
+		RequestStore(IdentityStoreReader store, Permits permits) {
+			this.store = store;
+			this.permits = permits;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T> T get(IdentityKey<T> key) {
+			return key == Admission.PERMITS ? (T) permits : store.get(key);
+		}
+
+		@Override
+		public <T> Optional<T> lookup(IdentityKey<T> key) {
+			return Optional.ofNullable(get(key));
+		}
+
+		@Override
+		public <T> boolean has(IdentityKey<T> key) {
+			return key == Admission.PERMITS || store.has(key);
+		}
+		
+	}
+	
 }
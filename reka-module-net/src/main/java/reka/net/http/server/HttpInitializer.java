@@ -1,31 +1,77 @@
 package reka.net.http.server;
 
 import static reka.util.Util.unchecked;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
-import io.netty.handler.codec.http.HttpRequestDecoder;
-import io.netty.handler.codec.http.HttpResponseEncoder;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpServerUpgradeHandler;
+import io.netty.handler.codec.http2.CleartextHttp2ServerUpgradeHandler;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2FrameCodec;
+import io.netty.handler.codec.http2.Http2FrameCodecBuilder;
+import io.netty.handler.codec.http2.Http2MultiplexHandler;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2ServerUpgradeCodec;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.Http2StreamFrameToHttpObjectCodec;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolConfig.Protocol;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectedListenerFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolConfig.SelectorFailureBehavior;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.ApplicationProtocolNegotiationHandler;
 import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
 import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
 import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.util.AsciiString;
 
 import javax.net.ssl.SSLException;
 
 import reka.net.NetSettings.TlsSettings;
 
+/*
+ * HTTP/1.1 and HTTP/2 on the same port.
+ *
+ * With TLS the protocol is picked with ALPN, without it clients can either upgrade from
+ * HTTP/1.1 (Upgrade: h2c) or just start talking HTTP/2 straight away.
+ *
+ * Each HTTP/2 stream gets its own child channel which converts the frames back into
+ * HTTP/1.1 style messages, so the same handlers run for both and each stream runs its own flow.
+ */
 public class HttpInitializer extends ChannelInitializer<SocketChannel> {
 
+	public static final int DEFAULT_MAX_CONCURRENT_STREAMS = 100;
+
+	private static final int MAX_CONTENT_LENGTH = 1024 * 1024 * 500; // 500mb
+	private static final int MAX_UPGRADE_CONTENT_LENGTH = 1024 * 64;
+
 	private final ChannelHandler handler;
 	private final SslContext ssl;
-	
+
+	// this is per port, NetManager makes sure all the hosts on the port agree on it
+	private volatile int maxConcurrentStreams = DEFAULT_MAX_CONCURRENT_STREAMS;
+
 	public HttpInitializer(ChannelHandler handler, TlsSettings sslSettings) {
 		this.handler = handler;
 		if (sslSettings != null) {
 			try {
-				this.ssl = SslContext.newServerContext(SslProvider.OPENSSL, sslSettings.certChainFile(), sslSettings.keyFile());
+				this.ssl = SslContextBuilder.forServer(sslSettings.certChainFile(), sslSettings.keyFile())
+					.sslProvider(SslProvider.OPENSSL)
+					.ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+					.applicationProtocolConfig(new ApplicationProtocolConfig(
+							Protocol.ALPN,
+							SelectorFailureBehavior.NO_ADVERTISE,
+							SelectedListenerFailureBehavior.ACCEPT,
+							ApplicationProtocolNames.HTTP_2,
+							ApplicationProtocolNames.HTTP_1_1))
+					.build();
 			} catch (SSLException e) {
 				throw unchecked(e);
 			}
@@ -33,19 +79,73 @@ public class HttpInitializer extends ChannelInitializer<SocketChannel> {
 			this.ssl = null;
 		}
 	}
-	
+
+	public void maxConcurrentStreams(int value) {
+		maxConcurrentStreams = value;
+	}
+
 	@Override
 	protected void initChannel(SocketChannel ch) throws Exception {
 		ch.config().setAutoRead(true);
 		ChannelPipeline pipeline = ch.pipeline();
 		if (ssl != null) {
 			pipeline.addLast("ssl", ssl.newHandler(ch.alloc()));
+			pipeline.addLast("alpn", new ApplicationProtocolNegotiationHandler(ApplicationProtocolNames.HTTP_1_1) {
+
+				@Override
+				protected void configurePipeline(ChannelHandlerContext ctx, String protocol) throws Exception {
+					if (ApplicationProtocolNames.HTTP_2.equals(protocol)) {
+						ctx.pipeline().addLast(http2FrameCodec(), http2Multiplexer());
+					} else {
+						ctx.pipeline().addLast("codec", new HttpServerCodec());
+						http1(ctx.pipeline());
+					}
+				}
+
+			});
+		} else {
+			HttpServerCodec codec = new HttpServerCodec();
+			HttpServerUpgradeHandler upgrade = new HttpServerUpgradeHandler(codec, protocol -> {
+				if (AsciiString.contentEquals(Http2CodecUtil.HTTP_UPGRADE_PROTOCOL_NAME, protocol)) {
+					return new Http2ServerUpgradeCodec(http2FrameCodec(), http2Multiplexer());
+				} else {
+					return null;
+				}
+			}, MAX_UPGRADE_CONTENT_LENGTH);
+			pipeline.addLast("h2c", new CleartextHttp2ServerUpgradeHandler(codec, upgrade, new ChannelInitializer<Channel>() {
+
+				@Override
+				protected void initChannel(Channel ch) throws Exception {
+					ch.pipeline().addLast(http2FrameCodec(), http2Multiplexer());
+				}
+
+			}));
+			http1(pipeline);
 		}
-		pipeline.addLast("decoder", new HttpRequestDecoder());
-		pipeline.addLast("aggregator", new HttpObjectAggregator(1024 * 1024 * 500)); // 500mb
-		pipeline.addLast("encoder", new HttpResponseEncoder());
-		pipeline.addLast("chunking", new ChunkedWriteHandler()); 
-		pipeline.addLast("handler", handler);	
 	}
-	
+
+	private void http1(ChannelPipeline pipeline) {
+		pipeline.addLast("aggregator", new HttpObjectAggregator(MAX_CONTENT_LENGTH));
+		pipeline.addLast("chunking", new ChunkedWriteHandler());
+		pipeline.addLast("handler", handler);
+	}
+
+	private Http2FrameCodec http2FrameCodec() {
+		return Http2FrameCodecBuilder.forServer()
+				.initialSettings(Http2Settings.defaultSettings().maxConcurrentStreams(maxConcurrentStreams))
+				.build();
+	}
+
+	private Http2MultiplexHandler http2Multiplexer() {
+		return new Http2MultiplexHandler(new ChannelInitializer<Channel>() {
+
+			@Override
+			protected void initChannel(Channel ch) throws Exception {
+				ch.pipeline().addLast("http2", new Http2StreamFrameToHttpObjectCodec(true));
+				http1(ch.pipeline());
+			}
+
+		});
+	}
+
 }
@@ -0,0 +1,78 @@
+package reka.net.http.server;
+
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.function.BiConsumer;
+
+import reka.data.MutableData;
+
+/*
+ * HTTP/1.1 lets a client send more requests on a connection before the earlier responses have
+ * come back, but the responses must go out in the order the requests came in.
+ *
+ * Requests on a connection run concurrently, up to maxInFlight, after that they wait here (and
+ * we stop reading from the connection). Responses that finish early are held until everything
+ * before them has been written.
+ *
+ * Everything apart from complete() happens on the channel's event loop, complete() hops onto
+ * it if it needs to, so there's no locking.
+ */
+class HttpPipeline {
+
+	private final ChannelHandlerContext context;
+	private final int maxInFlight;
+	private final BiConsumer<Long,MutableData> start;
+
+	private final Queue<MutableData> waiting = new ArrayDeque<>();
+	private final Map<Long,Runnable> finished = new HashMap<>();
+
+	private long started;
+	private long written;
+
+	HttpPipeline(ChannelHandlerContext context, int maxInFlight, BiConsumer<Long,MutableData> start) {
+		this.context = context;
+		this.maxInFlight = Math.max(1, maxInFlight);
+		this.start = start;
+	}
+
+	void request(MutableData data) {
+		if (started - written < maxInFlight && waiting.isEmpty()) {
+			start.accept(started++, data);
+		} else {
+			waiting.add(data);
+			context.channel().config().setAutoRead(false);
+		}
+	}
+
+	void complete(long sequence, Runnable write) {
+		if (context.executor().inEventLoop()) {
+			completeInEventLoop(sequence, write);
+		} else {
+			context.executor().execute(() -> completeInEventLoop(sequence, write));
+		}
+	}
+
+	private void completeInEventLoop(long sequence, Runnable write) {
+		if (sequence != written) {
+			finished.put(sequence, write);
+			return;
+		}
+		write.run();
+		written++;
+		while ((write = finished.remove(written)) != null) {
+			write.run();
+			written++;
+		}
+		while (!waiting.isEmpty() && started - written < maxInFlight) {
+			start.accept(started++, waiting.remove());
+		}
+		if (waiting.isEmpty() && !context.channel().config().isAutoRead()) {
+			context.channel().config().setAutoRead(true);
+		}
+	}
+
+}
@@ -10,12 +10,14 @@ import static reka.util.Path.path;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
-import io.netty.handler.codec.http.Cookie;
-import io.netty.handler.codec.http.CookieDecoder;
 import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpUtil;
 import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.codec.http.cookie.Cookie;
+import io.netty.handler.codec.http.cookie.ServerCookieDecoder;
+import io.netty.handler.codec.http2.Http2StreamChannel;
 
 import java.util.HashMap;
 import java.util.List;
@@ -63,7 +65,7 @@ public class HttpRequestToDataDecoder extends MessageToMessageDecoder<FullHttpRe
 		
 		final MutableData data = MutableMemoryData.create();
 
-		if (!HttpHeaders.isKeepAlive(req)) {
+		if (!HttpUtil.isKeepAlive(req)) {
 			data.putBool(HttpHostHandler.CLOSE_CHANNEL, true);
 		}
 
@@ -72,15 +74,15 @@ public class HttpRequestToDataDecoder extends MessageToMessageDecoder<FullHttpRe
 		MutableData headers = requestData.createMapAt(HEADERS);
 		MutableData cookies = requestData.createMapAt(COOKIES);
 		
-		String host = hostSplitter.split(HttpHeaders.getHost(req, "")).iterator().next();
+		String host = hostSplitter.split(req.headers().get(HttpHeaderNames.HOST, "")).iterator().next();
 
-		QueryStringDecoder qs = new QueryStringDecoder(req.getUri());
+		QueryStringDecoder qs = new QueryStringDecoder(req.uri());
 		
 		data.putString(Request.PATH, QueryStringDecoder.decodeComponent(qs.path()))
 			.putString(Request.PATH_BASE, "")
 			.putString(Request.HOST, host);
 
-		String httpMethod = req.getMethod().toString();
+		String httpMethod = req.method().toString();
 		if ("HEAD".equals(httpMethod)) {
 			httpMethod = "GET";
 			data.put(Response.HEAD, BooleanContent.TRUE);
@@ -97,29 +99,32 @@ public class HttpRequestToDataDecoder extends MessageToMessageDecoder<FullHttpRe
 
 		// headers
 
+		boolean http2 = ctx.channel() instanceof Http2StreamChannel;
+		
 		for (Entry<String, String> header : req.headers()) {
-			headers.put(path(PathElements.name(header.getKey())), utf8(header.getValue()));
+			String name = http2 ? canonicalHeaderName(header.getKey()) : header.getKey();
+			headers.put(path(PathElements.name(name)), utf8(header.getValue()));
 		}
 		
 		// cookies mmmm
 		
 		String cookieHeader = req.headers().get(com.google.common.net.HttpHeaders.COOKIE);
 		if (cookieHeader != null) {
-			for (Cookie cookie : CookieDecoder.decode(cookieHeader)) {
-				cookies.putMap(cookie.getName(), c -> {
-					c.putString("value", cookie.getValue());
-					if (cookie.getDomain() != null) c.putString("domain", cookie.getDomain());
-					if (cookie.getPath() != null) c.putString("path", cookie.getPath());
-					if (cookie.getMaxAge() != Long.MIN_VALUE) c.putLong("max-age", cookie.getMaxAge());	
+			for (Cookie cookie : ServerCookieDecoder.LAX.decode(cookieHeader)) {
+				cookies.putMap(cookie.name(), c -> {
+					c.putString("value", cookie.value());
+					if (cookie.domain() != null) c.putString("domain", cookie.domain());
+					if (cookie.path() != null) c.putString("path", cookie.path());
+					if (cookie.maxAge() != Cookie.UNDEFINED_MAX_AGE) c.putLong("max-age", cookie.maxAge());	
 				});
 			}
 		}
 		
 		// body
 		
-		if (req.getMethod().equals(HttpMethod.POST) || req.getMethod().equals(HttpMethod.PUT)) {
+		if (req.method().equals(HttpMethod.POST) || req.method().equals(HttpMethod.PUT)) {
 			
-			String contentType = req.headers().get(HttpHeaders.Names.CONTENT_TYPE);
+			String contentType = req.headers().get(HttpHeaderNames.CONTENT_TYPE);
 			if (contentType == null) contentType = "application/octet-stream";
 			
 			// just take the first bit if there is a semicolon, ignore the rest (charset, etc)
@@ -136,5 +141,19 @@ public class HttpRequestToDataDecoder extends MessageToMessageDecoder<FullHttpRe
 		
 		out.add(data);
 	}
+	
+	/*
+	 * HTTP/2 header names are always lower case, put them back how HTTP/1.1 clients usually send
+	 * them (If-None-Match, Accept etc) so flows can look them up the same way. 
+	 */
+	private static String canonicalHeaderName(String name) {
+		char[] chars = name.toCharArray();
+		boolean upper = true;
+		for (int i = 0; i < chars.length; i++) {
+			if (upper) chars[i] = Character.toUpperCase(chars[i]);
+			upper = chars[i] == '-';
+		}
+		return new String(chars);
+	}
 
 }
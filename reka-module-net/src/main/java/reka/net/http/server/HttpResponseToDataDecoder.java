@@ -8,7 +8,7 @@ import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageDecoder;
 import io.netty.handler.codec.http.FullHttpResponse;
-import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
 
 import java.util.HashMap;
 import java.util.List;
@@ -46,7 +46,7 @@ public class HttpResponseToDataDecoder extends MessageToMessageDecoder<FullHttpR
 		
 		final MutableData data = MutableMemoryData.create();
 		
-		data.put(STATUS, integer(res.getStatus().code()));
+		data.put(STATUS, integer(res.status().code()));
 		
 		MutableData headers = data.createMapAt(HEADERS);
 
@@ -58,7 +58,7 @@ public class HttpResponseToDataDecoder extends MessageToMessageDecoder<FullHttpR
 		
 		// body
 			
-		String contentType = res.headers().get(HttpHeaders.Names.CONTENT_TYPE);
+		String contentType = res.headers().get(HttpHeaderNames.CONTENT_TYPE);
 		if (contentType == null) contentType = "application/octet-stream";
 		
 		// just take the first bit if there is a semicolon, ignore the rest (charset, etc)
@@ -0,0 +1,320 @@
+package reka.net.http.server;
+
+import static reka.util.Util.unchecked;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+import io.netty.util.AbstractReferenceCounted;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import reka.Reka;
+
+/*
+ * Keeps files that are being served open so busy files don't get opened (and stat'd) for
+ * every request. Handles are reference counted, the cache holds one reference and every
+ * region/chunked input being sent holds another, the channel is closed when the last one
+ * goes. A handle is checked against the filesystem at most once a second, if the file has
+ * changed it's dropped from the cache (anything still sending carries on with the old one).
+ */
+public class OpenFiles {
+
+	private static final Logger log = LoggerFactory.getLogger(OpenFiles.class);
+
+	private static final int MAX_OPEN = 256;
+	private static final long CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+	private static final long IDLE_NANOS = TimeUnit.SECONDS.toNanos(30);
+	private static final int CHUNK_SIZE = 8192;
+
+	private static final Map<String,Handle> handles = new ConcurrentHashMap<>();
+
+	static {
+		Reka.SharedExecutors.scheduled.scheduleWithFixedDelay(OpenFiles::closeIdle, 10, 10, TimeUnit.SECONDS);
+	}
+
+	public static class Handle {
+
+		private final String key;
+		private final FileChannel channel;
+		private final long size;
+		private final long lastModified;
+		private final AtomicInteger refs = new AtomicInteger(1);
+
+		private volatile long checked = System.nanoTime();
+		private volatile long used = checked;
+
+		private Handle(String key, FileChannel channel, long size, long lastModified) {
+			this.key = key;
+			this.channel = channel;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		public long size() {
+			return size;
+		}
+
+		public long lastModified() {
+			return lastModified;
+		}
+
+		private boolean retain() {
+			while (true) {
+				int current = refs.get();
+				if (current == 0) return false;
+				if (refs.compareAndSet(current, current + 1)) return true;
+			}
+		}
+
+		public void release() {
+			if (refs.decrementAndGet() == 0) {
+				try {
+					channel.close();
+				} catch (IOException e) {
+					log.warn("failed to close {}", key, e);
+				}
+			}
+		}
+
+		// these take their own reference, the caller still needs to release theirs
+
+		public FileRegion region(long position, long count) {
+			retainForRead();
+			return new SharedFileRegion(this, position, count);
+		}
+
+		public ChunkedInput<ByteBuf> chunks(long position, long count) {
+			retainForRead();
+			return new SharedChunkedFile(this, position, count);
+		}
+
+		private void retainForRead() {
+			if (!retain()) throw new IllegalStateException("file handle has already been closed");
+		}
+
+	}
+
+	/*
+	 * Returns a handle with a reference held for the caller, which needs releasing (directly or
+	 * by passing it on as a region or chunked input).
+	 */
+	public static Handle acquire(File file) {
+		String key = file.getPath();
+		long now = System.nanoTime();
+		Handle handle = handles.get(key);
+		if (handle != null) {
+			if (now - handle.checked > CHECK_INTERVAL_NANOS) {
+				if (file.length() != handle.size || file.lastModified() != handle.lastModified) {
+					evict(handle);
+					handle = null;
+				} else {
+					handle.checked = now;
+				}
+			}
+			if (handle != null && handle.retain()) {
+				handle.used = now;
+				return handle;
+			}
+		}
+		return open(key, file);
+	}
+
+	private static Handle open(String key, File file) {
+		try {
+			FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+			Handle handle = new Handle(key, channel, channel.size(), file.lastModified());
+			if (handles.size() >= MAX_OPEN) {
+				evictLeastRecentlyUsed();
+			}
+			handle.retain(); // for the caller
+			Handle previous = handles.put(key, handle);
+			if (previous != null && previous != handle) {
+				previous.release();
+			}
+			return handle;
+		} catch (IOException e) {
+			throw unchecked(e);
+		}
+	}
+
+	private static void evict(Handle handle) {
+		if (handles.remove(handle.key, handle)) {
+			handle.release();
+		}
+	}
+
+	private static void evictLeastRecentlyUsed() {
+		Handle oldest = null;
+		for (Handle handle : handles.values()) {
+			if (oldest == null || handle.used < oldest.used) oldest = handle;
+		}
+		if (oldest != null) evict(oldest);
+	}
+
+	private static void closeIdle() {
+		long now = System.nanoTime();
+		for (Entry<String, Handle> e : handles.entrySet()) {
+			if (now - e.getValue().used > IDLE_NANOS) {
+				evict(e.getValue());
+			}
+		}
+	}
+
+	private static class SharedFileRegion extends AbstractReferenceCounted implements FileRegion {
+
+		private final Handle handle;
+		private final long position;
+		private final long count;
+		private long transferred;
+
+		SharedFileRegion(Handle handle, long position, long count) {
+			this.handle = handle;
+			this.position = position;
+			this.count = count;
+		}
+
+		@Override
+		public long position() {
+			return position;
+		}
+
+		@Override
+		public long transferred() {
+			return transferred;
+		}
+
+		@Deprecated
+		@Override
+		public long transfered() {
+			return transferred;
+		}
+
+		@Override
+		public long count() {
+			return count;
+		}
+
+		@Override
+		public long transferTo(WritableByteChannel target, long position) throws IOException {
+			long remaining = count - position;
+			if (remaining <= 0) return 0;
+			long written = handle.channel.transferTo(this.position + position, remaining, target);
+			if (written > 0) transferred += written;
+			return written;
+		}
+
+		@Override
+		public FileRegion retain() {
+			super.retain();
+			return this;
+		}
+
+		@Override
+		public FileRegion retain(int increment) {
+			super.retain(increment);
+			return this;
+		}
+
+		@Override
+		public FileRegion touch() {
+			return this;
+		}
+
+		@Override
+		public FileRegion touch(Object hint) {
+			return this;
+		}
+
+		@Override
+		protected void deallocate() {
+			handle.release();
+		}
+
+	}
+
+	// for when we can't use a file region (TLS)
+	private static class SharedChunkedFile implements ChunkedInput<ByteBuf> {
+
+		private final Handle handle;
+		private final long start;
+		private final long end;
+		private long offset;
+		private boolean closed;
+
+		SharedChunkedFile(Handle handle, long position, long count) {
+			this.handle = handle;
+			this.start = position;
+			this.offset = position;
+			this.end = position + count;
+		}
+
+		@Override
+		public boolean isEndOfInput() {
+			return offset >= end;
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				handle.release();
+			}
+		}
+
+		@Override
+		public long length() {
+			return end - start;
+		}
+
+		@Override
+		public long progress() {
+			return offset - start;
+		}
+
+		@Deprecated
+		@Override
+		public ByteBuf readChunk(ChannelHandlerContext ctx) throws Exception {
+			return readChunk(ctx.alloc());
+		}
+
+		@Override
+		public ByteBuf readChunk(ByteBufAllocator alloc) throws Exception {
+			if (offset >= end) return null;
+			int len = (int) Math.min(CHUNK_SIZE, end - offset);
+			ByteBuf buf = alloc.buffer(len);
+			boolean ok = false;
+			try {
+				ByteBuffer nio = buf.nioBuffer(0, len);
+				int read = 0;
+				while (read < len) {
+					int n = handle.channel.read(nio, offset + read);
+					if (n < 0) throw new IOException("file got shorter while reading it");
+					read += n;
+				}
+				buf.writerIndex(len);
+				offset += len;
+				ok = true;
+				return buf;
+			} finally {
+				if (!ok) buf.release();
+			}
+		}
+
+	}
+
+}
@@ -7,7 +7,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.handler.codec.http.FullHttpRequest;
-import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -47,7 +47,7 @@ public class WebsocketChannelSetup extends ChannelInboundHandlerAdapter implemen
 		if (!(msg instanceof FullHttpRequest)) return;
 		FullHttpRequest req = (FullHttpRequest) msg;
 		
-		String host = hostSplitter.split(HttpHeaders.getHost(req, "localhost")).iterator().next();
+		String host = hostSplitter.split(req.headers().get(HttpHeaderNames.HOST, "localhost")).iterator().next();
 		
 		if (!flows.containsKey(host)) {
 			ctx.close();
@@ -78,7 +78,7 @@ public class WebsocketChannelSetup extends ChannelInboundHandlerAdapter implemen
 		ctx.pipeline()
 			.addLast("handshaker", handshaker)
 			.addLast("ws", StringWebsocketEncoder.INSTANCE)
-			.addLast("flow", new WebsocketFlowHandler(flows.get(host)))
+			.addLast("flow", new WebsocketFlowHandler(channel, flow))
 			.remove(this);
 		
 		channel.attr(ChannelAttrs.identity).set(identities.get(host));
@@ -2,8 +2,9 @@ package reka.net.http.streaming;
 
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
 import io.netty.handler.codec.http.DefaultHttpResponse;
-import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,8 +28,8 @@ public class HttpHeadOperation implements Operation {
 			// TODO: this should be contained in a streaming block config construct
 			channel.pipeline().remove(DataToHttpEncoder.class);
 			DefaultHttpResponse response = new DefaultHttpResponse(HTTP_1_1, HttpResponseStatus.OK);
-			HttpHeaders.setTransferEncodingChunked(response);
-			HttpHeaders.setHeader(response, HttpHeaders.Names.CONTENT_TYPE, "text/plain");
+			HttpUtil.setTransferEncodingChunked(response, true);
+			response.headers().set(HttpHeaderNames.CONTENT_TYPE, "text/plain");
 			channel.writeAndFlush(response);
 		});
 	}
@@ -25,6 +25,9 @@ import reka.module.setup.OperationConfigurer;
 import reka.net.NetManager;
 import reka.net.NetManager.SocketFlows;
 import reka.net.NetSettings;
+import reka.net.NetSettings.PortOptions;
+import reka.net.PortOptionsConfigurer;
+import reka.net.common.sockets.ChannelFlowQueue;
 import reka.net.common.sockets.NetStatusProvider;
 import reka.net.common.sockets.SocketBroadcastConfigurer;
 import reka.net.common.sockets.SocketSendConfigurer;
@@ -40,6 +43,10 @@ public class SocketConfigurer extends ModuleConfigurer {
 	
 	private final List<Integer> ports = new ArrayList<>();
 	
+	private PortOptions portOptions = PortOptions.DEFAULT;
+	private SocketFraming framing = SocketFraming.LINES;
+	private int inFlight = ChannelFlowQueue.DEFAULT_IN_FLIGHT;
+	
 	private final NetManager net;
 	
 	public SocketConfigurer(NetManager net) {
@@ -51,6 +58,25 @@ public class SocketConfigurer extends ModuleConfigurer {
 		ports.add(Integer.valueOf(port));
 	}
 	
+	// socket level settings for the port: backlog, nodelay, write buffer, allocator, reuse-port
+	@Conf.At("tcp")
+	public void tcp(Config config) {
+		portOptions = configure(new PortOptionsConfigurer(), config).build();
+	}
+	
+	// how messages are split up, lines (text) or length/fixed/raw (binary)
+	@Conf.At("framing")
+	public void framing(Config config) {
+		framing = configure(new SocketFramingConfigurer(), config).build();
+	}
+	
+	// how many messages from one connection are processed at once, replies always go back in order
+	@Conf.At("in-flight")
+	public void inFlight(String val) {
+		inFlight = Integer.valueOf(val);
+		checkConfig(inFlight > 0, "in-flight must be at least 1");
+	}
+	
 	@Conf.Each("on")
 	public void main(Config config) {
 		checkConfig(config.hasValue(), "must have a value");
@@ -79,7 +105,7 @@ public class SocketConfigurer extends ModuleConfigurer {
 		app.defineOperation(slashes("tag/rm"), provider -> new SocketTagRemoveConfigurer(net));
 		app.defineOperation(slashes("tag/send"), provider -> new SocketTagSendConfigurer(net));
 		
-		app.registerStatusProvider(() -> new NetStatusProvider(net, app.identity(), NetSettings.Type.SOCKET));
+		NetStatusProvider.register(app, net, NetSettings.Type.SOCKET);
 		
 		Map<IdentityKey<Flow>,Function<ConfigurerProvider, OperationConfigurer>> triggers = new HashMap<>();
 		
@@ -103,9 +129,11 @@ public class SocketConfigurer extends ModuleConfigurer {
 		
 		app.buildFlows(triggers, flows -> {
 			for (int port : ports) {
-				app.registerComponent(net.deploySocket(app.identity(), port, new SocketFlows(flows.lookup(connect),
+				app.registerComponent(net.deploySocket(app.identity(), port, portOptions, new SocketFlows(flows.lookup(connect),
 																							 flows.lookup(message),
-																							 flows.lookup(disconnect))));
+																							 flows.lookup(disconnect),
+																							 framing,
+																							 inFlight)));
 				app.registerNetwork(port, "socket");
 			}
 		});
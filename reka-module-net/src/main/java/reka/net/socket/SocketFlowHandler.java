@@ -1,8 +1,12 @@
 package reka.net.socket;
 
+import static reka.util.Path.path;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.AttributeKey;
 
 import java.util.HashSet;
 import java.util.UUID;
@@ -11,24 +15,45 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.content.types.BinaryContent.Encoding;
+import reka.data.content.types.ByteBufferBinaryContent;
 import reka.data.memory.MutableMemoryData;
 import reka.flow.Flow;
+import reka.flow.ops.Subscriber;
 import reka.identity.IdentityStore;
 import reka.identity.ImmutableIdentityStore.Builder;
 import reka.net.ChannelAttrs;
 import reka.net.NetManager.SocketFlows;
 import reka.net.NetModule;
+import reka.net.common.sockets.ChannelFlowQueue;
+import reka.util.Path;
 
-public class SocketFlowHandler extends SimpleChannelInboundHandler<String> {
+@Sharable
+public class SocketFlowHandler extends SimpleChannelInboundHandler<Object> {
 	
 	private static final Logger log = LoggerFactory.getLogger(SocketFlowHandler.class);
 	
+	private static final Path FRAME = path("frame");
+	private static final Path REPLY = path("reply");
+	private static final String FRAME_CONTENT_TYPE = "application/octet-stream";
+	private static final AttributeKey<ChannelFlowQueue> QUEUE = AttributeKey.valueOf("socket-flow-queue");
+	
 	private volatile SocketFlows flows = SocketFlows.NO_FLOWS;
 	
+	public SocketFlowHandler() {
+		super(false); // binary frames are released once their flow is done and the reply written
+	}
+	
 	public void setFlows(SocketFlows flows) {
 		this.flows = flows;
 	}
 	
+	// read for each new connection
+	public SocketFraming framing() {
+		return flows.framing();
+	}
+	
 	public boolean unsetFlows(SocketFlows flows) {
 		if (!this.flows.equals(flows)) return false;
 		this.flows = SocketFlows.NO_FLOWS;
@@ -42,7 +67,8 @@ public class SocketFlowHandler extends SimpleChannelInboundHandler<String> {
     	Channel channel = ctx.channel();
 		channel.attr(ChannelAttrs.id).set(id);
 		channel.attr(ChannelAttrs.tags).set(new HashSet<String>());
-		trigger(flows.onConnect(), MutableMemoryData.create().putString("id", id), ctx);
+		channel.attr(QUEUE).set(new ChannelFlowQueue(channel, flows.inFlight()));
+		trigger(flows.onConnect(), MutableMemoryData.create().putString("id", id), ctx, null);
     }
     
     @Override
@@ -50,24 +76,57 @@ public class SocketFlowHandler extends SimpleChannelInboundHandler<String> {
 		super.channelInactive(ctx);
 		String id = ctx.channel().attr(ChannelAttrs.id).get();
 		log.debug("{} disconnected", id);
-		trigger(flows.onDisconnect(), MutableMemoryData.create().putString("id", id), ctx);
+		ctx.channel().attr(QUEUE).get().close();
+		trigger(flows.onDisconnect(), MutableMemoryData.create().putString("id", id), ctx, null);
 	}
+    
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+    	ctx.channel().attr(QUEUE).get().update();
+    	super.channelWritabilityChanged(ctx);
+    }
 	
 	@Override
-	protected void channelRead0(ChannelHandlerContext ctx, String msg) throws Exception {
-		trigger(flows.onMessage(), MutableMemoryData.create()
-				.putString("id", ctx.channel().attr(ChannelAttrs.id).get())
-				.putString("line", msg), ctx);
+	protected void channelRead0(ChannelHandlerContext ctx, Object msg) throws Exception {
+		String id = ctx.channel().attr(ChannelAttrs.id).get();
+		if (msg instanceof ByteBuf) {
+			// a view of the frame, no copying, it goes back to the pool once the reply is written
+			ByteBuf frame = (ByteBuf) msg;
+			trigger(flows.onMessage(), MutableMemoryData.create()
+					.putString("id", id)
+					.put(FRAME, new ByteBufferBinaryContent(FRAME_CONTENT_TYPE, Encoding.NONE, SocketFraming.view(frame))), ctx, frame::release);
+		} else {
+			trigger(flows.onMessage(), MutableMemoryData.create()
+					.putString("id", id)
+					.putString("line", msg.toString()), ctx, null);
+		}
 	}
 	
-    private void trigger(Flow flow, Data data, ChannelHandlerContext ctx) {
+    private void trigger(Flow flow, MutableData data, ChannelHandlerContext ctx, Runnable release) {
 		Builder store = IdentityStore.immutableBuilder();
 		store.put(NetModule.Keys.channel, ctx.channel());
-		flow.prepare().store(store.build()).mutableData(MutableMemoryData.from(data)).complete(resultData -> {
-			resultData.getContent("reply").ifPresent(content -> {
-				ctx.channel().writeAndFlush(content.asUTF8());
-			});
-		}).run();
+		SocketFraming framing = flows.framing();
+		ctx.channel().attr(QUEUE).get().submit(slot -> {
+			flow.prepare().store(store.build()).mutableData(data).complete(new Subscriber() {
+				
+				@Override
+				public void ok(MutableData resultData) {
+					slot.done(resultData.getContent(REPLY).map(framing::reply).orElse(null));
+				}
+				
+				@Override
+				public void halted() {
+					slot.done(null);
+				}
+				
+				@Override
+				public void error(Data data, Throwable t) {
+					slot.done(null);
+					log.error("socket flow failed", t);
+				}
+				
+			}).run();
+		}, release);
     }
 
 }
@@ -0,0 +1,105 @@
+package reka.net.socket;
+
+import static java.lang.String.format;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelPipeline;
+import io.netty.handler.codec.DelimiterBasedFrameDecoder;
+import io.netty.handler.codec.Delimiters;
+import io.netty.handler.codec.FixedLengthFrameDecoder;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.handler.codec.LengthFieldPrepender;
+import io.netty.handler.codec.string.StringEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import reka.data.content.Content;
+import reka.net.StringDecoderIgnoringNewlines;
+import reka.net.StringEncoderWithNewline;
+
+/*
+ * How a socket's bytes are split into messages.
+ *
+ * LINES is the original text protocol, each line is a string and replies get a newline added.
+ * The others are binary, messages arrive as the ByteBuf slices netty gives us (no copying or
+ * decoding), and replies are sent as they are, with a length prefix for LENGTH.
+ */
+public class SocketFraming {
+
+	public static enum Mode { LINES, LENGTH, FIXED, RAW }
+
+	public static final int DEFAULT_MAX_LINE = 8192;
+	public static final int DEFAULT_MAX_FRAME = 1024 * 1024;
+
+	public static final SocketFraming LINES = new SocketFraming(Mode.LINES, DEFAULT_MAX_LINE, 0);
+
+	private final Mode mode;
+	private final int max; // longest line/frame for LINES/LENGTH, the frame size for FIXED
+	private final int lengthBytes; // size of the length prefix for LENGTH (1, 2, 3, 4 or 8)
+
+	public SocketFraming(Mode mode, int max, int lengthBytes) {
+		this.mode = mode;
+		this.max = max;
+		this.lengthBytes = lengthBytes;
+	}
+
+	public Mode mode() {
+		return mode;
+	}
+
+	public boolean isBinary() {
+		return mode != Mode.LINES;
+	}
+
+	public void configure(ChannelPipeline pipeline) {
+		switch (mode) {
+		case LINES:
+			pipeline.addLast(new DelimiterBasedFrameDecoder(max, Delimiters.lineDelimiter()))
+					.addLast(new StringDecoderIgnoringNewlines())
+					.addLast(new StringEncoderWithNewline());
+			break;
+		case LENGTH:
+			pipeline.addLast(new LengthFieldBasedFrameDecoder(max, 0, lengthBytes, 0, lengthBytes))
+					.addLast(new LengthFieldPrepender(lengthBytes))
+					.addLast(new StringEncoder(StandardCharsets.UTF_8));
+			break;
+		case FIXED:
+			pipeline.addLast(new FixedLengthFrameDecoder(max))
+					.addLast(new StringEncoder(StandardCharsets.UTF_8));
+			break;
+		case RAW:
+			pipeline.addLast(new StringEncoder(StandardCharsets.UTF_8));
+			break;
+		}
+	}
+
+	/*
+	 * What to write for a reply. Text goes as a string (the encoders deal with it), binary
+	 * content backed by a buffer gets wrapped rather than copied.
+	 */
+	public Object reply(Content content) {
+		if (!isBinary()) return content.asUTF8();
+		if (content.hasByteBuffer()) {
+			return Unpooled.wrappedBuffer(content.asByteBuffer().duplicate());
+		}
+		switch (content.type()) {
+		case BINARY:
+			return Unpooled.wrappedBuffer(content.asBytes());
+		default:
+			return content.asUTF8();
+		}
+	}
+
+	// for the data, we hand out a view of the frame, it's only valid until the flow has finished
+	public static ByteBuffer view(ByteBuf frame) {
+		return frame.nioBufferCount() == 1 ? frame.nioBuffer() : ByteBuffer.wrap(ByteBufUtil.getBytes(frame));
+	}
+
+	@Override
+	public String toString() {
+		return format("<%s mode=%s max=%d length-bytes=%d>", getClass().getSimpleName(), mode, max, lengthBytes);
+	}
+
+}
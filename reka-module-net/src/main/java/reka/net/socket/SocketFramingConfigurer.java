@@ -0,0 +1,78 @@
+package reka.net.socket;
+
+import static reka.config.configurer.Configurer.Preconditions.checkConfig;
+import static reka.config.configurer.Configurer.Preconditions.invalidConfig;
+import static reka.util.Units.parseIntSize;
+
+import java.util.Arrays;
+
+import reka.config.configurer.annotations.Conf;
+import reka.net.socket.SocketFraming.Mode;
+
+public class SocketFramingConfigurer {
+	
+	// framing lines
+	// framing length { bytes 2, max 64kb }
+	// framing fixed { size 128 }
+	// framing raw
+
+	private Mode mode = Mode.LINES;
+	private Integer max;
+	private int lengthBytes = 4;
+	
+	@Conf.Val
+	public void mode(String val) {
+		switch (val) {
+		case "lines":
+			mode = Mode.LINES;
+			break;
+		case "length":
+		case "length-prefixed":
+			mode = Mode.LENGTH;
+			break;
+		case "fixed":
+			mode = Mode.FIXED;
+			break;
+		case "raw":
+			mode = Mode.RAW;
+			break;
+		default:
+			invalidConfig("unknown framing [%s], try lines, length, fixed or raw", val);
+		}
+	}
+	
+	// longest line or frame we'll accept
+	@Conf.At("max")
+	public void max(String val) {
+		max = parseIntSize(val);
+		checkConfig(max > 0, "max must be more than zero");
+	}
+	
+	// for fixed
+	@Conf.At("size")
+	public void size(String val) {
+		max(val);
+	}
+	
+	// how long the length prefix is
+	@Conf.At("bytes")
+	public void bytes(int val) {
+		checkConfig(Arrays.asList(1, 2, 3, 4, 8).contains(val), "bytes must be 1, 2, 3, 4 or 8");
+		lengthBytes = val;
+	}
+	
+	public SocketFraming build() {
+		switch (mode) {
+		case LINES:
+			return max == null ? SocketFraming.LINES : new SocketFraming(mode, max, 0);
+		case FIXED:
+			checkConfig(max != null, "fixed framing needs a size");
+			return new SocketFraming(mode, max, 0);
+		case LENGTH:
+			return new SocketFraming(mode, max != null ? max : SocketFraming.DEFAULT_MAX_FRAME, lengthBytes);
+		default:
+			return new SocketFraming(mode, 0, 0);
+		}
+	}
+	
+}
@@ -1,6 +1,6 @@
 package reka.net.websockets;
 
-import static io.netty.handler.codec.http.HttpHeaders.isKeepAlive;
+import static io.netty.handler.codec.http.HttpUtil.isKeepAlive;
 import static io.netty.handler.codec.http.HttpMethod.GET;
 import static io.netty.handler.codec.http.HttpResponseStatus.FORBIDDEN;
 import static io.netty.handler.codec.http.HttpVersion.HTTP_1_1;
@@ -13,7 +13,7 @@ import io.netty.channel.ChannelPipeline;
 import io.netty.handler.codec.http.DefaultFullHttpResponse;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
-import io.netty.handler.codec.http.HttpHeaders;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpRequest;
 import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpResponseStatus;
@@ -36,7 +36,7 @@ public class WebSocketServerProtocolHandshakeHandler extends ChannelInboundHandl
     @Override
     public void channelRead(final ChannelHandlerContext ctx, Object msg) throws Exception {
         FullHttpRequest req = (FullHttpRequest) msg;
-        if (req.getMethod() != GET) {
+        if (req.method() != GET) {
             sendHttpResponse(ctx, req, new DefaultFullHttpResponse(HTTP_1_1, FORBIDDEN));
             return;
         }
@@ -55,12 +55,13 @@ public class WebSocketServerProtocolHandshakeHandler extends ChannelInboundHandl
                     if (!future.isSuccess()) {
                         ctx.fireExceptionCaught(future.cause());
                     } else {
-                        ctx.fireUserEventTriggered(WebSocketServerProtocolHandler.ServerHandshakeStateEvent.HANDSHAKE_COMPLETE);
+                        ctx.fireUserEventTriggered(new WebSocketServerProtocolHandler.HandshakeComplete(
+                                req.uri(), req.headers(), handshaker.selectedSubprotocol()));
                     }
                 }
             });
             
-            ctx.attr(HANDSHAKER_ATTR_KEY).set(handshaker);
+            ctx.channel().attr(HANDSHAKER_ATTR_KEY).set(handshaker);
             ctx.pipeline().replace(this, "WS403Responder", forbiddenHttpRequestResponder());
         }
     }
@@ -85,7 +86,7 @@ public class WebSocketServerProtocolHandshakeHandler extends ChannelInboundHandl
 
     private static void sendHttpResponse(ChannelHandlerContext ctx, HttpRequest req, HttpResponse res) {
         ChannelFuture f = ctx.channel().writeAndFlush(res);
-        if (!isKeepAlive(req) || res.getStatus().code() != 200) {
+        if (!isKeepAlive(req) || res.status().code() != 200) {
             f.addListener(ChannelFutureListener.CLOSE);
         }
     }
@@ -96,7 +97,7 @@ public class WebSocketServerProtocolHandshakeHandler extends ChannelInboundHandl
             // SSL in use so use Secure WebSockets
             protocol = "wss";
         }
-        return protocol + "://" + req.headers().get(HttpHeaders.Names.HOST) + path;
+        return protocol + "://" + req.headers().get(HttpHeaderNames.HOST) + path;
     }
 
 }
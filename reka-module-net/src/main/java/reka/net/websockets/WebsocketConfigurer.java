@@ -23,6 +23,7 @@ import reka.net.NetManager.SocketFlows;
 import reka.net.NetSettings;
 import reka.net.NetSettings.TlsSettings;
 import reka.net.NetSettings.Type;
+import reka.net.common.sockets.ChannelFlowQueue;
 import reka.net.common.sockets.NetStatusProvider;
 import reka.net.common.sockets.SocketBroadcastConfigurer;
 import reka.net.common.sockets.SocketSendConfigurer;
@@ -31,6 +32,7 @@ import reka.net.common.sockets.SocketTagRemoveConfigurer;
 import reka.net.common.sockets.SocketTagSendConfigurer;
 import reka.net.http.HostAndPort;
 import reka.net.http.TlsConfigurer;
+import reka.net.socket.SocketFraming;
 
 public class WebsocketConfigurer extends ModuleConfigurer {
 
@@ -44,6 +46,7 @@ public class WebsocketConfigurer extends ModuleConfigurer {
 	private final List<HostAndPort> listens = new ArrayList<>();
 	
 	private TlsSettings ssl;
+	private int inFlight = ChannelFlowQueue.DEFAULT_IN_FLIGHT;
 	
 	private final NetManager net;
 	
@@ -77,6 +80,13 @@ public class WebsocketConfigurer extends ModuleConfigurer {
 		ssl = configure(new TlsConfigurer(), config).build();
 	}
 	
+	// how many messages from one connection are processed at once, replies always go back in order
+	@Conf.At("in-flight")
+	public void inFlight(String val) {
+		inFlight = Integer.valueOf(val);
+		checkConfig(inFlight > 0, "in-flight must be at least 1");
+	}
+	
 	@Conf.Each("on")
 	public void on(Config config) {
 		checkConfig(config.hasValue(), "must have a value");
@@ -114,7 +124,7 @@ public class WebsocketConfigurer extends ModuleConfigurer {
 			app.requireNetwork(listen.port(), listen.host());	
 		});
 		
-		app.registerStatusProvider(() -> new NetStatusProvider(net, app.identity(), NetSettings.Type.WEBSOCKET));
+		NetStatusProvider.register(app, net, NetSettings.Type.WEBSOCKET);
 		
 		app.buildFlows(triggers.build(), reg -> {
 			for (HostAndPort listen : listens) {
@@ -128,10 +138,10 @@ public class WebsocketConfigurer extends ModuleConfigurer {
 			
 				if (ssl != null) {
 					app.registerComponent(net.deployWebsocketSsl(app.identity(), new HostAndPort(host, port), ssl, 
-							new SocketFlows(reg.lookup(CONNECT),reg.lookup(MESSAGE),reg.lookup(DISCONNECT))));
+							new SocketFlows(reg.lookup(CONNECT),reg.lookup(MESSAGE),reg.lookup(DISCONNECT), SocketFraming.LINES, inFlight)));
 				} else {
 					app.registerComponent(net.deployWebsocket(app.identity(), new HostAndPort(host, port), 
-							new SocketFlows(reg.lookup(CONNECT),reg.lookup(MESSAGE),reg.lookup(DISCONNECT))));
+							new SocketFlows(reg.lookup(CONNECT),reg.lookup(MESSAGE),reg.lookup(DISCONNECT), SocketFraming.LINES, inFlight)));
 				}
 				
 				app.registerNetwork(listen.port(), Type.WEBSOCKET.protocolString(ssl != null), details -> {
@@ -13,19 +13,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import reka.data.Data;
+import reka.data.MutableData;
+import reka.data.content.Content;
 import reka.data.memory.MutableMemoryData;
 import reka.flow.Flow;
+import reka.flow.ops.Subscriber;
 import reka.net.ChannelAttrs;
 import reka.net.NetManager.SocketFlows;
+import reka.net.common.sockets.ChannelFlowQueue;
 
 public class WebsocketFlowHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
 
 	private static final Logger log = LoggerFactory.getLogger(WebsocketFlowHandler.class);
 	
 	private final SocketFlows flows;
+	private final ChannelFlowQueue queue;
 	
-	public WebsocketFlowHandler(SocketFlows flows) {
+	public WebsocketFlowHandler(Channel channel, SocketFlows flows) {
 		this.flows = flows;
+		this.queue = new ChannelFlowQueue(channel, flows.inFlight());
 	}
 
 	public static interface SocketListener {
@@ -37,7 +43,7 @@ public class WebsocketFlowHandler extends SimpleChannelInboundHandler<TextWebSoc
 	@Override
 	public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
 		super.userEventTriggered(ctx, evt);
-		if (evt == WebSocketServerProtocolHandler.ServerHandshakeStateEvent.HANDSHAKE_COMPLETE) {
+		if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
 
 			Channel channel = ctx.channel();
 			
@@ -63,11 +69,18 @@ public class WebsocketFlowHandler extends SimpleChannelInboundHandler<TextWebSoc
 		String host = channel.attr(ChannelAttrs.host).get();
 		String id = channel.attr(ChannelAttrs.id).get();
 		log.debug("{} disconnected", id);
+		queue.close();
 		trigger(flows.onDisconnect(), MutableMemoryData.create()
 				.putString("host", host)
 				.putString("id", id), ctx);
 	}
 
+	@Override
+	public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+		queue.update();
+		super.channelWritabilityChanged(ctx);
+	}
+
 	@Override
 	protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame frame) throws Exception {
 		Channel channel = ctx.channel();
@@ -80,11 +93,27 @@ public class WebsocketFlowHandler extends SimpleChannelInboundHandler<TextWebSoc
 	}
 	
     private void trigger(Flow flow, Data data, ChannelHandlerContext ctx) {
-		flow.prepare().mutableData(MutableMemoryData.from(data)).complete(resultData -> {
-			resultData.getContent("reply").ifPresent(content -> {
-				ctx.channel().writeAndFlush(content.asUTF8());
-			});
-		}).run();
+		queue.submit(slot -> {
+			flow.prepare().mutableData(MutableMemoryData.from(data)).complete(new Subscriber() {
+				
+				@Override
+				public void ok(MutableData resultData) {
+					slot.done(resultData.getContent("reply").map(Content::asUTF8).orElse(null));
+				}
+				
+				@Override
+				public void halted() {
+					slot.done(null);
+				}
+				
+				@Override
+				public void error(Data data, Throwable t) {
+					slot.done(null);
+					log.error("websocket flow failed", t);
+				}
+				
+			}).run();
+		});
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package io.reka.net.tests;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import reka.data.MutableData;
+import reka.data.memory.MutableMemoryData;
+import reka.net.http.AccessLog;
+import reka.util.Path.Request;
+import reka.util.Path.Response;
+
+public class AccessLogTest {
+
+	private Path dir;
+	private Path file;
+
+	@Before
+	public void createDir() throws IOException {
+		dir = Files.createTempDirectory("reka-access-log");
+		file = dir.resolve("access.log");
+	}
+
+	@After
+	public void deleteDir() throws IOException {
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(dir);
+	}
+
+	@Test
+	public void logsWhatTheRequestWasWhenItWasRecorded() throws Exception {
+		try (AccessLog log = new AccessLog(file, 1.0, 16)) {
+			MutableData data = request("example.com", "GET", "/things");
+			log.record(data, 200, 1234, 56);
+
+			// the data gets reused or changed once the response is written
+			data.putString(Request.PATH, "/changed");
+
+			MutableData unknownStatus = request("example.com", "POST", "/other");
+			unknownStatus.putInt(Response.STATUS, 201);
+			log.record(unknownStatus, -1, -1, 7);
+
+			List<String> lines = waitForLines(2);
+			assertEquals("example.com - \"GET /things\" 200 1234 56us", lines.get(0));
+			assertEquals("example.com - \"POST /other\" 201 - 7us", lines.get(1));
+		}
+	}
+
+	private static MutableData request(String host, String method, String path) {
+		return MutableMemoryData.create()
+			.putString(Request.HOST, host)
+			.putString(Request.METHOD, method)
+			.putString(Request.PATH, path);
+	}
+
+	private List<String> waitForLines(int count) throws IOException, InterruptedException {
+		long until = System.currentTimeMillis() + 2000;
+		List<String> lines = Collections.emptyList();
+		while (System.currentTimeMillis() < until) {
+			if (Files.exists(file)) {
+				lines = Files.readAllLines(file, UTF_8);
+				if (lines.size() >= count) break;
+			}
+			Thread.sleep(10);
+		}
+		return lines;
+	}
+
+}
@@ -0,0 +1,123 @@
+package io.reka.net.tests;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import reka.net.http.Admission;
+import reka.net.http.Admission.Permits;
+
+public class AdmissionTest {
+
+	@Test
+	public void queuesOverTheLimitThenRejects() {
+		Admission admission = new Admission(2, 1, false, 3);
+		List<Integer> started = new ArrayList<>();
+
+		assertTrue(admission.submit(() -> started.add(1)));
+		assertTrue(admission.submit(() -> started.add(2)));
+		assertTrue(admission.submit(() -> started.add(3))); // queued
+		assertFalse(admission.submit(() -> started.add(4))); // no room in the queue either
+
+		assertEquals(asList(1, 2), started);
+		assertEquals(2, admission.inFlight());
+		assertEquals(1, admission.queued());
+		assertEquals(1, admission.rejected());
+		assertEquals(3, admission.rejection().retryAfter());
+	}
+
+	@Test
+	public void releasingRunsQueuedStartsInOrder() {
+		Admission admission = new Admission(1, 2, false, 1);
+		List<Integer> started = new ArrayList<>();
+
+		admission.submit(() -> started.add(1));
+		admission.submit(() -> started.add(2));
+		admission.submit(() -> started.add(3));
+		assertEquals(asList(1), started);
+
+		admission.release(System.nanoTime());
+		assertEquals(asList(1, 2), started);
+		assertEquals(1, admission.inFlight());
+		assertEquals(1, admission.queued());
+
+		admission.release(System.nanoTime());
+		assertEquals(asList(1, 2, 3), started);
+		assertEquals(0, admission.queued());
+
+		admission.release(System.nanoTime());
+		assertEquals(0, admission.inFlight());
+		assertEquals(0, admission.rejected());
+	}
+
+	@Test
+	public void permitsReleaseHostAndRouteOnce() {
+		Admission host = new Admission(1, 0, false, 1);
+		Admission route = new Admission(1, 0, false, 1);
+		Permits permits = new Permits();
+
+		assertTrue(host.submit(() -> permits.add(host)));
+		assertTrue(route.submit(() -> permits.add(route)));
+		assertFalse(host.submit(() -> {}));
+
+		permits.releaseAll();
+		permits.releaseAll(); // e.g. the flow errored after it was already done
+		assertEquals(0, host.inFlight());
+		assertEquals(0, route.inFlight());
+
+		// still a limit of one each, a second release would have let two in
+		assertTrue(host.submit(() -> {}));
+		assertFalse(host.submit(() -> {}));
+		assertTrue(route.submit(() -> {}));
+		assertFalse(route.submit(() -> {}));
+	}
+
+	@Test
+	public void adaptiveLimitShrinksWhenSlowAndGrowsBack() throws InterruptedException {
+		Admission admission = new Admission(100, 0, true, 1);
+		long fast = TimeUnit.MILLISECONDS.toNanos(1);
+		long slow = TimeUnit.MILLISECONDS.toNanos(10);
+
+		window(admission, fast); // sets the minimum
+		assertEquals(100, admission.limit());
+
+		for (int i = 0; i < 5; i++) {
+			window(admission, slow);
+		}
+		int shrunk = admission.limit();
+		assertTrue("limit was " + shrunk, shrunk < 100);
+		assertTrue("limit was " + shrunk, shrunk >= 1);
+
+		for (int i = 0; i < 5; i++) {
+			window(admission, fast);
+		}
+		int grown = admission.limit();
+		assertTrue("limit went from " + shrunk + " to " + grown, grown > shrunk);
+		assertTrue("limit was " + grown, grown <= 100);
+	}
+
+	/*
+	 * Fills the limit and releases it all as if each request had taken latency nanos, the last
+	 * one is held back until the sampling window is up so it closes the window with all of them.
+	 */
+	private static void window(Admission admission, long latency) throws InterruptedException {
+		int count = admission.limit();
+		for (int i = 0; i < count; i++) {
+			assertTrue(admission.submit(() -> {}));
+		}
+		for (int i = 1; i < count; i++) {
+			admission.release(System.nanoTime() - latency);
+		}
+		Thread.sleep(110);
+		admission.release(System.nanoTime() - latency);
+		assertEquals(0, admission.inFlight());
+	}
+
+}
@@ -0,0 +1,130 @@
+package io.reka.net.tests;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import reka.net.common.sockets.ChannelFlowQueue;
+import reka.net.common.sockets.ChannelFlowQueue.Slot;
+
+public class ChannelFlowQueueTest {
+
+	@Test
+	public void repliesGoOutInTheOrderTheMessagesCameIn() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		ChannelFlowQueue queue = new ChannelFlowQueue(channel, 3);
+		List<Slot> slots = new ArrayList<>();
+		AtomicInteger released = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			queue.submit(slots::add, released::incrementAndGet);
+		}
+		assertEquals(3, slots.size());
+
+		slots.get(2).done("third");
+		slots.get(1).done("second");
+		assertNull(channel.readOutbound());
+
+		slots.get(0).done("first");
+		assertEquals(asList("first", "second", "third"), outbound(channel));
+		assertEquals(3, released.get());
+	}
+
+	@Test
+	public void onlyRunsInFlightAtOnceAndStopsReadingWhileTheRestWait() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		ChannelFlowQueue queue = new ChannelFlowQueue(channel, 2);
+		List<Slot> slots = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			queue.submit(slots::add);
+		}
+		assertEquals(2, slots.size());
+		assertFalse(channel.config().isAutoRead());
+
+		slots.get(0).done("0");
+		assertEquals(3, slots.size());
+		assertFalse(channel.config().isAutoRead());
+
+		slots.get(1).done("1");
+		assertEquals(4, slots.size());
+		assertTrue(channel.config().isAutoRead());
+
+		slots.get(3).done("3");
+		slots.get(2).done("2");
+		assertEquals(asList("0", "1", "2", "3"), outbound(channel));
+	}
+
+	@Test
+	public void flowsThatFinishStraightAwayOrFail() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		ChannelFlowQueue queue = new ChannelFlowQueue(channel, 1);
+		AtomicInteger released = new AtomicInteger();
+
+		queue.submit(slot -> slot.done("sync"), released::incrementAndGet);
+		queue.submit(slot -> slot.done(null), released::incrementAndGet); // nothing to write
+		queue.submit(slot -> { throw new RuntimeException("oops"); }, released::incrementAndGet);
+		queue.submit(slot -> slot.done("after"), released::incrementAndGet);
+
+		assertEquals(asList("sync", "after"), outbound(channel));
+		assertEquals(4, released.get());
+	}
+
+	@Test
+	public void closeDropsWhatHasNotStarted() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		ChannelFlowQueue queue = new ChannelFlowQueue(channel, 1);
+		List<Slot> slots = new ArrayList<>();
+		AtomicInteger released = new AtomicInteger();
+		for (int i = 0; i < 3; i++) {
+			queue.submit(slots::add, released::incrementAndGet);
+		}
+		queue.close();
+		assertEquals(2, released.get());
+
+		// the running one still finishes
+		slots.get(0).done("0");
+		assertEquals(asList("0"), outbound(channel));
+		assertEquals(1, slots.size());
+		assertEquals(3, released.get());
+	}
+
+	@Test
+	public void stopsReadingWhileTheChannelIsNotWritable() {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		channel.config().setWriteBufferWaterMark(new WriteBufferWaterMark(8, 16));
+		ChannelFlowQueue queue = new ChannelFlowQueue(channel, 1);
+		queue.update();
+		assertTrue(channel.config().isAutoRead());
+
+		channel.write(Unpooled.wrappedBuffer(new byte[32])); // not flushed, so it's still in the outbound buffer
+		assertFalse(channel.isWritable());
+		queue.update();
+		assertFalse(channel.config().isAutoRead());
+
+		channel.flush();
+		assertTrue(channel.isWritable());
+		queue.update();
+		assertTrue(channel.config().isAutoRead());
+		channel.finishAndReleaseAll();
+	}
+
+	private static List<Object> outbound(EmbeddedChannel channel) {
+		List<Object> messages = new ArrayList<>();
+		Object message;
+		while ((message = channel.readOutbound()) != null) {
+			messages.add(message);
+		}
+		return messages;
+	}
+
+}
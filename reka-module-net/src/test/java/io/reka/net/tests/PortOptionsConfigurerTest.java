@@ -0,0 +1,65 @@
+package io.reka.net.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import reka.net.NetSettings.PortOptions;
+import reka.net.PortOptionsConfigurer;
+
+public class PortOptionsConfigurerTest {
+
+	@Test
+	public void bothWaterMarks() {
+		PortOptionsConfigurer configurer = new PortOptionsConfigurer();
+		configurer.writeBufferLow("8kb");
+		configurer.writeBufferHigh("16kb");
+		PortOptions options = configurer.build();
+		assertEquals(8 * 1024, options.writeBufferLow());
+		assertEquals(16 * 1024, options.writeBufferHigh());
+	}
+
+	@Test
+	public void oneWaterMarkThatFitsTheOtherDefault() {
+		PortOptionsConfigurer low = new PortOptionsConfigurer();
+		low.writeBufferLow("16kb"); // default high is 64kb
+		assertEquals(16 * 1024, low.build().writeBufferLow());
+
+		PortOptionsConfigurer high = new PortOptionsConfigurer();
+		high.writeBufferHigh("1mb"); // default low is 32kb
+		assertEquals(1024 * 1024, high.build().writeBufferHigh());
+	}
+
+	@Test
+	public void lowMoreThanHigh() {
+		PortOptionsConfigurer configurer = new PortOptionsConfigurer();
+		configurer.writeBufferLow("64kb");
+		configurer.writeBufferHigh("32kb");
+		expectInvalid(configurer);
+	}
+
+	@Test
+	public void highBelowTheDefaultLow() {
+		PortOptionsConfigurer configurer = new PortOptionsConfigurer();
+		configurer.writeBufferHigh("16kb");
+		expectInvalid(configurer);
+	}
+
+	@Test
+	public void lowAboveTheDefaultHigh() {
+		PortOptionsConfigurer configurer = new PortOptionsConfigurer();
+		configurer.writeBufferLow("128kb");
+		expectInvalid(configurer);
+	}
+
+	private static void expectInvalid(PortOptionsConfigurer configurer) {
+		try {
+			configurer.build();
+			fail("expected the water marks to be rejected");
+		} catch (RuntimeException e) {
+			// what we wanted, it's caught at deploy time rather than for every connection
+		}
+	}
+
+}
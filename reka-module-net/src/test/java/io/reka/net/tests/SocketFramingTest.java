@@ -0,0 +1,183 @@
+package io.reka.net.tests;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static reka.data.content.Contents.binary;
+import static reka.data.content.Contents.utf8;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.TooLongFrameException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import reka.net.socket.SocketFraming;
+import reka.net.socket.SocketFraming.Mode;
+import reka.net.socket.SocketFramingConfigurer;
+
+public class SocketFramingTest {
+
+	@Test
+	public void lines() {
+		EmbeddedChannel channel = channel(SocketFraming.LINES);
+		channel.writeInbound(bytes("hello\nwor"), bytes("ld\r\n\n"));
+		assertEquals(asList("hello", "world"), inbound(channel));
+
+		channel.writeOutbound("hi");
+		assertEquals("hi\n", new String(outbound(channel), UTF_8));
+	}
+
+	@Test
+	public void linesLongerThanTheMax() {
+		EmbeddedChannel channel = channel(framing("lines", "max", "4"));
+		try {
+			channel.writeInbound(bytes("toolong\n"));
+			fail("expected the line to be too long");
+		} catch (TooLongFrameException e) {
+			// good
+		}
+		channel.writeInbound(bytes("ok\n"));
+		assertEquals(asList("ok"), inbound(channel));
+	}
+
+	@Test
+	public void lengthPrefixed() {
+		SocketFramingConfigurer configurer = new SocketFramingConfigurer();
+		configurer.mode("length");
+		configurer.bytes(2);
+		EmbeddedChannel channel = channel(configurer.build());
+
+		channel.writeInbound(bytes(0, 3, 'a', 'b', 'c', 0, 1), bytes('d', 0));
+		assertEquals(asList("abc", "d"), inbound(channel));
+
+		channel.writeOutbound("xy");
+		assertArrayEquals(new byte[] { 0, 2, 'x', 'y' }, outbound(channel));
+	}
+
+	@Test
+	public void fixed() {
+		EmbeddedChannel channel = channel(framing("fixed", "size", "4"));
+		channel.writeInbound(bytes("abcdefghij"));
+		assertEquals(asList("abcd", "efgh"), inbound(channel));
+		channel.writeInbound(bytes("kl"));
+		assertEquals(asList("ijkl"), inbound(channel));
+
+		channel.writeOutbound(Unpooled.wrappedBuffer(new byte[] { 1, 2, 3 }));
+		assertArrayEquals(new byte[] { 1, 2, 3 }, outbound(channel)); // replies go as they are
+	}
+
+	@Test
+	public void raw() {
+		EmbeddedChannel channel = channel(framing("raw"));
+		channel.writeInbound(bytes("any"), bytes("thing"));
+		assertEquals(asList("any", "thing"), inbound(channel));
+	}
+
+	@Test
+	public void replies() {
+		assertEquals("text", SocketFraming.LINES.reply(binary("text/plain", "text".getBytes(UTF_8))));
+
+		SocketFraming raw = framing("raw");
+		assertEquals("text", raw.reply(utf8("text")));
+
+		ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+		buffer.position(1);
+		ByteBuf wrapped = (ByteBuf) raw.reply(binary("application/octet-stream", buffer));
+		assertEquals(2, wrapped.readableBytes());
+		assertEquals(1, buffer.position()); // left as it was, it's a duplicate
+
+		ByteBuf bytes = (ByteBuf) raw.reply(binary("application/octet-stream", new byte[] { 4, 5 }));
+		assertEquals(2, bytes.readableBytes());
+	}
+
+	@Test
+	public void configuration() {
+		assertSame(SocketFraming.LINES, new SocketFramingConfigurer().build());
+		assertEquals(Mode.LENGTH, framing("length-prefixed").mode());
+		assertTrue(framing("length").toString().contains("max=" + SocketFraming.DEFAULT_MAX_FRAME + " length-bytes=4"));
+		assertTrue(framing("fixed", "size", "1kb").toString().contains("max=1024"));
+
+		expectInvalid(() -> framing("fixed"));
+		expectInvalid(() -> framing("words"));
+		expectInvalid(() -> framing("lines", "max", "0"));
+		expectInvalid(() -> new SocketFramingConfigurer().bytes(5));
+	}
+
+	private static SocketFraming framing(String mode, String... options) {
+		SocketFramingConfigurer configurer = new SocketFramingConfigurer();
+		configurer.mode(mode);
+		for (int i = 0; i < options.length; i += 2) {
+			switch (options[i]) {
+			case "max": configurer.max(options[i + 1]); break;
+			case "size": configurer.size(options[i + 1]); break;
+			}
+		}
+		return configurer.build();
+	}
+
+	private static EmbeddedChannel channel(SocketFraming framing) {
+		EmbeddedChannel channel = new EmbeddedChannel();
+		framing.configure(channel.pipeline());
+		return channel;
+	}
+
+	private static ByteBuf bytes(String s) {
+		return Unpooled.copiedBuffer(s, UTF_8);
+	}
+
+	private static ByteBuf bytes(int... values) {
+		byte[] bytes = new byte[values.length];
+		for (int i = 0; i < values.length; i++) {
+			bytes[i] = (byte) values[i];
+		}
+		return Unpooled.wrappedBuffer(bytes);
+	}
+
+	// strings for the lines, the frames as strings for the others
+	private static List<String> inbound(EmbeddedChannel channel) {
+		List<String> messages = new ArrayList<>();
+		Object message;
+		while ((message = channel.readInbound()) != null) {
+			if (message instanceof ByteBuf) {
+				ByteBuf buf = (ByteBuf) message;
+				messages.add(buf.toString(UTF_8));
+				buf.release();
+			} else {
+				messages.add((String) message);
+			}
+		}
+		return messages;
+	}
+
+	private static byte[] outbound(EmbeddedChannel channel) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ByteBuf buf;
+		while ((buf = channel.readOutbound()) != null) {
+			byte[] bytes = new byte[buf.readableBytes()];
+			buf.readBytes(bytes);
+			out.write(bytes, 0, bytes.length);
+			buf.release();
+		}
+		return out.toByteArray();
+	}
+
+	private static void expectInvalid(Runnable r) {
+		try {
+			r.run();
+			fail("expected the framing to be rejected");
+		} catch (RuntimeException e) {
+			// good
+		}
+	}
+
+}
@@ -0,0 +1,75 @@
+package reka.net.http.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+// in the same package as ByteRanges is package private
+public class ByteRangesTest {
+
+	@Test
+	public void simpleRanges() {
+		assertRanges("0-4", ByteRanges.parse("bytes=0-4", 10));
+		assertRanges("5-9", ByteRanges.parse("bytes=5-", 10));
+		assertRanges("5-9", ByteRanges.parse("bytes=5-100", 10)); // clamped to the end
+		assertRanges("0-0,2-3", ByteRanges.parse("BYTES= 0-0 , 2-3", 10));
+		assertEquals(5, ByteRanges.length(new long[] { 5, 9 }));
+	}
+
+	@Test
+	public void suffixRanges() {
+		assertRanges("7-9", ByteRanges.parse("bytes=-3", 10));
+		assertRanges("0-9", ByteRanges.parse("bytes=-100", 10));
+		assertTrue(ByteRanges.parse("bytes=-0", 10).isEmpty());
+	}
+
+	@Test
+	public void unsatisfiable() {
+		assertTrue(ByteRanges.parse("bytes=10-", 10).isEmpty());
+		assertTrue(ByteRanges.parse("bytes=20-30", 10).isEmpty());
+		assertRanges("0-1", ByteRanges.parse("bytes=0-1,10-12", 10)); // only the ones that can be
+	}
+
+	@Test
+	public void zeroLengthFiles() {
+		assertTrue(ByteRanges.parse("bytes=0-", 0).isEmpty());
+		assertTrue(ByteRanges.parse("bytes=0-0", 0).isEmpty());
+		assertTrue(ByteRanges.parse("bytes=-5", 0).isEmpty());
+	}
+
+	@Test
+	public void ignoredHeaders() {
+		assertNull(ByteRanges.parse(null, 10));
+		assertNull(ByteRanges.parse("items=0-4", 10));
+		assertNull(ByteRanges.parse("bytes=4-2", 10)); // last before first
+		assertNull(ByteRanges.parse("bytes=4", 10));
+		assertNull(ByteRanges.parse("bytes=-", 10));
+		assertNull(ByteRanges.parse("bytes=a-b", 10));
+		assertNull(ByteRanges.parse("bytes=-1-2", 10));
+	}
+
+	@Test
+	public void tooManyRanges() {
+		StringBuilder header = new StringBuilder("bytes=");
+		for (int i = 0; i < 16; i++) {
+			if (i > 0) header.append(',');
+			header.append(i).append('-').append(i);
+		}
+		assertEquals(16, ByteRanges.parse(header.toString(), 100).size());
+		assertNull(ByteRanges.parse(header.append(",16-16").toString(), 100));
+	}
+
+	private static void assertRanges(String expected, List<long[]> ranges) {
+		List<String> actual = new ArrayList<>();
+		for (long[] range : ranges) {
+			actual.add(range[0] + "-" + range[1]);
+		}
+		assertEquals(expected, String.join(",", actual));
+	}
+
+}
@@ -47,6 +47,11 @@ public final class MultiProcessManager implements ProcessManager {
 		all.forEach(m -> m.addListener(consumer));
 	}
 
+	@Override
+	public int queued() {
+		return q.size();
+	}
+
 	@Override
 	public boolean up() {
 		return all.stream().anyMatch(StatusDataProvider::up);
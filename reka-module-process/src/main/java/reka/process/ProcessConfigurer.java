@@ -20,6 +20,7 @@ import reka.config.ConfigBody;
 import reka.config.configurer.annotations.Conf;
 import reka.data.memory.MutableMemoryData;
 import reka.identity.IdentityKey;
+import reka.metrics.MetricsScope;
 import reka.module.setup.AppSetup;
 import reka.module.setup.ModuleConfigurer;
 import reka.module.setup.ModuleSetupContext;
@@ -125,6 +126,10 @@ public class ProcessConfigurer extends ModuleConfigurer {
 		
 		app.registerStatusProvider(() -> ctx.get(PROCESS_MANAGER));
 		
+		MetricsScope metrics = app.metrics();
+		metrics.gauge("reka_process_queued", "inputs waiting to be sent to the process", () -> ctx.lookup(PROCESS_MANAGER).map(ProcessManager::queued).orElse(0));
+		metrics.gauge("reka_process_up", "whether the process is running", () -> ctx.lookup(PROCESS_MANAGER).map(m -> m.up() ? 1 : 0).orElse(0));
+		
 		app.onUndeploy("kill process", () -> {
 			ctx.lookup(PROCESS_MANAGER).ifPresent(ProcessManager::shutdown);
 		});
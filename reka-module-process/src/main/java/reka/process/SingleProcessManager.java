@@ -120,6 +120,11 @@ public final class SingleProcessManager implements ProcessManager {
 		lineTriggers.add(consumer);
 	}
 
+	@Override
+	public int queued() {
+		return q.size();
+	}
+
 	@Override
 	public boolean up() {
 		return process.isAlive();
@@ -6,6 +6,8 @@ import static reka.util.Path.dots;
 import static reka.util.Path.path;
 import static reka.util.Path.PathElements.index;
 import static reka.util.Path.PathElements.name;
+import static reka.util.Path.PathElements.nextIndex;
+import static reka.util.Path.slashes;
 
 import java.util.Iterator;
 
@@ -54,5 +56,27 @@ public class PathTest {
 	public void ignoresMultipleDots() {
 		assertThat(dots("what...about..this").dots(), equalTo("what.about.this"));
 	}
+	
+	@Test
+	public void parsesNextIndexes() {
+		assertThat(dots("items[].name"), equalTo(path(name("items"), nextIndex(), name("name"))));
+		assertThat(dots("items[+]"), equalTo(path(name("items"), nextIndex())));
+		assertThat(dots("[2]"), equalTo(path(index(2))));
+		assertThat(dots("not[an]index"), equalTo(path(name("not[an]index"))));
+	}
+	
+	@Test
+	public void parsesSlashes() {
+		assertThat(slashes("/some//thing/[3]/"), equalTo(path(name("some"), name("thing"), index(3))));
+	}
+	
+	@Test
+	public void parsedPathsAreEqualToBuiltOnes() {
+		Path built = path("a", "b").add(1);
+		Path parsed = dots("a.b[1]");
+		assertThat(parsed, equalTo(built));
+		assertThat(parsed.hashCode(), equalTo(built.hashCode()));
+		assertThat(dots("a.b[1]"), equalTo(parsed));
+	}
 
 }